@@ -113,6 +113,69 @@ public class BenchmarkIntegerCoding {
         System.out.println("  NIO Size: " + sizeOfNioLongs);
     }
 
+    /**
+     * Values that all have the same VLC size, to show the cost of encoding and decoding per VLC size.
+     */
+    @State(Scope.Benchmark)
+    public static class VlcSizeState {
+        @Param({"1", "2", "3", "4", "5", "6", "7", "8", "9"})
+        public int vlcSize;
+
+        private ByteBuf buf;
+        private long[] values;
+
+        @Setup
+        public void setup(BenchmarkIntegerCoding benchmark) throws IOException {
+            final int bufferSize = 1024;
+            switch (benchmark.bufType) {
+                case ARRAY:
+                    buf = new ByteArrayBuf(new byte[bufferSize]);
+                    break;
+                case BUFFER:
+                    buf = new ByteBufferBuf(ByteBuffer.allocate(bufferSize).order(ByteOrder.LITTLE_ENDIAN));
+                    break;
+                case DIRECT_BUFFER:
+                    buf = new ByteBufferBuf(ByteBuffer.allocateDirect(bufferSize).order(ByteOrder.LITTLE_ENDIAN));
+                    break;
+                default:
+                    throw new RuntimeException("Unhandled case: " + benchmark.bufType);
+            }
+
+            // number of value bits for the VLC size
+            int bits = vlcSize == 1 ? 7 : vlcSize == 2 ? 14 : (vlcSize - 1) * 8;
+            values = new long[64];
+            for (int i=0; i<values.length; i++) {
+                values[i] = (1L << (bits - 1)) | i;
+                if (BlinkOutput.sizeOfUnsignedVLC(values[i]) != vlcSize) {
+                    throw new RuntimeException("Wrong VLC size of value: " + values[i]);
+                }
+                BlinkOutput.writeUInt64(buf, values[i]);
+            }
+        }
+    }
+
+    @Benchmark
+    public int writeVlcSize(VlcSizeState state) throws IOException {
+        ByteBuf buf = state.buf;
+        long[] values = state.values;
+        buf.clear();
+        for (int i=0; i<values.length; i++) {
+            BlinkOutput.writeUInt64(buf, values[i]);
+        }
+        return buf.position();
+    }
+    @Benchmark
+    public long readVlcSize(VlcSizeState state) throws IOException {
+        ByteBuf buf = state.buf;
+        long[] values = state.values;
+        buf.clear();
+        long sum = 0;
+        for (int i=0; i<values.length; i++) {
+            sum += BlinkInput.readUInt64(buf);
+        }
+        return sum;
+    }
+
     @Benchmark
     public int writeVlcUInt32() throws IOException {
         vlcBuf.clear();
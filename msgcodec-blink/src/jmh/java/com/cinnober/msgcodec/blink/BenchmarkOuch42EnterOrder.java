@@ -59,8 +59,13 @@ public class BenchmarkOuch42EnterOrder {
     @Param({"ARRAY", "BUFFER", "DIRECT_BUFFER", "REALLOCATING_ARRAY", "REALLOCATING_BUFFER", "REALLOCATING_DIRECT_BUFFER"})
     public BufferType bufType;
 
+    /** Generate a codec that is specialized for the buffer type. */
+    @Param({"false", "true"})
+    public boolean specialized;
+
     private Ouch42EnterOrder msg;
     private BlinkCodec codec;
+    private EnterOrderView view;
     private int encodedSize;
 
     private ByteBuf buf;
@@ -72,7 +77,6 @@ public class BenchmarkOuch42EnterOrder {
     public void setup() throws IOException {
         Schema dict = new SchemaBuilder(true).build(Ouch42EnterOrder.class);
         BlinkCodecFactory factory = new BlinkCodecFactory(dict);
-        codec = factory.createCodec();
         final int bufferSize = 1024;
         switch (bufType) {
             case ARRAY:
@@ -96,6 +100,11 @@ public class BenchmarkOuch42EnterOrder {
             default:
                 throw new RuntimeException("Unhandled case: " + bufType);
         }
+        if (specialized) {
+            factory.specializeFor(buf.getClass());
+        }
+        codec = factory.createCodec();
+        view = codec.createFlyweight(Ouch42EnterOrder.class, EnterOrderView.class);
 
         msg = createOuch42EnterOrder();
 
@@ -128,9 +137,21 @@ public class BenchmarkOuch42EnterOrder {
         return codec.decode(buf);
     }
     @Benchmark
+    public int benchmarkDecodeFlyweight() throws IOException {
+        buf.position(0).limit(encodedSize);
+        view.wrap(buf);
+        return view.getShares() + view.getPrice() + view.getStock().length();
+    }
+    @Benchmark
     public int benchmarkEncode() throws IOException {
         buf.clear();
         codec.encode(msg, buf);
         return buf.position();
     }
+
+    public interface EnterOrderView extends BlinkFlyweight {
+        int getShares();
+        CharSequence getStock();
+        int getPrice();
+    }
 }
@@ -27,24 +27,36 @@ package com.cinnober.msgcodec.blink;
 import com.cinnober.msgcodec.Accessor;
 import com.cinnober.msgcodec.ConstructorFactory;
 import com.cinnober.msgcodec.CreateAccessor;
+import com.cinnober.msgcodec.DoubleAccessor;
 import com.cinnober.msgcodec.Factory;
 import com.cinnober.msgcodec.FieldAccessor;
 import com.cinnober.msgcodec.FieldDef;
+import com.cinnober.msgcodec.FloatAccessor;
 import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.IntAccessor;
 import com.cinnober.msgcodec.JavaClassGroupTypeAccessor;
+import com.cinnober.msgcodec.LongAccessor;
+import com.cinnober.msgcodec.PrimitiveFieldAccessor;
 import com.cinnober.msgcodec.Schema;
 import com.cinnober.msgcodec.SchemaBinding;
 import com.cinnober.msgcodec.SymbolMapping;
 import com.cinnober.msgcodec.TypeDef;
+import com.cinnober.msgcodec.WideningAccessor;
 import com.cinnober.msgcodec.io.ByteArrays;
 import com.cinnober.msgcodec.io.ByteSink;
 import com.cinnober.msgcodec.io.ByteSource;
+import org.objectweb.asm.ClassReader;
 import org.objectweb.asm.ClassVisitor;
 import org.objectweb.asm.ClassWriter;
 import org.objectweb.asm.FieldVisitor;
 import org.objectweb.asm.Label;
 import org.objectweb.asm.MethodVisitor;
 import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.CodeSizeEvaluator;
+import org.objectweb.asm.tree.ClassNode;
+import org.objectweb.asm.tree.FieldNode;
+import org.objectweb.asm.tree.MethodNode;
+import org.objectweb.asm.tree.TryCatchBlockNode;
 import org.objectweb.asm.util.CheckClassAdapter;
 import org.objectweb.asm.util.TraceClassVisitor;
 
@@ -53,11 +65,14 @@ import java.io.StringWriter;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
 import java.util.Date;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Map.Entry;
 import java.util.Objects;
 import java.util.TreeMap;
 import java.util.logging.Level;
@@ -74,6 +89,7 @@ import static org.objectweb.asm.Opcodes.ALOAD;
 import static org.objectweb.asm.Opcodes.ANEWARRAY;
 import static org.objectweb.asm.Opcodes.ARETURN;
 import static org.objectweb.asm.Opcodes.ARRAYLENGTH;
+import static org.objectweb.asm.Opcodes.ASM5;
 import static org.objectweb.asm.Opcodes.ASTORE;
 import static org.objectweb.asm.Opcodes.ATHROW;
 import static org.objectweb.asm.Opcodes.BALOAD;
@@ -86,12 +102,15 @@ import static org.objectweb.asm.Opcodes.DASTORE;
 import static org.objectweb.asm.Opcodes.DUP;
 import static org.objectweb.asm.Opcodes.FALOAD;
 import static org.objectweb.asm.Opcodes.FASTORE;
+import static org.objectweb.asm.Opcodes.F2D;
 import static org.objectweb.asm.Opcodes.F_SAME;
 import static org.objectweb.asm.Opcodes.GETFIELD;
 import static org.objectweb.asm.Opcodes.GOTO;
 import static org.objectweb.asm.Opcodes.I2C;
+import static org.objectweb.asm.Opcodes.I2L;
 import static org.objectweb.asm.Opcodes.I2S;
 import static org.objectweb.asm.Opcodes.IALOAD;
+import static org.objectweb.asm.Opcodes.IAND;
 import static org.objectweb.asm.Opcodes.IASTORE;
 import static org.objectweb.asm.Opcodes.ICONST_0;
 import static org.objectweb.asm.Opcodes.ICONST_1;
@@ -99,16 +118,17 @@ import static org.objectweb.asm.Opcodes.IFEQ;
 import static org.objectweb.asm.Opcodes.IFNE;
 import static org.objectweb.asm.Opcodes.IFNONNULL;
 import static org.objectweb.asm.Opcodes.IFNULL;
-import static org.objectweb.asm.Opcodes.IF_ACMPEQ;
 import static org.objectweb.asm.Opcodes.IF_ICMPGE;
 import static org.objectweb.asm.Opcodes.ILOAD;
 import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
 import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
 import static org.objectweb.asm.Opcodes.INVOKESTATIC;
 import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
 import static org.objectweb.asm.Opcodes.ISTORE;
 import static org.objectweb.asm.Opcodes.LADD;
 import static org.objectweb.asm.Opcodes.LALOAD;
+import static org.objectweb.asm.Opcodes.LAND;
 import static org.objectweb.asm.Opcodes.LASTORE;
 import static org.objectweb.asm.Opcodes.LDIV;
 import static org.objectweb.asm.Opcodes.LLOAD;
@@ -122,6 +142,7 @@ import static org.objectweb.asm.Opcodes.PUTFIELD;
 import static org.objectweb.asm.Opcodes.RETURN;
 import static org.objectweb.asm.Opcodes.SALOAD;
 import static org.objectweb.asm.Opcodes.SASTORE;
+import static org.objectweb.asm.Opcodes.SIPUSH;
 import static org.objectweb.asm.Opcodes.SWAP;
 import static org.objectweb.asm.Opcodes.T_BOOLEAN;
 import static org.objectweb.asm.Opcodes.T_BYTE;
@@ -145,14 +166,29 @@ class BaseByteCodeGenerator {
     private static final String BYTE_SINK_INAME = Type.getInternalName(ByteSink.class);
     @SuppressWarnings("unused")
     private static final String BYTE_SOURCE_INAME = Type.getInternalName(ByteSource.class);
-    private static final String GROUPDEF_INAME = Type.getInternalName(GroupDef.class);
-    private static final String SCHEMA_INAME = Type.getInternalName(Schema.class);
     @SuppressWarnings("unused")
     private static final String SCHEMA_BINDING_INAME = Type.getInternalName(SchemaBinding.class);
 
 
+    /**
+     * The maximum code size in bytes of a method that the JIT compiler compiles,
+     * see the HotSpot option <code>-XX:HugeMethodLimit</code>.
+     * Larger methods are split.
+     */
+    static final int MAX_METHOD_SIZE = 8000;
+    /**
+     * The maximum code size in bytes of a frequently called method that the JIT compiler inlines,
+     * see the HotSpot option <code>-XX:FreqInlineSize</code>.
+     * When the fields of a group are split into several methods, each method is kept below this size.
+     */
+    static final int MAX_INLINE_SIZE = 325;
+    /** The maximum number of cases in a generated switch method. Larger switches are split. */
+    static final int MAX_SWITCH_CASES = 256;
+
     protected final String GENERATED_CLASS_INAME = "com/cinnober/msgcodec/blink/GeneratedBlinkCodec";
     protected final String GENERATED_CLASS_NAME = "com.cinnober.msgcodec.blink.GeneratedBlinkCodec";
+    /** The simple name prefix of generated classes that are defined in the package of the message classes. */
+    protected static final String PACKAGE_ACCESS_CLASS_SIMPLE_NAME = "GeneratedBlinkCodecWithPackageAccess";
     protected final String baseclassIName; // = Type.getInternalName(GeneratedCodec.class);
     protected final String blinkCodecIName;
     protected final String blinkInputIName; // = Type.getInternalName(BlinkInput.class);
@@ -169,15 +205,63 @@ class BaseByteCodeGenerator {
         blinkOutputIName = Type.getInternalName(blinkOutputClass);
     }
 
+    /**
+     * Create a generator that calls the specified blink input and output classes,
+     * which must have the same static methods as the ordinary blink input and output classes.
+     */
+    protected BaseByteCodeGenerator(
+            Class<? extends GeneratedCodec> generatedSuperClass,
+            Class<?> blinkCodecClass,
+            String blinkInputIName,
+            String blinkOutputIName) {
+        baseclassIName = Type.getInternalName(generatedSuperClass);
+        blinkCodecIName = Type.getInternalName(blinkCodecClass);
+        this.blinkInputIName = blinkInputIName;
+        this.blinkOutputIName = blinkOutputIName;
+    }
+
 
     public String getGeneratedClassName(int suffix) {
         return GENERATED_CLASS_NAME + suffix;
     }
 
+    /**
+     * Returns the name of a generated class that is defined in the package of the specified class.
+     * The generated class accesses package-private fields and constructors of that package directly,
+     * instead of through accessors and factories. It must be defined by the class loader of the host class,
+     * e.g. using <code>MethodHandles.Lookup.defineClass</code>.
+     *
+     * @param accessHost the class whose package to access, or null for an ordinary generated class.
+     * @param suffix the class name suffix.
+     * @return the class name, not null.
+     * @see #getPackageAccessHost(Schema)
+     */
+    public String getGeneratedClassName(Class<?> accessHost, int suffix) {
+        if (accessHost == null) {
+            return getGeneratedClassName(suffix);
+        }
+        String packageName = getPackageName(accessHost);
+        return (packageName.isEmpty() ? "" : packageName + ".") + PACKAGE_ACCESS_CLASS_SIMPLE_NAME + suffix;
+    }
+
     public byte[] generateClass(Schema schema, int suffix) {
+        return generateClass(schema, null, suffix);
+    }
+
+    /**
+     * Generates a codec class.
+     *
+     * @param schema the bound schema, not null.
+     * @param accessHost the class whose package to access, or null for an ordinary generated class.
+     * @param suffix the class name suffix.
+     * @return the class bytes, not null.
+     * @see #getGeneratedClassName(Class, int)
+     */
+    public byte[] generateClass(Schema schema, Class<?> accessHost, int suffix) {
         if (!schema.isBound()) {
             throw new IllegalArgumentException("Schema is not bound");
         }
+        final String genClassInternalName = getGeneratedClassName(accessHost, suffix).replace('.', '/');
 
         ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
         ClassVisitor cv = classWriter;
@@ -188,14 +272,22 @@ class BaseByteCodeGenerator {
         }
         cv = new CheckClassAdapter(cv);
         if (schema.getBinding().getGroupTypeAccessor() == JavaClassGroupTypeAccessor.INSTANCE) {
-            generateCodecJ(cv, schema, suffix);
+            generateCodecJ(cv, schema, genClassInternalName);
         } else {
-            generateCodecG(cv, schema, suffix);
+            generateCodecG(cv, schema, genClassInternalName);
         }
         byte[] bytes = classWriter.toByteArray();
 
+        if (log.isLoggable(Level.WARNING)) {
+            for (Map.Entry<String, Integer> methodSize : getMethodSizes(bytes).entrySet()) {
+                if (methodSize.getValue() > MAX_METHOD_SIZE) {
+                    log.log(Level.WARNING, "Generated method {0} ({1} bytes) is too large to be JIT compiled",
+                            new Object[] { methodSize.getKey(), methodSize.getValue() });
+                }
+            }
+        }
         if (log.isLoggable(Level.FINE)) {
-            log.log(Level.FINE, "Generated codec class " + GENERATED_CLASS_INAME + suffix + " for schema UID: " + schema.getUID());
+            log.log(Level.FINE, "Generated codec class " + genClassInternalName + " for schema UID: " + schema.getUID());
             if (log.isLoggable(Level.FINER)) {
                 log.finer("Generated code (#"+suffix+"):\n" + traceString.toString());
             }
@@ -220,6 +312,7 @@ class BaseByteCodeGenerator {
      * Constructor(BlinkCodec, Schema);
      *
      * Object readStaticGroup(int groupId, ByteSource); // switch on groupId
+     * void readStaticGroup(int groupId, ByteSource, Object); // switch on groupId
      * ...
      * MessageType1 readStaticGroup_MessageType1(ByteSource);
      * MessageType2 readStaticGroup_MessageType2(ByteSource);
@@ -239,10 +332,10 @@ class BaseByteCodeGenerator {
      *
      * @param cv
      * @param schema
-     * @param suffix
+     * @param genClassInternalName
      */
-    protected void generateCodecJ(ClassVisitor cv, Schema schema, int suffix) {
-        generateCodec(cv, schema, suffix, true);
+    protected void generateCodecJ(ClassVisitor cv, Schema schema, String genClassInternalName) {
+        generateCodec(cv, schema, genClassInternalName, true);
     }
 
     /**
@@ -261,6 +354,7 @@ class BaseByteCodeGenerator {
      * Constructor(BlinkCodec, Schema);
      *
      * Object readStaticGroup(int groupId, ByteSource); // switch on groupId
+     * void readStaticGroup(int groupId, ByteSource, Object); // switch on groupId
      * ...
      * Object readStaticGroup_MessageType1(ByteSource);
      * Object readStaticGroup_MessageType2(ByteSource);
@@ -280,19 +374,20 @@ class BaseByteCodeGenerator {
      *
      * @param cv
      * @param schema
-     * @param suffix
+     * @param genClassInternalName
      */
-    protected void generateCodecG(ClassVisitor cv, Schema schema, int suffix) {
-        generateCodec(cv, schema, suffix, false);
+    protected void generateCodecG(ClassVisitor cv, Schema schema, String genClassInternalName) {
+        generateCodec(cv, schema, genClassInternalName, false);
     }
 
-    private void generateCodec(ClassVisitor cv, Schema schema, int suffix, boolean javaClassCodec) {
-        final String genClassInternalName = GENERATED_CLASS_INAME + suffix;
+    private void generateCodec(ClassVisitor cv, Schema schema, String genClassInternalName,
+            boolean javaClassCodec) {
         cv.visit(V1_7, ACC_PUBLIC + ACC_FINAL, genClassInternalName, null, baseclassIName, null);
 
         generateConstructorAndFields(schema, cv, genClassInternalName, javaClassCodec);
 
         generateReadStaticGroup(schema, cv, genClassInternalName, javaClassCodec);
+        generateReadStaticGroupInto(schema, cv, genClassInternalName, javaClassCodec);
         generateReadStaticGroupForTypeAndCreate(schema, cv, genClassInternalName, javaClassCodec);
         generateReadStaticGroupForType(schema, cv, genClassInternalName, javaClassCodec);
 
@@ -300,9 +395,26 @@ class BaseByteCodeGenerator {
         generateWriteStaticGroupForTypeWithId(schema, cv, genClassInternalName, javaClassCodec);
         generateWriteStaticGroupForType(schema, cv, genClassInternalName, javaClassCodec);
 
+        generateAdditionalMethods(schema, cv, genClassInternalName, javaClassCodec);
+
         cv.visitEnd();
     }
 
+    /**
+     * Generate any additional methods of the codec class.
+     * This is called after all read and write methods have been generated.
+     *
+     * <p>Does nothing by default.
+     *
+     * @param schema the schema, not null.
+     * @param cv the class visitor, not null.
+     * @param genClassInternalName the internal name of the generated class, not null.
+     * @param javaClassCodec true if the codec uses the JavaClassGroupTypeAccessor.
+     */
+    protected void generateAdditionalMethods(Schema schema, ClassVisitor cv, String genClassInternalName,
+            boolean javaClassCodec) {
+    }
+
     // --- GENERATE CONSTRUCTOR ETC ------------------------------------------------------------------------------------
 
     protected void generateConstructorAndFields(Schema schema, ClassVisitor cv, String genClassInternalName, boolean javaClassCodec) {
@@ -313,8 +425,9 @@ class BaseByteCodeGenerator {
         ctormv.visitCode();
         ctormv.visitVarInsn(ALOAD, 0);
         ctormv.visitVarInsn(ALOAD, 1);
+        ctormv.visitVarInsn(ALOAD, 2);
         ctormv.visitMethodInsn(INVOKESPECIAL, baseclassIName, "<init>",
-                "(L" + blinkCodecIName + ";)V", false);
+                "(L" + blinkCodecIName + ";Lcom/cinnober/msgcodec/Schema;)V", false);
 
         // schema field
         FieldVisitor fv = cv.visitField(ACC_PRIVATE + ACC_FINAL, "schema",
@@ -344,46 +457,51 @@ class BaseByteCodeGenerator {
                     "Lcom/cinnober/msgcodec/GroupTypeAccessor;");
         }
 
+        // the fields of the groups, which are not final if they are initialized outside the constructor
+        ClassNode groupFields = new ClassNode();
+        List<MethodNode> groupInitCode = new ArrayList<>(schema.getGroups().size());
         for (GroupDef group : schema.getGroups()) {
+            MethodNode groupInitmv = newFieldCode();
+            groupInitCode.add(groupInitmv);
             if (!javaClassCodec) {
                 // store the group type
                 // field
-                fv = cv.visitField(ACC_PRIVATE + ACC_FINAL, "groupType_" + group.getName(),
+                fv = groupFields.visitField(ACC_PRIVATE + ACC_FINAL, "groupType_" + group.getName(),
                         "Ljava/lang/Object;", null, null);
                 fv.visitEnd();
 
                 // ctor, init field
-                ctormv.visitVarInsn(ALOAD, 0); // this
-                ctormv.visitVarInsn(ALOAD, 2); // schema
-                ctormv.visitLdcInsn(group.getName());
-                ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
+                groupInitmv.visitVarInsn(ALOAD, 0); // this
+                groupInitmv.visitVarInsn(ALOAD, 2); // schema
+                groupInitmv.visitLdcInsn(group.getName());
+                groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
                         "(Ljava/lang/String;)Lcom/cinnober/msgcodec/GroupDef;", false);
-                ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getGroupType",
+                groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getGroupType",
                         "()Ljava/lang/Object;", false);
-                ctormv.visitFieldInsn(PUTFIELD, genClassInternalName,
+                groupInitmv.visitFieldInsn(PUTFIELD, genClassInternalName,
                         "groupType_" + group.getName(),
                         "Ljava/lang/Object;");
             }
 
             Factory<?> factory = group.getFactory();
-            if (isPublicConstructorFactory(factory)) {
+            if (isDirectConstructorFactory(factory, genClassInternalName)) {
                 // no factory is needed
             } else {
                 // field
-                fv = cv.visitField(ACC_PRIVATE + ACC_FINAL,
+                fv = groupFields.visitField(ACC_PRIVATE + ACC_FINAL,
                         "factory_" + group.getName(),
                         "Lcom/cinnober/msgcodec/Factory;", null, null);
                 fv.visitEnd();
 
                 // ctor, init field
-                ctormv.visitVarInsn(ALOAD, 0); // this
-                ctormv.visitVarInsn(ALOAD, 2); // schema
-                ctormv.visitLdcInsn(group.getName());
-                ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
+                groupInitmv.visitVarInsn(ALOAD, 0); // this
+                groupInitmv.visitVarInsn(ALOAD, 2); // schema
+                groupInitmv.visitLdcInsn(group.getName());
+                groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
                         "(Ljava/lang/String;)Lcom/cinnober/msgcodec/GroupDef;", false);
-                ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getFactory",
+                groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getFactory",
                         "()Lcom/cinnober/msgcodec/Factory;", false);
-                ctormv.visitFieldInsn(PUTFIELD, genClassInternalName,
+                groupInitmv.visitFieldInsn(PUTFIELD, genClassInternalName,
                         "factory_" + group.getName(),
                         "Lcom/cinnober/msgcodec/Factory;");
             }
@@ -398,27 +516,27 @@ class BaseByteCodeGenerator {
                     componentType = schema.resolveToType(((TypeDef.Sequence) type).getComponentType(), false);
                 }
 
-                if (isPublicFieldAccessor(accessor)) {
+                if (isDirectFieldAccessor(accessor, genClassInternalName)) {
                     // no accessor needed
                 } else {
                     // field
-                    fv = cv.visitField(ACC_PRIVATE + ACC_FINAL,
+                    fv = groupFields.visitField(ACC_PRIVATE + ACC_FINAL,
                             "accessor_" + group.getName() + "_" + field.getName(),
                             "Lcom/cinnober/msgcodec/Accessor;", null, null);
                     fv.visitEnd();
 
                     // ctor, init field
-                    ctormv.visitVarInsn(ALOAD, 0); // this
-                    ctormv.visitVarInsn(ALOAD, 2); // schema
-                    ctormv.visitLdcInsn(group.getName());
-                    ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
+                    groupInitmv.visitVarInsn(ALOAD, 0); // this
+                    groupInitmv.visitVarInsn(ALOAD, 2); // schema
+                    groupInitmv.visitLdcInsn(group.getName());
+                    groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
                             "(Ljava/lang/String;)Lcom/cinnober/msgcodec/GroupDef;", false);
-                    ctormv.visitLdcInsn(field.getName());
-                    ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getField",
+                    groupInitmv.visitLdcInsn(field.getName());
+                    groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getField",
                             "(Ljava/lang/String;)Lcom/cinnober/msgcodec/FieldDef;", false);
-                    ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/FieldDef", "getAccessor",
+                    groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/FieldDef", "getAccessor",
                             "()Lcom/cinnober/msgcodec/Accessor;", false);
-                    ctormv.visitFieldInsn(PUTFIELD, genClassInternalName,
+                    groupInitmv.visitFieldInsn(PUTFIELD, genClassInternalName,
                             "accessor_" + group.getName() + "_" + field.getName(),
                             "Lcom/cinnober/msgcodec/Accessor;");
                 }
@@ -433,178 +551,305 @@ class BaseByteCodeGenerator {
                     // Create field
                     String symbolMappingFieldName = "symbolMapping_" + group.getName() + "_" + field.getName();
                     
-                    fv = cv.visitField(ACC_PRIVATE + ACC_FINAL,
+                    fv = groupFields.visitField(ACC_PRIVATE + ACC_FINAL,
                             symbolMappingFieldName, "Lcom/cinnober/msgcodec/SymbolMapping;", null, null);
                     fv.visitEnd();
 
                     // Init field in the constructor
-                    ctormv.visitVarInsn(ALOAD, 0); // this
-                    ctormv.visitVarInsn(ALOAD, 2); // schema
-                    ctormv.visitLdcInsn(group.getName());
-                    ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
+                    groupInitmv.visitVarInsn(ALOAD, 0); // this
+                    groupInitmv.visitVarInsn(ALOAD, 2); // schema
+                    groupInitmv.visitLdcInsn(group.getName());
+                    groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/Schema", "getGroup",
                             "(Ljava/lang/String;)Lcom/cinnober/msgcodec/GroupDef;", false);
-                    ctormv.visitLdcInsn(field.getName());
-                    ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getField",
+                    groupInitmv.visitLdcInsn(field.getName());
+                    groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/GroupDef", "getField",
                             "(Ljava/lang/String;)Lcom/cinnober/msgcodec/FieldDef;", false);
-                    ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/FieldDef", "getBinding",
+                    groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/FieldDef", "getBinding",
                             "()Lcom/cinnober/msgcodec/FieldBinding;", false);
-                    ctormv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/FieldBinding", "getSymbolMapping",
+                    groupInitmv.visitMethodInsn(INVOKEVIRTUAL, "com/cinnober/msgcodec/FieldBinding", "getSymbolMapping",
                             "()Lcom/cinnober/msgcodec/SymbolMapping;", false);
                     
-                    ctormv.visitFieldInsn(PUTFIELD, genClassInternalName,
+                    groupInitmv.visitFieldInsn(PUTFIELD, genClassInternalName,
                             symbolMappingFieldName, "Lcom/cinnober/msgcodec/SymbolMapping;");
                 }
             }
         }
 
+        boolean split = generateFieldCode(cv, ctormv, genClassInternalName, "init",
+                "(L" + blinkCodecIName + ";Lcom/cinnober/msgcodec/Schema;)V", groupInitCode, nextCtorVar,
+                MAX_METHOD_SIZE);
+        for (Object field : groupFields.fields) { // raw list in ASM 5
+            FieldNode fieldNode = (FieldNode) field;
+            if (split) {
+                fieldNode.access &= ~ACC_FINAL;
+            }
+            fieldNode.accept(cv);
+        }
+
         ctormv.visitInsn(RETURN);
         ctormv.visitMaxs(3, nextCtorVar);
         ctormv.visitEnd();
     }
     
-    // --- GENERATE WRITE ----------------------------------------------------------------------------------------------
+    // --- GENERATE SPLIT METHODS --------------------------------------------------------------------------------------
 
-    protected void generateWriteStaticGroup(Schema schema, ClassVisitor cv,
-            String genClassInternalName, boolean javaClassCodec) {
-        // method writeStaticGroupWithId - switch
-        MethodVisitor mv = cv.visitMethod(ACC_PROTECTED, "writeStaticGroupWithId",
-                "(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/lang/Object;)V", null, new String[] { "java/io/IOException" });
-        int nextVar = 3;
-        mv.visitCode();
+    /**
+     * Generates the code of a switch case.
+     */
+    protected interface SwitchCaseGenerator {
+        /**
+         * Generate the code of a case, which must return or throw.
+         * @param mv the method visitor, not null.
+         * @param caseIndex the index of the case in the keys of the switch.
+         */
+        void generateCase(MethodVisitor mv, int caseIndex);
+        /**
+         * Generate the code of the default case, which must return or throw.
+         * @param mv the method visitor, not null.
+         */
+        void generateDefault(MethodVisitor mv);
+    }
 
-        mv.visitVarInsn(ALOAD, 2);
-        if (javaClassCodec) {
-            mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;", false);
-        } else {
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, genClassInternalName, "groupTypeAccessor",
-                    "Lcom/cinnober/msgcodec/GroupTypeAccessor;");
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitMethodInsn(INVOKEINTERFACE, "com/cinnober/msgcodec/GroupTypeAccessor",
-                    "getGroupType", "(Ljava/lang/Object;)Ljava/lang/Object;", true);
-        }
-        int groupTypeVar = nextVar++;
-        mv.visitInsn(DUP);
-        mv.visitVarInsn(ASTORE, groupTypeVar);
-        mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "hashCode", "()I", false);
+    /**
+     * Generate a switch on the int value in the specified variable, as the rest of the method.
+     *
+     * <p>If there are more than {@link #MAX_SWITCH_CASES} cases, the cases are split into several methods
+     * named <code>methodName$switchN</code>, and the switch is replaced by a binary search on the key
+     * to find the method.
+     * The arguments of the case methods are the variables 1..N of the method, as given by the descriptor.
+     *
+     * @param cv the class visitor, not null.
+     * @param mv the method visitor of the switch method, not null.
+     * @param genClassInternalName the internal name of the generated class, not null.
+     * @param methodName the name of the switch method, not null.
+     * @param caseMethodDescriptor the descriptor of any case methods, not null.
+     * @param keyVar the variable of the key.
+     * @param keys the keys, in ascending order, not null.
+     * @param caseGenerator the generator of the cases, not null.
+     */
+    protected void generateSwitchMethod(ClassVisitor cv, MethodVisitor mv, String genClassInternalName,
+            String methodName, String caseMethodDescriptor, int keyVar, int[] keys,
+            SwitchCaseGenerator caseGenerator) {
+        if (keys.length <= MAX_SWITCH_CASES) {
+            generateSwitchCases(mv, keyVar, keys, 0, keys.length, caseGenerator);
+            return;
+        }
+
+        int methodCount = (keys.length + MAX_SWITCH_CASES - 1) / MAX_SWITCH_CASES;
+        int[] firstKeys = new int[methodCount];
+        Label[] methodLabels = new Label[methodCount];
+        for (int i = 0; i < methodCount; i++) {
+            firstKeys[i] = keys[i * MAX_SWITCH_CASES];
+            methodLabels[i] = new Label();
+        }
+        generateBinarySearch(mv, keyVar, firstKeys, 0, methodCount, methodLabels);
+
+        for (int i = 0; i < methodCount; i++) {
+            String caseMethodName = methodName + "$switch" + i;
+            mv.visitLabel(methodLabels[i]);
+            mv.visitFrame(F_SAME, 0, null, 0, null);
+            generateInvokeSameArguments(mv, genClassInternalName, caseMethodName, caseMethodDescriptor);
 
-        // switch on class.hashCode()
-        Map<Integer,ObjectHashCodeSwitchCase<Object>> casesByHashCode = new TreeMap<>();
-        Map<Integer,Label> labelsByGroupId = new TreeMap<>();
-        for (GroupDef group : schema.getGroups()) {
-            Object groupType = group.getGroupType();
-            int groupHash = groupType.hashCode();
-            ObjectHashCodeSwitchCase<Object> hashCase = casesByHashCode.get(groupHash);
-            if (hashCase == null) {
-                hashCase = new ObjectHashCodeSwitchCase<>(groupHash);
-                casesByHashCode.put(hashCase.hashCode, hashCase);
-            }
-            hashCase.add(groupType);
+            MethodVisitor casemv = cv.visitMethod(ACC_PRIVATE, caseMethodName, caseMethodDescriptor, null,
+                    new String[] { "java/io/IOException" });
+            casemv.visitCode();
+            generateSwitchCases(casemv, keyVar, keys, i * MAX_SWITCH_CASES,
+                    Math.min(keys.length, (i + 1) * MAX_SWITCH_CASES), caseGenerator);
+            casemv.visitMaxs(4, Type.getArgumentsAndReturnSizes(caseMethodDescriptor) >> 2);
+            casemv.visitEnd();
         }
+    }
 
-        Label unknownHashLabel = new Label();
-        {
-            int[] caseValues = new int[casesByHashCode.size()];
-            int i = 0;
-            for (int hashCode : casesByHashCode.keySet()) {
-                caseValues[i++] = hashCode;
-            }
-            Label[] caseLabels = new Label[casesByHashCode.size()];
-            i = 0;
-            for (ObjectHashCodeSwitchCase<Object> hashCase : casesByHashCode.values()) {
-                caseLabels[i++] = hashCase.label;
-            }
-            mv.visitLookupSwitchInsn(unknownHashLabel, caseValues, caseLabels);
+    private void generateSwitchCases(MethodVisitor mv, int keyVar, int[] keys, int from, int to,
+            SwitchCaseGenerator caseGenerator) {
+        Label defaultLabel = new Label();
+        Label[] caseLabels = new Label[to - from];
+        for (int i = 0; i < caseLabels.length; i++) {
+            caseLabels[i] = new Label();
         }
-        for (ObjectHashCodeSwitchCase<Object> hashCase : casesByHashCode.values()) {
-            mv.visitLabel(hashCase.label);
+        mv.visitVarInsn(ILOAD, keyVar);
+        generateSwitch(mv, defaultLabel, Arrays.copyOfRange(keys, from, to), caseLabels);
+        for (int i = 0; i < caseLabels.length; i++) {
+            mv.visitLabel(caseLabels[i]);
             mv.visitFrame(F_SAME, 0, null, 0, null);
-            for (ObjectSwitchCase<Object> classCase : hashCase.cases) {
-                GroupDef group = schema.getGroup(classCase.object);
-                int groupId = schema.getGroup(classCase.object).getId();
-                if (groupId != -1) {
-                    labelsByGroupId.put(groupId, classCase.label);
-                }
-                
-                mv.visitVarInsn(ALOAD, groupTypeVar);
-                if (javaClassCodec) {
-                    mv.visitLdcInsn(getJavaType(classCase.object));
-                    mv.visitJumpInsn(IF_ACMPEQ, classCase.label);
-                } else {
-                    mv.visitVarInsn(ALOAD, 0);
-                    mv.visitFieldInsn(GETFIELD, genClassInternalName, "groupType_" + group.getName(),
-                            "Ljava/lang/Object;");
-                    mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object",
-                            "equals", "(Ljava/lang/Object;)Z", false);
-                    mv.visitJumpInsn(IFNE, classCase.label); // IFNE = if not false
-                }
-            }
+            caseGenerator.generateCase(mv, from + i);
         }
-        // Default case for class hashcode switch, do lookup using schema.getGroup(Object)
-        {
-            Label unknownGroupIdLabel = new Label();
-            mv.visitLabel(unknownHashLabel);
-            mv.visitFrame(F_SAME, 0, null, 0, null);
-            Label[] groupIdLabels = new Label[labelsByGroupId.size()];
-            int[] groupIds = new int[groupIdLabels.length];
-            
-            {
-                int i = 0;
-                for (Entry<Integer, Label> entry : labelsByGroupId.entrySet()) {
-                    groupIds[i] = entry.getKey();
-                    groupIdLabels[i] = new Label();
-                    i++;
-                }
-            }
-            
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitFieldInsn(GETFIELD, genClassInternalName, "schema",
-                    "Lcom/cinnober/msgcodec/Schema;");
-            
-            mv.visitVarInsn(ALOAD, groupTypeVar);
-            mv.visitMethodInsn(INVOKEVIRTUAL, SCHEMA_INAME, "getGroup",
-                    "(Ljava/lang/Object;)Lcom/cinnober/msgcodec/GroupDef;", false);
+        mv.visitLabel(defaultLabel);
+        mv.visitFrame(F_SAME, 0, null, 0, null);
+        caseGenerator.generateDefault(mv);
+    }
 
-            // check for null result from getGroup
-            Label noGroupDefLabel = new Label();
-            mv.visitInsn(DUP);
-            mv.visitJumpInsn(IFNULL, noGroupDefLabel);
+    /**
+     * Generate a binary search that jumps to the label of the last range whose first key is less than or equal
+     * to the key in the specified variable, or to the first label if the key is less than all first keys.
+     */
+    private static void generateBinarySearch(MethodVisitor mv, int keyVar, int[] firstKeys, int from, int to,
+            Label[] labels) {
+        if (to - from == 1) {
+            mv.visitJumpInsn(GOTO, labels[from]);
+            return;
+        }
+        int mid = (from + to) >>> 1;
+        Label upperLabel = new Label();
+        mv.visitVarInsn(ILOAD, keyVar);
+        mv.visitLdcInsn(firstKeys[mid]);
+        mv.visitJumpInsn(IF_ICMPGE, upperLabel);
+        generateBinarySearch(mv, keyVar, firstKeys, from, mid, labels);
+        mv.visitLabel(upperLabel);
+        mv.visitFrame(F_SAME, 0, null, 0, null);
+        generateBinarySearch(mv, keyVar, firstKeys, mid, to, labels);
+    }
 
-            mv.visitMethodInsn(INVOKEVIRTUAL, GROUPDEF_INAME, "getId",
-                    "()I", false);
-            
-            // Switch on the group id
-            mv.visitLookupSwitchInsn(unknownHashLabel, groupIds, groupIdLabels);
-            
-            // Cases for the group ids
-            for (int i = 0; i < groupIds.length; i++) {
-                mv.visitLabel(groupIdLabels[i]);
-                mv.visitFrame(F_SAME, 0, null, 0, null);
-                mv.visitJumpInsn(GOTO, labelsByGroupId.get(groupIds[i]));
+    /**
+     * Generate a call to a method of the generated class, where the arguments are the variables 1..N of this
+     * method, and return the result.
+     */
+    private static void generateInvokeSameArguments(MethodVisitor mv, String genClassInternalName,
+            String methodName, String methodDescriptor) {
+        mv.visitVarInsn(ALOAD, 0); // this
+        int var = 1;
+        for (Type argumentType : Type.getArgumentTypes(methodDescriptor)) {
+            mv.visitVarInsn(argumentType.getOpcode(ILOAD), var);
+            var += argumentType.getSize();
+        }
+        mv.visitMethodInsn(INVOKEVIRTUAL, genClassInternalName, methodName, methodDescriptor, false);
+        mv.visitInsn(Type.getReturnType(methodDescriptor).getOpcode(IRETURN));
+    }
+
+    /**
+     * Generate the code of the fields of a group into the method.
+     *
+     * <p>If the code is too large to be compiled by the JIT compiler, see {@link #MAX_METHOD_SIZE},
+     * the fields are instead split into several methods named <code>methodName$N</code>,
+     * which are called in order. Each such method is kept within the split method size, unless a single field
+     * is larger than that. The methods that read and write fields use {@link #MAX_INLINE_SIZE},
+     * so that they can be inlined.
+     *
+     * @param cv the class visitor, not null.
+     * @param mv the method visitor of the method, not null.
+     * @param genClassInternalName the internal name of the generated class, not null.
+     * @param methodName the name of the method, not null.
+     * @param methodDescriptor the descriptor of the method, not null. The methods of the fields get the same.
+     * @param fieldCode the code of each field, not null.
+     * @param maxLocals the number of variables used by the code of the fields.
+     * @param maxSplitMethodSize the maximum code size of each method, if the code is split.
+     * @return true if the code was split into several methods, otherwise false.
+     */
+    protected boolean generateFieldCode(ClassVisitor cv, MethodVisitor mv, String genClassInternalName,
+            String methodName, String methodDescriptor, List<MethodNode> fieldCode, int maxLocals,
+            int maxSplitMethodSize) {
+        int[] fieldSizes = new int[fieldCode.size()];
+        int totalSize = 0;
+        for (int i = 0; i < fieldSizes.length; i++) {
+            CodeSizeEvaluator sizeEvaluator = new CodeSizeEvaluator(null);
+            fieldCode.get(i).instructions.accept(sizeEvaluator);
+            fieldSizes[i] = sizeEvaluator.getMaxSize();
+            totalSize += fieldSizes[i];
+        }
+        // leave some room for the call to the super group
+        if (totalSize <= MAX_METHOD_SIZE - 16) {
+            for (MethodNode field : fieldCode) {
+                appendCode(mv, field);
             }
+            return false;
+        }
 
-            mv.visitLabel(noGroupDefLabel);
-            mv.visitFrame(F_SAME, 0, null, 0, null);
-            mv.visitInsn(POP);
+        int fieldIndex = 0;
+        for (int methodIndex = 0; fieldIndex < fieldSizes.length; methodIndex++) {
+            String fieldMethodName = methodName + "$" + methodIndex;
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitVarInsn(ALOAD, 1);
+            mv.visitVarInsn(ALOAD, 2);
+            mv.visitMethodInsn(INVOKEVIRTUAL, genClassInternalName, fieldMethodName, methodDescriptor, false);
 
+            MethodVisitor fieldmv = cv.visitMethod(ACC_PRIVATE, fieldMethodName, methodDescriptor, null,
+                    new String[] { "java/io/IOException" });
+            fieldmv.visitCode();
+            int methodSize = 1; // return
+            do {
+                appendCode(fieldmv, fieldCode.get(fieldIndex));
+                methodSize += fieldSizes[fieldIndex];
+                fieldIndex++;
+            } while (fieldIndex < fieldSizes.length && methodSize + fieldSizes[fieldIndex] <= maxSplitMethodSize);
+            fieldmv.visitInsn(RETURN);
+            fieldmv.visitMaxs(6, maxLocals);
+            fieldmv.visitEnd();
+        }
+        return true;
+    }
 
-            // Throw exception if there is no match on class or group id
-            mv.visitLabel(unknownGroupIdLabel);
-            mv.visitFrame(F_SAME, 0, null, 0, null);
-            mv.visitVarInsn(ALOAD, groupTypeVar);
-            mv.visitMethodInsn(INVOKESTATIC, baseclassIName, "unknownGroupType",
-                    "(Ljava/lang/Object;)Ljava/lang/IllegalArgumentException;", false);
-            mv.visitInsn(ATHROW);
+    /**
+     * Returns a new method node to generate the code of a field into, see {@link #generateFieldCode}.
+     */
+    private static MethodNode newFieldCode() {
+        return new MethodNode(ACC_PRIVATE, null, null, null, null);
+    }
+
+    /**
+     * Append the code of the method node to the method.
+     */
+    private static void appendCode(MethodVisitor mv, MethodNode code) {
+        for (Object tryCatchBlock : code.tryCatchBlocks) { // raw list in ASM 5
+            ((TryCatchBlockNode) tryCatchBlock).accept(mv);
+        }
+        code.instructions.accept(mv);
+    }
+
+    /**
+     * Returns the code size of each method of a class.
+     *
+     * @param classBytes the class file, not null.
+     * @return the code size in bytes by method name and descriptor, in the order of the class file, not null.
+     */
+    static Map<String, Integer> getMethodSizes(byte[] classBytes) {
+        final Map<String, CodeSizeEvaluator> sizeEvaluators = new LinkedHashMap<>();
+        new ClassReader(classBytes).accept(new ClassVisitor(ASM5) {
+            @Override
+            public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                    String[] exceptions) {
+                CodeSizeEvaluator sizeEvaluator = new CodeSizeEvaluator(null);
+                sizeEvaluators.put(name + desc, sizeEvaluator);
+                return sizeEvaluator;
+            }
+        }, ClassReader.SKIP_DEBUG | ClassReader.SKIP_FRAMES);
+        Map<String, Integer> methodSizes = new LinkedHashMap<>();
+        for (Map.Entry<String, CodeSizeEvaluator> entry : sizeEvaluators.entrySet()) {
+            methodSizes.put(entry.getKey(), entry.getValue().getMinSize());
         }
+        return methodSizes;
+    }
+
+    // --- GENERATE WRITE ----------------------------------------------------------------------------------------------
 
-        // Generate the labeled calls to group writer methods
-        for (ObjectHashCodeSwitchCase<Object> hashCase : casesByHashCode.values()) {
-            for (ObjectSwitchCase<Object> classCase : hashCase.cases) {
-                Object groupType = classCase.object;
-                GroupDef group = schema.getGroup(groupType);
+    protected void generateWriteStaticGroup(Schema schema, ClassVisitor cv,
+            final String genClassInternalName, final boolean javaClassCodec) {
+        // method writeStaticGroupWithId - switch
+        MethodVisitor mv = cv.visitMethod(ACC_PROTECTED, "writeStaticGroupWithId",
+                "(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/lang/Object;)V", null, new String[] { "java/io/IOException" });
+        int nextVar = 3;
+        mv.visitCode();
+
+        // switch on the index of the group type in schema.getGroups(), see GroupTypeIndex
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitVarInsn(ALOAD, 2);
+        mv.visitMethodInsn(INVOKEVIRTUAL, baseclassIName, "getGroupTypeIndex", "(Ljava/lang/Object;)I", false);
+        int indexVar = nextVar++;
+        mv.visitVarInsn(ISTORE, indexVar);
+
+        final List<GroupDef> groups = new ArrayList<>(schema.getGroups());
+        int[] caseValues = new int[groups.size()];
+        for (int i = 0; i < caseValues.length; i++) {
+            caseValues[i] = i;
+        }
+        generateSwitchMethod(cv, mv, genClassInternalName, "writeStaticGroupWithId",
+                "(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/lang/Object;I)V", indexVar, caseValues,
+                new SwitchCaseGenerator() {
+            @Override
+            public void generateCase(MethodVisitor mv, int caseIndex) {
+                // call the group writer method
+                GroupDef group = groups.get(caseIndex);
+                Object groupType = group.getGroupType();
                 String groupDescriptor = getTypeDescriptor(groupType, javaClassCodec);
-                mv.visitLabel(classCase.label);
-                mv.visitFrame(F_SAME, 0, null, 0, null);
                 mv.visitVarInsn(ALOAD, 0); // this
                 mv.visitVarInsn(ALOAD, 1); // out
                 mv.visitVarInsn(ALOAD, 2); // obj
@@ -615,12 +860,21 @@ class BaseByteCodeGenerator {
                         "(Lcom/cinnober/msgcodec/io/ByteSink;" + groupDescriptor + ")V", false);
                 mv.visitInsn(RETURN);
             }
-        }
+            @Override
+            public void generateDefault(MethodVisitor mv) {
+                // should not happen since getGroupTypeIndex throws an exception for unknown group types
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitMethodInsn(INVOKEVIRTUAL, "java/lang/Object", "getClass", "()Ljava/lang/Class;", false);
+                mv.visitMethodInsn(INVOKESTATIC, baseclassIName, "unknownGroupType",
+                        "(Ljava/lang/Object;)Ljava/lang/IllegalArgumentException;", false);
+                mv.visitInsn(ATHROW);
+            }
+        });
 
         mv.visitMaxs(4, nextVar);
         mv.visitEnd();
     }
-    
+
     protected void generateWriteStaticGroupForTypeWithId(Schema schema, ClassVisitor cv,
             String genClassInternalName, boolean javaClassCodec) {
         for (GroupDef group : schema.getGroups()) {
@@ -692,57 +946,15 @@ class BaseByteCodeGenerator {
             }
 
             // fields
+            List<MethodNode> fieldCode = new ArrayList<>(group.getFields().size());
             for (FieldDef field : group.getFields()) {
-
-                writemv.visitVarInsn(ALOAD, 1); // output stream
-
-                Class<?> javaClass = field.getJavaClass();
-                Accessor<?,?> accessor = field.getAccessor();
-                
-                if(accessor.getClass() == CreateAccessor.class) {
-                    if(field.getType().getType() == TypeDef.Type.REFERENCE) {
-                        if(field.isRequired()) {
-                            writemv.visitInsn(ICONST_0);
-                            generateEncodeInt32Value(true, writemv);
-                        }
-                        else {
-                            writemv.visitInsn(ACONST_NULL);
-                            generateEncodeInt32Value(false, writemv);
-                        }
-                        continue;
-                    }
-                }
-                
-                if (isPublicFieldAccessor(accessor)) {                   
-                    Field f = ((FieldAccessor)accessor).getField();
-                    writemv.visitVarInsn(ALOAD, 2);
-                    writemv.visitFieldInsn(GETFIELD, Type.getInternalName(f.getDeclaringClass()), f.getName(),
-                            Type.getDescriptor(f.getType()));
-                    if (!f.getType().equals(field.getJavaClass())) {
-                        // this can happen when the field is a generic type variable in a super-class.
-                        writemv.visitTypeInsn(CHECKCAST, Type.getInternalName(javaClass));
-                    }
-                } else {
-                    writemv.visitVarInsn(ALOAD, 0);
-                    writemv.visitFieldInsn(GETFIELD, genClassInternalName,
-                            "accessor_" + group.getName() + "_" + field.getName(),
-                            "Lcom/cinnober/msgcodec/Accessor;");
-                    writemv.visitVarInsn(ALOAD, 2); // instance
-                    writemv.visitMethodInsn(INVOKEINTERFACE, "com/cinnober/msgcodec/Accessor", "getValue",
-                            "(Ljava/lang/Object;)Ljava/lang/Object;", true);
-                    if (javaClass.isPrimitive()) {
-                        writemv.visitTypeInsn(CHECKCAST, Type.getInternalName(box(javaClass)));
-                        unbox(writemv, javaClass);
-                    } else {
-                        writemv.visitTypeInsn(CHECKCAST, Type.getInternalName(javaClass));
-                    }
-                }
-                // the output stream and the value is now on the stack
-                generateEncodeValue(writemv, 1, nextWriteVar, field.isRequired(), field.getType(), javaClass,
-                        field.getComponentJavaClass(), schema, genClassInternalName, 
-                        group.getName() + "_" + field.getName(), 
-                        group.getName() + "." + field.getName(), javaClassCodec);
+                MethodNode fieldmv = newFieldCode();
+                generateWriteField(fieldmv, nextWriteVar, schema, group, field, genClassInternalName, javaClassCodec);
+                fieldCode.add(fieldmv);
             }
+            generateFieldCode(cv, writemv, genClassInternalName, "writeStaticGroup_" + group.getName(),
+                    "(Lcom/cinnober/msgcodec/io/ByteSink;" + groupDescriptor + ")V", fieldCode, nextWriteVar.get(),
+                    MAX_INLINE_SIZE);
 
             // end write
             writemv.visitInsn(RETURN);
@@ -751,58 +963,186 @@ class BaseByteCodeGenerator {
         }
     }
 
+    /**
+     * Generate the code that writes a field of a group.
+     * The output stream and the group instance are in variable 1 and 2.
+     */
+    private void generateWriteField(MethodVisitor writemv, LocalVariable nextWriteVar, Schema schema,
+            GroupDef group, FieldDef field, String genClassInternalName, boolean javaClassCodec) {
+        writemv.visitVarInsn(ALOAD, 1); // output stream
+
+        Class<?> javaClass = field.getJavaClass();
+        Accessor<?,?> accessor = field.getAccessor();
+        
+        if(accessor.getClass() == CreateAccessor.class) {
+            if(field.getType().getType() == TypeDef.Type.REFERENCE) {
+                if(field.isRequired()) {
+                    writemv.visitInsn(ICONST_0);
+                    generateEncodeInt32Value(true, writemv);
+                }
+                else {
+                    writemv.visitInsn(ACONST_NULL);
+                    generateEncodeInt32Value(false, writemv);
+                }
+                return;
+            }
+        }
+        
+        if (isDirectFieldAccessor(accessor, genClassInternalName)) {
+            Field f = getAccessedField(accessor);
+            writemv.visitVarInsn(ALOAD, 2);
+            writemv.visitFieldInsn(GETFIELD, Type.getInternalName(f.getDeclaringClass()), f.getName(),
+                    Type.getDescriptor(f.getType()));
+            if (!f.getType().equals(field.getJavaClass())) {
+                // this can happen when the field is a generic type variable in a super-class.
+                writemv.visitTypeInsn(CHECKCAST, Type.getInternalName(javaClass));
+            }
+        } else if (isDirectWideningAccessor(field, false, genClassInternalName)) {
+            WideningAccessor<?,?> widening = (WideningAccessor<?,?>) accessor;
+            Field f = getAccessedField(widening.getAccessor());
+            writemv.visitVarInsn(ALOAD, 2);
+            writemv.visitFieldInsn(GETFIELD, Type.getInternalName(f.getDeclaringClass()), f.getName(),
+                    Type.getDescriptor(f.getType()));
+            generateWidening(writemv, widening);
+        } else {
+            Class<?> primitiveAccessorType = getPrimitiveAccessorType(accessor, javaClass);
+            writemv.visitVarInsn(ALOAD, 0);
+            writemv.visitFieldInsn(GETFIELD, genClassInternalName,
+                    "accessor_" + group.getName() + "_" + field.getName(),
+                    "Lcom/cinnober/msgcodec/Accessor;");
+            if (primitiveAccessorType != null) {
+                writemv.visitTypeInsn(CHECKCAST, Type.getInternalName(primitiveAccessorType));
+                writemv.visitVarInsn(ALOAD, 2); // instance
+                writemv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(primitiveAccessorType),
+                        getPrimitiveAccessorMethod("get", javaClass),
+                        "(Ljava/lang/Object;)" + Type.getDescriptor(javaClass), true);
+            } else {
+                writemv.visitVarInsn(ALOAD, 2); // instance
+                writemv.visitMethodInsn(INVOKEINTERFACE, "com/cinnober/msgcodec/Accessor", "getValue",
+                        "(Ljava/lang/Object;)Ljava/lang/Object;", true);
+            }
+            if (primitiveAccessorType != null) {
+                // no boxing
+            } else if (javaClass.isPrimitive()) {
+                writemv.visitTypeInsn(CHECKCAST, Type.getInternalName(box(javaClass)));
+                unbox(writemv, javaClass);
+            } else {
+                writemv.visitTypeInsn(CHECKCAST, Type.getInternalName(javaClass));
+            }
+        }
+        // the output stream and the value is now on the stack
+        generateEncodeValue(writemv, 1, nextWriteVar, field.isRequired(), field.getType(), javaClass,
+                field.getComponentJavaClass(), schema, genClassInternalName, 
+                group.getName() + "_" + field.getName(), 
+                group.getName() + "." + field.getName(), javaClassCodec);
+    }
+
     // --- GENERATE READ -----------------------------------------------------------------------------------------------
 
-    protected void generateReadStaticGroup(Schema schema, ClassVisitor cv, String genClassInternalName,
-            boolean javaClassCodec) {
+    protected void generateReadStaticGroup(Schema schema, ClassVisitor cv, final String genClassInternalName,
+            final boolean javaClassCodec) {
         MethodVisitor mv = cv.visitMethod(ACC_PROTECTED, "readStaticGroup",
                 "(ILcom/cinnober/msgcodec/io/ByteSource;)Ljava/lang/Object;", null,
                 new String[] { "java/io/IOException" });
         int nextVar = 3;
         mv.visitCode();
 
-        Map<Integer,Label> labelsByGroupId = new TreeMap<>();
+        final Map<Integer, GroupDef> groupsById = getGroupsById(schema);
+        final List<GroupDef> groups = new ArrayList<>(groupsById.values());
+        generateSwitchMethod(cv, mv, genClassInternalName, "readStaticGroup",
+                "(ILcom/cinnober/msgcodec/io/ByteSource;)Ljava/lang/Object;", 1, toIntArray(groupsById.keySet()),
+                new SwitchCaseGenerator() {
+            @Override
+            public void generateCase(MethodVisitor mv, int caseIndex) {
+                GroupDef group = groups.get(caseIndex);
+                Object groupType = group.getGroupType();
+                String groupDescriptor = getTypeDescriptor(groupType, javaClassCodec);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitMethodInsn(INVOKEVIRTUAL, genClassInternalName, "readStaticGroup_" + group.getName(),
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;)" + groupDescriptor, false);
+                mv.visitInsn(ARETURN);
+            }
+            @Override
+            public void generateDefault(MethodVisitor mv) {
+                generateUnknownGroupId(mv);
+            }
+        });
+
+        mv.visitMaxs(3, nextVar);
+        mv.visitEnd();
+    }
+    
+    protected void generateReadStaticGroupInto(Schema schema, ClassVisitor cv, final String genClassInternalName,
+            final boolean javaClassCodec) {
+        MethodVisitor mv = cv.visitMethod(ACC_PROTECTED, "readStaticGroup",
+                "(ILcom/cinnober/msgcodec/io/ByteSource;Ljava/lang/Object;)V", null,
+                new String[] { "java/io/IOException" });
+        int nextVar = 4;
+        mv.visitCode();
+
+        final Map<Integer, GroupDef> groupsById = getGroupsById(schema);
+        final List<GroupDef> groups = new ArrayList<>(groupsById.values());
+        generateSwitchMethod(cv, mv, genClassInternalName, "readStaticGroup",
+                "(ILcom/cinnober/msgcodec/io/ByteSource;Ljava/lang/Object;)V", 1, toIntArray(groupsById.keySet()),
+                new SwitchCaseGenerator() {
+            @Override
+            public void generateCase(MethodVisitor mv, int caseIndex) {
+                GroupDef group = groups.get(caseIndex);
+                Object groupType = group.getGroupType();
+                String groupDescriptor = getTypeDescriptor(groupType, javaClassCodec);
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitVarInsn(ALOAD, 2);
+                mv.visitVarInsn(ALOAD, 3);
+                if (javaClassCodec) {
+                    mv.visitTypeInsn(CHECKCAST, getTypeInternalName(groupType, javaClassCodec));
+                }
+                mv.visitMethodInsn(INVOKEVIRTUAL, genClassInternalName, "readStaticGroup_" + group.getName(),
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;" + groupDescriptor + ")V", false);
+                mv.visitInsn(RETURN);
+            }
+            @Override
+            public void generateDefault(MethodVisitor mv) {
+                generateUnknownGroupId(mv);
+            }
+        });
+
+        mv.visitMaxs(4, nextVar);
+        mv.visitEnd();
+    }
+
+    /**
+     * Returns the groups of the schema that have a group id, sorted by group id.
+     */
+    private static Map<Integer, GroupDef> getGroupsById(Schema schema) {
+        Map<Integer, GroupDef> groupsById = new TreeMap<>();
         for (GroupDef group : schema.getGroups()) {
             if (group.getId() != -1) {
-                labelsByGroupId.put(group.getId(), new Label());
+                groupsById.put(group.getId(), group);
             }
         }
-        mv.visitVarInsn(ILOAD, 1); // group id
-        Label unknownGroupIdLabel = new Label();
-        {
-            int[] caseValues = new int[labelsByGroupId.size()];
-            int i = 0;
-            for (int groupId : labelsByGroupId.keySet()) {
-                caseValues[i++] = groupId;
-            }
-            Label[] caseLabels = labelsByGroupId.values().toArray(new Label[labelsByGroupId.size()]);
-            mv.visitLookupSwitchInsn(unknownGroupIdLabel, caseValues, caseLabels);
-        }
-
-        for (Map.Entry<Integer, Label> caseEntry : labelsByGroupId.entrySet()) {
-            GroupDef group = schema.getGroup(caseEntry.getKey().intValue());
-            Object groupType = group.getGroupType();
-            String groupDescriptor = getTypeDescriptor(groupType, javaClassCodec);
+        return groupsById;
+    }
 
-            mv.visitLabel(caseEntry.getValue());
-            mv.visitFrame(F_SAME, 0, null, 0, null);
-            mv.visitVarInsn(ALOAD, 0);
-            mv.visitVarInsn(ALOAD, 2);
-            mv.visitMethodInsn(INVOKEVIRTUAL, genClassInternalName, "readStaticGroup_" + group.getName(),
-                    "(Lcom/cinnober/msgcodec/io/ByteSource;)" + groupDescriptor, false);
-            mv.visitInsn(ARETURN);
+    private static int[] toIntArray(Collection<Integer> values) {
+        int[] array = new int[values.size()];
+        int i = 0;
+        for (int value : values) {
+            array[i++] = value;
         }
-        // default case
-        mv.visitLabel(unknownGroupIdLabel);
-        mv.visitFrame(F_SAME, 0, null, 0, null);
+        return array;
+    }
+
+    /**
+     * Generate code that throws an unknown group id exception for the group id in variable 1.
+     */
+    private void generateUnknownGroupId(MethodVisitor mv) {
         mv.visitVarInsn(ILOAD, 1);
         mv.visitMethodInsn(INVOKESTATIC, baseclassIName, "unknownGroupId",
                 "(I)Lcom/cinnober/msgcodec/DecodeException;", false);
         mv.visitInsn(ATHROW);
-        mv.visitMaxs(2, nextVar);
-        mv.visitEnd();
     }
-    
+
     protected void generateReadStaticGroupForTypeAndCreate(Schema schema, ClassVisitor cv,
             String genClassInternalName, boolean javaClassCodec) {
         for (GroupDef group : schema.getGroups()) {
@@ -819,7 +1159,7 @@ class BaseByteCodeGenerator {
             int nextReadVar = 2;
 
             Factory<?> factory = group.getFactory();
-            if (isPublicConstructorFactory(factory)) {
+            if (isDirectConstructorFactory(factory, genClassInternalName)) {
                 // read, create instance
                 readmv.visitTypeInsn(NEW, groupInternalName);
                 readmv.visitInsn(DUP);
@@ -852,19 +1192,19 @@ class BaseByteCodeGenerator {
             readmv.visitEnd();
         }
     }
-    protected void generateReadStaticGroupForType(final Schema schema, ClassVisitor cv,
-            final String genClassInternalName, final boolean javaClassCodec) {
-        for (final GroupDef group : schema.getGroups()) {
+    protected void generateReadStaticGroupForType(Schema schema, ClassVisitor cv,
+            String genClassInternalName, boolean javaClassCodec) {
+        for (GroupDef group : schema.getGroups()) {
             Object groupType = group.getGroupType();
             String groupDescriptor = getTypeDescriptor(groupType, javaClassCodec);
-            final MethodVisitor mv = cv.visitMethod(
+            MethodVisitor mv = cv.visitMethod(
                     ACC_PRIVATE,
                     "readStaticGroup_" + group.getName(),
                     "(Lcom/cinnober/msgcodec/io/ByteSource;"+groupDescriptor+")V",
                     null,
                     new String[] { "java/io/IOException" });
             mv.visitCode();
-            final LocalVariable nextVar = new LocalVariable(3);
+            LocalVariable nextVar = new LocalVariable(3);
 
             // read fields of super group
             if (group.getSuperGroup() != null) {
@@ -881,97 +1221,15 @@ class BaseByteCodeGenerator {
             }
 
             // fields
-            for (final FieldDef field : group.getFields()) {
-                final Class<?> javaClass = field.getJavaClass();
-
-                Runnable readValue = () -> {
-                    Label tryStart = new Label();
-                    Label tryEnd = new Label();
-                    Label tryCatch = new Label();
-                    Label tryAfter = new Label();
-                    mv.visitTryCatchBlock(tryStart, tryEnd, tryCatch, "java/lang/Exception");
-                    
-                    mv.visitLabel(tryStart);
-                    mv.visitVarInsn(ALOAD, 1); // input stream
-                    generateDecodeValue(mv, 1, nextVar, field.isRequired(), field.getType(), javaClass, 
-                            field.getComponentJavaClass(), schema, genClassInternalName,
-                            group.getName() + "_" + field.getName(),
-                            group.getName() + "." + field.getName(), javaClassCodec);
-                    mv.visitLabel(tryEnd);
-                    mv.visitJumpInsn(GOTO, tryAfter);
-                    mv.visitLabel(tryCatch);
-                    int caughtExVar = nextVar.next();
-                    mv.visitVarInsn(ASTORE, caughtExVar);
-                    mv.visitTypeInsn(NEW, "com/cinnober/msgcodec/blink/FieldDecodeException");
-                    mv.visitInsn(DUP);
-                    mv.visitLdcInsn(field.getName());
-                    mv.visitVarInsn(ALOAD, caughtExVar);
-                    mv.visitMethodInsn(INVOKESPECIAL, "com/cinnober/msgcodec/blink/FieldDecodeException",
-                            "<init>", "(Ljava/lang/String;Ljava/lang/Throwable;)V", false);
-                    mv.visitInsn(ATHROW);
-                    mv.visitLabel(tryAfter);
-                };
-
-                Accessor<?,?> accessor = field.getAccessor();
-                if (isPublicFieldAccessor(accessor)) {
-                    Field f = ((FieldAccessor)accessor).getField();
-                    mv.visitVarInsn(ALOAD, 2); // instance
-                    // value
-                    readValue.run();
-                    // store
-                    mv.visitFieldInsn(PUTFIELD, Type.getInternalName(f.getDeclaringClass()), f.getName(),
-                            Type.getDescriptor(f.getType()));
-                } else if (accessor.getClass() == CreateAccessor.class) {
-                    mv.visitVarInsn(ALOAD, 2); // instance
-
-                    Label tryStart = new Label();
-                    Label tryEnd = new Label();
-                    Label tryCatch = new Label();
-                    Label tryAfter = new Label();
-                    mv.visitTryCatchBlock(tryStart, tryEnd, tryCatch, "java/lang/Exception");
-                    
-                    mv.visitLabel(tryStart);
-                    mv.visitVarInsn(ALOAD, 1); // input stream
-                    
-                    generateDecodeDummy(mv, 1, nextVar, field.isRequired(), field.getType(), javaClass,
-                            field.getComponentJavaClass(), schema, genClassInternalName,
-                            group.getName() + "." + field.getName(), javaClassCodec);
-                    
-                    mv.visitInsn(POP);
-                    
-                    mv.visitLabel(tryEnd);
-                    mv.visitJumpInsn(GOTO, tryAfter);
-                    mv.visitLabel(tryCatch);
-                    int caughtExVar = nextVar.next();
-                    mv.visitVarInsn(ASTORE, caughtExVar);
-                    mv.visitTypeInsn(NEW, "com/cinnober/msgcodec/blink/FieldDecodeException");
-                    mv.visitInsn(DUP);
-                    mv.visitLdcInsn(field.getName());
-                    mv.visitVarInsn(ALOAD, caughtExVar);
-                    mv.visitMethodInsn(INVOKESPECIAL, "com/cinnober/msgcodec/blink/FieldDecodeException",
-                            "<init>", "(Ljava/lang/String;Ljava/lang/Throwable;)V", false);
-                    mv.visitInsn(ATHROW);
-                    mv.visitLabel(tryAfter);
-                    
-                    mv.visitInsn(POP);
-                } else {
-                    // accessor
-                    mv.visitVarInsn(ALOAD, 0);
-                    mv.visitFieldInsn(GETFIELD, genClassInternalName,
-                            "accessor_" + group.getName() + "_" + field.getName(),
-                            "Lcom/cinnober/msgcodec/Accessor;");
-                    // instance
-                    mv.visitVarInsn(ALOAD, 2); // instance
-                    // value
-                    readValue.run();
-                    if (javaClass.isPrimitive()) {
-                        box(mv, javaClass);
-                    }
-                    // store
-                    mv.visitMethodInsn(INVOKEINTERFACE, "com/cinnober/msgcodec/Accessor", "setValue",
-                            "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
-                }
+            List<MethodNode> fieldCode = new ArrayList<>(group.getFields().size());
+            for (FieldDef field : group.getFields()) {
+                MethodNode fieldmv = newFieldCode();
+                generateReadField(fieldmv, nextVar, schema, group, field, genClassInternalName, javaClassCodec);
+                fieldCode.add(fieldmv);
             }
+            generateFieldCode(cv, mv, genClassInternalName, "readStaticGroup_" + group.getName(),
+                    "(Lcom/cinnober/msgcodec/io/ByteSource;" + groupDescriptor + ")V", fieldCode, nextVar.get(),
+                    MAX_INLINE_SIZE);
 
             mv.visitInsn(RETURN);
             mv.visitMaxs(6, nextVar.get());
@@ -979,6 +1237,125 @@ class BaseByteCodeGenerator {
         }
     }
 
+    /**
+     * Generate the code that reads a field of a group.
+     * The input stream and the group instance are in variable 1 and 2.
+     */
+    private void generateReadField(final MethodVisitor mv, final LocalVariable nextVar, final Schema schema,
+            final GroupDef group, final FieldDef field, final String genClassInternalName,
+            final boolean javaClassCodec) {
+        final Class<?> javaClass = field.getJavaClass();
+
+        Runnable readValue = () -> {
+            Label tryStart = new Label();
+            Label tryEnd = new Label();
+            Label tryCatch = new Label();
+            Label tryAfter = new Label();
+            mv.visitTryCatchBlock(tryStart, tryEnd, tryCatch, "java/lang/Exception");
+            
+            mv.visitLabel(tryStart);
+            mv.visitVarInsn(ALOAD, 1); // input stream
+            generateDecodeValue(mv, 1, nextVar, field.isRequired(), field.getType(), javaClass, 
+                    field.getComponentJavaClass(), schema, genClassInternalName,
+                    group.getName() + "_" + field.getName(),
+                    group.getName() + "." + field.getName(), javaClassCodec,
+                    "true".equals(field.getAnnotation("intern")));
+            mv.visitLabel(tryEnd);
+            mv.visitJumpInsn(GOTO, tryAfter);
+            mv.visitLabel(tryCatch);
+            int caughtExVar = nextVar.next();
+            mv.visitVarInsn(ASTORE, caughtExVar);
+            mv.visitTypeInsn(NEW, "com/cinnober/msgcodec/blink/FieldDecodeException");
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(field.getName());
+            mv.visitVarInsn(ALOAD, caughtExVar);
+            mv.visitMethodInsn(INVOKESPECIAL, "com/cinnober/msgcodec/blink/FieldDecodeException",
+                    "<init>", "(Ljava/lang/String;Ljava/lang/Throwable;)V", false);
+            mv.visitInsn(ATHROW);
+            mv.visitLabel(tryAfter);
+        };
+
+        Accessor<?,?> accessor = field.getAccessor();
+        if (isDirectFieldAccessor(accessor, genClassInternalName)) {
+            Field f = getAccessedField(accessor);
+            mv.visitVarInsn(ALOAD, 2); // instance
+            // value
+            readValue.run();
+            // store
+            mv.visitFieldInsn(PUTFIELD, Type.getInternalName(f.getDeclaringClass()), f.getName(),
+                    Type.getDescriptor(f.getType()));
+        } else if (isDirectWideningAccessor(field, true, genClassInternalName)) {
+            WideningAccessor<?,?> widening = (WideningAccessor<?,?>) accessor;
+            Field f = getAccessedField(widening.getAccessor());
+            mv.visitVarInsn(ALOAD, 2); // instance
+            // value
+            readValue.run();
+            generateWidening(mv, widening);
+            // store
+            mv.visitFieldInsn(PUTFIELD, Type.getInternalName(f.getDeclaringClass()), f.getName(),
+                    Type.getDescriptor(f.getType()));
+        } else if (accessor.getClass() == CreateAccessor.class) {
+            mv.visitVarInsn(ALOAD, 2); // instance
+
+            Label tryStart = new Label();
+            Label tryEnd = new Label();
+            Label tryCatch = new Label();
+            Label tryAfter = new Label();
+            mv.visitTryCatchBlock(tryStart, tryEnd, tryCatch, "java/lang/Exception");
+            
+            mv.visitLabel(tryStart);
+            mv.visitVarInsn(ALOAD, 1); // input stream
+            
+            generateDecodeDummy(mv, 1, nextVar, field.isRequired(), field.getType(), javaClass,
+                    field.getComponentJavaClass(), schema, genClassInternalName,
+                    group.getName() + "." + field.getName(), javaClassCodec);
+            
+            mv.visitInsn(POP);
+            
+            mv.visitLabel(tryEnd);
+            mv.visitJumpInsn(GOTO, tryAfter);
+            mv.visitLabel(tryCatch);
+            int caughtExVar = nextVar.next();
+            mv.visitVarInsn(ASTORE, caughtExVar);
+            mv.visitTypeInsn(NEW, "com/cinnober/msgcodec/blink/FieldDecodeException");
+            mv.visitInsn(DUP);
+            mv.visitLdcInsn(field.getName());
+            mv.visitVarInsn(ALOAD, caughtExVar);
+            mv.visitMethodInsn(INVOKESPECIAL, "com/cinnober/msgcodec/blink/FieldDecodeException",
+                    "<init>", "(Ljava/lang/String;Ljava/lang/Throwable;)V", false);
+            mv.visitInsn(ATHROW);
+            mv.visitLabel(tryAfter);
+            
+            mv.visitInsn(POP);
+        } else {
+            // accessor
+            Class<?> primitiveAccessorType = getPrimitiveAccessorType(accessor, javaClass);
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitFieldInsn(GETFIELD, genClassInternalName,
+                    "accessor_" + group.getName() + "_" + field.getName(),
+                    "Lcom/cinnober/msgcodec/Accessor;");
+            if (primitiveAccessorType != null) {
+                mv.visitTypeInsn(CHECKCAST, Type.getInternalName(primitiveAccessorType));
+            }
+            // instance
+            mv.visitVarInsn(ALOAD, 2); // instance
+            // value
+            readValue.run();
+            // store
+            if (primitiveAccessorType != null) {
+                mv.visitMethodInsn(INVOKEINTERFACE, Type.getInternalName(primitiveAccessorType),
+                        getPrimitiveAccessorMethod("set", javaClass),
+                        "(Ljava/lang/Object;" + Type.getDescriptor(javaClass) + ")V", true);
+            } else {
+                if (javaClass.isPrimitive()) {
+                    box(mv, javaClass);
+                }
+                mv.visitMethodInsn(INVOKEINTERFACE, "com/cinnober/msgcodec/Accessor", "setValue",
+                        "(Ljava/lang/Object;Ljava/lang/Object;)V", true);
+            }
+        }
+    }
+
     // --- GENERATE ENCODE VALUE ---------------------------------------------------------------------------------------
 
     /**
@@ -1074,7 +1451,11 @@ class BaseByteCodeGenerator {
                 generateEncodeStringValue((TypeDef.StringUnicode) type, required, mv);
                 break;
             case BINARY:
-                generateEncodeBinaryValue((TypeDef.Binary) type, required, mv);
+                if (javaClass == ByteBuffer.class) {
+                    generateEncodeBinaryBufferValue((TypeDef.Binary) type, required, mv);
+                } else {
+                    generateEncodeBinaryValue((TypeDef.Binary) type, required, mv);
+                }
                 break;
             case BOOLEAN:
                 generateEncodeBooleanValue(required, mv);
@@ -1141,6 +1522,25 @@ class BaseByteCodeGenerator {
         }
     }
 
+    /**
+     * Generate value encoding of a binary value of type ByteBuffer using the blink output.
+     *
+     * <p>Defaults to <code>writeBinary[Null]</code> with a ByteBuffer argument.
+     *
+     * @param required true if the field is required, otherwise false.
+     * @param mv the method visitor, not null.
+     * @see #generateEncodeValue
+     */
+    protected void generateEncodeBinaryBufferValue(TypeDef.Binary type, boolean required, MethodVisitor mv) {
+        if (required) {
+            mv.visitMethodInsn(INVOKESTATIC, blinkOutputIName, "writeBinary",
+                    "(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/nio/ByteBuffer;)V", false);
+        } else {
+            mv.visitMethodInsn(INVOKESTATIC, blinkOutputIName, "writeBinaryNull",
+                    "(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/nio/ByteBuffer;)V", false);
+        }
+    }
+
     /**
      * Generate value encoding using the blink output.
      *
@@ -1802,10 +2202,12 @@ class BaseByteCodeGenerator {
      * Generate instructions to decode the specified value type.
      * The value on the stack is the input stream.
      * After this call the input stream is expected to be consumed, and the decoded value be placed on the stack.
+     * If intern is true, string values (also in sequences) are decoded using the string intern cache.
      */
     protected void generateDecodeValue(MethodVisitor mv, int byteSourceVar, LocalVariable nextVar,
             boolean required, TypeDef type, Class<?> javaClass, Class<?> componentJavaClass, Schema schema,
-            String genClassInternalName, String fieldIdentifier, String debugValueLabel, boolean javaClassCodec) {
+            String genClassInternalName, String fieldIdentifier, String debugValueLabel, boolean javaClassCodec,
+            boolean intern) {
         type = schema.resolveToType(type, false);
         GroupDef refGroup = schema.resolveToGroup(type);
 
@@ -1853,10 +2255,14 @@ class BaseByteCodeGenerator {
                 generateDecodeBigDecimalValue(required, mv);
                 break;
             case STRING:
-                generateDecodeStringValue((TypeDef.StringUnicode) type, mv, required);
+                generateDecodeStringValue((TypeDef.StringUnicode) type, mv, required, intern);
                 break;
             case BINARY:
-                generateDecodeBinaryValue((TypeDef.Binary) type, mv, required);
+                if (javaClass == ByteBuffer.class) {
+                    generateDecodeBinaryBufferValue((TypeDef.Binary) type, mv, required);
+                } else {
+                    generateDecodeBinaryValue((TypeDef.Binary) type, mv, required);
+                }
                 break;
             case BOOLEAN:
                 generateDecodeBooleanValue(required, mv);
@@ -1869,7 +2275,8 @@ class BaseByteCodeGenerator {
                 break;
             case SEQUENCE:
                 generateDecodeSequenceValue(javaClass, nextVar, required, mv, componentJavaClass,
-                        byteSourceVar, type, schema, genClassInternalName, fieldIdentifier, debugValueLabel, javaClassCodec);
+                        byteSourceVar, type, schema, genClassInternalName, fieldIdentifier, debugValueLabel, javaClassCodec,
+                        intern);
                 break;
             case REFERENCE:
                 generateDecodeRefValue(refGroup, required, mv, byteSourceVar, genClassInternalName, javaClass,
@@ -1908,7 +2315,7 @@ class BaseByteCodeGenerator {
                 break;
             default:
                 generateDecodeValue(mv, byteSourceVar, nextVar, required, type, javaClass, componentJavaClass,
-                    schema, genClassInternalName, null, debugValueLabel, javaClassCodec);
+                    schema, genClassInternalName, null, debugValueLabel, javaClassCodec, false);
         }
     }
     
@@ -1951,6 +2358,28 @@ class BaseByteCodeGenerator {
         }
     }
 
+    /**
+     * Generate value decoding of a binary value of type ByteBuffer using the blink input.
+     *
+     * <p>Defaults to <code>readBinaryBuffer[Null].</code>
+     *
+     * @param required true if the field is required, otherwise false.
+     * @param mv the method visitor, not null.
+     * @see #generateDecodeValue
+     */
+    protected void generateDecodeBinaryBufferValue(TypeDef.Binary type, MethodVisitor mv, boolean required) {
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitMethodInsn(INVOKEVIRTUAL, baseclassIName, "getMaxBinarySize",
+                "()I", false);
+        if (required) {
+            mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readBinaryBuffer",
+                    "(Lcom/cinnober/msgcodec/io/ByteSource;I)Ljava/nio/ByteBuffer;", false);
+        } else {
+            mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readBinaryBufferNull",
+                    "(Lcom/cinnober/msgcodec/io/ByteSource;I)Ljava/nio/ByteBuffer;", false);
+        }
+    }
+
     /**
      * Generate value decoding using the blink input.
      *
@@ -1958,13 +2387,28 @@ class BaseByteCodeGenerator {
      *
      * @param required true if the field is required, otherwise false.
      * @param mv the method visitor, not null.
+     * @param intern true if the string should be decoded using the string intern cache, otherwise false.
      * @see #generateDecodeValue
      */
-    protected void generateDecodeStringValue(TypeDef.StringUnicode type, MethodVisitor mv, boolean required) {
+    protected void generateDecodeStringValue(TypeDef.StringUnicode type, MethodVisitor mv, boolean required,
+            boolean intern) {
         mv.visitVarInsn(ALOAD, 0);
         mv.visitMethodInsn(INVOKEVIRTUAL, baseclassIName, "getMaxBinarySize",
                 "()I", false);
-        if (required) {
+        if (intern) {
+            mv.visitVarInsn(ALOAD, 0);
+            mv.visitMethodInsn(INVOKEVIRTUAL, baseclassIName, "getStringInternCache",
+                    "()Lcom/cinnober/msgcodec/util/StringInternCache;", false);
+            if (required) {
+                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readStringUTF8",
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;ILcom/cinnober/msgcodec/util/StringInternCache;)"
+                        + "Ljava/lang/String;", false);
+            } else {
+                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readStringUTF8Null",
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;ILcom/cinnober/msgcodec/util/StringInternCache;)"
+                        + "Ljava/lang/String;", false);
+            }
+        } else if (required) {
             mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readStringUTF8",
                     "(Lcom/cinnober/msgcodec/io/ByteSource;I)Ljava/lang/String;", false);
         } else {
@@ -2312,11 +2756,11 @@ class BaseByteCodeGenerator {
         Label endLabel = new Label();
         if (required) {
             generateDecodeInt32Value(true, mv);
-            box(mv, Integer.class);
         } else {
             generateDecodeInt32Value(false, mv);
             mv.visitInsn(DUP);
             mv.visitJumpInsn(IFNULL, endLabel);
+            unbox(mv, Integer.class);
             
 //            Label nonNullLabel = new Label();
 //            mv.visitJumpInsn(IFNONNULL, nonNullLabel);
@@ -2333,7 +2777,7 @@ class BaseByteCodeGenerator {
         mv.visitFieldInsn(GETFIELD, genClassInternalName, "symbolMapping_" + fieldIdentifier, "Lcom/cinnober/msgcodec/SymbolMapping;");
         mv.visitInsn(SWAP);
         mv.visitMethodInsn(INVOKEINTERFACE, "com/cinnober/msgcodec/SymbolMapping", "lookup",
-                "(Ljava/lang/Integer;)Ljava/lang/Object;", true);
+                "(I)Ljava/lang/Object;", true);
         
 //        // switch
 //        TypeDef.Enum enumType = (TypeDef.Enum) type;
@@ -2489,8 +2933,8 @@ class BaseByteCodeGenerator {
     protected void generateDecodeSequenceValue(
             Class<?> javaClass, LocalVariable nextVar, boolean required, MethodVisitor mv,
             Class<?> componentJavaClass, int byteSourceVar, TypeDef type, Schema schema,
-            String genClassInternalName, String fieldIdentifier, String debugValueLabel, boolean javaClassCodec)
-            throws IllegalArgumentException {
+            String genClassInternalName, String fieldIdentifier, String debugValueLabel, boolean javaClassCodec,
+            boolean intern) throws IllegalArgumentException {
         if (!javaClass.isArray() && javaClass != List.class) {
             throw new IllegalArgumentException("Illegal sequence javaClass: " + javaClass);
         }
@@ -2542,7 +2986,7 @@ class BaseByteCodeGenerator {
         // decode the element
         TypeDef.Sequence seqType = (TypeDef.Sequence) type;
         generateDecodeValue(mv, byteSourceVar, nextVar, true, seqType.getComponentType(), componentJavaClass, null,
-                schema, genClassInternalName, fieldIdentifier, debugValueLabel + ".component", javaClassCodec);
+                schema, genClassInternalName, fieldIdentifier, debugValueLabel + ".component", javaClassCodec, intern);
 
         // store the value
         if (javaClass.isArray()) {
@@ -2565,9 +3009,106 @@ class BaseByteCodeGenerator {
     
     // --- UTILITIES ---------------------------------------------------------------------------------------------------
 
+    /**
+     * Returns the field of a {@link FieldAccessor} or a {@link PrimitiveFieldAccessor}.
+     *
+     * @param accessor the accessor, not null.
+     * @return the field, or null if the accessor is not backed by a field.
+     */
+    public static Field getAccessedField(Accessor<?,?> accessor) {
+        if (accessor.getClass() == FieldAccessor.class) {
+            return ((FieldAccessor)accessor).getField();
+        } else if (accessor instanceof PrimitiveFieldAccessor) {
+            return ((PrimitiveFieldAccessor<?>)accessor).getField();
+        }
+        return null;
+    }
+
     public static boolean isPublicFieldAccessor(Accessor<?,?> accessor) {
-        return accessor.getClass() == FieldAccessor.class &&
-                Modifier.isPublic(((FieldAccessor)accessor).getField().getModifiers());
+        Field field = getAccessedField(accessor);
+        return field != null && Modifier.isPublic(field.getModifiers());
+    }
+
+    /**
+     * Returns the primitive accessor interface that the accessor implements for the specified java class,
+     * e.g. {@link IntAccessor} for int.
+     *
+     * @param accessor the accessor, not null.
+     * @param javaClass the java class of the field, not null.
+     * @return the primitive accessor interface, or null if the value must be boxed.
+     */
+    public static Class<?> getPrimitiveAccessorType(Accessor<?,?> accessor, Class<?> javaClass) {
+        if (javaClass == int.class && accessor instanceof IntAccessor) {
+            return IntAccessor.class;
+        } else if (javaClass == long.class && accessor instanceof LongAccessor) {
+            return LongAccessor.class;
+        } else if (javaClass == float.class && accessor instanceof FloatAccessor) {
+            return FloatAccessor.class;
+        } else if (javaClass == double.class && accessor instanceof DoubleAccessor) {
+            return DoubleAccessor.class;
+        }
+        return null;
+    }
+
+    /**
+     * Returns the name of the get or set method of a primitive accessor interface, e.g. "getInt".
+     */
+    private static String getPrimitiveAccessorMethod(String prefix, Class<?> javaClass) {
+        String typeName = javaClass.getName();
+        return prefix + Character.toUpperCase(typeName.charAt(0)) + typeName.substring(1);
+    }
+
+    /**
+     * Returns true if the generated class can compile the conversion of a {@link WideningAccessor} inline,
+     * getting or setting the wrapped field directly, see {@link #isDirectFieldAccessor(Accessor, String)}.
+     *
+     * @param field the field, not null.
+     * @param inbound true for the read (inbound) direction, false for the write (outbound) direction.
+     * @param genClassInternalName the internal name of the generated class, not null.
+     * @return true if the conversion is generated inline, otherwise the accessor is used.
+     */
+    public static boolean isDirectWideningAccessor(FieldDef field, boolean inbound, String genClassInternalName) {
+        if (!(field.getAccessor() instanceof WideningAccessor)) {
+            return false;
+        }
+        WideningAccessor<?,?> accessor = (WideningAccessor<?,?>) field.getAccessor();
+        Field f = getAccessedField(accessor.getAccessor());
+        return accessor.isInbound() == inbound && f != null &&
+                f.getType() == accessor.getFieldType() && field.getJavaClass() == accessor.getValueType() &&
+                isDirectFieldAccessor(accessor.getAccessor(), genClassInternalName);
+    }
+
+    /**
+     * Generate the conversion of a {@link WideningAccessor}.
+     * The narrower value on the stack is replaced with the wider value.
+     */
+    private static void generateWidening(MethodVisitor mv, WideningAccessor<?,?> accessor) {
+        Class<?> narrowType = accessor.isInbound() ? accessor.getValueType() : accessor.getFieldType();
+        Class<?> wideType = accessor.isInbound() ? accessor.getFieldType() : accessor.getValueType();
+        if (narrowType == float.class) {
+            mv.visitInsn(F2D);
+            return;
+        }
+        if (accessor.isUnsigned()) {
+            if (narrowType == byte.class) {
+                mv.visitIntInsn(SIPUSH, 0xff);
+                mv.visitInsn(IAND);
+            } else if (narrowType == short.class) {
+                mv.visitLdcInsn(0xffff);
+                mv.visitInsn(IAND);
+            }
+        }
+        if (wideType == long.class) {
+            mv.visitInsn(I2L);
+            if (accessor.isUnsigned() && narrowType == int.class) {
+                mv.visitLdcInsn(0xffffffffL);
+                mv.visitInsn(LAND);
+            }
+        } else if (wideType == short.class) {
+            mv.visitInsn(I2S);
+        } else if (wideType == char.class) {
+            mv.visitInsn(I2C);
+        }
     }
 
     public static boolean isPublicConstructorFactory(Factory<?> factory) {
@@ -2579,6 +3120,150 @@ class BaseByteCodeGenerator {
                 !Modifier.isAbstract(constructor.getDeclaringClass().getModifiers());
     }
 
+    /**
+     * Returns true if the generated class can get and set the field of the accessor directly.
+     * This is the case for public fields, and for package-private and protected fields if the generated class
+     * is defined in the package of the field, see {@link #getGeneratedClassName(Class, int)}.
+     *
+     * @param accessor the accessor, not null.
+     * @param genClassInternalName the internal name of the generated class, not null.
+     * @return true if the field can be accessed directly, otherwise the accessor is used.
+     */
+    public static boolean isDirectFieldAccessor(Accessor<?,?> accessor, String genClassInternalName) {
+        if (isPublicFieldAccessor(accessor)) {
+            return true;
+        }
+        Field field = getAccessedField(accessor);
+        if (field == null) {
+            return false;
+        }
+        return !Modifier.isPrivate(field.getModifiers()) &&
+                hasPackageAccess(field.getDeclaringClass(), genClassInternalName);
+    }
+
+    /**
+     * Returns true if the generated class can invoke the constructor of the factory directly.
+     * This is the case for public constructors, and for package-private and protected constructors if the
+     * generated class is defined in the package of the constructor, see {@link #getGeneratedClassName(Class, int)}.
+     *
+     * @param factory the factory, not null.
+     * @param genClassInternalName the internal name of the generated class, not null.
+     * @return true if the constructor can be invoked directly, otherwise the factory is used.
+     */
+    public static boolean isDirectConstructorFactory(Factory<?> factory, String genClassInternalName) {
+        if (isPublicConstructorFactory(factory)) {
+            return true;
+        }
+        if (factory.getClass() != ConstructorFactory.class) {
+            return false;
+        }
+        Constructor<?> constructor = ((ConstructorFactory<?>)factory).getConstructor();
+        return !Modifier.isPrivate(constructor.getModifiers()) &&
+                !Modifier.isAbstract(constructor.getDeclaringClass().getModifiers()) &&
+                hasPackageAccess(constructor.getDeclaringClass(), genClassInternalName);
+    }
+
+    /**
+     * Returns true if the generated class is defined in the package of the specified class,
+     * with access to its package-private members.
+     */
+    private static boolean hasPackageAccess(Class<?> javaClass, String genClassInternalName) {
+        int index = genClassInternalName.lastIndexOf('/');
+        return genClassInternalName.startsWith(PACKAGE_ACCESS_CLASS_SIMPLE_NAME, index + 1) &&
+                getPackageName(javaClass).equals(
+                        index < 0 ? "" : genClassInternalName.substring(0, index).replace('/', '.'));
+    }
+
+    static String getPackageName(Class<?> javaClass) {
+        String name = javaClass.getName();
+        int index = name.lastIndexOf('.');
+        return index < 0 ? "" : name.substring(0, index);
+    }
+
+    /**
+     * Returns a message class of the schema, in whose package a generated class must be defined
+     * to access the package-private message classes, fields and constructors of the schema.
+     *
+     * <p>Only one package can be accessed. If the package-private members of the schema are spread over
+     * several packages or class loaders, null is returned and all of them are accessed through accessors and
+     * factories.
+     *
+     * @param schema the bound schema, not null.
+     * @return the message class, or null if no or more than one package needs to be accessed.
+     */
+    static Class<?> getPackageAccessHost(Schema schema) {
+        boolean javaClassCodec = schema.getBinding().getGroupTypeAccessor() == JavaClassGroupTypeAccessor.INSTANCE;
+        Class<?> host = null;
+        for (GroupDef group : schema.getGroups()) {
+            List<Class<?>> classes = new ArrayList<>();
+            if (javaClassCodec && group.getGroupType() instanceof Class &&
+                    !Modifier.isPublic(((Class<?>) group.getGroupType()).getModifiers())) {
+                classes.add((Class<?>) group.getGroupType());
+            }
+            Factory<?> factory = group.getFactory();
+            if (factory.getClass() == ConstructorFactory.class && !isPublicConstructorFactory(factory)) {
+                Constructor<?> constructor = ((ConstructorFactory<?>)factory).getConstructor();
+                if (!Modifier.isPrivate(constructor.getModifiers())) {
+                    classes.add(constructor.getDeclaringClass());
+                }
+            }
+            for (FieldDef field : group.getFields()) {
+                Accessor<?,?> accessor = field.getAccessor();
+                if (accessor instanceof WideningAccessor) {
+                    accessor = ((WideningAccessor<?,?>) accessor).getAccessor();
+                }
+                Field f = getAccessedField(accessor);
+                if (f != null && !isPublicFieldAccessor(accessor)) {
+                    if (!Modifier.isPrivate(f.getModifiers())) {
+                        classes.add(f.getDeclaringClass());
+                    }
+                }
+            }
+            for (Class<?> javaClass : classes) {
+                if (host == null) {
+                    host = javaClass;
+                } else if (host.getClassLoader() != javaClass.getClassLoader() ||
+                        !getPackageName(host).equals(getPackageName(javaClass))) {
+                    return null;
+                }
+            }
+        }
+        return host;
+    }
+
+    /**
+     * Generate a switch on the int value on top of the stack.
+     * A <b>tableswitch</b> is generated if the keys are dense, otherwise a <b>lookupswitch</b>.
+     * The same cost estimate as javac is used to choose between them.
+     *
+     * @param mv the method visitor, not null.
+     * @param defaultLabel the label to jump to if no key matches, not null.
+     * @param keys the keys, in ascending order, not null.
+     * @param labels the labels to jump to for each key, not null.
+     */
+    public static void generateSwitch(MethodVisitor mv, Label defaultLabel, int[] keys, Label[] labels) {
+        if (keys.length == 0) {
+            mv.visitLookupSwitchInsn(defaultLabel, keys, labels);
+            return;
+        }
+        int lo = keys[0];
+        int hi = keys[keys.length - 1];
+        long tableSpaceCost = 4 + ((long) hi - lo + 1);
+        long tableTimeCost = 3;
+        long lookupSpaceCost = 3 + 2 * (long) keys.length;
+        long lookupTimeCost = keys.length;
+        if (tableSpaceCost + 3 * tableTimeCost <= lookupSpaceCost + 3 * lookupTimeCost) {
+            Label[] table = new Label[hi - lo + 1];
+            Arrays.fill(table, defaultLabel);
+            for (int i = 0; i < keys.length; i++) {
+                table[keys[i] - lo] = labels[i];
+            }
+            mv.visitTableSwitchInsn(lo, hi, defaultLabel, table);
+        } else {
+            mv.visitLookupSwitchInsn(defaultLabel, keys, labels);
+        }
+    }
+
     public static void generateArrayStore(MethodVisitor mv, Class<?> componentJavaClass) {
         if (componentJavaClass == byte.class || componentJavaClass == boolean.class) {
             mv.visitInsn(BASTORE);
@@ -2707,29 +3392,6 @@ class BaseByteCodeGenerator {
         return javaClass;
     }
 
-    protected static class ObjectHashCodeSwitchCase<T> {
-        final int hashCode;
-        final Label label = new Label();
-        final List<ObjectSwitchCase<T>> cases = new ArrayList<>();
-
-        ObjectHashCodeSwitchCase(int hashCode) {
-            this.hashCode = hashCode;
-        }
-        void add(T object) {
-            cases.add(new ObjectSwitchCase<>(object, new Label()));
-        }
-    }
-    protected static class ObjectSwitchCase<T> {
-        final T object;
-        final Label label;
-
-        ObjectSwitchCase(T object, Label label) {
-            this.object = object;
-            this.label = label;
-        }
-
-    }
-
     protected static class LocalVariable {
         private int nextVariable;
         LocalVariable(int nextVariable) {
@@ -26,17 +26,23 @@ package com.cinnober.msgcodec.blink;
 import com.cinnober.msgcodec.io.ByteSink;
 import com.cinnober.msgcodec.io.ByteSource;
 import com.cinnober.msgcodec.DecodeException;
+import com.cinnober.msgcodec.GroupDef;
 import com.cinnober.msgcodec.Schema;
 import com.cinnober.msgcodec.MsgCodec;
 import com.cinnober.msgcodec.MsgCodecInstantiationException;
 import com.cinnober.msgcodec.ObjectInstantiationException;
+import com.cinnober.msgcodec.io.ByteBuf;
 import com.cinnober.msgcodec.io.InputStreamSource;
+import com.cinnober.msgcodec.io.InputStreams;
 import com.cinnober.msgcodec.io.OutputStreamSink;
 import com.cinnober.msgcodec.util.Pool;
+import com.cinnober.msgcodec.util.StringInternCache;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
+import java.util.function.Consumer;
 
 /**
  * The Blink codec can serialize and deserialize Java objects according to
@@ -60,13 +66,17 @@ import java.lang.reflect.Constructor;
  *
  */
 public class BlinkCodec implements MsgCodec {
-    private final GeneratedCodec generatedCodec;
+    private final GeneratedCompactCodec generatedCodec;
+    /** The codec specialized for specializedBufClass, or null. */
+    private final GeneratedCompactCodec specializedCodec;
+    private final Class<? extends ByteBuf> specializedBufClass;
     private final Schema schema;
 
     private final Pool<byte[]> bufferPool;
 
     private final int maxBinarySize;
     private final int maxSequenceLength;
+    private final StringInternCache stringInternCache;
 
     /**
      * Create a Blink codec.
@@ -75,9 +85,14 @@ public class BlinkCodec implements MsgCodec {
      * @param bufferPool the buffer pool, needed for temporary storage while <em>encoding</em>.
      * @param maxBinarySize the maximum binary size (including strings) allowed while decoding, or -1 for no limit.
      * @param maxSequenceLength the maximum sequence length allowed while decoding, or -1 for no limit.
+     * @param stringInternCache the cache used for decoding interned string fields, or null for no interning.
+     * @param specializedBufClass the byte buf class to generate a specialized codec for, or null.
+     * @param lazyGeneration true if the code of each group should be generated on first use.
      */
     BlinkCodec(Schema schema, Pool<byte[]> bufferPool,
-            int maxBinarySize, int maxSequenceLength) throws MsgCodecInstantiationException {
+            int maxBinarySize, int maxSequenceLength, StringInternCache stringInternCache,
+            Class<? extends ByteBuf> specializedBufClass, boolean lazyGeneration)
+            throws MsgCodecInstantiationException {
         if (!schema.isBound()) {
             throw new IllegalArgumentException("Schema not bound");
         }
@@ -85,17 +100,40 @@ public class BlinkCodec implements MsgCodec {
 
         this.maxBinarySize = maxBinarySize;
         this.maxSequenceLength = maxSequenceLength;
+        this.stringInternCache = stringInternCache;
         this.schema = schema;
 
         try {
-            Class<GeneratedCompactCodec> generatedCodecClass =
-                    GeneratedCodecClassLoader.getInstance().getGeneratedCodecClass(schema);
-            Constructor<GeneratedCompactCodec> constructor =
-                    generatedCodecClass.getConstructor(new Class<?>[]{ BlinkCodec.class, Schema.class });
-            generatedCodec = constructor.newInstance(this, schema);
+            if (lazyGeneration) {
+                generatedCodec = new LazyCompactCodec(this);
+            } else {
+                Class<GeneratedCompactCodec> generatedCodecClass =
+                        GeneratedCodecClassLoader.getInstance().getGeneratedCodecClass(schema);
+                Constructor<GeneratedCompactCodec> constructor =
+                        generatedCodecClass.getConstructor(new Class<?>[]{ BlinkCodec.class, Schema.class });
+                generatedCodec = constructor.newInstance(this, schema);
+            }
+            if (specializedBufClass != null) {
+                Class<GeneratedCompactCodec> specializedCodecClass = GeneratedCodecClassLoader.getInstance()
+                        .getSpecializedCodecClass(schema, specializedBufClass);
+                specializedCodec = specializedCodecClass
+                        .getConstructor(new Class<?>[]{ BlinkCodec.class, Schema.class })
+                        .newInstance(this, schema);
+            } else {
+                specializedCodec = null;
+            }
         } catch (Exception e) {
             throw new MsgCodecInstantiationException(e);
         }
+        this.specializedBufClass = specializedBufClass;
+    }
+
+    /**
+     * Returns the generated codec to use for the specified byte source or sink.
+     * The specialized codec must only be used with the exact class it was specialized for.
+     */
+    private GeneratedCompactCodec generatedCodec(Object inOrOut) {
+        return inOrOut.getClass() == specializedBufClass ? specializedCodec : generatedCodec;
     }
 
     Pool<byte[]> bufferPool() {
@@ -110,43 +148,245 @@ public class BlinkCodec implements MsgCodec {
         return maxSequenceLength;
     }
 
+    StringInternCache getStringInternCache() {
+        return stringInternCache;
+    }
+
     Schema getSchema() {
         return schema;
     }
 
+    /**
+     * Create a flyweight for the specified group.
+     * The flyweight can be reused to read fields directly from encoded groups, without creating any group objects.
+     *
+     * @param <V> the flyweight type
+     * @param groupType the group type of the group to read, e.g. the Java class or the group name,
+     * see {@link Schema#getGroup(Object)}. Not null.
+     * @param flyweightType the flyweight interface, not null.
+     * @return a new flyweight, not null.
+     * @throws IllegalArgumentException if the group type is unknown, or if the flyweight interface
+     * cannot be implemented for the group.
+     * @throws MsgCodecInstantiationException if the flyweight could not be instantiated.
+     * @see BlinkFlyweight
+     */
+    public <V extends BlinkFlyweight> V createFlyweight(Object groupType, Class<V> flyweightType)
+            throws IllegalArgumentException, MsgCodecInstantiationException {
+        GroupDef group = schema.getGroup(groupType);
+        if (group == null) {
+            throw new IllegalArgumentException("Unknown group type: " + groupType);
+        }
+        Class<GeneratedCompactFlyweight> flyweightClass =
+                GeneratedCodecClassLoader.getInstance().getGeneratedFlyweightClass(schema, group, flyweightType);
+        try {
+            Constructor<GeneratedCompactFlyweight> constructor =
+                    flyweightClass.getConstructor(new Class<?>[]{ BlinkCodec.class, GroupDef.class });
+            return flyweightType.cast(constructor.newInstance(this, group));
+        } catch (Exception e) {
+            throw new MsgCodecInstantiationException(e);
+        }
+    }
+
+    /**
+     * Returns the group id of the dynamic group at the current position of the buffer.
+     * The position of the buffer is not changed.
+     *
+     * @param buf the buffer to read from, not null.
+     * @return the group id
+     * @throws IOException if the group id could not be read.
+     */
+    public int peekGroupId(ByteBuf buf) throws IOException {
+        int start = buf.position();
+        try {
+            BlinkInput.readUInt32(buf); // size
+            return BlinkInput.readUInt32(buf);
+        } finally {
+            buf.position(start);
+        }
+    }
+
     @Override
     public void encode(Object group, OutputStream out) throws IOException {
         encode(group, new OutputStreamSink(out));
     }
     @Override
     public void encode(Object group, ByteSink out) throws IOException {
-        generatedCodec.writeDynamicGroup(out, group);
+        generatedCodec(out).writeDynamicGroup(out, group);
+    }
+
+    /**
+     * Returns an encoder that writes all groups with the generated codec for the byte buffer class,
+     * which is chosen once for all groups.
+     */
+    @Override
+    public GroupEncoder encoderFor(ByteBuf out) {
+        GeneratedCompactCodec codec = generatedCodec(out);
+        return (group, buf) -> codec.writeDynamicGroup(buf, group);
     }
 
+    /**
+     * Returns the exact number of bytes that the specified group is encoded into, without encoding it.
+     * This can be used to allocate a buffer of the right size, or to check that the group fits in
+     * the remaining space of a buffer, before encoding.
+     *
+     * @param group the group to compute the encoded size of, not null.
+     * @return the encoded size in bytes, including the size preamble.
+     * @throws IllegalArgumentException if the group is not correct or complete, e.g. a required field is missing.
+     * @see #encode(Object, ByteSink)
+     */
+    public int getEncodedSize(Object group) throws IllegalArgumentException {
+        return generatedCodec.getEncodedSize(group);
+    }
+
+    /**
+     * Read a group from the input stream.
+     *
+     * <p>The size preamble is read first, and then the whole group is read from the stream in bulk into
+     * an array from the buffer pool, and decoded from there. Groups larger than the pooled array are
+     * decoded directly from the stream. No bytes beyond the group are read from the stream.
+     *
+     * <p>To decode a sequence of groups from a stream with read-ahead, wrap the stream once in a
+     * {@link com.cinnober.msgcodec.io.BufferedInputStreamSource} and use {@link #decode(ByteSource)}.
+     */
     @Override
     public Object decode(InputStream in) throws IOException {
-        return decode(new InputStreamSource(in));
+        int b1 = in.read();
+        if (b1 < 0) {
+            throw new EOFException();
+        } else if (b1 == 0xc0) {
+            return null;
+        }
+        int size = readSizePreamble(in, b1);
+        byte[] buf = bufferPool.get();
+        try {
+            ByteSource groupIn = size <= buf.length ?
+                new PooledArrayBuf(buf, InputStreams.readUpTo(in, buf, 0, size)) :
+                new InputStreamSource(in);
+            return generatedCodec(groupIn).readDynamicGroup(size, groupIn);
+        } catch(GroupDecodeException|FieldDecodeException e) {
+            throw decodeException(e);
+        } finally {
+            bufferPool.release(buf);
+        }
+    }
+
+    /**
+     * Read the size preamble of a dynamic group from the stream.
+     *
+     * @param in the stream to read from, not null.
+     * @param b1 the first byte of the preamble, already read from the stream.
+     * @return the size.
+     * @throws DecodeException if the preamble is malformed, or if the size does not fit in an int.
+     */
+    private static int readSizePreamble(InputStream in, int b1) throws IOException {
+        long size;
+        if ((b1 & 0x80) == 0) {
+            size = b1;
+        } else if ((b1 & 0xc0) == 0x80) {
+            size = (b1 & 0x3f) | readByte(in) << 6;
+        } else {
+            int len = b1 & 0x3f;
+            if (len > 8) {
+                throw new DecodeException("Malformed dynamic group size preamble: " + b1);
+            }
+            size = 0;
+            for (int i = 0; i < len; i++) {
+                size |= (long) readByte(in) << (i << 3);
+            }
+        }
+        if (size < 0 || size > Integer.MAX_VALUE) {
+            throw new DecodeException("Cannot read group larger than " + Integer.MAX_VALUE + " bytes.");
+        }
+        return (int) size;
+    }
+
+    private static int readByte(InputStream in) throws IOException {
+        int b = in.read();
+        if (b < 0) {
+            throw new EOFException();
+        }
+        return b;
     }
 
     @Override
     public Object decode(ByteSource in) throws IOException {
         try {
-            return generatedCodec.readDynamicGroupNull(in);
+            return generatedCodec(in).readDynamicGroupNull(in);
         } catch(GroupDecodeException|FieldDecodeException e) {
-            Throwable t = e;
-            StringBuilder str = new StringBuilder();
-            for (;;) {
-                if (t instanceof GroupDecodeException) {
-                    str.append('(').append(((GroupDecodeException)t).getGroupName()).append(')');
-                    t = t.getCause();
-                } else if(t instanceof FieldDecodeException) {
-                    str.append('.').append(((FieldDecodeException)t).getFieldName());
-                    t = t.getCause();
-                } else if(t instanceof ObjectInstantiationException) {
-                    throw new DecodeException("Could not create group "+str.toString(), t);
-                } else {
-                    throw new DecodeException("Could not decode field "+str.toString(), t);
-                }
+            throw decodeException(e);
+        }
+    }
+
+    /**
+     * Read all complete groups in the byte buffer, from the current position up to the limit, and pass them to
+     * the handler in order. This is equivalent to calling {@link #decode(ByteSource)} repeatedly, but with
+     * less overhead per group.
+     *
+     * <p>Decoding stops at the first group that is not completely contained in the buffer, e.g. a partial frame
+     * at the end of a network read. The position of the buffer is set to the start of that group, so that
+     * decoding can be resumed when more data is available. The handler must not change the position of the
+     * buffer.
+     * Null groups are passed to the handler as null.
+     *
+     * @param in the byte buffer to read from, not null.
+     * @param handler the handler of the decoded groups, not null.
+     * @return the number of bytes consumed.
+     * @throws IOException if the underlying byte buffer throws an exception.
+     * @throws DecodeException if a group could not be decoded. The position of the buffer is undefined.
+     */
+    public int decodeAll(ByteBuf in, Consumer<Object> handler) throws IOException {
+        try {
+            return generatedCodec(in).readDynamicGroups(in, handler);
+        } catch(GroupDecodeException|FieldDecodeException e) {
+            throw decodeException(e);
+        }
+    }
+
+    /**
+     * Read a group from the byte source into an existing group instance, instead of creating a new instance.
+     * This allows group instances to be reused.
+     *
+     * <p>All fields of the group are assigned. Nested groups and sequences are replaced by new instances.
+     * The state of the group instance is undefined if an exception is thrown.
+     *
+     * @param in the byte source to read from, not null.
+     * @param group the group instance to read into, not null. The group read must be of the same group type
+     * as the instance.
+     * @return true if the group was read, or false if a null group was read.
+     * @throws IOException if the underlying byte source throws an exception.
+     * @throws DecodeException if the group could not be decoded, or if the group read is not of the same
+     * group type as the instance.
+     * @throws IllegalArgumentException if the group type of the instance is not part of the schema.
+     */
+    public boolean decodeInto(ByteSource in, Object group) throws IOException {
+        try {
+            return generatedCodec(in).readDynamicGroupNull(in, group);
+        } catch(GroupDecodeException|FieldDecodeException e) {
+            throw decodeException(e);
+        }
+    }
+
+    /**
+     * Translate a nested group or field decode exception into a decode exception with a descriptive message,
+     * e.g. "Could not decode field (Group).field".
+     *
+     * @param e the group or field decode exception, not null.
+     * @return the exception to be thrown, not null.
+     */
+    private static DecodeException decodeException(DecodeException e) {
+        Throwable t = e;
+        StringBuilder str = new StringBuilder();
+        for (;;) {
+            if (t instanceof GroupDecodeException) {
+                str.append('(').append(((GroupDecodeException)t).getGroupName()).append(')');
+                t = t.getCause();
+            } else if(t instanceof FieldDecodeException) {
+                str.append('.').append(((FieldDecodeException)t).getFieldName());
+                t = t.getCause();
+            } else if(t instanceof ObjectInstantiationException) {
+                return new DecodeException("Could not create group "+str.toString(), t);
+            } else {
+                return new DecodeException("Could not decode field "+str.toString(), t);
             }
         }
     }
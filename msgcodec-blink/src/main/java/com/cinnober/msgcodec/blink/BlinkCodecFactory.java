@@ -27,8 +27,10 @@ package com.cinnober.msgcodec.blink;
 import com.cinnober.msgcodec.MsgCodecInstantiationException;
 import com.cinnober.msgcodec.Schema;
 import com.cinnober.msgcodec.MsgCodecFactory;
-import com.cinnober.msgcodec.util.ConcurrentBufferPool;
+import com.cinnober.msgcodec.io.ByteBuf;
 import com.cinnober.msgcodec.util.Pool;
+import com.cinnober.msgcodec.util.StringInternCache;
+import com.cinnober.msgcodec.util.ThreadLocalBufferPool;
 import java.util.Objects;
 
 /**
@@ -42,6 +44,9 @@ public class BlinkCodecFactory implements MsgCodecFactory {
     private Pool<byte[]> bufferPool;
     private int maxBinarySize = 10 * 1_048_576; // 10 MB
     private int maxSequenceLength = 1_000_000;
+    private StringInternCache stringInternCache;
+    private Class<? extends ByteBuf> specializedBufClass;
+    private boolean lazyGeneration;
 
     /**
      * Create a Blink codec factory.
@@ -53,11 +58,12 @@ public class BlinkCodecFactory implements MsgCodecFactory {
             throw new IllegalArgumentException("Schema must be bound");
         }
         this.schema = schema;
-        this.bufferPool = new ConcurrentBufferPool(1048576, 10);
+        this.bufferPool = new ThreadLocalBufferPool(1048576, 10);
     }
 
     /**
      * Set the buffer pool.
+     * The default is a {@link ThreadLocalBufferPool} of 1 MB buffers.
      * 
      * @param bufferPool the buffer pool to be used by all codec instances, not null.
      * @return this factory.
@@ -89,9 +95,66 @@ public class BlinkCodecFactory implements MsgCodecFactory {
         return this;
     }
 
+    /**
+     * Set the string intern cache to be used while decoding.
+     *
+     * <p>Only string fields with the annotation <code>intern="true"</code> are interned,
+     * see {@link com.cinnober.msgcodec.anot.Intern}.
+     * The cache can be shared between factories, and its statistics can be used to monitor the hit rate.
+     * By default no cache is used, i.e. strings are never interned.
+     *
+     * @param stringInternCache the string intern cache to be used by all codec instances, or null for no interning.
+     * @return this factory.
+     */
+    public BlinkCodecFactory setStringInternCache(StringInternCache stringInternCache) {
+        this.stringInternCache = stringInternCache;
+        return this;
+    }
+
+    /**
+     * Generate an additional codec that is specialized for the specified byte buf class.
+     *
+     * <p>The generated codec calls the byte buf class directly, instead of through the ByteSource and ByteSink
+     * interfaces. This keeps the calls monomorphic, also in a process where many byte buf implementations are used,
+     * which allows the JIT compiler to inline them.
+     * The specialized codec is used when encoding to, or decoding from, an instance of exactly the specified class.
+     * Other byte sources and sinks use the ordinary codec.
+     *
+     * @param bufClass the public byte buf class to specialize for, e.g. ByteArrayBuf, or null for no specialization.
+     * @return this factory.
+     * @throws IllegalArgumentException if the class is not a public concrete class, visible from the msgcodec
+     * class loader.
+     */
+    public BlinkCodecFactory specializeFor(Class<? extends ByteBuf> bufClass) {
+        if (bufClass != null) {
+            ByteBufSpecializer.checkByteBufClass(bufClass, BlinkCodecFactory.class.getClassLoader());
+        }
+        this.specializedBufClass = bufClass;
+        return this;
+    }
+
+    /**
+     * Generate the code of each group on first use, instead of for all groups when the codec is created.
+     *
+     * <p>This is intended for large schemas where only a few of the groups are used by a process.
+     * It reduces the time to create the codec and the size of the generated code, at the cost of a
+     * slower first encode or decode of each group, and an additional dispatch for each group.
+     * The code of a group is shared by all codecs of the same schema.
+     * Lazy generation does not apply to the specialized codec, see {@link #specializeFor(Class)}.
+     * By default all code is generated when the codec is created.
+     *
+     * @param lazyGeneration true if the code of each group should be generated on first use.
+     * @return this factory.
+     */
+    public BlinkCodecFactory setLazyGeneration(boolean lazyGeneration) {
+        this.lazyGeneration = lazyGeneration;
+        return this;
+    }
+
     @Override
     public BlinkCodec createCodec() throws MsgCodecInstantiationException {
-        return new BlinkCodec(schema, bufferPool, maxBinarySize, maxSequenceLength);
+        return new BlinkCodec(schema, bufferPool, maxBinarySize, maxSequenceLength, stringInternCache,
+                specializedBufClass, lazyGeneration);
     }
     
 }
@@ -0,0 +1,249 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.SchemaBuilder;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.commons.RemappingClassAdapter;
+import org.objectweb.asm.commons.SimpleRemapper;
+
+/**
+ * Generates codec classes at build time, to avoid the cost of generating them when the codec is created.
+ *
+ * <p>The generated class files should be placed on the class path together with the message classes,
+ * e.g. packaged in the same jar. When a codec is created, {@link BlinkCodecFactory} and
+ * {@link NativeBlinkCodecFactory} look for a precompiled codec class with the fingerprint of the schema,
+ * using the class loader of the message classes. If no such class is found, e.g. because the schema or
+ * the msgcodec version has changed, the codec class is generated at runtime as usual.
+ *
+ * <p>The precompiler can be run from the command line, or from a build tool, e.g. a Gradle JavaExec task:
+ * <pre>
+ * task precompileCodecs(type: JavaExec, dependsOn: compileJava) {
+ *     classpath = sourceSets.main.runtimeClasspath
+ *     main = 'com.cinnober.msgcodec.blink.BlinkCodecPrecompiler'
+ *     args "$buildDir/classes/main", 'com.example.MyProtocol'
+ * }
+ * jar.dependsOn precompileCodecs
+ * </pre>
+ *
+ * <p>Only the codec classes are precompiled. Flyweights and codecs specialized for a ByteBuf class
+ * are still generated at runtime.
+ *
+ * @author mikael.brannstrom
+ */
+public class BlinkCodecPrecompiler {
+    /** The package of the precompiled codec classes. */
+    public static final String PRECOMPILED_PACKAGE = "com.cinnober.msgcodec.blink.precompiled";
+
+    private BlinkCodecPrecompiler() {
+    }
+
+    /**
+     * Generate precompiled codec classes.
+     *
+     * <p>Usage: <code>BlinkCodecPrecompiler [-native] [-report] outputDir class...</code>
+     *
+     * <p>Each class is either a protocol class with a static <code>getSchema()</code> method, which returns
+     * the schema to generate a codec for, or a message class. All message classes are built into one schema
+     * using {@link SchemaBuilder}. The option <code>-native</code> generates native codec classes as well.
+     * The option <code>-report</code> prints the size of each method of the generated classes,
+     * see {@link #getMethodSizes(Schema)}.
+     *
+     * @param args the command line arguments.
+     * @throws Exception if the classes could not be generated.
+     */
+    public static void main(String... args) throws Exception {
+        int argIndex = 0;
+        boolean generateNative = false;
+        boolean report = false;
+        for (; argIndex < args.length && args[argIndex].startsWith("-"); argIndex++) {
+            if (args[argIndex].equals("-native")) {
+                generateNative = true;
+            } else if (args[argIndex].equals("-report")) {
+                report = true;
+            } else {
+                break;
+            }
+        }
+        if (args.length - argIndex < 2 || args[argIndex].startsWith("-")) {
+            System.err.println("Usage: BlinkCodecPrecompiler [-native] [-report] outputDir class...");
+            System.exit(1);
+        }
+        File outputDir = new File(args[argIndex++]);
+
+        List<Schema> schemas = new ArrayList<>();
+        List<Class<?>> messageClasses = new ArrayList<>();
+        for (; argIndex < args.length; argIndex++) {
+            Class<?> javaClass = Class.forName(args[argIndex]);
+            Method getSchema = getSchemaMethod(javaClass);
+            if (getSchema != null) {
+                schemas.add((Schema) getSchema.invoke(null));
+            } else {
+                messageClasses.add(javaClass);
+            }
+        }
+        if (!messageClasses.isEmpty()) {
+            schemas.add(new SchemaBuilder().build(messageClasses.toArray(new Class<?>[messageClasses.size()])));
+        }
+
+        for (Schema schema : schemas) {
+            System.out.println("Generated " + generate(schema, outputDir));
+            if (report) {
+                printMethodSizes(getMethodSizes(schema));
+            }
+            if (generateNative) {
+                System.out.println("Generated " + generateNative(schema, outputDir));
+                if (report) {
+                    printMethodSizes(getNativeMethodSizes(schema));
+                }
+            }
+        }
+    }
+
+    private static void printMethodSizes(Map<String, Integer> methodSizes) {
+        List<Map.Entry<String, Integer>> entries = new ArrayList<>(methodSizes.entrySet());
+        entries.sort((e1, e2) -> e2.getValue().compareTo(e1.getValue()));
+        for (Map.Entry<String, Integer> entry : entries) {
+            int size = entry.getValue();
+            String note = size > BaseByteCodeGenerator.MAX_METHOD_SIZE ? " (too large to be JIT compiled)" :
+                    size > BaseByteCodeGenerator.MAX_INLINE_SIZE ? " (too large to be inlined)" : "";
+            System.out.printf("%8d %s%s%n", size, entry.getKey(), note);
+        }
+    }
+
+    private static Method getSchemaMethod(Class<?> javaClass) {
+        try {
+            Method method = javaClass.getMethod("getSchema");
+            if (Modifier.isStatic(method.getModifiers()) && method.getReturnType() == Schema.class) {
+                return method;
+            }
+        } catch (NoSuchMethodException e) {
+            // not a protocol class
+        }
+        return null;
+    }
+
+    /**
+     * Generate a precompiled compact codec class for the specified schema.
+     *
+     * @param schema the bound schema, not null.
+     * @param outputDir the root directory of the class files, not null.
+     * @return the class file written, not null.
+     * @throws IOException if the class file could not be written.
+     */
+    public static File generate(Schema schema, File outputDir) throws IOException {
+        CompactByteCodeGenerator generator = new CompactByteCodeGenerator();
+        return writeClass(generator.getGeneratedClassName(0), generator.generateClass(schema, 0),
+                getCodecClassName(SchemaFingerprint.of(schema)), outputDir);
+    }
+
+    /**
+     * Generate a precompiled native codec class for the specified schema.
+     *
+     * @param schema the bound schema, not null.
+     * @param outputDir the root directory of the class files, not null.
+     * @return the class file written, not null.
+     * @throws IOException if the class file could not be written.
+     * @throws UnsupportedOperationException if the schema is not supported by the native codec.
+     */
+    public static File generateNative(Schema schema, File outputDir) throws IOException {
+        NativeByteCodeGenerator generator = new NativeByteCodeGenerator();
+        return writeClass(generator.getGeneratedClassName(0), generator.generateClass(schema, 0),
+                getNativeCodecClassName(SchemaFingerprint.of(schema)), outputDir);
+    }
+
+    /**
+     * Returns the code size in bytes of each method of the compact codec class generated for the schema.
+     *
+     * <p>This can be used to verify that the generated methods are JIT compiled. HotSpot does not compile
+     * methods larger than 8000 bytes (<code>-XX:HugeMethodLimit</code>), and does not inline frequently called
+     * methods larger than 325 bytes (<code>-XX:FreqInlineSize</code>).
+     * The code generator splits methods to stay within these limits where possible.
+     *
+     * @param schema the bound schema, not null.
+     * @return the code size by method name and descriptor, not null.
+     */
+    public static Map<String, Integer> getMethodSizes(Schema schema) {
+        return BaseByteCodeGenerator.getMethodSizes(new CompactByteCodeGenerator().generateClass(schema, 0));
+    }
+
+    /**
+     * Returns the code size in bytes of each method of the native codec class generated for the schema.
+     *
+     * @param schema the bound schema, not null.
+     * @return the code size by method name and descriptor, not null.
+     * @throws UnsupportedOperationException if the schema is not supported by the native codec.
+     * @see #getMethodSizes(Schema)
+     */
+    public static Map<String, Integer> getNativeMethodSizes(Schema schema) {
+        return BaseByteCodeGenerator.getMethodSizes(new NativeByteCodeGenerator().generateClass(schema, 0));
+    }
+
+    /**
+     * Returns the name of the precompiled compact codec class.
+     * @param fingerprint the schema fingerprint, not null.
+     * @return the class name, not null.
+     */
+    static String getCodecClassName(String fingerprint) {
+        return PRECOMPILED_PACKAGE + ".BlinkCodec_" + fingerprint;
+    }
+
+    /**
+     * Returns the name of the precompiled native codec class.
+     * @param fingerprint the schema fingerprint, not null.
+     * @return the class name, not null.
+     */
+    static String getNativeCodecClassName(String fingerprint) {
+        return PRECOMPILED_PACKAGE + ".NativeBlinkCodec_" + fingerprint;
+    }
+
+    private static File writeClass(String generatedClassName, byte[] generatedClassBytes, String className,
+            File outputDir) throws IOException {
+        ClassReader classReader = new ClassReader(generatedClassBytes);
+        ClassWriter classWriter = new ClassWriter(0);
+        classReader.accept(new RemappingClassAdapter(classWriter, new SimpleRemapper(
+                generatedClassName.replace('.', '/'), className.replace('.', '/'))), ClassReader.EXPAND_FRAMES);
+
+        File file = new File(outputDir, className.replace('.', File.separatorChar) + ".class");
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs()) {
+            throw new IOException("Could not create directory " + dir);
+        }
+        try (OutputStream out = new FileOutputStream(file)) {
+            out.write(classWriter.toByteArray());
+        }
+        return file;
+    }
+}
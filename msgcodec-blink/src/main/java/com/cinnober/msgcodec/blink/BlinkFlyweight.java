@@ -0,0 +1,85 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.io.ByteBuf;
+import java.io.IOException;
+
+/**
+ * A read-only view of a compact Blink encoded group, that reads field values directly from the encoded bytes
+ * without creating any group object.
+ *
+ * <p>A flyweight is created for a specific group by {@link BlinkCodec#createFlyweight(Object, Class)}, which
+ * generates an implementation of a user supplied interface extending this one. The interface declares one
+ * getter per field of interest:
+ * <ul>
+ * <li><code>getXxx()</code> or <code>isXxx()</code> returns the value of the field <code>xxx</code>.
+ * Strings are returned as a <code>CharSequence</code>, which is reused by the flyweight and only valid until the
+ * next call to {@link #wrap(ByteBuf)}.
+ * <li><code>hasXxx()</code> returns true if the (optional) field <code>xxx</code> is present, otherwise false.
+ * </ul>
+ *
+ * <p>Example:
+ * <pre>
+ * public interface EnterOrderView extends BlinkFlyweight {
+ *     int getPrice();
+ *     CharSequence getStock();
+ *     boolean hasFirm();
+ * }
+ *
+ * EnterOrderView view = codec.createFlyweight(EnterOrder.class, EnterOrderView.class);
+ * view.wrap(buf);
+ * int price = view.getPrice();
+ * </pre>
+ *
+ * <p>A flyweight is not thread safe and is intended to be reused by a single thread.
+ * Field values are decoded on demand, which means that a malformed field is not detected until its getter
+ * (or the getter of a subsequent field) is invoked. Such decode errors are thrown as an
+ * {@link java.io.UncheckedIOException}.
+ *
+ * @author mikael.brannstrom
+ * @see BlinkCodec#createFlyweight(Object, Class)
+ */
+public interface BlinkFlyweight {
+    /**
+     * Wrap the dynamic group at the current position of the specified buffer.
+     * The position of the buffer is advanced to the end of the group.
+     *
+     * <p>The buffer must not be modified while the flyweight is in use.
+     *
+     * @param buf the buffer to read from, not null.
+     * @throws IOException if the group could not be read, or if the group is not an instance of the group
+     * of this flyweight.
+     */
+    void wrap(ByteBuf buf) throws IOException;
+
+    /**
+     * Returns the group definition of the currently wrapped group.
+     * This is the group of this flyweight, or a sub group of it.
+     *
+     * @return the group definition, or null if nothing is wrapped.
+     */
+    GroupDef getWrappedGroup();
+}
@@ -25,10 +25,12 @@ package com.cinnober.msgcodec.blink;
 
 import com.cinnober.msgcodec.DecodeException;
 import com.cinnober.msgcodec.io.ByteSource;
+import com.cinnober.msgcodec.util.StringInternCache;
 
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 /**
  * Methods for reading primitive Blink data types.
@@ -486,6 +488,49 @@ public class BlinkInput {
         }
         return in.readStringUtf8(size);
     }
+    /**
+     * Read a unicode string, using a cache for repeated values.
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum string length (bytes) that is allowed, or -1 for no limit.
+     * @param cache the string intern cache, or null for no interning.
+     * @return the value, not null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     */
+    public static String readStringUTF8(ByteSource in, int maxLength, StringInternCache cache) throws IOException {
+        int size = readUInt32(in);
+        if (size < 0) {
+            throw new DecodeException("Cannot read string larger than " + Integer.MAX_VALUE + " bytes.");
+        }
+        if (size > maxLength && maxLength >= 0) {
+            throw new DecodeException("String length (" + size + ") exceeds limit (" + maxLength + ")");
+        }
+        return cache != null ? in.readStringUtf8(size, cache) : in.readStringUtf8(size);
+    }
+    /**
+     * Read a nullable unicode string, using a cache for repeated values.
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum string length (bytes) that is allowed, or -1 for no limit.
+     * @param cache the string intern cache, or null for no interning.
+     * @return the value, or null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     */
+    public static String readStringUTF8Null(ByteSource in, int maxLength, StringInternCache cache)
+            throws IOException {
+        Integer sizeObj = readUInt32Null(in);
+        if (sizeObj == null) {
+            return null;
+        }
+        int size = sizeObj.intValue();
+        if (size < 0) {
+            throw new DecodeException("Cannot read string larger than " + Integer.MAX_VALUE + " bytes.");
+        }
+        if (size > maxLength && maxLength >= 0) {
+            throw new DecodeException("String length (" + size + ") exceeds limit (" + maxLength + ")");
+        }
+        return cache != null ? in.readStringUtf8(size, cache) : in.readStringUtf8(size);
+    }
     /**
      * Read a binary value.
      * @param in the input stream to read from, not null.
@@ -552,6 +597,54 @@ public class BlinkInput {
         return value;
     }
 
+    /**
+     * Read a binary value as a read-only byte buffer.
+     * If the input is backed by a buffer, e.g. a ByteArrayBuf or a ByteBufferBuf, the returned
+     * byte buffer is a view of the input data, and no data is copied.
+     *
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum binary length (bytes) that is allowed, or -1 for no limit.
+     * @return the value, not null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     * @see ByteSource#readByteBuffer(int)
+     */
+    public static ByteBuffer readBinaryBuffer(ByteSource in, int maxLength) throws IOException {
+        int size = readUInt32(in);
+        if (size < 0) {
+            throw new DecodeException("Cannot read binary larger than " + Integer.MAX_VALUE + " bytes.");
+        }
+        if (size > maxLength && maxLength >= 0) {
+            throw new DecodeException("Binary length (" + size + ") exceeds limit (" + maxLength + ")");
+        }
+        return in.readByteBuffer(size);
+    }
+
+    /**
+     * Read a nullable binary value as a read-only byte buffer.
+     *
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum binary length (bytes) that is allowed, or -1 for no limit.
+     * @return the value, or null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     * @see #readBinaryBuffer(ByteSource, int)
+     */
+    public static ByteBuffer readBinaryBufferNull(ByteSource in, int maxLength) throws IOException {
+        Integer sizeObj = readUInt32Null(in);
+        if (sizeObj == null) {
+            return null;
+        }
+        int size = sizeObj.intValue();
+        if (size < 0) {
+            throw new DecodeException("Cannot read binary larger than " + Integer.MAX_VALUE + " bytes.");
+        }
+        if (size > maxLength && maxLength >= 0) {
+            throw new DecodeException("Binary length (" + size + ") exceeds limit (" + maxLength + ")");
+        }
+        return in.readByteBuffer(size);
+    }
+
     /**
      * Read a nullable signed variable-length code value.
      * @param in the input stream to read from, not null.
@@ -612,9 +705,14 @@ public class BlinkInput {
             if (size == 0) {
                 throw new DecodeException("Found null (0xc0) while parsing a non-nullable VLC integer");
             }
-            long value = 0;
-            for (int i=0; i<size; i++) {
-                value |= (0xffL & in.read()) << (i * 8);
+            long value;
+            if (size <= 8) {
+                value = in.readLongLE(size);
+            } else {
+                value = 0;
+                for (int i=0; i<size; i++) {
+                    value |= (0xffL & in.read()) << (i * 8);
+                }
             }
             if (((value >> ((size-1) * 8)) & 0x80) != 0 && // value should be negative
                 value > 0) { // but value is not already negative
@@ -729,7 +827,7 @@ public class BlinkInput {
      * @throws IOException if the input stream throws an exception.
      * @throws DecodeException if the value could not be parsed.
      */
-    private static long readUnsignedVLC(ByteSource in, int b1) throws IOException {
+    static long readUnsignedVLC(ByteSource in, int b1) throws IOException {
         if ((0x80 & b1) == 0) {
             // single byte
             return 0x7fL & b1;
@@ -743,9 +841,14 @@ public class BlinkInput {
             if (size == 0) {
                 throw new DecodeException("Found null (0xc0) while parsing a non-nullable VLC integer");
             }
-            long value = 0;
-            for (int i=0; i<size; i++) {
-                value |= (0xffL & in.read()) << (i * 8);
+            long value;
+            if (size <= 8) {
+                value = in.readLongLE(size);
+            } else {
+                value = 0;
+                for (int i=0; i<size; i++) {
+                    value |= (0xffL & in.read()) << (i * 8);
+                }
             }
             return value;
         }
@@ -27,6 +27,7 @@ import com.cinnober.msgcodec.io.ByteSink;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -499,6 +500,34 @@ public class BlinkOutput {
             out.write(value);
         }
     }
+    /**
+     * Write binary data.
+     *
+     * @param out the output stream to write to, not null.
+     * @param value the value to be written, not null. Data between position and limit will be written.
+     * The position of the value is not changed.
+     * @throws IOException if the underlying stream throws an exception
+     * @throws NullPointerException if value is null
+     */
+    public static void writeBinary(ByteSink out, ByteBuffer value) throws IOException {
+        writeUInt32(out, value.remaining());
+        out.write(value);
+    }
+    /**
+     * Write nullable binary data.
+     *
+     * @param out the output stream to write to, not null.
+     * @param value the value to be written. Data between position and limit will be written.
+     * The position of the value is not changed.
+     * @throws IOException if the underlying stream throws an exception
+     */
+    public static void writeBinaryNull(ByteSink out, ByteBuffer value) throws IOException {
+        if (value == null) {
+            writeNull(out);
+        } else {
+            writeBinary(out, value);
+        }
+    }
     /**
      * Write a signed variable-length code value.
      *
@@ -610,66 +639,32 @@ public class BlinkOutput {
     }
 
     static void writeVLC16(ByteSink out, long value) throws IOException {
-        out.write(((3-1) & 0x3f) | 0xc0);
-        out.write((int)value & 0xff);
-        out.write((int)(value >> 8) & 0xff);
+        out.writeLongLE(((3-1) & 0x3f) | 0xc0 | (value & 0xffffL) << 8, 3);
     }
 
     static void writeVLC24(ByteSink out, long value) throws IOException {
-        out.write(((4-1) & 0x3f) | 0xc0);
-        out.write((int)value & 0xff);
-        out.write((int)(value >> 8) & 0xff);
-        out.write((int)(value >> 16) & 0xff);
+        out.writeLongLE(((4-1) & 0x3f) | 0xc0 | (value & 0xffffffL) << 8, 4);
     }
 
     static void writeVLC32(ByteSink out, long value) throws IOException {
-        out.write(((5-1) & 0x3f) | 0xc0);
-        out.write((int)value & 0xff);
-        out.write((int)(value >> 8) & 0xff);
-        out.write((int)(value >> 16) & 0xff);
-        out.write((int)(value >> 24) & 0xff);
+        out.writeLongLE(((5-1) & 0x3f) | 0xc0 | (value & 0xffffffffL) << 8, 5);
     }
 
     static void writeVLC40(ByteSink out, long value) throws IOException {
-        out.write(((6-1) & 0x3f) | 0xc0);
-        out.write((int)value & 0xff);
-        out.write((int)(value >> 8) & 0xff);
-        out.write((int)(value >> 16) & 0xff);
-        out.write((int)(value >> 24) & 0xff);
-        out.write((int)(value >> 32) & 0xff);
+        out.writeLongLE(((6-1) & 0x3f) | 0xc0 | (value & 0xffffffffffL) << 8, 6);
     }
     
     static void writeVLC48(ByteSink out, long value) throws IOException {
-        out.write(((7-1) & 0x3f) | 0xc0);
-        out.write((int)value & 0xff);
-        out.write((int)(value >> 8) & 0xff);
-        out.write((int)(value >> 16) & 0xff);
-        out.write((int)(value >> 24) & 0xff);
-        out.write((int)(value >> 32) & 0xff);
-        out.write((int)(value >> 40) & 0xff);
+        out.writeLongLE(((7-1) & 0x3f) | 0xc0 | (value & 0xffffffffffffL) << 8, 7);
     }
 
     static void writeVLC56(ByteSink out, long value) throws IOException {
-        out.write(((8-1) & 0x3f) | 0xc0);
-        out.write((int)value & 0xff);
-        out.write((int)(value >> 8) & 0xff);
-        out.write((int)(value >> 16) & 0xff);
-        out.write((int)(value >> 24) & 0xff);
-        out.write((int)(value >> 32) & 0xff);
-        out.write((int)(value >> 40) & 0xff);
-        out.write((int)(value >> 48) & 0xff);
+        out.writeLongLE(((8-1) & 0x3f) | 0xc0 | value << 8, 8);
     }
 
     static void writeVLC64(ByteSink out, long value) throws IOException {
         out.write(((9-1) & 0x3f) | 0xc0);
-        out.write((int)value & 0xff);
-        out.write((int)(value >> 8) & 0xff);
-        out.write((int)(value >> 16) & 0xff);
-        out.write((int)(value >> 24) & 0xff);
-        out.write((int)(value >> 32) & 0xff);
-        out.write((int)(value >> 40) & 0xff);
-        out.write((int)(value >> 48) & 0xff);
-        out.write((int)(value >> 56) & 0xff);
+        out.writeLongLE(value);
     }
 
     /**
@@ -0,0 +1,263 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.io.ByteSink;
+import java.io.IOException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.nio.ByteBuffer;
+
+/**
+ * Methods for computing the encoded size of primitive Blink data types.
+ *
+ * <p>This class has the same methods as {@link BlinkOutput}, but instead of writing the encoded value, only the
+ * encoded size is written, using {@link ByteSink#pad(int)}. This allows the generated code for writing a group
+ * to also be used for computing the encoded size of a group, by replacing references to BlinkOutput with
+ * references to this class.
+ *
+ * <p><b>Note: internal use only!</b>
+ *
+ * @see BlinkOutput
+ * @author mikael.brannstrom
+ */
+public class BlinkSizeOutput {
+
+    private BlinkSizeOutput() {
+    }
+
+    public static void writeNull(ByteSink out) throws IOException {
+        out.pad(1);
+    }
+
+    public static void writeInt8(ByteSink out, byte value) throws IOException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeInt16(ByteSink out, short value) throws IOException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeInt32(ByteSink out, int value) throws IOException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeInt64(ByteSink out, long value) throws IOException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeUInt8(ByteSink out, byte value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(0xffL & value));
+    }
+
+    public static void writeUInt16(ByteSink out, short value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(0xffffL & value));
+    }
+
+    public static void writeUInt32(ByteSink out, int value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(0xffffffffL & value));
+    }
+
+    public static void writeUInt64(ByteSink out, long value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(value));
+    }
+
+    public static void writeInt8Null(ByteSink out, Byte value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfSignedVLC(value.byteValue()));
+    }
+
+    public static void writeInt16Null(ByteSink out, Short value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfSignedVLC(value.shortValue()));
+    }
+
+    public static void writeInt32Null(ByteSink out, Integer value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfSignedVLC(value.intValue()));
+    }
+
+    public static void writeInt64Null(ByteSink out, Long value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfSignedVLC(value.longValue()));
+    }
+
+    public static void writeUInt8Null(ByteSink out, Byte value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfUnsignedVLC(0xffL & value.byteValue()));
+    }
+
+    public static void writeUInt16Null(ByteSink out, Short value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfUnsignedVLC(0xffffL & value.shortValue()));
+    }
+
+    public static void writeUInt32Null(ByteSink out, Integer value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfUnsignedVLC(0xffffffffL & value.intValue()));
+    }
+
+    public static void writeUInt64Null(ByteSink out, Long value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfUnsignedVLC(value.longValue()));
+    }
+
+    public static void writeBigIntNull(ByteSink out, BigInteger value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeBigInt(ByteSink out, BigInteger value) throws IOException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeFloat32(ByteSink out, float value) throws IOException {
+        writeFloat64(out, value);
+    }
+
+    public static void writeFloat32Null(ByteSink out, Float value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfUnsignedVLC(Double.doubleToLongBits(value.doubleValue())));
+    }
+
+    public static void writeFloat64(ByteSink out, double value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(Double.doubleToLongBits(value)));
+    }
+
+    public static void writeFloat64Null(ByteSink out, Double value) throws IOException {
+        out.pad(value == null ? 1 : BlinkOutput.sizeOfUnsignedVLC(Double.doubleToLongBits(value.doubleValue())));
+    }
+
+    public static void writeDecimal(ByteSink out, BigDecimal value) throws IOException, NullPointerException {
+        int exp = -value.scale();
+        if (exp < -128 || exp > 127) {
+            throw new IllegalArgumentException("BigDecimal exponent out of range [-128, 127]: " + exp);
+        }
+        BigInteger bigMantissa = value.unscaledValue();
+        if(bigMantissa.bitLength() > 63) {
+            throw new IllegalArgumentException("BigDecimal unscaled value too large: " + bigMantissa);
+        }
+        out.pad(BlinkOutput.sizeOfSignedVLC(exp) + BlinkOutput.sizeOfSignedVLC(bigMantissa.longValue()));
+    }
+
+    public static void writeDecimalNull(ByteSink out, BigDecimal value) throws IOException {
+        if (value == null) {
+            writeNull(out);
+        } else {
+            writeDecimal(out, value);
+        }
+    }
+
+    public static void writeBigDecimal(ByteSink out, BigDecimal value) throws IOException, NullPointerException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(-value.scale()) + BlinkOutput.sizeOfSignedVLC(value.unscaledValue()));
+    }
+
+    public static void writeBigDecimalNull(ByteSink out, BigDecimal value) throws IOException {
+        if (value == null) {
+            writeNull(out);
+        } else {
+            writeBigDecimal(out, value);
+        }
+    }
+
+    public static void writePresenceByte(ByteSink out, boolean value) throws IOException {
+        out.pad(1);
+    }
+
+    public static void writeBoolean(ByteSink out, boolean value) throws IOException {
+        out.pad(1);
+    }
+
+    public static void writeBooleanNull(ByteSink out, Boolean value) throws IOException {
+        out.pad(1);
+    }
+
+    public static void writeStringUTF8(ByteSink out, String value) throws IOException {
+        int size = sizeOfUTF8(value);
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(size) + size);
+    }
+
+    public static void writeStringUTF8Null(ByteSink out, String value) throws IOException {
+        if (value == null) {
+            writeNull(out);
+        } else {
+            writeStringUTF8(out, value);
+        }
+    }
+
+    public static void writeBinary(ByteSink out, byte[] value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(value.length) + value.length);
+    }
+
+    public static void writeBinaryNull(ByteSink out, byte[] value) throws IOException {
+        if (value == null) {
+            writeNull(out);
+        } else {
+            writeBinary(out, value);
+        }
+    }
+
+    public static void writeBinary(ByteSink out, ByteBuffer value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(value.remaining()) + value.remaining());
+    }
+
+    public static void writeBinaryNull(ByteSink out, ByteBuffer value) throws IOException {
+        if (value == null) {
+            writeNull(out);
+        } else {
+            writeBinary(out, value);
+        }
+    }
+
+    public static void writeSignedVLC(ByteSink out, BigInteger value) throws IOException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeSignedVLC(ByteSink out, long value) throws IOException {
+        out.pad(BlinkOutput.sizeOfSignedVLC(value));
+    }
+
+    public static void writeUnsignedVLC(ByteSink out, long value) throws IOException {
+        out.pad(BlinkOutput.sizeOfUnsignedVLC(value));
+    }
+
+    /**
+     * Returns the number of bytes of the UTF-8 encoding of the specified string.
+     * Unpaired surrogates are counted as one byte, since they are replaced by '?' when encoded.
+     *
+     * @param value the string, not null.
+     * @return the number of bytes.
+     */
+    static int sizeOfUTF8(String value) {
+        int len = value.length();
+        int size = len;
+        for (int i = 0; i < len; i++) {
+            char c = value.charAt(i);
+            if (c >= 0x80) {
+                if (c < 0x800) {
+                    size += 1;
+                } else if (Character.isSurrogate(c)) {
+                    if (Character.isHighSurrogate(c) && i + 1 < len &&
+                            Character.isLowSurrogate(value.charAt(i + 1))) {
+                        size += 2; // 4 bytes for 2 chars
+                        i++;
+                    }
+                } else {
+                    size += 2;
+                }
+            }
+        }
+        return size;
+    }
+}
@@ -0,0 +1,179 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.io.ByteBuf;
+import com.cinnober.msgcodec.io.ByteSink;
+import com.cinnober.msgcodec.io.ByteSource;
+import java.io.IOException;
+import java.io.InputStream;
+import java.lang.reflect.Modifier;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import org.objectweb.asm.ClassReader;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.commons.RemappingClassAdapter;
+import org.objectweb.asm.commons.SimpleRemapper;
+import static org.objectweb.asm.Opcodes.ACC_STATIC;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.ASM5;
+import static org.objectweb.asm.Opcodes.ASTORE;
+import static org.objectweb.asm.Opcodes.CHECKCAST;
+import static org.objectweb.asm.Opcodes.INVOKEINTERFACE;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+
+/**
+ * Creates copies of a class with static read or write methods, e.g. {@link BlinkInput} and {@link BlinkOutput},
+ * that are specialized for a concrete ByteBuf class.
+ *
+ * <p>In the copy, every ByteSource and ByteSink argument is cast to the ByteBuf class on method entry,
+ * and all calls to ByteSource, ByteSink and ByteBuf methods are turned into direct calls to the ByteBuf class.
+ * The call sites will only ever see one receiver class, which lets the JIT compiler inline the calls,
+ * e.g. the array access of {@link com.cinnober.msgcodec.io.ByteArrayBuf}.
+ * The original class is shared by all ByteBuf implementations, which makes its call sites megamorphic.
+ *
+ * <p>The template class must only call ByteSource, ByteSink and ByteBuf methods on its arguments,
+ * and may only refer to public members of other classes, since the copy is defined in another package.
+ *
+ * @author mikael.brannstrom
+ */
+class ByteBufSpecializer {
+    private static final Set<String> INTERFACE_INAMES = new HashSet<>(Arrays.asList(
+        Type.getInternalName(ByteSource.class),
+        Type.getInternalName(ByteSink.class),
+        Type.getInternalName(ByteBuf.class)));
+
+    private ByteBufSpecializer() {
+    }
+
+    /**
+     * Check that the specified ByteBuf class can be specialized for.
+     *
+     * @param bufClass the ByteBuf class, not null.
+     * @param classLoader the class loader where the specialized classes will be defined, not null.
+     * @throws IllegalArgumentException if the class is not a public, concrete class visible from the class loader.
+     */
+    static void checkByteBufClass(Class<? extends ByteBuf> bufClass, ClassLoader classLoader) {
+        int modifiers = bufClass.getModifiers();
+        if (!Modifier.isPublic(modifiers) || Modifier.isAbstract(modifiers) || bufClass.isInterface()) {
+            throw new IllegalArgumentException("Not a public concrete class: " + bufClass.getName());
+        }
+        Class<?> visibleClass;
+        try {
+            visibleClass = Class.forName(bufClass.getName(), false, classLoader);
+        } catch (ClassNotFoundException e) {
+            visibleClass = null;
+        }
+        if (visibleClass != bufClass) {
+            throw new IllegalArgumentException("Class not visible from the msgcodec class loader: " +
+                bufClass.getName());
+        }
+    }
+
+    /**
+     * Returns the bytes of a copy of the template class, specialized for the specified ByteBuf class.
+     *
+     * @param templateClass the class to copy, not null.
+     * @param newInternalName the internal name of the copy, not null.
+     * @param bufClass the ByteBuf class to specialize for, not null.
+     * @return the class bytes, not null.
+     */
+    static byte[] specialize(Class<?> templateClass, String newInternalName, Class<? extends ByteBuf> bufClass) {
+        String templateInternalName = Type.getInternalName(templateClass);
+        ClassReader classReader;
+        try (InputStream in = templateClass.getResourceAsStream(
+                templateInternalName.substring(templateInternalName.lastIndexOf('/') + 1) + ".class")) {
+            if (in == null) {
+                throw new IllegalStateException("Class file not found: " + templateClass.getName());
+            }
+            classReader = new ClassReader(in);
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read class file: " + templateClass.getName(), e);
+        }
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        ClassVisitor cv = new SpecializingClassAdapter(classWriter, Type.getInternalName(bufClass));
+        cv = new RemappingClassAdapter(cv, new SimpleRemapper(templateInternalName, newInternalName));
+        classReader.accept(cv, ClassReader.SKIP_FRAMES);
+        return classWriter.toByteArray();
+    }
+
+    private static class SpecializingClassAdapter extends ClassVisitor {
+        private final String bufInternalName;
+
+        SpecializingClassAdapter(ClassVisitor cv, String bufInternalName) {
+            super(ASM5, cv);
+            this.bufInternalName = bufInternalName;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                String[] exceptions) {
+            MethodVisitor mv = super.visitMethod(access, name, desc, signature, exceptions);
+            if (name.equals("<init>") || name.equals("<clinit>")) {
+                return mv;
+            }
+            return new SpecializingMethodAdapter(mv, bufInternalName, (access & ACC_STATIC) != 0, desc);
+        }
+    }
+
+    private static class SpecializingMethodAdapter extends MethodVisitor {
+        private final String bufInternalName;
+        private final boolean isStatic;
+        private final String desc;
+
+        SpecializingMethodAdapter(MethodVisitor mv, String bufInternalName, boolean isStatic, String desc) {
+            super(ASM5, mv);
+            this.bufInternalName = bufInternalName;
+            this.isStatic = isStatic;
+            this.desc = desc;
+        }
+
+        @Override
+        public void visitCode() {
+            super.visitCode();
+            int var = isStatic ? 0 : 1;
+            for (Type argType : Type.getArgumentTypes(desc)) {
+                if (argType.getSort() == Type.OBJECT && INTERFACE_INAMES.contains(argType.getInternalName())) {
+                    super.visitVarInsn(ALOAD, var);
+                    super.visitTypeInsn(CHECKCAST, bufInternalName);
+                    super.visitVarInsn(ASTORE, var);
+                }
+                var += argType.getSize();
+            }
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            if (opcode == INVOKEINTERFACE && INTERFACE_INAMES.contains(owner)) {
+                super.visitMethodInsn(INVOKEVIRTUAL, bufInternalName, name, desc, false);
+            } else {
+                super.visitMethodInsn(opcode, owner, name, desc, itf);
+            }
+        }
+    }
+}
@@ -23,14 +23,331 @@
  */
 package com.cinnober.msgcodec.blink;
 
+import com.cinnober.msgcodec.FieldDef;
+import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.TypeDef;
+import com.cinnober.msgcodec.io.ByteArrays;
+import org.objectweb.asm.ClassVisitor;
+import org.objectweb.asm.ClassWriter;
+import org.objectweb.asm.MethodVisitor;
+import org.objectweb.asm.Type;
+import org.objectweb.asm.util.CheckClassAdapter;
+import org.objectweb.asm.util.TraceClassVisitor;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Level;
+
+import static org.objectweb.asm.Opcodes.ACC_PUBLIC;
+import static org.objectweb.asm.Opcodes.ASM5;
+import static org.objectweb.asm.Opcodes.ALOAD;
+import static org.objectweb.asm.Opcodes.INVOKESPECIAL;
+import static org.objectweb.asm.Opcodes.INVOKEVIRTUAL;
+import static org.objectweb.asm.Opcodes.IRETURN;
+import static org.objectweb.asm.Opcodes.RETURN;
+import static org.objectweb.asm.Opcodes.V1_7;
+
 /**
  *
  * @author mikael.brannstrom
  */
 class CompactByteCodeGenerator extends BaseByteCodeGenerator {
 
+    private static final String GENERATED_FLYWEIGHT_CLASS_INAME = "com/cinnober/msgcodec/blink/GeneratedBlinkFlyweight";
+    private static final String GENERATED_FLYWEIGHT_CLASS_NAME = "com.cinnober.msgcodec.blink.GeneratedBlinkFlyweight";
+    private static final String FLYWEIGHT_BASECLASS_INAME = Type.getInternalName(GeneratedCompactFlyweight.class);
+    private static final String BLINK_SIZE_OUTPUT_INAME = Type.getInternalName(BlinkSizeOutput.class);
+
     public CompactByteCodeGenerator() {
         super(GeneratedCompactCodec.class, BlinkCodec.class, BlinkInput.class, BlinkOutput.class);
     }
 
+    /**
+     * Create a generator for codecs that call specialized copies of BlinkInput and BlinkOutput.
+     *
+     * @param blinkInputIName the internal name of the BlinkInput copy, not null.
+     * @param blinkOutputIName the internal name of the BlinkOutput copy, not null.
+     * @see ByteBufSpecializer
+     */
+    public CompactByteCodeGenerator(String blinkInputIName, String blinkOutputIName) {
+        super(GeneratedCompactCodec.class, BlinkCodec.class, blinkInputIName, blinkOutputIName);
+    }
+
+    /**
+     * Generates the size methods of the compact codec.
+     *
+     * <p>The size methods are generated by the same code as the write methods, but with all calls to BlinkOutput
+     * replaced with calls to {@link BlinkSizeOutput}, and all write methods renamed to size methods:
+     * <pre>
+     * void sizeOfStaticGroupWithId(ByteSink, Object); // switch on group type
+     * ...
+     * void sizeOfStaticGroupWithId_MessageType1(ByteSink, MessageType1);
+     * ...
+     * void sizeOfStaticGroup_MessageType1(ByteSink, MessageType1);
+     * ...
+     * </pre>
+     */
+    @Override
+    protected void generateAdditionalMethods(Schema schema, ClassVisitor cv, String genClassInternalName,
+            boolean javaClassCodec) {
+        ClassVisitor sizecv = new SizeOfClassAdapter(cv, genClassInternalName);
+        generateWriteStaticGroup(schema, sizecv, genClassInternalName, javaClassCodec);
+        generateWriteStaticGroupForTypeWithId(schema, sizecv, genClassInternalName, javaClassCodec);
+        generateWriteStaticGroupForType(schema, sizecv, genClassInternalName, javaClassCodec);
+    }
+
+    public String getGeneratedFlyweightClassName(int suffix) {
+        return GENERATED_FLYWEIGHT_CLASS_NAME + suffix;
+    }
+
+    /**
+     * Generates a flyweight class for the specified group, that implements the specified flyweight interface.
+     *
+     * <p>Generated layout:
+     * <pre>
+     * public class GeneratedBlinkFlyweightN extends GeneratedCompactFlyweight implements FlyweightType {
+     *     public GeneratedBlinkFlyweightN(BlinkCodec codec, GroupDef group) { super(codec, group); }
+     *     public int getPrice() { return getInt32(4); } // field index 4
+     *     public boolean hasFirm() { return isPresent(6); }
+     *     ...
+     * }
+     * </pre>
+     *
+     * @param schema the schema, not null.
+     * @param group the group of the flyweight, not null.
+     * @param flyweightType the flyweight interface to implement, not null.
+     * @param suffix the class name suffix.
+     * @return the class bytes, not null.
+     * @throws IllegalArgumentException if the flyweight interface is not valid for the group.
+     */
+    public byte[] generateFlyweightClass(Schema schema, GroupDef group, Class<?> flyweightType, int suffix)
+            throws IllegalArgumentException {
+        if (!flyweightType.isInterface() || !BlinkFlyweight.class.isAssignableFrom(flyweightType)) {
+            throw new IllegalArgumentException("Flyweight type must be an interface extending BlinkFlyweight: " +
+                    flyweightType.getName());
+        }
+        if (!Modifier.isPublic(flyweightType.getModifiers())) {
+            throw new IllegalArgumentException("Flyweight type must be public: " + flyweightType.getName());
+        }
+
+        ClassWriter classWriter = new ClassWriter(ClassWriter.COMPUTE_FRAMES);
+        ClassVisitor cv = classWriter;
+        StringWriter traceString = null;
+        if (log.isLoggable(Level.FINER)) {
+            traceString = new StringWriter();
+            cv = new TraceClassVisitor(cv, new PrintWriter(traceString));
+        }
+        cv = new CheckClassAdapter(cv);
+        generateFlyweight(cv, schema, group, flyweightType, suffix);
+        byte[] bytes = classWriter.toByteArray();
+
+        if (log.isLoggable(Level.FINE)) {
+            log.log(Level.FINE, "Generated flyweight class " + GENERATED_FLYWEIGHT_CLASS_INAME + suffix +
+                    " for group " + group.getName() + " and schema UID: " + schema.getUID());
+            if (log.isLoggable(Level.FINER)) {
+                log.finer("Generated code (#"+suffix+"):\n" + traceString.toString());
+            }
+            if (log.isLoggable(Level.FINEST)) {
+                log.finest("Generated bytecode (#"+suffix+"):\n" + ByteArrays.toHex(bytes, 0, bytes.length, 1, 8, 32));
+            }
+        }
+        return bytes;
+    }
+
+    private void generateFlyweight(ClassVisitor cv, Schema schema, GroupDef group, Class<?> flyweightType,
+            int suffix) {
+        String genClassInternalName = GENERATED_FLYWEIGHT_CLASS_INAME + suffix;
+        cv.visit(V1_7, ACC_PUBLIC, genClassInternalName, null, FLYWEIGHT_BASECLASS_INAME,
+                new String[] { Type.getInternalName(flyweightType) });
+
+        // constructor
+        MethodVisitor ctormv = cv.visitMethod(ACC_PUBLIC, "<init>",
+                "(Lcom/cinnober/msgcodec/blink/BlinkCodec;Lcom/cinnober/msgcodec/GroupDef;)V", null, null);
+        ctormv.visitCode();
+        ctormv.visitVarInsn(ALOAD, 0);
+        ctormv.visitVarInsn(ALOAD, 1);
+        ctormv.visitVarInsn(ALOAD, 2);
+        ctormv.visitMethodInsn(INVOKESPECIAL, FLYWEIGHT_BASECLASS_INAME, "<init>",
+                "(Lcom/cinnober/msgcodec/blink/BlinkCodec;Lcom/cinnober/msgcodec/GroupDef;)V", false);
+        ctormv.visitInsn(RETURN);
+        ctormv.visitMaxs(3, 3);
+        ctormv.visitEnd();
+
+        // getters
+        List<FieldDef> fields = GeneratedCompactFlyweight.getAllFields(schema, group);
+        Map<String, Integer> fieldIndexByName = new HashMap<>();
+        for (int i = 0; i < fields.size(); i++) {
+            fieldIndexByName.put(fields.get(i).getName(), i);
+        }
+        for (Method method : flyweightType.getMethods()) {
+            if (method.getDeclaringClass() == BlinkFlyweight.class || method.isDefault() ||
+                    Modifier.isStatic(method.getModifiers())) {
+                continue;
+            }
+            generateFlyweightGetter(cv, schema, group, fields, fieldIndexByName, method);
+        }
+
+        cv.visitEnd();
+    }
+
+    private void generateFlyweightGetter(ClassVisitor cv, Schema schema, GroupDef group, List<FieldDef> fields,
+            Map<String, Integer> fieldIndexByName, Method method) {
+        if (method.getParameterCount() != 0) {
+            throw new IllegalArgumentException("Flyweight getter cannot have parameters: " + method);
+        }
+        String methodName = method.getName();
+        Class<?> returnType = method.getReturnType();
+        boolean presence = false;
+        String fieldName;
+        if (methodName.startsWith("get") && methodName.length() > 3) {
+            fieldName = methodName.substring(3);
+        } else if (methodName.startsWith("is") && methodName.length() > 2 && returnType == boolean.class) {
+            fieldName = methodName.substring(2);
+        } else if (methodName.startsWith("has") && methodName.length() > 3 && returnType == boolean.class) {
+            fieldName = methodName.substring(3);
+            presence = true;
+        } else {
+            throw new IllegalArgumentException("Not a flyweight getter: " + method);
+        }
+        Integer fieldIndex = fieldIndexByName.get(Character.toLowerCase(fieldName.charAt(0)) + fieldName.substring(1));
+        if (fieldIndex == null) {
+            fieldIndex = fieldIndexByName.get(fieldName);
+        }
+        if (fieldIndex == null) {
+            throw new IllegalArgumentException("No field in group " + group.getName() + " for getter " + method);
+        }
+        FieldDef field = fields.get(fieldIndex);
+
+        String getterName = presence ? "isPresent" : getFlyweightGetterName(schema, field, returnType);
+        if (getterName == null) {
+            throw new IllegalArgumentException("Unsupported return type for field " + field.getName() + " (" +
+                    field.getType() + ") in group " + group.getName() + ": " + method);
+        }
+
+        Type returnAsmType = Type.getType(returnType);
+        MethodVisitor mv = cv.visitMethod(ACC_PUBLIC, methodName, Type.getMethodDescriptor(method), null, null);
+        mv.visitCode();
+        mv.visitVarInsn(ALOAD, 0);
+        mv.visitLdcInsn(fieldIndex);
+        mv.visitMethodInsn(INVOKEVIRTUAL, FLYWEIGHT_BASECLASS_INAME, getterName,
+                "(I)" + returnAsmType.getDescriptor(), false);
+        mv.visitInsn(returnAsmType.getOpcode(IRETURN));
+        mv.visitMaxs(2, 1);
+        mv.visitEnd();
+    }
+
+    /**
+     * Returns the name of the getter in GeneratedCompactFlyweight to use for the specified field and java type.
+     *
+     * @param schema the schema, not null.
+     * @param field the field, not null.
+     * @param javaClass the return type of the flyweight getter, not null.
+     * @return the getter name, or null if the combination is not supported.
+     */
+    private static String getFlyweightGetterName(Schema schema, FieldDef field, Class<?> javaClass) {
+        TypeDef type = schema.resolveToType(field.getType(), false);
+        switch (type.getType()) {
+            case INT8:
+                return javaClass == byte.class ? "getInt8" : null;
+            case UINT8:
+                return javaClass == byte.class ? "getUInt8" : null;
+            case INT16:
+                return javaClass == short.class ? "getInt16" : null;
+            case UINT16:
+                return javaClass == short.class ? "getUInt16" : null;
+            case CHAR:
+                return javaClass == char.class ? "getChar" : null;
+            case INT32:
+            case ENUM:
+                return javaClass == int.class ? "getInt32" : null;
+            case UINT32:
+                return javaClass == int.class ? "getUInt32" : null;
+            case INT64:
+                return javaClass == long.class ? "getInt64" : null;
+            case UINT64:
+                return javaClass == long.class ? "getUInt64" : null;
+            case FLOAT32:
+                return javaClass == float.class ? "getFloat32" : null;
+            case FLOAT64:
+                return javaClass == double.class ? "getFloat64" : null;
+            case BOOLEAN:
+                return javaClass == boolean.class ? "getBoolean" : null;
+            case TIME:
+                return javaClass == long.class ? "getInt64" : javaClass == int.class ? "getInt32" : null;
+            case STRING:
+                return javaClass == CharSequence.class ? "getString" : null;
+            default:
+                return null;
+        }
+    }
+
+    /**
+     * Renames write methods into size methods.
+     *
+     * @param name the method name, not null.
+     * @return the name of the corresponding size method, or null if not a write method.
+     */
+    private static String toSizeOfMethodName(String name) {
+        if (name.startsWith("writeStaticGroup")) {
+            return "sizeOfStaticGroup" + name.substring("writeStaticGroup".length());
+        } else if (name.startsWith("writeDynamicGroup")) {
+            return "sizeOfDynamicGroup" + name.substring("writeDynamicGroup".length());
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Class adapter that turns the generated write methods into size methods.
+     */
+    private class SizeOfClassAdapter extends ClassVisitor {
+        private final String genClassInternalName;
+
+        SizeOfClassAdapter(ClassVisitor cv, String genClassInternalName) {
+            super(ASM5, cv);
+            this.genClassInternalName = genClassInternalName;
+        }
+
+        @Override
+        public MethodVisitor visitMethod(int access, String name, String desc, String signature,
+                String[] exceptions) {
+            String sizeOfName = toSizeOfMethodName(name);
+            if (sizeOfName == null) {
+                throw new IllegalArgumentException("Not a write method: " + name);
+            }
+            return new SizeOfMethodAdapter(super.visitMethod(access, sizeOfName, desc, signature, exceptions),
+                    genClassInternalName);
+        }
+    }
+
+    /**
+     * Method adapter that redirects all calls to write methods to the corresponding size methods.
+     */
+    private class SizeOfMethodAdapter extends MethodVisitor {
+        private final String genClassInternalName;
+
+        SizeOfMethodAdapter(MethodVisitor mv, String genClassInternalName) {
+            super(ASM5, mv);
+            this.genClassInternalName = genClassInternalName;
+        }
+
+        @Override
+        public void visitMethodInsn(int opcode, String owner, String name, String desc, boolean itf) {
+            if (owner.equals(blinkOutputIName)) {
+                owner = BLINK_SIZE_OUTPUT_INAME;
+            } else if (owner.equals(genClassInternalName) || owner.equals(baseclassIName)) {
+                String sizeOfName = toSizeOfMethodName(name);
+                if (sizeOfName != null) {
+                    name = sizeOfName;
+                }
+            }
+            super.visitMethodInsn(opcode, owner, name, desc, itf);
+        }
+    }
 }
@@ -0,0 +1,101 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.io.ByteSource;
+import java.io.IOException;
+
+/**
+ * Reusable char sequence for string values read by a flyweight.
+ *
+ * <p>ASCII strings are decoded into an internal char array that is reused.
+ * Strings with other characters are decoded into a String.
+ *
+ * @author mikael.brannstrom
+ */
+class FlyweightCharSequence implements CharSequence {
+    private char[] chars = new char[32];
+    private byte[] bytes;
+    private int length;
+    private String string;
+
+    /**
+     * Read an UTF-8 encoded string into this char sequence.
+     *
+     * @param in the source to read from, not null.
+     * @param size the number of bytes to read.
+     * @throws IOException if the source throws an exception.
+     */
+    void readUtf8(ByteSource in, int size) throws IOException {
+        if (chars.length < size) {
+            chars = new char[Math.max(size, chars.length * 2)];
+        }
+        string = null;
+        for (int i = 0; i < size; i++) {
+            int b = in.read();
+            if (b >= 0x80) {
+                decodeNonAscii(in, i, b, size);
+                return;
+            }
+            chars[i] = (char) b;
+        }
+        length = size;
+    }
+
+    private void decodeNonAscii(ByteSource in, int pos, int b, int size) throws IOException {
+        if (bytes == null || bytes.length < size) {
+            bytes = new byte[Math.max(size, chars.length)];
+        }
+        for (int i = 0; i < pos; i++) {
+            bytes[i] = (byte) chars[i];
+        }
+        bytes[pos] = (byte) b;
+        in.read(bytes, pos + 1, size - pos - 1);
+        string = new String(bytes, 0, size, ByteSource.UTF8);
+        length = string.length();
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(int index) {
+        if (index < 0 || index >= length) {
+            throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+        }
+        return string != null ? string.charAt(index) : chars[index];
+    }
+
+    @Override
+    public CharSequence subSequence(int start, int end) {
+        return toString().subSequence(start, end);
+    }
+
+    @Override
+    public String toString() {
+        return string != null ? string : new String(chars, 0, length);
+    }
+}
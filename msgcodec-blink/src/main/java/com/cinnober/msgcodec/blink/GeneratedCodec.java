@@ -27,6 +27,8 @@ package com.cinnober.msgcodec.blink;
 import com.cinnober.msgcodec.io.ByteSink;
 import com.cinnober.msgcodec.io.ByteSource;
 import com.cinnober.msgcodec.DecodeException;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.util.StringInternCache;
 import java.io.IOException;
 
 /**
@@ -47,15 +49,28 @@ import java.io.IOException;
 public abstract class GeneratedCodec {
 
     protected final int maxBinarySize;
+    protected final StringInternCache stringInternCache;
+    private final GroupTypeIndex groupTypeIndex;
 
-    protected GeneratedCodec(int maxBinarySize) {
+    /**
+     * Constructor.
+     *
+     * @param maxBinarySize the maximum binary size allowed while decoding, or -1 for no limit.
+     * @param stringInternCache the cache used for interned strings, or null.
+     * @param schema the schema the codec was generated for, not null.
+     * @param lookupSchema the schema used to look up group types that are not in the generated schema, not null.
+     * Same as <code>schema</code>, unless the codec is generated for a part of a schema.
+     */
+    protected GeneratedCodec(int maxBinarySize, StringInternCache stringInternCache, Schema schema,
+            Schema lookupSchema) {
         this.maxBinarySize = maxBinarySize;
+        this.stringInternCache = stringInternCache;
+        this.groupTypeIndex = new GroupTypeIndex(schema, lookupSchema);
     }
     
     /**
      * Write a static group and its group id.
-     * Method to be generated in a sub class using <b>switch</b> construct
-     * (similar to what is generated for a switch on String) based on the group type.
+     * Method to be generated in a sub class using <b>switch</b> based on {@link #getGroupTypeIndex(Object)}.
      * 
      * @param out where to write to, not null
      * @param group the group to write, not null.
@@ -77,6 +92,23 @@ public abstract class GeneratedCodec {
      */
     protected abstract Object readStaticGroup(int groupId, ByteSource in) throws IOException, DecodeException;
 
+    /**
+     * Read a static group into an existing group instance.
+     * Method to be generated in a sub class using <b>switch</b> based on group id.
+     *
+     * <p>All fields of the group are assigned, which means that no previous state of the instance is retained,
+     * except for nested groups and sequences which are replaced by new instances.
+     *
+     * @param groupId the group id
+     * @param in where to read from, not null.
+     * @param group the group instance to read into, not null. Must be an instance of the group type of the
+     * group id.
+     * @throws IOException if the underlying stream throws an exception.
+     * @throws DecodeException if the group could not be decoded.
+     */
+    protected abstract void readStaticGroup(int groupId, ByteSource in, Object group)
+            throws IOException, DecodeException;
+
     /**
      * Write a dynamic group to the specified output stream.
      * @param out where to write to, not null.
@@ -109,10 +141,48 @@ public abstract class GeneratedCodec {
      */
     public abstract Object readDynamicGroupNull(ByteSource in) throws IOException;
 
+    /**
+     * Read a dynamic group into an existing group instance.
+     * @param in the stream to read from.
+     * @param group the group instance to read into, not null.
+     * @throws IOException if the underlying stream throws an exception.
+     * @throws DecodeException if the group read is not of the same group type as the instance.
+     */
+    public abstract void readDynamicGroup(ByteSource in, Object group) throws IOException;
+
+    /**
+     * Read a nullable dynamic group into an existing group instance.
+     * @param in the stream to read from.
+     * @param group the group instance to read into, not null.
+     * @return true if the group was read, or false if the dynamic group was null.
+     * @throws IOException if the underlying stream throws an exception.
+     * @throws DecodeException if the group read is not of the same group type as the instance.
+     */
+    public abstract boolean readDynamicGroupNull(ByteSource in, Object group) throws IOException;
+
+    /**
+     * Returns the index of the group definition of the specified group in {@link Schema#getGroups()}.
+     *
+     * @param group the group, not null.
+     * @return the index of the group definition.
+     * @throws IllegalArgumentException if the group type is not part of the schema.
+     */
+    protected final int getGroupTypeIndex(Object group) throws IllegalArgumentException {
+        return groupTypeIndex.indexOf(group);
+    }
+
     protected int getMaxBinarySize() {
         return maxBinarySize;
     }
 
+    /**
+     * Returns the cache used for decoding interned string fields.
+     * @return the string intern cache, or null if strings should not be interned.
+     */
+    protected StringInternCache getStringInternCache() {
+        return stringInternCache;
+    }
+
     // --- UTILITY METHODS FOR CREATING EXCEPTIONS ---
 
     /**
@@ -175,6 +245,17 @@ public abstract class GeneratedCodec {
         return new IllegalArgumentException("Unknown group type: " + groupType);
     }
 
+    /**
+     * Create a decode exception when the group read does not match the group type of the instance to read into.
+     *
+     * @param groupId the group id read.
+     * @param expectedGroupId the group id of the instance.
+     * @return the exception to be thrown.
+     */
+    protected static DecodeException unexpectedGroupId(int groupId, int expectedGroupId) {
+        return new DecodeException("Unexpected group id: " + groupId + ", expected group id: " + expectedGroupId);
+    }
+
     /**
      * Create a decode exception when an unknown group id is read.
      *
@@ -21,18 +21,93 @@
  * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
  * SOFTWARE.
  */
-
 package com.cinnober.msgcodec.blink;
 
+import com.cinnober.msgcodec.GroupDef;
 import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.io.ByteBuf;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
 import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiFunction;
+import java.util.function.Supplier;
+import java.util.logging.Level;
+import java.util.logging.Logger;
 
 /**
+ * Generates and loads the codec and flyweight classes of schemas.
+ *
+ * <p>The generated classes of a schema are defined in a class loader of their own, a {@link SchemaClassLoader}.
+ * The classes are cached by a fingerprint of the schema, which means that structurally identical schemas
+ * share the same classes. The cache only holds weak references to the class loaders,
+ * so the classes can be unloaded when all codecs of the schema are gone.
+ *
+ * <p>Classes are generated concurrently, also for the same schema. Threads asking for the same class wait for
+ * the thread that generates it. The lock of this object is only held while looking up the class loader
+ * of a schema.
+ *
+ * <p>If the message classes have package-private fields or constructors, and the JVM supports
+ * <code>MethodHandles.Lookup.defineClass</code> (Java 9 and later), the codec classes are instead defined in the
+ * package of the message classes, so that the fields can be accessed directly instead of through accessors.
+ * Such classes are defined by the class loader of the message classes, and are only unloaded together with it.
+ * They are therefore cached strongly by the message class and the schema fingerprint, instead of in a
+ * SchemaClassLoader, so that they are not generated again when the SchemaClassLoader has been collected.
  *
  * @author mikael.brannstrom
  */
-class GeneratedCodecClassLoader extends ClassLoader {
+class GeneratedCodecClassLoader {
+    private static final Logger log = Logger.getLogger(GeneratedCodecClassLoader.class.getName());
+    private static final String SPECIALIZED_CLASS_PACKAGE_NAME = "com.cinnober.msgcodec.blink";
+    private static final String SPECIALIZED_INPUT_CLASS_SIMPLE_NAME = "GeneratedBlinkInput";
+    private static final String SPECIALIZED_OUTPUT_CLASS_SIMPLE_NAME = "GeneratedBlinkOutput";
+    private static final String CODEC_KEY = "codec";
+    private static final String NATIVE_CODEC_KEY = "native";
+    private static final String GROUP_CODEC_KEY = "group";
+    private static final String FLYWEIGHT_KEY = "flyweight";
+    private static final String GENERATOR_KEY = "generator";
     private static final GeneratedCodecClassLoader instance = new GeneratedCodecClassLoader();
+    /** MethodHandles.privateLookupIn(Class, Lookup), or null if not supported (Java 8). */
+    private static final Method privateLookupInMethod;
+    /** MethodHandles.Lookup.defineClass(byte[]), or null if not supported (Java 8). */
+    private static final Method lookupDefineClassMethod;
+    static {
+        Method privateLookupIn = null;
+        Method lookupDefineClass = null;
+        try {
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn",
+                    Class.class, MethodHandles.Lookup.class);
+            lookupDefineClass = MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+        } catch (NoSuchMethodException e) {
+            log.log(Level.FINE, "MethodHandles.Lookup.defineClass is not supported, "
+                    + "package-private fields are accessed through accessors");
+        }
+        privateLookupInMethod = lookupDefineClass != null ? privateLookupIn : null;
+        lookupDefineClassMethod = lookupDefineClass;
+    }
+
+    /**
+     * Classes defined in the package of a message class, by key, see {@link #getPackageAccessHost(Schema)}.
+     * The classes belong to the class loader of the message class, so they are held strongly by the message class.
+     * A weak cache would define a new class each time the cache is cleared, without the old one being unloaded.
+     */
+    private static final ClassValue<ConcurrentMap<Object, CompletableFuture<Object>>> packageClasses =
+        new ClassValue<ConcurrentMap<Object, CompletableFuture<Object>>>() {
+            @Override
+            protected ConcurrentMap<Object, CompletableFuture<Object>> computeValue(Class<?> type) {
+                return new ConcurrentHashMap<>();
+            }
+        };
 
     public static GeneratedCodecClassLoader getInstance() {
         return instance;
@@ -40,54 +115,421 @@ class GeneratedCodecClassLoader extends ClassLoader {
 
     private final CompactByteCodeGenerator compactCodeGenerator;
     private final NativeByteCodeGenerator nativeCodeGenerator;
-    private final WeakHashMap<Object, Class<GeneratedCompactCodec>> codecClassesBySchemaUID = new WeakHashMap<>();
-    private final WeakHashMap<Object, Class<GeneratedNativeCodec>> nativeCodecClassesBySchemaUID = new WeakHashMap<>();
-    private int nextClassSuffix = 0;
-    
+    /** Class loaders by schema UID, to avoid computing the fingerprint of a schema instance seen before. */
+    private final WeakHashMap<Object, WeakReference<SchemaClassLoader>> classLoadersBySchemaUID = new WeakHashMap<>();
+    /** Class loaders by parent class loader and schema fingerprint. */
+    private final WeakHashMap<ClassLoader, Map<String, WeakReference<SchemaClassLoader>>>
+        classLoadersByFingerprint = new WeakHashMap<>();
+    private final AtomicInteger nextClassSuffix = new AtomicInteger();
+
     private GeneratedCodecClassLoader() {
-        super(GeneratedCodecClassLoader.class.getClassLoader());
         compactCodeGenerator = new CompactByteCodeGenerator();
         nativeCodeGenerator = new NativeByteCodeGenerator();
     }
 
     public Class<GeneratedCompactCodec> getGeneratedCodecClass(Schema schema) {
+        SchemaClassLoader classLoader = getSchemaClassLoader(schema);
+        return classLoader.computeIfAbsent(CODEC_KEY, () -> {
+            Class<GeneratedCompactCodec> codecClass = findPrecompiledCodecClass(schema,
+                    BlinkCodecPrecompiler.getCodecClassName(classLoader.fingerprint),
+                    GeneratedCompactCodec.class, getMessageClassLoader(schema));
+            return codecClass != null ? codecClass : generateCodecClass(classLoader, schema, CODEC_KEY);
+        });
+    }
+
+    /**
+     * Returns a codec class where all reading and writing is specialized for the specified ByteBuf class.
+     * The codec class must only be used with byte sources and sinks of the specified class.
+     *
+     * @param schema the schema, not null.
+     * @param bufClass the ByteBuf class, not null.
+     * @return the codec class, not null.
+     * @see ByteBufSpecializer
+     */
+    public Class<GeneratedCompactCodec> getSpecializedCodecClass(Schema schema, Class<? extends ByteBuf> bufClass) {
+        SchemaClassLoader classLoader = getSchemaClassLoader(schema);
+        return classLoader.computeIfAbsent(Arrays.asList(CODEC_KEY, bufClass),
+                () -> generateSpecializedCodecClass(classLoader, schema, bufClass));
+    }
+
+    /**
+     * Returns a codec class for a single group of the schema, used by {@link LazyCompactCodec}.
+     * The class is generated for the group schema, and cached by the group name in the class loader of the schema.
+     *
+     * @param schema the schema, not null.
+     * @param group the group, not null.
+     * @param groupSchema the part of the schema needed by the group, not null.
+     * @return the codec class, not null.
+     * @see LazyCompactCodec#getGroupSchema(Schema, GroupDef)
+     */
+    public Class<GeneratedCompactCodec> getGeneratedGroupCodecClass(Schema schema, GroupDef group,
+            Schema groupSchema) {
+        SchemaClassLoader classLoader = getSchemaClassLoader(schema);
+        Object key = Arrays.asList(GROUP_CODEC_KEY, group.getName());
+        return classLoader.computeIfAbsent(key, () -> generateCodecClass(classLoader, groupSchema, key));
+    }
+
+    public Class<GeneratedNativeCodec> getGeneratedNativeCodecClass(Schema schema) {
+        SchemaClassLoader classLoader = getSchemaClassLoader(schema);
+        return classLoader.computeIfAbsent(NATIVE_CODEC_KEY, () -> {
+            Class<GeneratedNativeCodec> codecClass = findPrecompiledCodecClass(schema,
+                    BlinkCodecPrecompiler.getNativeCodecClassName(classLoader.fingerprint),
+                    GeneratedNativeCodec.class, getMessageClassLoader(schema));
+            return codecClass != null ? codecClass : generateNativeCodecClass(classLoader, schema, NATIVE_CODEC_KEY);
+        });
+    }
+
+    public Class<GeneratedCompactFlyweight> getGeneratedFlyweightClass(Schema schema, GroupDef group,
+            Class<?> flyweightType) {
+        SchemaClassLoader classLoader = getSchemaClassLoader(schema);
+        return classLoader.computeIfAbsent(Arrays.asList(FLYWEIGHT_KEY, group.getName(), flyweightType),
+                () -> generateFlyweightClass(classLoader, schema, group, flyweightType));
+    }
+
+    /**
+     * Returns the class loader of the generated classes of the schema.
+     * The lock of this object is only held while the caches are accessed.
+     *
+     * @param schema the schema, not null.
+     * @return the class loader, not null.
+     */
+    private SchemaClassLoader getSchemaClassLoader(Schema schema) {
+        Object uid = schema.getUID();
         synchronized (this) {
-            final Object uid = schema.getUID();
-            Class<GeneratedCompactCodec> codecClass = codecClassesBySchemaUID.get(uid);
-            if (codecClass == null && !codecClassesBySchemaUID.containsKey(uid)) {
-                codecClass = generateCodecClass(schema, nextClassSuffix++);
-                codecClassesBySchemaUID.put(uid, codecClass);
+            WeakReference<SchemaClassLoader> ref = classLoadersBySchemaUID.get(uid);
+            SchemaClassLoader classLoader = ref != null ? ref.get() : null;
+            if (classLoader != null) {
+                return classLoader;
             }
-            return codecClass;
         }
-    }
 
-    public Class<GeneratedNativeCodec> getGeneratedNativeCodecClass(Schema schema) {
+        String fingerprint = SchemaFingerprint.of(schema);
+        ClassLoader parent = getParentClassLoader(schema);
         synchronized (this) {
-            final Object uid = schema.getUID();
-            Class<GeneratedNativeCodec> codecClass = nativeCodecClassesBySchemaUID.get(uid);
-            if (codecClass == null && !nativeCodecClassesBySchemaUID.containsKey(uid)) {
-                codecClass = generateNativeCodecClass(schema, nextClassSuffix++);
-                nativeCodecClassesBySchemaUID.put(uid, codecClass);
+            return getSchemaClassLoader(uid, fingerprint, parent);
+        }
+    }
+
+    private SchemaClassLoader getSchemaClassLoader(Object uid, String fingerprint, ClassLoader parent) {
+        Map<String, WeakReference<SchemaClassLoader>> classLoaders = classLoadersByFingerprint.get(parent);
+        if (classLoaders == null) {
+            classLoaders = new HashMap<>();
+            classLoadersByFingerprint.put(parent, classLoaders);
+        }
+        WeakReference<SchemaClassLoader> ref = classLoaders.get(fingerprint);
+        SchemaClassLoader classLoader = ref != null ? ref.get() : null;
+        if (classLoader == null) {
+            removeClearedReferences(classLoaders);
+            classLoader = new SchemaClassLoader(parent, fingerprint);
+            ref = new WeakReference<>(classLoader);
+            classLoaders.put(fingerprint, ref);
+        }
+        classLoadersBySchemaUID.put(uid, ref);
+        return classLoader;
+    }
+
+    private static void removeClearedReferences(Map<String, WeakReference<SchemaClassLoader>> classLoaders) {
+        for (Iterator<WeakReference<SchemaClassLoader>> it = classLoaders.values().iterator(); it.hasNext();) {
+            if (it.next().get() == null) {
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Returns the parent class loader of the generated classes of the schema.
+     * This is the class loader of the message classes, if the msgcodec classes are visible from it,
+     * otherwise the msgcodec class loader.
+     */
+    private ClassLoader getParentClassLoader(Schema schema) {
+        ClassLoader messageClassLoader = getMessageClassLoader(schema);
+        try {
+            if (Class.forName(GeneratedCodec.class.getName(), false, messageClassLoader) == GeneratedCodec.class) {
+                return messageClassLoader;
+            }
+        } catch (ClassNotFoundException e) {
+            // not visible
+        }
+        return GeneratedCodecClassLoader.class.getClassLoader();
+    }
+
+    /**
+     * Returns the class loader where precompiled codec classes for the schema are looked for,
+     * i.e. the class loader of the message classes.
+     */
+    private ClassLoader getMessageClassLoader(Schema schema) {
+        for (GroupDef group : schema.getGroups()) {
+            if (group.getGroupType() instanceof Class) {
+                ClassLoader classLoader = ((Class<?>) group.getGroupType()).getClassLoader();
+                if (classLoader != null) {
+                    return classLoader;
+                }
             }
-            return codecClass;
         }
+        ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+        return classLoader != null ? classLoader : GeneratedCodecClassLoader.class.getClassLoader();
+    }
+
+    /**
+     * Returns a precompiled codec class, generated by {@link BlinkCodecPrecompiler}.
+     *
+     * @param schema the schema, not null.
+     * @param className the name of the precompiled class, not null.
+     * @param codecBaseClass the expected base class of the codec class, not null.
+     * @param classLoader the class loader to load the class from, not null.
+     * @return the codec class, or null if not found.
+     */
+    @SuppressWarnings("unchecked")
+    <T> Class<T> findPrecompiledCodecClass(Schema schema, String className, Class<T> codecBaseClass,
+            ClassLoader classLoader) {
+        Class<?> codecClass;
+        try {
+            codecClass = Class.forName(className, false, classLoader);
+        } catch (ClassNotFoundException e) {
+            return null;
+        }
+        if (!codecBaseClass.isAssignableFrom(codecClass)) {
+            log.log(Level.WARNING, "Ignoring precompiled codec class {0}, it is not a {1} from this class loader",
+                    new Object[] { className, codecBaseClass.getName() });
+            return null;
+        }
+        log.log(Level.FINE, "Using precompiled codec class {0} for schema UID: {1}",
+                new Object[] { className, schema.getUID() });
+        return (Class<T>) codecClass;
     }
 
     @SuppressWarnings("unchecked")
-    private Class<GeneratedCompactCodec> generateCodecClass(Schema schema, int suffix) {
+    private Class<GeneratedCompactCodec> generateCodecClass(SchemaClassLoader classLoader, Schema schema,
+            Object key) {
+        Class<?> accessHost = getPackageAccessHost(schema);
+        if (accessHost != null) {
+            Class<?> codecClass = computeIfAbsent(packageClasses.get(accessHost),
+                    Arrays.asList(classLoader.fingerprint, key),
+                    () -> defineClassInPackage(accessHost, compactCodeGenerator.generateClass(schema,
+                            accessHost, nextClassSuffix.getAndIncrement())));
+            if (codecClass != null) {
+                return (Class<GeneratedCompactCodec>) codecClass;
+            }
+        }
+        int suffix = nextClassSuffix.getAndIncrement();
         String generatedClassName = compactCodeGenerator.getGeneratedClassName(suffix);
         byte[] generatedClassBytes = compactCodeGenerator.generateClass(schema, suffix);
-        Class<?> generatedClass = defineClass(generatedClassName, generatedClassBytes, 0, generatedClassBytes.length);
-        return (Class<GeneratedCompactCodec>) generatedClass;
+        return (Class<GeneratedCompactCodec>) classLoader.defineClass(generatedClassName, generatedClassBytes);
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<GeneratedCompactCodec> generateSpecializedCodecClass(SchemaClassLoader classLoader, Schema schema,
+            Class<? extends ByteBuf> bufClass) {
+        Class<?> accessHost = getPackageAccessHost(schema);
+        if (accessHost != null) {
+            ConcurrentMap<Object, CompletableFuture<Object>> hostClasses = packageClasses.get(accessHost);
+            Class<?> codecClass = computeIfAbsent(hostClasses,
+                    Arrays.asList(classLoader.fingerprint, CODEC_KEY, bufClass), () -> {
+                CompactByteCodeGenerator codeGenerator = computeIfAbsent(hostClasses,
+                        Arrays.asList(GENERATOR_KEY, bufClass),
+                        () -> createSpecializedCodeGenerator(bufClass, accessHost.getClassLoader(),
+                                BaseByteCodeGenerator.getPackageName(accessHost),
+                                (name, bytes) -> defineClassInPackage(accessHost, bytes)));
+                return codeGenerator == null ? null : defineClassInPackage(accessHost,
+                        codeGenerator.generateClass(schema, accessHost, nextClassSuffix.getAndIncrement()));
+            });
+            if (codecClass != null) {
+                return (Class<GeneratedCompactCodec>) codecClass;
+            }
+        }
+        CompactByteCodeGenerator codeGenerator = classLoader.computeIfAbsent(Arrays.asList(GENERATOR_KEY, bufClass),
+                () -> createSpecializedCodeGenerator(bufClass, classLoader.getParent(),
+                        SPECIALIZED_CLASS_PACKAGE_NAME, classLoader::defineClass));
+        int suffix = nextClassSuffix.getAndIncrement();
+        String generatedClassName = codeGenerator.getGeneratedClassName(suffix);
+        byte[] generatedClassBytes = codeGenerator.generateClass(schema, suffix);
+        return (Class<GeneratedCompactCodec>) classLoader.defineClass(generatedClassName, generatedClassBytes);
+    }
+
+    /**
+     * Defines copies of BlinkInput and BlinkOutput that are specialized for the ByteBuf class,
+     * and returns a code generator that uses them.
+     *
+     * @param bufClass the ByteBuf class, not null.
+     * @param classLoader the class loader that will define the classes, not null.
+     * @param packageName the package of the classes, not null.
+     * @param classDefiner defines a class given its name and bytes, and returns null if it cannot be defined.
+     * @return the code generator, or null if the classes could not be defined.
+     * @see ByteBufSpecializer
+     */
+    private CompactByteCodeGenerator createSpecializedCodeGenerator(Class<? extends ByteBuf> bufClass,
+            ClassLoader classLoader, String packageName, BiFunction<String, byte[], Class<?>> classDefiner) {
+        ByteBufSpecializer.checkByteBufClass(bufClass, classLoader);
+        int helperSuffix = nextClassSuffix.getAndIncrement();
+        String prefix = packageName.isEmpty() ? "" : packageName + ".";
+        String inputClassName = prefix + SPECIALIZED_INPUT_CLASS_SIMPLE_NAME + helperSuffix;
+        String outputClassName = prefix + SPECIALIZED_OUTPUT_CLASS_SIMPLE_NAME + helperSuffix;
+        if (classDefiner.apply(inputClassName, ByteBufSpecializer.specialize(BlinkInput.class,
+                inputClassName.replace('.', '/'), bufClass)) == null ||
+            classDefiner.apply(outputClassName, ByteBufSpecializer.specialize(BlinkOutput.class,
+                outputClassName.replace('.', '/'), bufClass)) == null) {
+            return null;
+        }
+        return new CompactByteCodeGenerator(inputClassName.replace('.', '/'), outputClassName.replace('.', '/'));
     }
 
     @SuppressWarnings("unchecked")
-    private Class<GeneratedNativeCodec> generateNativeCodecClass(Schema schema, int suffix) {
+    private Class<GeneratedNativeCodec> generateNativeCodecClass(SchemaClassLoader classLoader, Schema schema,
+            Object key) {
+        Class<?> accessHost = getPackageAccessHost(schema);
+        if (accessHost != null) {
+            Class<?> codecClass = computeIfAbsent(packageClasses.get(accessHost),
+                    Arrays.asList(classLoader.fingerprint, key),
+                    () -> defineClassInPackage(accessHost, nativeCodeGenerator.generateClass(schema,
+                            accessHost, nextClassSuffix.getAndIncrement())));
+            if (codecClass != null) {
+                return (Class<GeneratedNativeCodec>) codecClass;
+            }
+        }
+        int suffix = nextClassSuffix.getAndIncrement();
         String generatedClassName = nativeCodeGenerator.getGeneratedClassName(suffix);
         byte[] generatedClassBytes = nativeCodeGenerator.generateClass(schema, suffix);
-        Class<?> generatedClass = defineClass(generatedClassName, generatedClassBytes, 0, generatedClassBytes.length);
-        return (Class<GeneratedNativeCodec>) generatedClass;
+        return (Class<GeneratedNativeCodec>) classLoader.defineClass(generatedClassName, generatedClassBytes);
+    }
+
+    /**
+     * Returns the message class in whose package the codec class of the schema should be defined,
+     * to access package-private fields and constructors directly.
+     *
+     * @param schema the schema, not null.
+     * @return the message class, or null if the codec class should be defined in a schema class loader.
+     * @see BaseByteCodeGenerator#getPackageAccessHost(Schema)
+     */
+    private Class<?> getPackageAccessHost(Schema schema) {
+        if (lookupDefineClassMethod == null) {
+            return null;
+        }
+        Class<?> accessHost = BaseByteCodeGenerator.getPackageAccessHost(schema);
+        if (accessHost == null) {
+            return null;
+        }
+        try {
+            if (Class.forName(GeneratedCodec.class.getName(), false, accessHost.getClassLoader()) ==
+                    GeneratedCodec.class) {
+                return accessHost;
+            }
+        } catch (ClassNotFoundException e) {
+            // not visible
+        }
+        log.log(Level.FINE, "Package-private fields of {0} are accessed through accessors, "
+                + "msgcodec is not visible from its class loader", accessHost.getName());
+        return null;
+    }
+
+    /**
+     * Define a class in the package of the host class, using <code>MethodHandles.Lookup.defineClass</code>.
+     *
+     * @param accessHost the host class, not null.
+     * @param bytes the class bytes, not null.
+     * @return the defined class, or null if the package of the host class cannot be accessed,
+     * e.g. if it is not opened by its module.
+     */
+    private static Class<?> defineClassInPackage(Class<?> accessHost, byte[] bytes) {
+        try {
+            Object lookup = privateLookupInMethod.invoke(null, accessHost, MethodHandles.lookup());
+            return (Class<?>) lookupDefineClassMethod.invoke(lookup, bytes);
+        } catch (IllegalAccessException e) {
+            throw new Error("Should not happen", e);
+        } catch (InvocationTargetException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof IllegalAccessException || cause instanceof SecurityException) {
+                log.log(Level.FINE, "Package-private fields of " + accessHost.getName() +
+                        " are accessed through accessors", cause);
+                return null;
+            } else if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw new Error("Should not happen", cause);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private Class<GeneratedCompactFlyweight> generateFlyweightClass(SchemaClassLoader classLoader, Schema schema,
+            GroupDef group, Class<?> flyweightType) {
+        int suffix = nextClassSuffix.getAndIncrement();
+        String generatedClassName = compactCodeGenerator.getGeneratedFlyweightClassName(suffix);
+        byte[] generatedClassBytes = compactCodeGenerator.generateFlyweightClass(schema, group, flyweightType, suffix);
+        return (Class<GeneratedCompactFlyweight>) classLoader.defineClass(generatedClassName, generatedClassBytes);
+    }
+
+    /**
+     * Class loader for the generated classes of a schema, which also holds the classes by key.
+     * The class loader, and thereby the classes, can be unloaded when no instances of the classes remain.
+     *
+     * <p>Classes for different keys are generated concurrently. Only the definition of the classes is serialized.
+     */
+    static class SchemaClassLoader extends ClassLoader {
+        final String fingerprint;
+        private final ConcurrentMap<Object, CompletableFuture<Object>> valuesByKey = new ConcurrentHashMap<>();
+
+        SchemaClassLoader(ClassLoader parent, String fingerprint) {
+            super(parent);
+            this.fingerprint = fingerprint;
+        }
+
+        /**
+         * Returns the value for the specified key, e.g. a generated class.
+         *
+         * @param key the key, not null.
+         * @param factory the factory that creates the value, not null.
+         * @return the value, not null.
+         * @see GeneratedCodecClassLoader#computeIfAbsent(ConcurrentMap, Object, Supplier)
+         */
+        <T> T computeIfAbsent(Object key, Supplier<T> factory) {
+            return GeneratedCodecClassLoader.computeIfAbsent(valuesByKey, key, factory);
+        }
+
+        synchronized Class<?> defineClass(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+
+    /**
+     * Returns the value for the specified key, e.g. a generated class.
+     * If there is no value, it is created by the calling thread, while other threads asking for the same key
+     * wait for it. If the creation fails, the exception is thrown to all waiting threads, and a later call
+     * will try again.
+     *
+     * @param valuesByKey the values, not null.
+     * @param key the key, not null.
+     * @param factory the factory that creates the value, not null.
+     * @return the value, or null if the factory returned null.
+     */
+    @SuppressWarnings("unchecked")
+    private static <T> T computeIfAbsent(ConcurrentMap<Object, CompletableFuture<Object>> valuesByKey, Object key,
+            Supplier<T> factory) {
+        CompletableFuture<Object> future = valuesByKey.get(key);
+        if (future == null) {
+            CompletableFuture<Object> newFuture = new CompletableFuture<>();
+            future = valuesByKey.putIfAbsent(key, newFuture);
+            if (future == null) {
+                future = newFuture;
+                try {
+                    newFuture.complete(factory.get());
+                } catch (RuntimeException | Error e) {
+                    valuesByKey.remove(key, newFuture);
+                    newFuture.completeExceptionally(e);
+                    throw e;
+                }
+            }
+        }
+        try {
+            return (T) future.join();
+        } catch (CompletionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            } else if (cause instanceof Error) {
+                throw (Error) cause;
+            }
+            throw e;
+        }
     }
-    
 }
@@ -29,8 +29,10 @@ import com.cinnober.msgcodec.io.ByteSink;
 import com.cinnober.msgcodec.io.ByteSource;
 import com.cinnober.msgcodec.DecodeException;
 import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.Schema;
 import com.cinnober.msgcodec.io.ByteArrayBuf;
 import java.io.IOException;
+import java.util.function.Consumer;
 
 /**
  * Base class for a dynamically generated compact blink codec for a specific schema.
@@ -52,45 +54,31 @@ public abstract class GeneratedCompactCodec extends GeneratedCodec {
 
     /** Reference to the blink codec. */
     protected final BlinkCodec codec;
+    /**
+     * The codec that dynamic groups are written and read by.
+     * This codec, unless it is generated for a part of the schema by a {@link LazyCompactCodec}.
+     */
+    GeneratedCompactCodec dynamicGroupCodec = this;
+    /** The number of bytes reserved for the size preamble in the next dynamic group, 1 or 2. */
+    private int reservedSizeOfSize = 1;
 
     /**
      * Constructor.
      * The constructor of the subclass should have the signature <code>(BlinkCodec, Schema)</code>.
      * 
      * @param codec the blink codec, not null.
+     * @param schema the schema the codec was generated for, not null.
+     * Same as the schema of the blink codec, unless the codec is generated for a part of it.
      */
-    public GeneratedCompactCodec(BlinkCodec codec) {
-        super(codec.getMaxBinarySize());
+    public GeneratedCompactCodec(BlinkCodec codec, Schema schema) {
+        super(codec.getMaxBinarySize(), codec.getStringInternCache(), schema, codec.getSchema());
         this.codec = codec;
     }
     
     @Override
     public void writeDynamicGroup(ByteSink out, Object group) throws IOException, IllegalArgumentException {
         if (out instanceof ByteBuf) {
-            ByteBuf buf = (ByteBuf) out;
-            int start = buf.position();
-            buf.skip(2); // size
-            writeStaticGroupWithId(buf, group);
-            int end = buf.position();
-            int size = end - start - 2;
-            if (size < 1<<7) {
-                buf.shift(start+2, size, -1);
-                buf.position(start);
-                buf.limit(buf.capacity());
-                BlinkOutput.writeVLC7(buf, size);
-                buf.position(end-1);
-            } else if (size < 1<<14) {
-                buf.position(start);
-                BlinkOutput.writeVLC14(buf, size);
-                buf.position(end);
-            } else {
-                int sizeOfSize = BlinkOutput.sizeOfUnsignedVLC(size);
-                buf.shift(start+2, size, sizeOfSize-2);
-                buf.position(start);
-                buf.limit(buf.capacity());
-                BlinkOutput.writeVLC(buf, size, sizeOfSize);
-                buf.position(end + sizeOfSize - 2);
-            }
+            writeDynamicGroup((ByteBuf) out, group);
         } else {
             byte[] tmpBuf = codec.bufferPool().get();
             try {
@@ -104,6 +92,46 @@ public abstract class GeneratedCompactCodec extends GeneratedCodec {
         }
     }
 
+    /**
+     * Write a dynamic group directly to a byte buffer.
+     * The size preamble is written after the group, by moving back in the buffer.
+     *
+     * <p>One byte is reserved for the size if the previous group was smaller than 128 bytes, otherwise two bytes,
+     * which fits groups up to 16 KiB. The group is only shifted if the reserved size does not match,
+     * i.e. a sequence of small or of mid-size groups is written without any shifting.
+     *
+     * @param buf the byte buffer to write to, not null.
+     * @param group the group to write, not null.
+     * @throws IOException if the byte buffer throws an exception.
+     * @throws IllegalArgumentException if the group is not correct or complete, e.g. a required field is missing.
+     * Partial data may have been written to the byte buffer.
+     */
+    public void writeDynamicGroup(ByteBuf buf, Object group) throws IOException, IllegalArgumentException {
+        int reserved = reservedSizeOfSize;
+        int start = buf.position();
+        buf.skip(reserved); // size, assume that it fits in the same number of bytes as the previous group
+        dynamicGroupCodec.writeStaticGroupWithId(buf, group);
+        int end = buf.position();
+        int size = end - start - reserved;
+        if (size < 1<<7 && reserved == 1) {
+            buf.position(start);
+            BlinkOutput.writeVLC7(buf, size);
+            buf.position(end);
+        } else if (size >= 1<<7 && size < 1<<14 && reserved == 2) {
+            buf.position(start);
+            BlinkOutput.writeVLC14(buf, size);
+            buf.position(end);
+        } else {
+            int sizeOfSize = BlinkOutput.sizeOfUnsignedVLC(size);
+            buf.shift(start+reserved, size, sizeOfSize-reserved);
+            buf.position(start);
+            buf.limit(buf.capacity());
+            BlinkOutput.writeVLC(buf, size, sizeOfSize);
+            buf.position(end + sizeOfSize - reserved);
+        }
+        reservedSizeOfSize = size < 1<<7 ? 1 : 2;
+    }
+
     @Override
     public void writeDynamicGroupNull(ByteSink out, Object group) throws IOException {
         if (group == null) {
@@ -113,6 +141,70 @@ public abstract class GeneratedCompactCodec extends GeneratedCodec {
         }
     }
     
+    /**
+     * Compute the encoded size of the specified group, including the group id, but excluding the size preamble.
+     * This method is generated from the same code as {@link #writeStaticGroupWithId(ByteSink, Object)},
+     * but all values are written using {@link BlinkSizeOutput}.
+     *
+     * @param counter the byte counter to add the size to, not null.
+     * @param group the group to compute the size of, not null.
+     * @throws IOException never thrown by the byte counter.
+     * @throws IllegalArgumentException if the group is not correct or complete, e.g. a required field is missing.
+     */
+    protected abstract void sizeOfStaticGroupWithId(ByteSink counter, Object group)
+            throws IOException, IllegalArgumentException;
+
+    /**
+     * Compute the encoded size of the specified dynamic group, including the size preamble.
+     * Called by the generated size methods.
+     *
+     * @param counter the byte counter to add the size to, not null.
+     * @param group the group to compute the size of, not null.
+     * @throws IOException never thrown by the byte counter.
+     * @throws IllegalArgumentException if the group is not correct or complete, e.g. a required field is missing.
+     */
+    protected void sizeOfDynamicGroup(ByteSink counter, Object group) throws IOException, IllegalArgumentException {
+        ByteCounter byteCounter = (ByteCounter) counter;
+        int start = byteCounter.count();
+        dynamicGroupCodec.sizeOfStaticGroupWithId(byteCounter, group);
+        byteCounter.pad(BlinkOutput.sizeOfUnsignedVLC(byteCounter.count() - start));
+    }
+
+    /**
+     * Compute the encoded size of the specified nullable dynamic group, including the size preamble.
+     * Called by the generated size methods.
+     *
+     * @param counter the byte counter to add the size to, not null.
+     * @param group the group to compute the size of, or null.
+     * @throws IOException never thrown by the byte counter.
+     * @throws IllegalArgumentException if the group is not correct or complete, e.g. a required field is missing.
+     */
+    protected void sizeOfDynamicGroupNull(ByteSink counter, Object group) throws IOException, IllegalArgumentException {
+        if (group == null) {
+            counter.pad(1);
+        } else {
+            sizeOfDynamicGroup(counter, group);
+        }
+    }
+
+    /**
+     * Returns the number of bytes that the specified group is encoded into by
+     * {@link #writeDynamicGroup(ByteSink, Object)}.
+     *
+     * @param group the group, not null.
+     * @return the encoded size in bytes, including the size preamble.
+     * @throws IllegalArgumentException if the group is not correct or complete, e.g. a required field is missing.
+     */
+    public int getEncodedSize(Object group) throws IllegalArgumentException {
+        ByteCounter counter = new ByteCounter();
+        try {
+            sizeOfDynamicGroup(counter, group);
+        } catch (IOException e) {
+            throw new Error("Should not happen", e);
+        }
+        return counter.count();
+    }
+
     @Override
     public Object readDynamicGroup(ByteSource in) throws IOException {
         int size = BlinkInput.readUInt32(in);
@@ -129,7 +221,86 @@ public abstract class GeneratedCompactCodec extends GeneratedCodec {
         return readDynamicGroup(size, in);
     }
 
-    private Object readDynamicGroup(int size, ByteSource in) throws IOException {
+    /**
+     * Read all complete dynamic groups in the byte buffer, from the current position up to the limit.
+     * Null groups are passed to the handler as null.
+     * Reading stops at the first group that is not completely contained in the buffer.
+     *
+     * @param in the byte buffer to read from, not null. The position is set to after the last group read.
+     * @param handler the handler of the groups read, not null.
+     * @return the number of bytes read.
+     * @throws IOException if the byte buffer throws an exception.
+     * @throws DecodeException if a group could not be decoded.
+     */
+    public int readDynamicGroups(ByteBuf in, Consumer<Object> handler) throws IOException {
+        final int start = in.position();
+        final int limit = in.limit();
+        int pos = start;
+        while (pos < limit) {
+            int b1 = in.read();
+            if (b1 == 0xc0) {
+                handler.accept(null);
+                pos++;
+                continue;
+            }
+            int sizeOfSize = (0x80 & b1) == 0 ? 1 : (0xc0 & b1) == 0x80 ? 2 : 1 + (0x3f & b1);
+            if (sizeOfSize > limit - pos) {
+                break;
+            }
+            int size = dynamicGroupSize(BlinkInput.readUnsignedVLC(in, b1));
+            if (size > limit - pos - sizeOfSize) {
+                break;
+            }
+            handler.accept(readDynamicGroup(size, in));
+            pos += sizeOfSize + size;
+        }
+        in.position(pos);
+        return pos - start;
+    }
+
+    @Override
+    public void readDynamicGroup(ByteSource in, Object group) throws IOException {
+        int expectedGroupId = getGroupId(group);
+        int size = dynamicGroupSize(BlinkInput.readUInt32(in) & 0xffffffffL);
+        readDynamicGroup(size, in, group, expectedGroupId);
+    }
+
+    @Override
+    public boolean readDynamicGroupNull(ByteSource in, Object group) throws IOException {
+        int expectedGroupId = getGroupId(group);
+        int b1 = in.read();
+        if (b1 == 0xc0) {
+            return false;
+        }
+        int size = dynamicGroupSize(BlinkInput.readUnsignedVLC(in, b1));
+        readDynamicGroup(size, in, group, expectedGroupId);
+        return true;
+    }
+
+    /**
+     * Check that a dynamic group size from a size preamble fits in an int.
+     *
+     * @param size the unsigned size from the size preamble.
+     * @return the size as an int.
+     * @throws DecodeException if the size is out of range.
+     */
+    private static int dynamicGroupSize(long size) throws DecodeException {
+        if (size > Integer.MAX_VALUE || size < 0) {
+            throw new DecodeException("Malformed dynamic group size: " + size);
+        }
+        return (int) size;
+    }
+
+    /**
+     * Read a dynamic group, after the size preamble.
+     *
+     * @param size the size of the group, from the size preamble.
+     * @param in the byte source to read from, not null.
+     * @return the group, not null.
+     * @throws IOException if the byte source throws an exception.
+     * @throws DecodeException if the group could not be decoded.
+     */
+    Object readDynamicGroup(int size, ByteSource in) throws IOException {
         ByteBuf inbuf;
         if (in instanceof ByteBuf) {
             inbuf = (ByteBuf) in;
@@ -139,7 +310,7 @@ public abstract class GeneratedCompactCodec extends GeneratedCodec {
         int expectedEndPos = inbuf.position() + size;
         int groupId = BlinkInput.readUInt32(inbuf);
         try {
-            Object group = readStaticGroup(groupId, inbuf);
+            Object group = dynamicGroupCodec.readStaticGroup(groupId, inbuf);
             
             int skip = expectedEndPos - inbuf.position();
             if (skip < 0) {
@@ -157,4 +328,51 @@ public abstract class GeneratedCompactCodec extends GeneratedCodec {
             }
         }
     }
+
+    private void readDynamicGroup(int size, ByteSource in, Object group, int expectedGroupId) throws IOException {
+        ByteBuf inbuf;
+        if (in instanceof ByteBuf) {
+            inbuf = (ByteBuf) in;
+        } else {
+            inbuf = new PositionByteSource(in);
+        }
+        int expectedEndPos = inbuf.position() + size;
+        int groupId = BlinkInput.readUInt32(inbuf);
+        if (groupId != expectedGroupId) {
+            int skip = expectedEndPos - inbuf.position();
+            if (skip > 0) {
+                in.skip(skip);
+            }
+            throw unexpectedGroupId(groupId, expectedGroupId);
+        }
+        try {
+            dynamicGroupCodec.readStaticGroup(groupId, inbuf, group);
+
+            int skip = expectedEndPos - inbuf.position();
+            if (skip < 0) {
+                throw new DecodeException("Malformed dynamic group. Read " + (-skip) + " bytes beyond group size.");
+            } else if (skip > 0) {
+                in.skip(skip);
+            }
+        } catch (Exception e) {
+            GroupDef groupDef = codec.getSchema().getGroup(groupId);
+            throw new GroupDecodeException(groupDef.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the group id of the specified group instance.
+     * @param group the group, not null.
+     * @return the group id
+     * @throws IllegalArgumentException if the group type is not part of the schema.
+     */
+    private int getGroupId(Object group) throws IllegalArgumentException {
+        Schema schema = codec.getSchema();
+        Object groupType = schema.getBinding().getGroupTypeAccessor().getGroupType(group);
+        GroupDef groupDef = schema.getGroup(groupType);
+        if (groupDef == null) {
+            throw unknownGroupType(groupType);
+        }
+        return groupDef.getId();
+    }
 }
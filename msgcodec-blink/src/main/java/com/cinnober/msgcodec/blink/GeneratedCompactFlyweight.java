@@ -0,0 +1,504 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.DecodeException;
+import com.cinnober.msgcodec.FieldDef;
+import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.TypeDef;
+import com.cinnober.msgcodec.io.ByteBuf;
+import com.cinnober.msgcodec.io.ByteSource;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Base class for a dynamically generated compact blink flyweight for a specific group.
+ *
+ * <p><b>Note: internal use only!</b>
+ *
+ * <p>A GeneratedCompactFlyweight sub class implements a user supplied sub interface of {@link BlinkFlyweight}.
+ * The generated getters delegate to the protected getters of this class, using the index of the field
+ * in the group (including any super group fields).
+ *
+ * <p>The field offsets are resolved lazily, i.e. only the fields up to the last field that has been
+ * read are skipped over.
+ *
+ * @author mikael.brannstrom
+ * @see CompactByteCodeGenerator#generateFlyweightClass(Schema, GroupDef, Class, int)
+ */
+
+/* Note: This class should be package private, but cannot since the dynamically generated classes are loaded
+   from another class loader, i.e. don't share the package with this class (regardless of package name). */
+public abstract class GeneratedCompactFlyweight implements BlinkFlyweight {
+    private static final int NULL_BYTE = 0xc0;
+
+    private final GroupDef group;
+    private final int maxBinarySize;
+    /** The group ids of the group and its sub groups, sorted. */
+    private final int[] groupIds;
+    /** The group definitions, in the same order as groupIds. */
+    private final GroupDef[] groups;
+    private final String[] fieldNames;
+    private final boolean[] fieldRequired;
+    private final boolean[] fieldPresenceByte;
+    private final ValueSkipper[] fieldSkippers;
+    private final FlyweightCharSequence[] fieldStrings;
+
+    /** The start offset of each field, where fieldOffsets[n] is the end offset of the last field. */
+    private final int[] fieldOffsets;
+    /** The number of known field offsets. */
+    private int knownOffsets;
+    private ByteBuf buf;
+    private int endPosition;
+    private GroupDef wrappedGroup;
+    private int savedPosition;
+
+    /**
+     * Constructor.
+     * The constructor of the subclass should have the signature <code>(BlinkCodec, GroupDef)</code>.
+     *
+     * @param codec the blink codec, not null.
+     * @param group the group definition of this flyweight, not null.
+     */
+    public GeneratedCompactFlyweight(BlinkCodec codec, GroupDef group) {
+        Schema schema = codec.getSchema();
+        this.group = group;
+        this.maxBinarySize = codec.getMaxBinarySize();
+
+        List<GroupDef> instanceGroups = new ArrayList<>();
+        for (GroupDef g : schema.getGroups()) {
+            if (schema.isInstanceOf(group.getName(), g.getName())) {
+                instanceGroups.add(g);
+            }
+        }
+        instanceGroups.sort((g1, g2) -> Integer.compare(g1.getId(), g2.getId()));
+        groupIds = new int[instanceGroups.size()];
+        groups = new GroupDef[instanceGroups.size()];
+        for (int i = 0; i < groupIds.length; i++) {
+            groups[i] = instanceGroups.get(i);
+            groupIds[i] = groups[i].getId();
+        }
+
+        List<FieldDef> fields = getAllFields(schema, group);
+        int numFields = fields.size();
+        fieldNames = new String[numFields];
+        fieldRequired = new boolean[numFields];
+        fieldPresenceByte = new boolean[numFields];
+        fieldSkippers = new ValueSkipper[numFields];
+        fieldStrings = new FlyweightCharSequence[numFields];
+        fieldOffsets = new int[numFields + 1];
+        Map<String, GroupSkipper> groupSkippers = new HashMap<>();
+        for (int i = 0; i < numFields; i++) {
+            FieldDef field = fields.get(i);
+            TypeDef type = schema.resolveToType(field.getType(), false);
+            fieldNames[i] = field.getName();
+            fieldRequired[i] = field.isRequired();
+            fieldPresenceByte[i] = type.getType() == TypeDef.Type.REFERENCE;
+            fieldSkippers[i] = createSkipper(schema, type, field.isRequired(), groupSkippers);
+        }
+    }
+
+    /**
+     * Returns all fields of the specified group, including any super group fields, in encoding order.
+     *
+     * @param schema the schema, not null.
+     * @param group the group, not null.
+     * @return the fields, not null.
+     */
+    static List<FieldDef> getAllFields(Schema schema, GroupDef group) {
+        List<FieldDef> fields = new ArrayList<>();
+        if (group.getSuperGroup() != null) {
+            fields.addAll(getAllFields(schema, schema.getGroup(group.getSuperGroup())));
+        }
+        fields.addAll(group.getFields());
+        return fields;
+    }
+
+    @Override
+    public void wrap(ByteBuf buf) throws IOException {
+        this.buf = null;
+        this.wrappedGroup = null;
+        int size = BlinkInput.readUInt32(buf);
+        if (size < 0) {
+            throw new DecodeException("Cannot read group larger than " + Integer.MAX_VALUE + " bytes.");
+        }
+        int expectedEndPos = buf.position() + size;
+        int groupId = BlinkInput.readUInt32(buf);
+        int groupIndex = Arrays.binarySearch(groupIds, groupId);
+        if (groupIndex < 0) {
+            buf.position(expectedEndPos);
+            throw new DecodeException("Group id " + groupId + " is not an instance of group " + group.getName());
+        }
+        if (buf.position() > expectedEndPos) {
+            throw new DecodeException("Malformed dynamic group. Read " + (buf.position() - expectedEndPos) +
+                    " bytes beyond group size.");
+        }
+        fieldOffsets[0] = buf.position();
+        knownOffsets = 1;
+        endPosition = expectedEndPos;
+        wrappedGroup = groups[groupIndex];
+        buf.position(expectedEndPos);
+        this.buf = buf;
+    }
+
+    @Override
+    public GroupDef getWrappedGroup() {
+        return wrappedGroup;
+    }
+
+    @Override
+    public String toString() {
+        return getClass().getSimpleName() + "[" + group.getName() + "]";
+    }
+
+    /**
+     * Returns true if the specified field is present, i.e. not null.
+     * @param field the field index
+     * @return true if the field is present, otherwise false.
+     */
+    protected final boolean isPresent(int field) {
+        if (fieldRequired[field]) {
+            return true;
+        }
+        try {
+            int b = seekField(field).read();
+            return fieldPresenceByte[field] ? b == 0x01 : b != NULL_BYTE;
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final byte getInt8(int field) {
+        try {
+            return BlinkInput.readInt8(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final byte getUInt8(int field) {
+        try {
+            return BlinkInput.readUInt8(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final short getInt16(int field) {
+        try {
+            return BlinkInput.readInt16(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final short getUInt16(int field) {
+        try {
+            return BlinkInput.readUInt16(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final char getChar(int field) {
+        try {
+            return (char) BlinkInput.readUInt16(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final int getInt32(int field) {
+        try {
+            return BlinkInput.readInt32(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final int getUInt32(int field) {
+        try {
+            return BlinkInput.readUInt32(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final long getInt64(int field) {
+        try {
+            return BlinkInput.readInt64(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final long getUInt64(int field) {
+        try {
+            return BlinkInput.readUInt64(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final float getFloat32(int field) {
+        try {
+            return BlinkInput.readFloat32(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final double getFloat64(int field) {
+        try {
+            return BlinkInput.readFloat64(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    protected final boolean getBoolean(int field) {
+        try {
+            return BlinkInput.readBoolean(seekValue(field));
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    /**
+     * Returns the string value of the specified field.
+     * The returned char sequence is reused by this flyweight.
+     *
+     * @param field the field index
+     * @return the value, not null.
+     */
+    protected final CharSequence getString(int field) {
+        try {
+            ByteSource in = seekValue(field);
+            int size = BlinkInput.readUInt32(in);
+            if (size < 0) {
+                throw new DecodeException("Cannot read string larger than " + Integer.MAX_VALUE + " bytes.");
+            }
+            if (size > maxBinarySize && maxBinarySize >= 0) {
+                throw new DecodeException("String length (" + size + ") exceeds limit (" + maxBinarySize + ")");
+            }
+            FlyweightCharSequence str = fieldStrings[field];
+            if (str == null) {
+                str = new FlyweightCharSequence();
+                fieldStrings[field] = str;
+            }
+            str.readUtf8(in, size);
+            return str;
+        } catch (IOException e) {
+            throw decodeError(field, e);
+        } finally {
+            restorePosition();
+        }
+    }
+
+    /**
+     * Position the buffer at the start of the specified field, and save the current position.
+     * @param field the field index
+     * @return the buffer, not null.
+     * @throws IllegalStateException if no group is wrapped.
+     */
+    private ByteBuf seekField(int field) throws IOException {
+        ByteBuf in = buf;
+        if (in == null) {
+            throw new IllegalStateException("No group wrapped");
+        }
+        savedPosition = in.position();
+        while (knownOffsets <= field) {
+            in.position(fieldOffsets[knownOffsets - 1]);
+            fieldSkippers[knownOffsets - 1].skip(in);
+            if (in.position() > endPosition) {
+                throw new DecodeException("Malformed dynamic group. Read " + (in.position() - endPosition) +
+                        " bytes beyond group size.");
+            }
+            fieldOffsets[knownOffsets++] = in.position();
+        }
+        in.position(fieldOffsets[field]);
+        return in;
+    }
+
+    /**
+     * Position the buffer at the start of the specified field value, and save the current position.
+     * @param field the field index
+     * @return the buffer, not null.
+     * @throws IllegalStateException if no group is wrapped, or if the value is absent.
+     */
+    private ByteBuf seekValue(int field) throws IOException {
+        ByteBuf in = seekField(field);
+        if (!fieldRequired[field]) {
+            int start = in.position();
+            if (in.read() == NULL_BYTE) {
+                throw new IllegalStateException("Absent value for field " + fieldNames[field]);
+            }
+            in.position(start);
+        }
+        return in;
+    }
+
+    private void restorePosition() {
+        if (buf != null) {
+            buf.position(savedPosition);
+        }
+    }
+
+    private UncheckedIOException decodeError(int field, IOException e) {
+        return new UncheckedIOException(
+                new DecodeException("Could not decode field (" + group.getName() + ")." + fieldNames[field], e));
+    }
+
+    private static ValueSkipper createSkipper(Schema schema, TypeDef type, boolean required,
+            Map<String, GroupSkipper> groupSkippers) {
+        type = schema.resolveToType(type, false);
+        switch (type.getType()) {
+            case FLOAT32:
+                return required ? BlinkInput::skipFloat32 : BlinkInput::skipFloat32Null;
+            case FLOAT64:
+                return required ? BlinkInput::skipFloat64 : BlinkInput::skipFloat64Null;
+            case DECIMAL:
+                return required ? BlinkInput::skipDecimal : BlinkInput::skipDecimalNull;
+            case BIGDECIMAL:
+                return required ? BlinkInput::skipBigDecimal : BlinkInput::skipBigDecimalNull;
+            case STRING:
+            case BINARY:
+            case DYNAMIC_REFERENCE: // size preamble followed by the group
+                return required ? BlinkInput::skipBinary : BlinkInput::skipBinaryNull;
+            case SEQUENCE:
+                return new SequenceSkipper(required,
+                        createSkipper(schema, ((TypeDef.Sequence) type).getComponentType(), true, groupSkippers));
+            case REFERENCE: {
+                GroupDef refGroup = schema.resolveToGroup(type);
+                if (refGroup == null) {
+                    throw new IllegalArgumentException("Illegal reference: " + type);
+                }
+                GroupSkipper groupSkipper = groupSkippers.get(refGroup.getName());
+                if (groupSkipper == null) {
+                    groupSkipper = new GroupSkipper();
+                    groupSkippers.put(refGroup.getName(), groupSkipper);
+                    List<FieldDef> fields = getAllFields(schema, refGroup);
+                    groupSkipper.fieldSkippers = new ValueSkipper[fields.size()];
+                    for (int i = 0; i < fields.size(); i++) {
+                        FieldDef field = fields.get(i);
+                        groupSkipper.fieldSkippers[i] =
+                                createSkipper(schema, field.getType(), field.isRequired(), groupSkippers);
+                    }
+                }
+                return required ? groupSkipper : new OptionalGroupSkipper(groupSkipper);
+            }
+            default:
+                // all other types are encoded as a single VLC
+                return BlinkInput::skipVLC;
+        }
+    }
+
+    /**
+     * Skips over an encoded value.
+     */
+    @FunctionalInterface
+    private interface ValueSkipper {
+        void skip(ByteSource in) throws IOException;
+    }
+
+    private static class GroupSkipper implements ValueSkipper {
+        private ValueSkipper[] fieldSkippers;
+        @Override
+        public void skip(ByteSource in) throws IOException {
+            for (ValueSkipper fieldSkipper : fieldSkippers) {
+                fieldSkipper.skip(in);
+            }
+        }
+    }
+
+    private static class OptionalGroupSkipper implements ValueSkipper {
+        private final GroupSkipper groupSkipper;
+        OptionalGroupSkipper(GroupSkipper groupSkipper) {
+            this.groupSkipper = groupSkipper;
+        }
+        @Override
+        public void skip(ByteSource in) throws IOException {
+            if (BlinkInput.readPresenceByte(in)) {
+                groupSkipper.skip(in);
+            }
+        }
+    }
+
+    private static class SequenceSkipper implements ValueSkipper {
+        private final boolean required;
+        private final ValueSkipper componentSkipper;
+        SequenceSkipper(boolean required, ValueSkipper componentSkipper) {
+            this.required = required;
+            this.componentSkipper = componentSkipper;
+        }
+        @Override
+        public void skip(ByteSource in) throws IOException {
+            int length;
+            if (required) {
+                length = BlinkInput.readUInt32(in);
+            } else {
+                Integer lengthObj = BlinkInput.readUInt32Null(in);
+                if (lengthObj == null) {
+                    return;
+                }
+                length = lengthObj.intValue();
+            }
+            for (int i = 0; i < length; i++) {
+                componentSkipper.skip(in);
+            }
+        }
+    }
+}
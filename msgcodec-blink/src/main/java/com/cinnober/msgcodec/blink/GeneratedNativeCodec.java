@@ -29,8 +29,10 @@ import com.cinnober.msgcodec.io.ByteBuf;
 import com.cinnober.msgcodec.io.ByteSink;
 import com.cinnober.msgcodec.io.ByteSource;
 import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.Schema;
 import com.cinnober.msgcodec.io.ByteArrayBuf;
 import java.io.IOException;
+import java.util.function.Consumer;
 
 /**
  * Base class for a dynamically generated native blink codec for a specific schema.
@@ -60,24 +62,17 @@ public abstract class GeneratedNativeCodec extends GeneratedCodec {
      * The constructor of the subclass should have the signature <code>(NativeBlinkCodec, Schema)</code>.
      * 
      * @param codec the blink codec, not null.
+     * @param schema the schema the codec was generated for, not null.
      */
-    public GeneratedNativeCodec(NativeBlinkCodec codec) {
-        super(codec.getMaxBinarySize());
+    public GeneratedNativeCodec(NativeBlinkCodec codec, Schema schema) {
+        super(codec.getMaxBinarySize(), codec.getStringInternCache(), schema, codec.getSchema());
         this.codec = codec;
     }
     
     @Override
     public void writeDynamicGroup(ByteSink out, Object group) throws IOException, IllegalArgumentException {
         if (out instanceof ByteBuf) {
-            ByteBuf buf = (ByteBuf) out;
-            int start = buf.position();
-            buf.skip(4); // size
-            writeStaticGroupWithId(buf, group);
-            int end = buf.position();
-            int size = end - start - 4;
-            buf.position(start);
-            buf.writeIntLE(size);
-            buf.position(end);
+            writeDynamicGroup((ByteBuf) out, group);
         } else {
             byte[] tmpBuf = codec.bufferPool().get();
             try {
@@ -91,6 +86,27 @@ public abstract class GeneratedNativeCodec extends GeneratedCodec {
         }
     }
 
+    /**
+     * Write a dynamic group directly to a byte buffer.
+     * The size preamble is written after the group, by moving back in the buffer.
+     *
+     * @param buf the byte buffer to write to, not null.
+     * @param group the group to write, not null.
+     * @throws IOException if the byte buffer throws an exception.
+     * @throws IllegalArgumentException if the group is not correct or complete, e.g. a required field is missing.
+     * Partial data may have been written to the byte buffer.
+     */
+    public void writeDynamicGroup(ByteBuf buf, Object group) throws IOException, IllegalArgumentException {
+        int start = buf.position();
+        buf.skip(4); // size
+        writeStaticGroupWithId(buf, group);
+        int end = buf.position();
+        int size = end - start - 4;
+        buf.position(start);
+        buf.writeIntLE(size);
+        buf.position(end);
+    }
+
     @Override
     public void writeDynamicGroupNull(ByteSink out, Object group) throws IOException {
         if (group == null) {
@@ -116,7 +132,63 @@ public abstract class GeneratedNativeCodec extends GeneratedCodec {
         }
     }
 
-    private Object readDynamicGroup(int size, ByteSource in) throws IOException {
+    /**
+     * Read all complete dynamic groups in the byte buffer, from the current position up to the limit.
+     * Reading stops at the first group that is not completely contained in the buffer.
+     *
+     * @param in the byte buffer to read from, not null. The position is set to after the last group read.
+     * @param handler the handler of the groups read, not null.
+     * @return the number of bytes read.
+     * @throws IOException if the byte buffer throws an exception.
+     * @throws DecodeException if a group could not be decoded.
+     */
+    public int readDynamicGroups(ByteBuf in, Consumer<Object> handler) throws IOException {
+        final int start = in.position();
+        final int limit = in.limit();
+        int pos = start;
+        while (limit - pos >= 4) {
+            int size = NativeBlinkInput.readUInt32(in);
+            if (size < 0) {
+                throw new DecodeException("Malformed dynamic group size: " + (0xffffffffL & size));
+            }
+            if (size > limit - pos - 4) {
+                break;
+            }
+            handler.accept(readDynamicGroup(size, in));
+            pos += 4 + size;
+        }
+        in.position(pos);
+        return pos - start;
+    }
+
+    @Override
+    public void readDynamicGroup(ByteSource in, Object group) throws IOException {
+        int expectedGroupId = getGroupId(group);
+        int size = NativeBlinkInput.readUInt32(in);
+        readDynamicGroup(size, in, group, expectedGroupId);
+    }
+
+    @Override
+    public boolean readDynamicGroupNull(ByteSource in, Object group) throws IOException {
+        int expectedGroupId = getGroupId(group);
+        if (in.read() == 0) {
+            return false;
+        }
+        int size = NativeBlinkInput.readUInt32(in);
+        readDynamicGroup(size, in, group, expectedGroupId);
+        return true;
+    }
+
+    /**
+     * Read a dynamic group, after the size preamble.
+     *
+     * @param size the size of the group, from the size preamble.
+     * @param in the byte source to read from, not null.
+     * @return the group, not null.
+     * @throws IOException if the byte source throws an exception.
+     * @throws DecodeException if the group could not be decoded.
+     */
+    Object readDynamicGroup(int size, ByteSource in) throws IOException {
         ByteBuf inbuf;
         if (in instanceof ByteBuf) {
             inbuf = (ByteBuf) in;
@@ -147,4 +219,53 @@ public abstract class GeneratedNativeCodec extends GeneratedCodec {
             }
         }
     }
+
+    private void readDynamicGroup(int size, ByteSource in, Object group, int expectedGroupId) throws IOException {
+        ByteBuf inbuf;
+        if (in instanceof ByteBuf) {
+            inbuf = (ByteBuf) in;
+        } else {
+            inbuf = new PositionByteSource(in);
+        }
+        int expectedEndPos = inbuf.position() + size;
+        // PENDING: currently msgcodec only supports int32 as group id
+        int groupId = (int) NativeBlinkInput.readUInt64(inbuf);
+        inbuf.skip(4); // discard extension offset (not supported)
+        if (groupId != expectedGroupId) {
+            int skip = expectedEndPos - inbuf.position();
+            if (skip > 0) {
+                in.skip(skip);
+            }
+            throw unexpectedGroupId(groupId, expectedGroupId);
+        }
+        try {
+            readStaticGroup(groupId, inbuf, group);
+
+            int skip = expectedEndPos - inbuf.position();
+            if (skip < 0) {
+                throw new DecodeException("Malformed dynamic group. Read " + (-skip) + " bytes beyond group size.");
+            } else if (skip > 0) {
+                in.skip(skip);
+            }
+        } catch (Exception e) {
+            GroupDef groupDef = codec.getSchema().getGroup(groupId);
+            throw new GroupDecodeException(groupDef.getName(), e);
+        }
+    }
+
+    /**
+     * Returns the group id of the specified group instance.
+     * @param group the group, not null.
+     * @return the group id
+     * @throws IllegalArgumentException if the group type is not part of the schema.
+     */
+    private int getGroupId(Object group) throws IllegalArgumentException {
+        Schema schema = codec.getSchema();
+        Object groupType = schema.getBinding().getGroupTypeAccessor().getGroupType(group);
+        GroupDef groupDef = schema.getGroup(groupType);
+        if (groupDef == null) {
+            throw unknownGroupType(groupType);
+        }
+        return groupDef.getId();
+    }
 }
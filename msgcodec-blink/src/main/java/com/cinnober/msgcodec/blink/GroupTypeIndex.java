@@ -0,0 +1,121 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.GroupTypeAccessor;
+import com.cinnober.msgcodec.JavaClassGroupTypeAccessor;
+import com.cinnober.msgcodec.Schema;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Maps group instances to the index of their group definition in {@link Schema#getGroups()}.
+ * The generated codecs use the index in a <b>tableswitch</b> to find the writer method of the group.
+ *
+ * <p>For schemas bound to Java classes the index is cached per class using a {@link ClassValue}.
+ * Other group types are looked up in a hash map.
+ * In both cases the lookup time does not depend on the number of groups in the schema.
+ *
+ * @author mikael.brannstrom
+ */
+final class GroupTypeIndex {
+
+    private final Schema lookupSchema;
+    private final GroupTypeAccessor groupTypeAccessor;
+    private final Map<String, Integer> indexByGroupName;
+    private final Map<Object, Integer> indexByGroupType;
+    /** The index by java class, or null if the schema is not bound to java classes. */
+    private final ClassValue<Integer> indexByClass;
+
+    /**
+     * Create a group type index.
+     *
+     * @param schema the schema to index, not null.
+     * @param lookupSchema the schema used to look up group types that are not in the indexed schema, not null.
+     * This may be a larger schema, e.g. the full schema when only a part of it is indexed.
+     */
+    GroupTypeIndex(Schema schema, Schema lookupSchema) {
+        this.lookupSchema = lookupSchema;
+        this.groupTypeAccessor = schema.getBinding().getGroupTypeAccessor();
+        this.indexByGroupName = new HashMap<>();
+        this.indexByGroupType = new HashMap<>();
+        int index = 0;
+        for (GroupDef group : schema.getGroups()) {
+            indexByGroupName.put(group.getName(), index);
+            indexByGroupType.put(group.getGroupType(), index);
+            index++;
+        }
+        if (groupTypeAccessor == JavaClassGroupTypeAccessor.INSTANCE) {
+            indexByClass = new ClassValue<Integer>() {
+                @Override
+                protected Integer computeValue(Class<?> type) {
+                    return lookupIndex(type);
+                }
+            };
+        } else {
+            indexByClass = null;
+        }
+    }
+
+    /**
+     * Returns the index of the group definition of the specified group in {@link Schema#getGroups()}.
+     *
+     * @param group the group, not null.
+     * @return the index of the group definition.
+     * @throws IllegalArgumentException if the group type is not part of the schema.
+     */
+    int indexOf(Object group) throws IllegalArgumentException {
+        if (indexByClass != null) {
+            int index = indexByClass.get(group.getClass());
+            if (index < 0) {
+                throw GeneratedCodec.unknownGroupType(group.getClass());
+            }
+            return index;
+        }
+        Object groupType = groupTypeAccessor.getGroupType(group);
+        Integer index = indexByGroupType.get(groupType);
+        if (index != null) {
+            return index;
+        }
+        int index2 = lookupIndex(groupType);
+        if (index2 < 0) {
+            throw GeneratedCodec.unknownGroupType(groupType);
+        }
+        return index2;
+    }
+
+    /**
+     * Look up the index of a group type that is not one of the group types of the schema, e.g. a remapped class.
+     * The group type is looked up in the lookup schema, and matched by group name.
+     *
+     * @param groupType the group type, not null.
+     * @return the index, or -1 if the group type is not part of the schema.
+     */
+    private int lookupIndex(Object groupType) {
+        GroupDef group = lookupSchema.getGroup(groupType);
+        Integer index = group != null ? indexByGroupName.get(group.getName()) : null;
+        return index != null ? index : -1;
+    }
+}
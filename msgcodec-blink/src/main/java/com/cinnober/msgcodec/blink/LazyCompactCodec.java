@@ -0,0 +1,216 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.DecodeException;
+import com.cinnober.msgcodec.FieldDef;
+import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.NamedType;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.SymbolIdIndex;
+import com.cinnober.msgcodec.TypeDef;
+import com.cinnober.msgcodec.io.ByteSink;
+import com.cinnober.msgcodec.io.ByteSource;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Compact blink codec that generates the code of each group on first use.
+ *
+ * <p>The codec only dispatches on the group type or group id. The encode and decode methods of a group are
+ * generated the first time the group is used, in a codec for the part of the schema that the group needs,
+ * see {@link #getGroupSchema(Schema, GroupDef)}.
+ * Dynamic groups within a group are dispatched back to this codec.
+ *
+ * <p>This reduces the time to create the codec, and the size of the generated code, for large schemas
+ * where only a few of the groups are used.
+ *
+ * @author mikael.brannstrom
+ */
+class LazyCompactCodec extends GeneratedCompactCodec {
+
+    private final Schema schema;
+    /** The groups, in the same order as the group type index. */
+    private final GroupDef[] groups;
+    /** The group ids of the groups that have an id. */
+    private final SymbolIdIndex groupIdIndex;
+    /** The group index per position in the group id index. */
+    private final int[] groupIndexes;
+    /** The generated codec per group index, or null if not generated yet. */
+    private final AtomicReferenceArray<GeneratedCompactCodec> groupCodecs;
+
+    /**
+     * Create a lazy codec.
+     *
+     * @param codec the blink codec, not null.
+     */
+    LazyCompactCodec(BlinkCodec codec) {
+        super(codec, codec.getSchema());
+        this.schema = codec.getSchema();
+        this.groups = schema.getGroups().toArray(new GroupDef[schema.getGroups().size()]);
+        int[] ids = new int[groups.length];
+        int[] indexes = new int[groups.length];
+        int count = 0;
+        for (int i = 0; i < groups.length; i++) {
+            if (groups[i].getId() != -1) {
+                ids[count] = groups[i].getId();
+                indexes[count++] = i;
+            }
+        }
+        this.groupIdIndex = new SymbolIdIndex(Arrays.copyOf(ids, count));
+        this.groupIndexes = Arrays.copyOf(indexes, count);
+        this.groupCodecs = new AtomicReferenceArray<>(groups.length);
+    }
+
+    @Override
+    protected void writeStaticGroupWithId(ByteSink out, Object group) throws IOException, IllegalArgumentException {
+        getGroupCodec(getGroupTypeIndex(group)).writeStaticGroupWithId(out, group);
+    }
+
+    @Override
+    protected void sizeOfStaticGroupWithId(ByteSink counter, Object group)
+            throws IOException, IllegalArgumentException {
+        getGroupCodec(getGroupTypeIndex(group)).sizeOfStaticGroupWithId(counter, group);
+    }
+
+    @Override
+    protected Object readStaticGroup(int groupId, ByteSource in) throws IOException {
+        return getGroupCodec(getGroupIndex(groupId)).readStaticGroup(groupId, in);
+    }
+
+    @Override
+    protected void readStaticGroup(int groupId, ByteSource in, Object group) throws IOException {
+        getGroupCodec(getGroupIndex(groupId)).readStaticGroup(groupId, in, group);
+    }
+
+    private int getGroupIndex(int groupId) throws DecodeException {
+        int index = groupIdIndex.indexOf(groupId);
+        if (index < 0) {
+            throw unknownGroupId(groupId);
+        }
+        return groupIndexes[index];
+    }
+
+    /**
+     * Returns the codec of the specified group, which is generated if needed.
+     *
+     * @param index the group index.
+     * @return the codec, not null.
+     */
+    private GeneratedCompactCodec getGroupCodec(int index) {
+        GeneratedCompactCodec groupCodec = groupCodecs.get(index);
+        if (groupCodec == null) {
+            groupCodec = createGroupCodec(groups[index]);
+            if (!groupCodecs.compareAndSet(index, null, groupCodec)) {
+                groupCodec = groupCodecs.get(index);
+            }
+        }
+        return groupCodec;
+    }
+
+    private GeneratedCompactCodec createGroupCodec(GroupDef group) {
+        Schema groupSchema = getGroupSchema(schema, group);
+        Class<GeneratedCompactCodec> groupCodecClass =
+                GeneratedCodecClassLoader.getInstance().getGeneratedGroupCodecClass(schema, group, groupSchema);
+        GeneratedCompactCodec groupCodec;
+        try {
+            groupCodec = groupCodecClass.getConstructor(new Class<?>[]{ BlinkCodec.class, Schema.class })
+                    .newInstance(codec, groupSchema);
+        } catch (ReflectiveOperationException e) {
+            throw new Error("Should not happen", e);
+        }
+        groupCodec.dynamicGroupCodec = this;
+        return groupCodec;
+    }
+
+    /**
+     * Returns the part of the schema that is needed to generate the code of the specified group.
+     * This is the group, its super groups, and recursively all groups and named types that are
+     * referenced by their fields. Dynamic references only include the referenced group, not its sub groups,
+     * since dynamic groups are dispatched back to the lazy codec.
+     *
+     * @param schema the schema, not null.
+     * @param group the group, not null.
+     * @return the group schema, not null.
+     */
+    static Schema getGroupSchema(Schema schema, GroupDef group) {
+        Map<String, NamedType> namedTypes = new HashMap<>();
+        for (NamedType namedType : schema.getNamedTypes()) {
+            namedTypes.put(namedType.getName(), namedType);
+        }
+        Set<String> groupNames = new HashSet<>();
+        Map<String, NamedType> groupNamedTypes = new LinkedHashMap<>();
+        addGroup(schema, namedTypes, group.getName(), groupNames, groupNamedTypes);
+
+        List<GroupDef> groupGroups = new ArrayList<>(groupNames.size());
+        for (GroupDef g : schema.getGroups()) {
+            if (groupNames.contains(g.getName())) {
+                groupGroups.add(g);
+            }
+        }
+        return new Schema(groupGroups, groupNamedTypes.values(), schema.getAnnotations(), schema.getBinding());
+    }
+
+    private static void addGroup(Schema schema, Map<String, NamedType> namedTypes, String groupName,
+            Set<String> groupNames, Map<String, NamedType> groupNamedTypes) {
+        if (!groupNames.add(groupName)) {
+            return;
+        }
+        GroupDef group = schema.getGroup(groupName);
+        if (group.getSuperGroup() != null) {
+            addGroup(schema, namedTypes, group.getSuperGroup(), groupNames, groupNamedTypes);
+        }
+        for (FieldDef field : group.getFields()) {
+            addType(schema, namedTypes, field.getType(), groupNames, groupNamedTypes);
+        }
+    }
+
+    private static void addType(Schema schema, Map<String, NamedType> namedTypes, TypeDef type,
+            Set<String> groupNames, Map<String, NamedType> groupNamedTypes) {
+        if (type instanceof TypeDef.Sequence) {
+            addType(schema, namedTypes, ((TypeDef.Sequence) type).getComponentType(), groupNames, groupNamedTypes);
+        } else if (type instanceof TypeDef.Ref) {
+            String refType = ((TypeDef.Ref) type).getRefType();
+            if (refType == null) {
+                return; // dynamic reference to any group
+            }
+            if (schema.getGroup(refType) != null) {
+                addGroup(schema, namedTypes, refType, groupNames, groupNamedTypes);
+            } else {
+                NamedType namedType = namedTypes.get(refType);
+                if (namedType != null && groupNamedTypes.put(refType, namedType) == null) {
+                    addType(schema, namedTypes, namedType.getType(), groupNames, groupNamedTypes);
+                }
+            }
+        }
+    }
+}
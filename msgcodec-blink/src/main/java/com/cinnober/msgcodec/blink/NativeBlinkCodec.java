@@ -32,12 +32,16 @@ import com.cinnober.msgcodec.MsgCodecInstantiationException;
 import com.cinnober.msgcodec.ObjectInstantiationException;
 import com.cinnober.msgcodec.io.ByteBuf;
 import com.cinnober.msgcodec.io.InputStreamSource;
+import com.cinnober.msgcodec.io.InputStreams;
 import com.cinnober.msgcodec.io.OutputStreamSink;
 import com.cinnober.msgcodec.util.Pool;
+import com.cinnober.msgcodec.util.StringInternCache;
+import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
 import java.lang.reflect.Constructor;
+import java.util.function.Consumer;
 
 /**
  * The Blink codec can serialize and deserialize Java objects according to
@@ -73,6 +77,7 @@ public class NativeBlinkCodec implements MsgCodec {
 
     private final int maxBinarySize;
     private final int maxSequenceLength;
+    private final StringInternCache stringInternCache;
 
     /**
      * Create a Blink codec.
@@ -81,9 +86,11 @@ public class NativeBlinkCodec implements MsgCodec {
      * @param bufferPool the buffer pool, needed for temporary storage while <em>encoding</em>.
      * @param maxBinarySize the maximum binary size (including strings) allowed while decoding, or -1 for no limit.
      * @param maxSequenceLength the maximum sequence length allowed while decoding, or -1 for no limit.
+     * @param stringInternCache the cache used for decoding interned string fields, or null for no interning.
      */
     NativeBlinkCodec(Schema schema, Pool<byte[]> bufferPool,
-            int maxBinarySize, int maxSequenceLength) throws MsgCodecInstantiationException {
+            int maxBinarySize, int maxSequenceLength, StringInternCache stringInternCache)
+            throws MsgCodecInstantiationException {
         if (!schema.isBound()) {
             throw new IllegalArgumentException("Schema not bound");
         }
@@ -91,6 +98,7 @@ public class NativeBlinkCodec implements MsgCodec {
 
         this.maxBinarySize = maxBinarySize;
         this.maxSequenceLength = maxSequenceLength;
+        this.stringInternCache = stringInternCache;
         this.schema = schema;
 
         GeneratedNativeCodec generatedCodecTmp = null;
@@ -118,6 +126,10 @@ public class NativeBlinkCodec implements MsgCodec {
         return maxSequenceLength;
     }
 
+    StringInternCache getStringInternCache() {
+        return stringInternCache;
+    }
+
     Schema getSchema() {
         return schema;
     }
@@ -131,9 +143,40 @@ public class NativeBlinkCodec implements MsgCodec {
         generatedCodec.writeDynamicGroup(out, group);
     }
 
+    /**
+     * Read a group from the input stream.
+     *
+     * <p>The size preamble is read first, and then the whole group is read from the stream in bulk into
+     * an array from the buffer pool, and decoded from there. Groups larger than the pooled array are
+     * decoded directly from the stream. No bytes beyond the group are read from the stream.
+     *
+     * <p>To decode a sequence of groups from a stream with read-ahead, wrap the stream once in a
+     * {@link com.cinnober.msgcodec.io.BufferedInputStreamSource} and use {@link #decode(ByteSource)}.
+     */
     @Override
     public Object decode(InputStream in) throws IOException {
-        return decode(new InputStreamSource(in));
+        int size = 0;
+        for (int i = 0; i < 4; i++) {
+            int b = in.read();
+            if (b < 0) {
+                throw new EOFException();
+            }
+            size |= b << (i << 3);
+        }
+        if (size < 0) {
+            throw new DecodeException("Cannot read group larger than " + Integer.MAX_VALUE + " bytes.");
+        }
+        byte[] buf = bufferPool.get();
+        try {
+            ByteSource groupIn = size <= buf.length ?
+                new PooledArrayBuf(buf, InputStreams.readUpTo(in, buf, 0, size)) :
+                new InputStreamSource(in);
+            return generatedCodec.readDynamicGroup(size, groupIn);
+        } catch(GroupDecodeException|FieldDecodeException e) {
+            throw decodeException(e);
+        } finally {
+            bufferPool.release(buf);
+        }
     }
 
     @Override
@@ -141,20 +184,78 @@ public class NativeBlinkCodec implements MsgCodec {
         try {
             return generatedCodec.readDynamicGroup(in);
         } catch(GroupDecodeException|FieldDecodeException e) {
-            Throwable t = e;
-            StringBuilder str = new StringBuilder();
-            for (;;) {
-                if (t instanceof GroupDecodeException) {
-                    str.append('(').append(((GroupDecodeException)t).getGroupName()).append(')');
-                    t = t.getCause();
-                } else if(t instanceof FieldDecodeException) {
-                    str.append('.').append(((FieldDecodeException)t).getFieldName());
-                    t = t.getCause();
-                } else if(t instanceof ObjectInstantiationException) {
-                    throw new DecodeException("Could not create group "+str.toString(), t);
-                } else {
-                    throw new DecodeException("Could not decode field "+str.toString(), t);
-                }
+            throw decodeException(e);
+        }
+    }
+
+    /**
+     * Read all complete groups in the byte buffer, from the current position up to the limit, and pass them to
+     * the handler in order. This is equivalent to calling {@link #decode(ByteSource)} repeatedly, but with
+     * less overhead per group.
+     *
+     * <p>Decoding stops at the first group that is not completely contained in the buffer, e.g. a partial frame
+     * at the end of a network read. The position of the buffer is set to the start of that group, so that
+     * decoding can be resumed when more data is available. The handler must not change the position of the
+     * buffer.
+     *
+     * @param in the byte buffer to read from, not null.
+     * @param handler the handler of the decoded groups, not null.
+     * @return the number of bytes consumed.
+     * @throws IOException if the underlying byte buffer throws an exception.
+     * @throws DecodeException if a group could not be decoded. The position of the buffer is undefined.
+     */
+    public int decodeAll(ByteBuf in, Consumer<Object> handler) throws IOException {
+        try {
+            return generatedCodec.readDynamicGroups(in, handler);
+        } catch(GroupDecodeException|FieldDecodeException e) {
+            throw decodeException(e);
+        }
+    }
+
+    /**
+     * Read a group from the byte source into an existing group instance, instead of creating a new instance.
+     * This allows group instances to be reused.
+     *
+     * <p>All fields of the group are assigned. Nested groups and sequences are replaced by new instances.
+     * The state of the group instance is undefined if an exception is thrown.
+     *
+     * @param in the byte source to read from, not null.
+     * @param group the group instance to read into, not null. The group read must be of the same group type
+     * as the instance.
+     * @throws IOException if the underlying byte source throws an exception.
+     * @throws DecodeException if the group could not be decoded, or if the group read is not of the same
+     * group type as the instance.
+     * @throws IllegalArgumentException if the group type of the instance is not part of the schema.
+     */
+    public void decodeInto(ByteSource in, Object group) throws IOException {
+        try {
+            generatedCodec.readDynamicGroup(in, group);
+        } catch(GroupDecodeException|FieldDecodeException e) {
+            throw decodeException(e);
+        }
+    }
+
+    /**
+     * Translate a nested group or field decode exception into a decode exception with a descriptive message,
+     * e.g. "Could not decode field (Group).field".
+     *
+     * @param e the group or field decode exception, not null.
+     * @return the exception to be thrown, not null.
+     */
+    private static DecodeException decodeException(DecodeException e) {
+        Throwable t = e;
+        StringBuilder str = new StringBuilder();
+        for (;;) {
+            if (t instanceof GroupDecodeException) {
+                str.append('(').append(((GroupDecodeException)t).getGroupName()).append(')');
+                t = t.getCause();
+            } else if(t instanceof FieldDecodeException) {
+                str.append('.').append(((FieldDecodeException)t).getFieldName());
+                t = t.getCause();
+            } else if(t instanceof ObjectInstantiationException) {
+                return new DecodeException("Could not create group "+str.toString(), t);
+            } else {
+                return new DecodeException("Could not decode field "+str.toString(), t);
             }
         }
     }
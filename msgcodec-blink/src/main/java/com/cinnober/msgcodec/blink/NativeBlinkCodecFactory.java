@@ -27,8 +27,9 @@ package com.cinnober.msgcodec.blink;
 import com.cinnober.msgcodec.MsgCodecInstantiationException;
 import com.cinnober.msgcodec.Schema;
 import com.cinnober.msgcodec.MsgCodecFactory;
-import com.cinnober.msgcodec.util.ConcurrentBufferPool;
 import com.cinnober.msgcodec.util.Pool;
+import com.cinnober.msgcodec.util.StringInternCache;
+import com.cinnober.msgcodec.util.ThreadLocalBufferPool;
 import java.util.Objects;
 
 /**
@@ -42,6 +43,7 @@ public class NativeBlinkCodecFactory implements MsgCodecFactory {
     private Pool<byte[]> bufferPool;
     private int maxBinarySize = 10 * 1_048_576; // 10 MB
     private int maxSequenceLength = 1_000_000;
+    private StringInternCache stringInternCache;
 
     /**
      * Create a Blink codec factory.
@@ -53,11 +55,12 @@ public class NativeBlinkCodecFactory implements MsgCodecFactory {
             throw new IllegalArgumentException("Schema must be bound");
         }
         this.schema = schema;
-        this.bufferPool = new ConcurrentBufferPool(1_048_576, 10);
+        this.bufferPool = new ThreadLocalBufferPool(1_048_576, 10);
     }
 
     /**
      * Set the buffer pool.
+     * The default is a {@link ThreadLocalBufferPool} of 1 MB buffers.
      * 
      * @param bufferPool the buffer pool to be used by all codec instances, not null.
      * @return this factory.
@@ -89,9 +92,25 @@ public class NativeBlinkCodecFactory implements MsgCodecFactory {
         return this;
     }
 
+    /**
+     * Set the string intern cache to be used while decoding.
+     *
+     * <p>Only string fields with the annotation <code>intern="true"</code> are interned,
+     * see {@link com.cinnober.msgcodec.anot.Intern}.
+     * The cache can be shared between factories, and its statistics can be used to monitor the hit rate.
+     * By default no cache is used, i.e. strings are never interned.
+     *
+     * @param stringInternCache the string intern cache to be used by all codec instances, or null for no interning.
+     * @return this factory.
+     */
+    public NativeBlinkCodecFactory setStringInternCache(StringInternCache stringInternCache) {
+        this.stringInternCache = stringInternCache;
+        return this;
+    }
+
     @Override
     public NativeBlinkCodec createCodec() throws MsgCodecInstantiationException {
-        return new NativeBlinkCodec(schema, bufferPool, maxBinarySize, maxSequenceLength);
+        return new NativeBlinkCodec(schema, bufferPool, maxBinarySize, maxSequenceLength, stringInternCache);
     }
     
 }
@@ -25,9 +25,11 @@ package com.cinnober.msgcodec.blink;
 
 import com.cinnober.msgcodec.io.ByteSource;
 import com.cinnober.msgcodec.DecodeException;
+import com.cinnober.msgcodec.util.StringInternCache;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 
 /**
  * Methods for reading primitive Native Blink data types.
@@ -361,6 +363,43 @@ public class NativeBlinkInput {
             return null;
         }
     }
+    /**
+     * Read a unicode string, using a cache for repeated values.
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum string length (bytes), in the range [1, 255].
+     * @param cache the string intern cache, or null for no interning.
+     * @return the value, not null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     */
+    public static String readInlineStringUTF8(ByteSource in, int maxLength, StringInternCache cache)
+            throws IOException {
+        int size = in.read();
+        if (size > maxLength) {
+            throw new DecodeException("String length (" + size + ") exceeds limit (" + maxLength + ")");
+        }
+        String str = cache != null ? in.readStringUtf8(size, cache) : in.readStringUtf8(size);
+        in.skip(maxLength - size);
+        return str;
+    }
+    /**
+     * Read a nullable unicode string, using a cache for repeated values.
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum string length (bytes), in the range [1, 255].
+     * @param cache the string intern cache, or null for no interning.
+     * @return the value, or null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     */
+    public static String readInlineStringUTF8Null(ByteSource in, int maxLength, StringInternCache cache)
+            throws IOException {
+        if (in.read() != 0) {
+            return readInlineStringUTF8(in, maxLength, cache);
+        } else {
+            in.skip(1 + maxLength);
+            return null;
+        }
+    }
     /**
      * Read a unicode string.
      * @param in the input stream to read from, not null.
@@ -404,6 +443,7 @@ public class NativeBlinkInput {
         }
         byte[] value = new byte[size];
         in.read(value);
+        in.skip(maxLength - size);
         return value;
     }
 
@@ -424,6 +464,47 @@ public class NativeBlinkInput {
         }
     }
 
+    /**
+     * Read a binary value as a read-only byte buffer.
+     * If the input is backed by a buffer, e.g. a ByteArrayBuf or a ByteBufferBuf, the returned
+     * byte buffer is a view of the input data, and no data is copied.
+     *
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum binary length (bytes), in the range [1, 255].
+     * @return the value, not null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     * @see ByteSource#readByteBuffer(int)
+     */
+    public static ByteBuffer readInlineBinaryBuffer(ByteSource in, int maxLength) throws IOException {
+        int size = in.read();
+        if (size > maxLength) {
+            throw new DecodeException("Binary length (" + size + ") exceeds limit (" + maxLength + ")");
+        }
+        ByteBuffer value = in.readByteBuffer(size);
+        in.skip(maxLength - size);
+        return value;
+    }
+
+    /**
+     * Read a nullable binary value as a read-only byte buffer.
+     *
+     * @param in the input stream to read from, not null.
+     * @param maxLength the maximum binary length (bytes), in the range [1, 255].
+     * @return the value, or null.
+     * @throws IOException if the input stream throws an exception.
+     * @throws DecodeException if the value could not be parsed.
+     * @see #readInlineBinaryBuffer(ByteSource, int)
+     */
+    public static ByteBuffer readInlineBinaryBufferNull(ByteSource in, int maxLength) throws IOException {
+        if (in.read() != 0) {
+            return readInlineBinaryBuffer(in, maxLength);
+        } else {
+            in.skip(1 + maxLength);
+            return null;
+        }
+    }
+
     /**
      * Read binary data.
      *
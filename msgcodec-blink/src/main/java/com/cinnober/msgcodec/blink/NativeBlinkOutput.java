@@ -27,6 +27,7 @@ import com.cinnober.msgcodec.io.ByteSink;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
 /**
@@ -460,6 +461,7 @@ public class NativeBlinkOutput {
         }
         out.write(value.length);
         out.write(value);
+        out.pad(maxLength - value.length);
     }
     
     /**
@@ -484,6 +486,45 @@ public class NativeBlinkOutput {
         }
     }
 
+    /**
+     * Write binary data.
+     *
+     * @param out the output stream to write to, not null.
+     * @param value the value to be written, not null. Data between position and limit will be written.
+     * The position of the value is not changed.
+     * @param maxLength the maximum data length in bytes, in the range [1, 255].
+     * @throws IOException if the underlying stream throws an exception
+     * @throws NullPointerException if value is null
+     */
+    public static void writeInlineBinary(ByteSink out, ByteBuffer value, int maxLength) throws IOException {
+        int len = value.remaining();
+        if (len > maxLength) {
+            throw new IllegalArgumentException("Binary data too large. More than " + maxLength + "  bytes");
+        }
+        out.write(len);
+        out.write(value);
+        out.pad(maxLength - len);
+    }
+
+    /**
+     * Write nullable binary data.
+     *
+     * @param out the output stream to write to, not null.
+     * @param value the value to be written. Data between position and limit will be written.
+     * The position of the value is not changed.
+     * @param maxLength the maximum data length in bytes, in the range [1, 255].
+     * @throws IOException if the underlying stream throws an exception
+     */
+    public static void writeInlineBinaryNull(ByteSink out, ByteBuffer value, int maxLength) throws IOException {
+        if (value == null) {
+            out.write(0);
+            out.pad(1 + maxLength);
+        } else {
+            out.write(1);
+            writeInlineBinary(out, value, maxLength);
+        }
+    }
+
     /**
      * Write binary data.
      *
@@ -125,6 +125,24 @@ class NativeByteCodeGenerator extends BaseByteCodeGenerator {
         }
     }
 
+    @Override
+    protected void generateEncodeBinaryBufferValue(TypeDef.Binary type, boolean required, MethodVisitor mv) {
+        if (Integer.compareUnsigned(type.getMaxSize(), 255) <= 0) {
+            // inline
+            mv.visitLdcInsn(type.getMaxSize());
+            if (required) {
+                mv.visitMethodInsn(INVOKESTATIC, blinkOutputIName, "writeInlineBinary",
+                        "(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/nio/ByteBuffer;I)V", false);
+            } else {
+                mv.visitMethodInsn(INVOKESTATIC, blinkOutputIName, "writeInlineBinaryNull",
+                        "(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/nio/ByteBuffer;I)V", false);
+            }
+        } else {
+            // data area
+            throw new UnsupportedOperationException("Not implemented yet"); // TODO: add support for data area
+        }
+    }
+
     @Override
     protected void generateEncodeStringValue(TypeDef.StringUnicode type, boolean required, MethodVisitor mv) {
         if (Integer.compareUnsigned(type.getMaxSize(), 255) <= 0) {
@@ -202,9 +220,29 @@ class NativeByteCodeGenerator extends BaseByteCodeGenerator {
             // inline
             mv.visitLdcInsn(type.getMaxSize());
             if (required) {
-                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readBinary", "(Lcom/cinnober/msgcodec/io/ByteSource;I)[B", false);
+                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readInlineBinary",
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;I)[B", false);
             } else {
-                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readBinaryNull", "(Lcom/cinnober/msgcodec/io/ByteSource;I)[B", false);
+                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readInlineBinaryNull",
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;I)[B", false);
+            }
+        } else {
+            // data area
+            throw new UnsupportedOperationException("Not implemented yet"); // TODO: add support for data area
+        }
+    }
+
+    @Override
+    protected void generateDecodeBinaryBufferValue(TypeDef.Binary type, MethodVisitor mv, boolean required) {
+        if (Integer.compareUnsigned(type.getMaxSize(), 255) <= 0) {
+            // inline
+            mv.visitLdcInsn(type.getMaxSize());
+            if (required) {
+                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readInlineBinaryBuffer",
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;I)Ljava/nio/ByteBuffer;", false);
+            } else {
+                mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readInlineBinaryBufferNull",
+                        "(Lcom/cinnober/msgcodec/io/ByteSource;I)Ljava/nio/ByteBuffer;", false);
             }
         } else {
             // data area
@@ -219,14 +257,29 @@ class NativeByteCodeGenerator extends BaseByteCodeGenerator {
      *
      * @param required true if the field is required, otherwise false.
      * @param mv the method visitor, not null.
+     * @param intern true if the string should be decoded using the string intern cache, otherwise false.
      * @see #generateDecodeValue
      */
     @Override
-    protected void generateDecodeStringValue(TypeDef.StringUnicode type, MethodVisitor mv, boolean required) {
+    protected void generateDecodeStringValue(TypeDef.StringUnicode type, MethodVisitor mv, boolean required,
+            boolean intern) {
         if (Integer.compareUnsigned(type.getMaxSize(), 255) <= 0) {
             // inline
             mv.visitLdcInsn(type.getMaxSize());
-            if (required) {
+            if (intern) {
+                mv.visitVarInsn(ALOAD, 0);
+                mv.visitMethodInsn(INVOKEVIRTUAL, baseclassIName, "getStringInternCache",
+                        "()Lcom/cinnober/msgcodec/util/StringInternCache;", false);
+                if (required) {
+                    mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readInlineStringUTF8",
+                            "(Lcom/cinnober/msgcodec/io/ByteSource;ILcom/cinnober/msgcodec/util/StringInternCache;)"
+                            + "Ljava/lang/String;", false);
+                } else {
+                    mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readInlineStringUTF8Null",
+                            "(Lcom/cinnober/msgcodec/io/ByteSource;ILcom/cinnober/msgcodec/util/StringInternCache;)"
+                            + "Ljava/lang/String;", false);
+                }
+            } else if (required) {
                 mv.visitMethodInsn(INVOKESTATIC, blinkInputIName, "readInlineStringUTF8",
                         "(Lcom/cinnober/msgcodec/io/ByteSource;I)Ljava/lang/String;", false);
             } else {
@@ -280,8 +333,8 @@ class NativeByteCodeGenerator extends BaseByteCodeGenerator {
     protected void generateDecodeSequenceValue(
             Class<?> javaClass, LocalVariable nextVar, boolean required, MethodVisitor mv,
             Class<?> componentJavaClass, int byteSourceVar, TypeDef type, Schema schema,
-            String genClassInternalName, String fieldIdentifier, String debugValueLabel, boolean javaClassCodec)
-            throws IllegalArgumentException {
+            String genClassInternalName, String fieldIdentifier, String debugValueLabel, boolean javaClassCodec,
+            boolean intern) throws IllegalArgumentException {
 
         throw new UnsupportedOperationException("Not implemented yet"); // TODO: add support for data area
     }
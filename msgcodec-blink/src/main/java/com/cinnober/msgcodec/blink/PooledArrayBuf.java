@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.io.ByteArrayBuf;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/**
+ * A byte array buffer over a pooled array, used when decoding a group from an input stream.
+ *
+ * <p>Binary values that are read as byte buffers are copied, since the array is released to the pool
+ * and reused after the group has been decoded. A ByteArrayBuf would return a view of the array.
+ *
+ * @author mikael.brannstrom
+ */
+class PooledArrayBuf extends ByteArrayBuf {
+    /**
+     * Create a new buffer.
+     * @param data the pooled array, not null.
+     * @param limit the number of valid bytes in the array.
+     */
+    PooledArrayBuf(byte[] data, int limit) {
+        super(data);
+        limit(limit);
+    }
+
+    @Override
+    public ByteBuffer readByteBuffer(int len) throws IOException {
+        ByteBuffer view = super.readByteBuffer(len);
+        ByteBuffer copy = ByteBuffer.allocate(len);
+        copy.put(view).flip();
+        return copy.asReadOnlyBuffer();
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.Accessor;
+import com.cinnober.msgcodec.CreateAccessor;
+import com.cinnober.msgcodec.FieldDef;
+import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.GroupTypeAccessor;
+import com.cinnober.msgcodec.JavaClassGroupTypeAccessor;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.WideningAccessor;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * Computes a fingerprint of a bound schema, which identifies the code generated for it.
+ *
+ * <p>The fingerprint covers the schema itself, including annotations, and the parts of the binding that
+ * the generated code depends on, e.g. the Java classes and which fields are accessed directly.
+ * Two schemas with the same fingerprint can use the same generated codec class.
+ * The fingerprint is stable between JVM instances, as long as the generated code is unchanged.
+ *
+ * @author mikael.brannstrom
+ */
+class SchemaFingerprint {
+    /**
+     * The version of the generated code.
+     * Must be incremented when the code generators change, so that old precompiled codecs are not used.
+     */
+    static final int CODE_VERSION = 7;
+
+    private SchemaFingerprint() {
+    }
+
+    /**
+     * Returns the fingerprint of the specified schema.
+     *
+     * @param schema the bound schema, not null.
+     * @return the fingerprint as a hex string of 40 characters, not null.
+     */
+    static String of(Schema schema) {
+        if (!schema.isBound()) {
+            throw new IllegalArgumentException("Schema is not bound");
+        }
+        StringBuilder str = new StringBuilder();
+        str.append("version ").append(CODE_VERSION).append('\n');
+        str.append(schema.toString()).append('\n');
+
+        GroupTypeAccessor groupTypeAccessor = schema.getBinding().getGroupTypeAccessor();
+        boolean javaClassCodec = groupTypeAccessor == JavaClassGroupTypeAccessor.INSTANCE;
+        str.append("groupTypeAccessor ").append(javaClassCodec ? "class" : "other").append('\n');
+        for (GroupDef group : schema.getGroups()) {
+            str.append("group ").append(group.getName());
+            if (javaClassCodec) {
+                Object groupType = group.getGroupType();
+                str.append(' ').append(groupType instanceof Class ?
+                        ((Class<?>) groupType).getName() : groupType.getClass().getName());
+            }
+            str.append(BaseByteCodeGenerator.isPublicConstructorFactory(group.getFactory()) ?
+                    " constructor" : " factory");
+            str.append('\n');
+            for (FieldDef field : group.getFields()) {
+                str.append("  field ").append(field.getName());
+                str.append(' ').append(className(field.getJavaClass()));
+                str.append(' ').append(className(field.getComponentJavaClass()));
+                Accessor<?, ?> accessor = field.getAccessor();
+                if (accessor instanceof WideningAccessor) {
+                    WideningAccessor<?, ?> widening = (WideningAccessor<?, ?>) accessor;
+                    str.append(widening.isInbound() ? " inbound" : " outbound");
+                    str.append(widening.isUnsigned() ? " unsigned " : " signed ");
+                    str.append(widening.getFieldType().getName()).append(' ')
+                            .append(widening.getValueType().getName());
+                    accessor = widening.getAccessor();
+                }
+                if (accessor.getClass() == CreateAccessor.class) {
+                    str.append(" create");
+                } else if (BaseByteCodeGenerator.isPublicFieldAccessor(accessor)) {
+                    Field f = BaseByteCodeGenerator.getAccessedField(accessor);
+                    str.append(" field ").append(f.getDeclaringClass().getName())
+                            .append('.').append(f.getName())
+                            .append(' ').append(f.getType().getName());
+                } else {
+                    str.append(" accessor");
+                    Class<?> primitiveAccessorType = BaseByteCodeGenerator.getPrimitiveAccessorType(
+                            field.getAccessor(), field.getJavaClass());
+                    if (primitiveAccessorType != null) {
+                        str.append(' ').append(primitiveAccessorType.getSimpleName());
+                    }
+                }
+                str.append('\n');
+            }
+        }
+        return toHex(sha1(str.toString().getBytes(StandardCharsets.UTF_8)));
+    }
+
+    private static String className(Class<?> javaClass) {
+        return javaClass != null ? javaClass.getName() : "-";
+    }
+
+    private static byte[] sha1(byte[] data) {
+        try {
+            return MessageDigest.getInstance("SHA-1").digest(data);
+        } catch (NoSuchAlgorithmException e) {
+            throw new Error("Should not happen", e);
+        }
+    }
+
+    private static String toHex(byte[] data) {
+        StringBuilder str = new StringBuilder(data.length * 2);
+        for (byte b : data) {
+            str.append(Character.forDigit((b >> 4) & 0xf, 16));
+            str.append(Character.forDigit(b & 0xf, 16));
+        }
+        return str.toString();
+    }
+}
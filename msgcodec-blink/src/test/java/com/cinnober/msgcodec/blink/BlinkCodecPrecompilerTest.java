@@ -0,0 +1,132 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.Group;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.SchemaBuilder;
+import com.cinnober.msgcodec.SchemaParser;
+import com.cinnober.msgcodec.io.ByteArrayBuf;
+import com.cinnober.msgcodec.io.ByteBuf;
+import com.cinnober.msgcodec.test.messages.TestProtocol;
+import java.io.File;
+import java.io.IOException;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.util.Map;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class BlinkCodecPrecompilerTest {
+
+    @Rule
+    public TemporaryFolder tempFolder = new TemporaryFolder();
+
+    @Test
+    public void testFingerprint() {
+        String fingerprint = SchemaFingerprint.of(TestProtocol.getSchema());
+        assertEquals(40, fingerprint.length());
+        assertEquals(fingerprint, SchemaFingerprint.of(TestProtocol.getSchema()));
+        assertNotEquals(fingerprint, SchemaFingerprint.of(new SchemaBuilder().build(BlinkCodecTest.Foo.class)));
+        assertEquals(SchemaFingerprint.of(new SchemaBuilder().build(BlinkCodecTest.Foo.class)),
+                SchemaFingerprint.of(new SchemaBuilder().build(BlinkCodecTest.Foo.class)));
+        assertNotEquals(SchemaFingerprint.of(new SchemaBuilder().build(BlinkCodecTest.Foo.class)),
+                SchemaFingerprint.of(new SchemaBuilder().build(BlinkCodecTest.Foo.class, BlinkCodecTest.Bar.class)));
+    }
+
+    @Test
+    public void testPrecompiledCodec() throws Exception {
+        Schema schema = TestProtocol.getSchema();
+        File outputDir = tempFolder.newFolder();
+        File classFile = BlinkCodecPrecompiler.generate(schema, outputDir);
+        assertTrue(classFile.isFile());
+
+        String className = BlinkCodecPrecompiler.getCodecClassName(SchemaFingerprint.of(schema));
+        GeneratedCodecClassLoader codecClassLoader = GeneratedCodecClassLoader.getInstance();
+        assertNull(codecClassLoader.findPrecompiledCodecClass(schema, className, GeneratedCompactCodec.class,
+                getClass().getClassLoader()));
+
+        try (URLClassLoader classLoader = new URLClassLoader(new URL[] { outputDir.toURI().toURL() },
+                getClass().getClassLoader())) {
+            Class<GeneratedCompactCodec> codecClass = codecClassLoader.findPrecompiledCodecClass(schema,
+                    className, GeneratedCompactCodec.class, classLoader);
+            assertNotNull(codecClass);
+            assertEquals(className, codecClass.getName());
+
+            BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+            GeneratedCompactCodec precompiledCodec = codecClass.getConstructor(BlinkCodec.class, Schema.class)
+                    .newInstance(codec, schema);
+            ByteBuf buf = new ByteArrayBuf(new byte[100000]);
+            for (Map.Entry<String, Object> entry : TestProtocol.createMessages().entrySet()) {
+                buf.clear();
+                precompiledCodec.writeDynamicGroup(buf, entry.getValue());
+                int size = buf.position();
+                buf.flip();
+                assertEquals(entry.getKey(), entry.getValue(), codec.decode(buf));
+                assertEquals(entry.getKey(), size, buf.position());
+                buf.position(0);
+                assertEquals(entry.getKey(), entry.getValue(), precompiledCodec.readDynamicGroup(buf));
+            }
+        }
+    }
+
+    @Test
+    public void testMethodSizes() throws IOException {
+        StringBuilder schemaText = new StringBuilder(BlinkCodecTest.wideGroupSchema(400));
+        for (int i = 2; i < 600; i++) {
+            schemaText.append("G").append(i).append("/").append(i).append(" -> u32 value\n");
+        }
+        Schema schema = Group.bind(SchemaParser.parse(schemaText.toString()));
+        Map<String, Integer> methodSizes = BlinkCodecPrecompiler.getMethodSizes(schema);
+        for (Map.Entry<String, Integer> entry : methodSizes.entrySet()) {
+            assertTrue(entry.getKey() + " " + entry.getValue(),
+                    entry.getValue() <= BaseByteCodeGenerator.MAX_METHOD_SIZE);
+        }
+        // split switch methods
+        assertTrue(methodSizes.containsKey(
+                "readStaticGroup$switch0(ILcom/cinnober/msgcodec/io/ByteSource;)Ljava/lang/Object;"));
+        assertTrue(methodSizes.containsKey(
+                "writeStaticGroupWithId$switch2(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/lang/Object;I)V"));
+        // split field methods
+        assertTrue(methodSizes.get("readStaticGroup_Wide$0(Lcom/cinnober/msgcodec/io/ByteSource;Ljava/lang/Object;)V")
+                <= BaseByteCodeGenerator.MAX_INLINE_SIZE);
+        assertTrue(methodSizes.get("writeStaticGroup_Wide$0(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/lang/Object;)V")
+                <= BaseByteCodeGenerator.MAX_INLINE_SIZE);
+        assertTrue(methodSizes.containsKey("sizeOfStaticGroup_Wide$0(Lcom/cinnober/msgcodec/io/ByteSink;Ljava/lang/Object;)V"));
+        // small groups are not split
+        assertTrue(methodSizes.containsKey("readStaticGroup_G2(Lcom/cinnober/msgcodec/io/ByteSource;Ljava/lang/Object;)V"));
+        assertFalse(methodSizes.containsKey("readStaticGroup_G2$0(Lcom/cinnober/msgcodec/io/ByteSource;Ljava/lang/Object;)V"));
+    }
+}
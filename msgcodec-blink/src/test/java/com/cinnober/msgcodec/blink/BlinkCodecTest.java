@@ -25,26 +25,40 @@ package com.cinnober.msgcodec.blink;
 
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import com.cinnober.msgcodec.DecodeException;
 import com.cinnober.msgcodec.Epoch;
 import com.cinnober.msgcodec.FieldBinding;
 import com.cinnober.msgcodec.FieldDef;
 import com.cinnober.msgcodec.Group;
 import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.IntAccessor;
 import com.cinnober.msgcodec.MsgCodec;
 import com.cinnober.msgcodec.MsgObject;
 import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.SchemaBinder;
+import com.cinnober.msgcodec.SchemaBinder.Direction;
 import com.cinnober.msgcodec.SchemaBuilder;
+import com.cinnober.msgcodec.SchemaParser;
 import com.cinnober.msgcodec.SymbolMapping;
+import com.cinnober.msgcodec.WideningAccessor;
 import com.cinnober.msgcodec.anot.Dynamic;
 import com.cinnober.msgcodec.anot.Id;
+import com.cinnober.msgcodec.anot.Intern;
+import com.cinnober.msgcodec.anot.Name;
 import com.cinnober.msgcodec.anot.Required;
 import com.cinnober.msgcodec.anot.Time;
+import com.cinnober.msgcodec.anot.Unsigned;
+import com.cinnober.msgcodec.io.BufferedInputStreamSource;
+import com.cinnober.msgcodec.io.BufferedOutputStreamSink;
+import com.cinnober.msgcodec.io.ByteArrayBuf;
 import com.cinnober.msgcodec.io.ByteArrays;
 import com.cinnober.msgcodec.io.ByteBuf;
 import com.cinnober.msgcodec.io.ByteBufferBuf;
 import com.cinnober.msgcodec.io.ByteBuffers;
 import com.cinnober.msgcodec.messages.MetaProtocol;
+import com.cinnober.msgcodec.test.messages.TestProtocol;
+import com.cinnober.msgcodec.util.StringInternCache;
 import org.junit.Test;
 
 import java.io.ByteArrayInputStream;
@@ -52,12 +66,19 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Date;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.TimeUnit;
 
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
 import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNotSame;
 import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
 
 /**
  * @author mikael.brannstrom
@@ -172,6 +193,60 @@ public class BlinkCodecTest {
         assertNotNull("Decoding error", decodeError);
     }
 
+    @Test
+    public void testDecodeStreamSequence() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        MsgCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        codec.encode(new Hello("first"), bout);
+        bout.write(0xc0); // null group
+        codec.encode(new Hello(new String(new char[300]).replace('\0', 'x')), bout);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bout.toByteArray());
+        assertEquals(new Hello("first"), codec.decode(in));
+        assertNull(codec.decode(in));
+        assertEquals(300, ((Hello) codec.decode(in)).getGreeting().length());
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void testDecodeStreamMalformedSize() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        MsgCodec codec = new BlinkCodecFactory(schema).createCodec();
+        byte[][] malformed = {
+            { (byte) 0xc4, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff }, // 4 GB
+            { (byte) 0xc8, 0, 0, 0, 0, 0, 0, 0, (byte) 0x80 }, // negative
+            { (byte) 0xc9, 0, 0, 0, 0, 0, 0, 0, 0, 0 }, // more than 8 bytes
+            { (byte) 0xc4, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x7f, 0x01 }, // Integer.MAX_VALUE, truncated
+        };
+        for (byte[] data : malformed) {
+            try {
+                codec.decode(new ByteArrayInputStream(data));
+                fail("Expected DecodeException");
+            } catch (DecodeException e) {
+                // expected
+            }
+        }
+    }
+
+    @Test
+    public void testBufferedStreamSequence() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        MsgCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        BufferedOutputStreamSink out = new BufferedOutputStreamSink(bout, 64);
+        for (int i = 0; i < 100; i++) {
+            codec.encode(new Hello("hello " + i), out);
+        }
+        out.flush();
+
+        BufferedInputStreamSource in = new BufferedInputStreamSource(new ByteArrayInputStream(bout.toByteArray()), 64);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new Hello("hello " + i), codec.decode(in));
+        }
+        assertEquals(0, in.buffered());
+    }
+
     @Test
     public void testDynamicGroups() throws IOException {
         Schema schema = new SchemaBuilder().build(Foo.class, Bar.class);
@@ -447,6 +522,585 @@ public class BlinkCodecTest {
         assertNull(entity.optionalIntMessage);
     }
 
+    @Test
+    public void testDecodeInto() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class, Foo.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        codec.encode(new Hello("Hello"), buf);
+        codec.encode(new Hello("World"), buf);
+        BlinkOutput.writeNull(buf);
+        buf.flip();
+
+        Hello hello = new Hello();
+        assertTrue(codec.decodeInto(buf, hello));
+        assertEquals("Hello", hello.getGreeting());
+        assertTrue(codec.decodeInto(buf, hello));
+        assertEquals("World", hello.getGreeting());
+        assertFalse(codec.decodeInto(buf, hello));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void testDecodeIntoGroup() throws IOException {
+        Schema schema = Group.bind(new SchemaBuilder().build(Hello.class));
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        Group hello = new Group(schema, "Hello");
+        hello.set("greeting", "Hello World");
+        codec.encode(hello, buf);
+        buf.flip();
+
+        Group msg = new Group(schema, "Hello");
+        assertTrue(codec.decodeInto(buf, msg));
+        assertEquals("Hello World", msg.get("greeting"));
+    }
+
+    @Test
+    public void testDecodeIntoWrongGroup() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class, Foo.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        codec.encode(new Foo(1), buf);
+        codec.encode(new Hello("Hello"), buf);
+        buf.flip();
+
+        Hello hello = new Hello();
+        try {
+            codec.decodeInto(buf, hello);
+            fail("Expected DecodeException");
+        } catch (DecodeException e) {
+            // expected
+        }
+        // the group is skipped
+        assertTrue(codec.decodeInto(buf, hello));
+        assertEquals("Hello", hello.getGreeting());
+    }
+
+    @Test
+    public void testDecodeIntoMalformedSize() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[] {
+            (byte) 0xc4, (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0, 0, 0 });
+
+        try {
+            codec.decodeInto(buf, new Hello());
+            fail("Expected DecodeException");
+        } catch (DecodeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testEncodeAll() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class, Foo.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        List<Object> msgs = new ArrayList<>();
+        msgs.add(new Hello("Hello"));
+        msgs.add(new Foo(1));
+        StringBuilder longGreeting = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            longGreeting.append('x');
+        }
+        msgs.add(new Hello(longGreeting.toString()));
+
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        int[] positions = codec.encodeAll(msgs, buf);
+        assertEquals(msgs.size() + 1, positions.length);
+        assertEquals(0, positions[0]);
+        assertEquals(buf.position(), positions[msgs.size()]);
+
+        ByteBuf buf2 = new ByteArrayBuf(new byte[1024]);
+        int[] positions2 = codec.encodeAll(msgs.toArray(), 0, msgs.size(), buf2);
+        assertArrayEquals(positions, positions2);
+
+        buf.flip();
+        for (int i = 0; i < msgs.size(); i++) {
+            assertEquals(positions[i], buf.position());
+            assertEquals(codec.getEncodedSize(msgs.get(i)), positions[i + 1] - positions[i]);
+            assertEquals(msgs.get(i), codec.decode(buf));
+        }
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void testEncodeAllIterable() throws IOException {
+        Schema schema = new SchemaBuilder().build(Foo.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        List<Object> msgs = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            msgs.add(new Foo(i));
+        }
+
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        int[] positions = codec.encodeAll(msgs::iterator, buf);
+        assertEquals(101, positions.length);
+        buf.flip();
+        for (int i = 0; i < msgs.size(); i++) {
+            assertEquals(positions[i], buf.position());
+            assertEquals(msgs.get(i), codec.decode(buf));
+        }
+    }
+
+    @Test
+    public void testDecodeAll() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class, Foo.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        StringBuilder longGreeting = new StringBuilder();
+        for (int i = 0; i < 200; i++) {
+            longGreeting.append('x');
+        }
+        Object[] msgs = { new Hello("Hello"), new Foo(1), null, new Hello(longGreeting.toString()) };
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        int[] positions = codec.encodeAll(new Object[] { msgs[0], msgs[1] }, 0, 2, buf);
+        BlinkOutput.writeNull(buf);
+        codec.encode(msgs[3], buf);
+        int end = buf.position();
+        positions = new int[] { positions[0], positions[1], positions[2], positions[2] + 1, end };
+
+        for (int limit = 0; limit <= end; limit++) {
+            buf.position(0).limit(limit);
+            List<Object> decoded = new ArrayList<>();
+            int consumed = codec.decodeAll(buf, decoded::add);
+            int count = 0;
+            while (count < msgs.length && positions[count + 1] <= limit) {
+                count++;
+            }
+            assertEquals("Decoded groups with limit " + limit, count, decoded.size());
+            assertEquals("Consumed bytes with limit " + limit, positions[count], consumed);
+            assertEquals(consumed, buf.position());
+            for (int i = 0; i < count; i++) {
+                assertEquals(msgs[i], decoded.get(i));
+            }
+
+            // resume with the rest of the data
+            buf.limit(end);
+            decoded.clear();
+            assertEquals(end - consumed, codec.decodeAll(buf, decoded::add));
+            assertEquals(msgs.length - count, decoded.size());
+            assertFalse(buf.hasRemaining());
+        }
+    }
+
+    @Test
+    public void testInternStrings() throws IOException {
+        Schema schema = new SchemaBuilder().build(InternMsg.class);
+        assertEquals("true", schema.getGroup(InternMsg.class).getField("symbol").getAnnotation("intern"));
+        StringInternCache cache = new StringInternCache();
+        BlinkCodec codec = new BlinkCodecFactory(schema).setStringInternCache(cache).createCodec();
+        InternMsg msg = new InternMsg();
+        msg.symbol = "ABC";
+        msg.firm = null;
+        msg.accounts = new String[] { "ACC1", "ACC1" };
+        msg.text = "ABC";
+
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        codec.encode(msg, buf);
+        codec.encode(msg, buf);
+        buf.flip();
+        InternMsg decoded1 = (InternMsg) codec.decode(buf);
+        InternMsg decoded2 = (InternMsg) codec.decode(buf);
+        assertEquals(msg, decoded1);
+        assertEquals(msg, decoded2);
+        assertSame(decoded1.symbol, decoded2.symbol);
+        assertSame(decoded1.accounts[0], decoded1.accounts[1]);
+        assertSame(decoded1.accounts[0], decoded2.accounts[0]);
+        assertNotSame(decoded1.text, decoded2.text);
+        assertEquals(4, cache.getHitCount());
+        assertEquals(2, cache.getMissCount());
+
+        // no cache
+        codec = new BlinkCodecFactory(schema).createCodec();
+        buf.position(0);
+        decoded1 = (InternMsg) codec.decode(buf);
+        decoded2 = (InternMsg) codec.decode(buf);
+        assertEquals(msg, decoded1);
+        assertNotSame(decoded1.symbol, decoded2.symbol);
+    }
+
+    @Test
+    public void testBinaryBuffer() throws IOException {
+        Schema schema = new SchemaBuilder().build(BinaryBufferMsg.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        BinaryBufferMsg msg = new BinaryBufferMsg();
+        msg.data = ByteBuffer.wrap(new byte[] { 0, 1, 2, 3, 4 }, 1, 3);
+        msg.optionalData = null;
+        msg.dataSeq = new ByteBuffer[] { ByteBuffer.wrap(new byte[] { 5 }), ByteBuffer.allocate(0) };
+
+        byte[] data = new byte[1024];
+        ByteBuf buf = new ByteArrayBuf(data);
+        codec.encode(msg, buf);
+        assertEquals(1, msg.data.position());
+        assertEquals(buf.position(), codec.getEncodedSize(msg));
+        byte[] encoded = Arrays.copyOf(data, buf.position());
+
+        // zero copy from a byte array buf
+        buf.flip();
+        BinaryBufferMsg decoded = (BinaryBufferMsg) codec.decode(buf);
+        assertEquals(msg, decoded);
+        assertTrue(decoded.data.isReadOnly());
+        Arrays.fill(data, (byte) 0);
+        assertEquals(ByteBuffer.wrap(new byte[3]), decoded.data);
+
+        // zero copy from a byte buffer buf
+        ByteBuffer byteBuffer = ByteBuffer.wrap(encoded.clone());
+        decoded = (BinaryBufferMsg) codec.decode(new ByteBufferBuf(byteBuffer));
+        assertEquals(msg, decoded);
+        byteBuffer.clear();
+        byteBuffer.put(new byte[encoded.length]);
+        assertEquals(ByteBuffer.wrap(new byte[3]), decoded.data);
+
+        // copy from a stream, the pooled array is reused for the next group
+        decoded = (BinaryBufferMsg) codec.decode(new ByteArrayInputStream(encoded));
+        assertEquals(msg, decoded);
+        BinaryBufferMsg other = new BinaryBufferMsg();
+        other.data = ByteBuffer.wrap(new byte[] { 9, 9, 9 });
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        codec.encode(other, bout);
+        assertEquals(other, codec.decode(new ByteArrayInputStream(bout.toByteArray())));
+        assertEquals(msg, decoded);
+    }
+
+    @Test
+    public void testPrivatePrimitiveFields() throws IOException {
+        Schema schema = new SchemaBuilder().build(PrimitiveMsg.class);
+        assertTrue(schema.getGroup(PrimitiveMsg.class).getField("intValue").getBinding().getAccessor()
+                instanceof IntAccessor);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        PrimitiveMsg msg = new PrimitiveMsg(-7, 1L << 40, 1.5f, -2.25);
+
+        ByteBuf buf = new ByteArrayBuf(new byte[100]);
+        codec.encode(msg, buf);
+        assertEquals(buf.position(), codec.getEncodedSize(msg));
+        buf.flip();
+        assertEquals(msg, codec.decode(buf));
+    }
+
+    @Test
+    public void testUpgradeWidening() throws Exception {
+        Schema narrowSchema = new SchemaBuilder().build(NarrowNumbers.class);
+        Schema wideSchema = new SchemaBuilder().build(WideNumbers.class);
+        NarrowNumbers narrow = new NarrowNumbers((byte) -1, (short) -2, -3, 1.5f);
+
+        // outbound: narrow java fields encoded as the wide schema
+        Schema outboundSchema = new SchemaBinder(narrowSchema).bind(wideSchema.unbind(), g -> Direction.OUTBOUND);
+        assertTrue(outboundSchema.getGroup(NarrowNumbers.class).getField("u8").getAccessor()
+                instanceof WideningAccessor);
+        ByteBuf buf = new ByteArrayBuf(new byte[100]);
+        new BlinkCodecFactory(outboundSchema).createCodec().encode(narrow, buf);
+        buf.flip();
+        WideNumbers wide = (WideNumbers) new BlinkCodecFactory(wideSchema).createCodec().decode(buf);
+        assertEquals(new WideNumbers(0xff, 0xfffe, -3L, 1.5), wide);
+
+        // inbound: narrow schema decoded into wide java fields
+        Schema inboundSchema = new SchemaBinder(wideSchema).bind(narrowSchema.unbind(), g -> Direction.INBOUND);
+        buf.clear();
+        new BlinkCodecFactory(narrowSchema).createCodec().encode(narrow, buf);
+        buf.flip();
+        assertEquals(new WideNumbers(0xff, 0xfffe, -3L, 1.5),
+                new BlinkCodecFactory(inboundSchema).createCodec().decode(buf));
+    }
+
+    @Test
+    public void testGetEncodedSize() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[100000]);
+        for (int len : new int[] { 0, 1, 124, 125, 126, 127, 128, 16380, 16381, 16382, 16383, 16384, 25000 }) {
+            for (char c : new char[] { 'a', '\u00e5', '\u20ac' }) {
+                StringBuilder str = new StringBuilder();
+                for (int i = 0; i < len; i++) {
+                    str.append(c);
+                }
+                Hello hello = new Hello(str.toString());
+                buf.clear();
+                codec.encode(hello, buf);
+                assertEquals("Encoded size of " + len + " x " + c, buf.position(), codec.getEncodedSize(hello));
+                buf.flip();
+                assertEquals(hello, codec.decode(buf));
+            }
+        }
+        // surrogate pair and unpaired surrogate
+        Hello hello = new Hello("x\ud83d\ude00y\ud83dz\ude00");
+        buf.clear();
+        codec.encode(hello, buf);
+        assertEquals(buf.position(), codec.getEncodedSize(hello));
+    }
+
+    @Test
+    public void testEncodeMixedGroupSizes() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[200000]);
+        List<Hello> messages = new ArrayList<>();
+        for (int len : new int[] { 10, 1000, 2000, 10, 10, 20000, 1000, 20000, 10, 16000, 100 }) {
+            StringBuilder str = new StringBuilder();
+            for (int i = 0; i < len; i++) {
+                str.append('x');
+            }
+            Hello hello = new Hello(str.toString());
+            int start = buf.position();
+            codec.encode(hello, buf);
+            assertEquals("Encoded size of " + len, buf.position() - start, codec.getEncodedSize(hello));
+            messages.add(hello);
+        }
+        buf.flip();
+        for (Hello hello : messages) {
+            assertEquals(hello, codec.decode(buf));
+        }
+        assertEquals(buf.limit(), buf.position());
+    }
+
+    @Test
+    public void testGetEncodedSizeTestMessages() throws IOException {
+        BlinkCodec codec = new BlinkCodecFactory(TestProtocol.getSchema()).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[100000]);
+        for (Map.Entry<String, Object> entry : TestProtocol.createMessages().entrySet()) {
+            buf.clear();
+            codec.encode(entry.getValue(), buf);
+            assertEquals("Encoded size of " + entry.getKey(), buf.position(), codec.getEncodedSize(entry.getValue()));
+        }
+    }
+
+    @Test
+    public void testManyGroups() throws IOException {
+        StringBuilder schemaText = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            schemaText.append("G").append(i).append("/").append(i).append(" -> u32 value\n");
+        }
+        Schema schema = Group.bind(SchemaParser.parse(schemaText.toString()));
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[100]);
+        for (int i = 0; i < 600; i++) {
+            Group group = new Group(schema, "G" + i);
+            group.set("value", i);
+            buf.clear();
+            codec.encode(group, buf);
+            buf.flip();
+            Group decoded = (Group) codec.decode(buf);
+            assertEquals("G" + i, decoded.getGroupName());
+            assertEquals(i, decoded.get("value"));
+        }
+
+        Schema otherSchema = Group.bind(SchemaParser.parse("Other/600 -> u32 value"));
+        try {
+            codec.encode(new Group(otherSchema, "Other"), buf.clear());
+            fail("Expected exception");
+        } catch (IllegalArgumentException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testWideGroup() throws IOException {
+        Schema schema = Group.bind(SchemaParser.parse(wideGroupSchema(400)));
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        Group group = new Group(schema, "Wide");
+        for (int i = 0; i < 400; i++) {
+            group.set("f" + i, i % 3 == 0 ? (Object) i : i % 3 == 1 ? (Object) ("s" + i) : (i % 2 == 0 ? null : (long) -i));
+        }
+        ByteBuf buf = new ByteArrayBuf(new byte[100000]);
+        codec.encode(group, buf);
+        buf.flip();
+        Group decoded = (Group) codec.decode(buf);
+        for (int i = 0; i < 400; i++) {
+            assertEquals("f" + i, group.get("f" + i), decoded.get("f" + i));
+        }
+    }
+
+    /**
+     * Returns a schema with a group Wide/1, with the specified number of fields of alternating types.
+     */
+    static String wideGroupSchema(int fieldCount) {
+        StringBuilder schemaText = new StringBuilder("Wide/1 ->");
+        for (int i = 0; i < fieldCount; i++) {
+            schemaText.append(i == 0 ? " " : ", ")
+                    .append(i % 3 == 0 ? "u32 f" : i % 3 == 1 ? "string f" : "i64 f").append(i)
+                    .append(i % 3 == 2 ? "?" : "");
+        }
+        return schemaText.append('\n').toString();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testEncodeUnknownGroupType() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        codec.encode(new Foo(1), new ByteArrayBuf(new byte[100]));
+    }
+
+    @Test
+    public void testSpecializeFor() throws IOException {
+        BlinkCodec codec = new BlinkCodecFactory(TestProtocol.getSchema()).createCodec();
+        BlinkCodec specialized = new BlinkCodecFactory(TestProtocol.getSchema())
+                .specializeFor(ByteArrayBuf.class).createCodec();
+        BlinkCodec specialized2 = new BlinkCodecFactory(TestProtocol.getSchema())
+                .specializeFor(ByteBufferBuf.class).createCodec();
+        ByteBuf expectedBuf = new ByteArrayBuf(new byte[100000]);
+        ByteBuf arrayBuf = new ByteArrayBuf(new byte[100000]);
+        ByteBuf bufferBuf = new ByteBufferBuf(ByteBuffer.allocate(100000));
+        for (Map.Entry<String, Object> entry : TestProtocol.createMessages().entrySet()) {
+            expectedBuf.clear();
+            codec.encode(entry.getValue(), expectedBuf);
+            byte[] expected = readRemaining(expectedBuf.flip());
+
+            arrayBuf.clear();
+            specialized.encode(entry.getValue(), arrayBuf);
+            assertArrayEquals("Encoded " + entry.getKey(), expected, readRemaining(arrayBuf.flip()));
+            arrayBuf.position(0);
+            assertEquals("Decoded " + entry.getKey(), entry.getValue(), specialized.decode(arrayBuf));
+
+            bufferBuf.clear();
+            specialized2.encode(entry.getValue(), bufferBuf);
+            bufferBuf.flip();
+            assertEquals("Decoded " + entry.getKey(), entry.getValue(), specialized.decode(bufferBuf));
+            bufferBuf.position(0);
+            assertEquals("Decoded " + entry.getKey(), entry.getValue(), specialized2.decode(bufferBuf));
+
+            ByteArrayOutputStream bout = new ByteArrayOutputStream();
+            specialized.encode(entry.getValue(), bout);
+            assertArrayEquals("Encoded " + entry.getKey(), expected, bout.toByteArray());
+            assertEquals("Decoded " + entry.getKey(), entry.getValue(),
+                    specialized.decode(new ByteArrayInputStream(expected)));
+        }
+
+        List<Object> msgs = new ArrayList<>(TestProtocol.createMessages().values());
+        arrayBuf.clear();
+        int[] positions = specialized.encodeAll(msgs, arrayBuf);
+        arrayBuf.flip();
+        List<Object> decoded = new ArrayList<>();
+        assertEquals(positions[msgs.size()], specialized.decodeAll(arrayBuf, decoded::add));
+        assertEquals(msgs, decoded);
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testSpecializeForAbstractClass() {
+        new BlinkCodecFactory(TestProtocol.getSchema()).specializeFor(ByteBuf.class);
+    }
+
+    @Test
+    public void testLazyGeneration() throws IOException {
+        BlinkCodec codec = new BlinkCodecFactory(TestProtocol.getSchema()).createCodec();
+        BlinkCodec lazy = new BlinkCodecFactory(TestProtocol.getSchema()).setLazyGeneration(true).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[100000]);
+        for (Map.Entry<String, Object> entry : TestProtocol.createMessages().entrySet()) {
+            buf.clear();
+            codec.encode(entry.getValue(), buf);
+            byte[] expected = readRemaining(buf.flip());
+
+            buf.clear();
+            lazy.encode(entry.getValue(), buf);
+            assertArrayEquals("Encoded " + entry.getKey(), expected, readRemaining(buf.flip()));
+            assertEquals("Encoded size " + entry.getKey(), expected.length, lazy.getEncodedSize(entry.getValue()));
+            buf.position(0);
+            assertEquals("Decoded " + entry.getKey(), entry.getValue(), lazy.decode(buf));
+        }
+    }
+
+    @Test
+    public void testLazyGenerationNestedDynamicGroups() throws IOException {
+        Schema schema = new SchemaBuilder().build(Foo.class, Bar.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        BlinkCodec lazy = new BlinkCodecFactory(schema).setLazyGeneration(true).createCodec();
+
+        Foo foo1 = new Foo(1);
+        Bar bar2 = new Bar(2);
+        bar2.setData(9);
+        Bar bar3 = new Bar(3);
+        bar3.setData(10);
+        foo1.setFoo(bar2);
+        bar2.setFoo(new Foo(4));
+        bar3.setFoo(foo1);
+
+        ByteArrayOutputStream expected = new ByteArrayOutputStream();
+        codec.encode(bar3, expected);
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        lazy.encode(bar3, bout);
+        assertArrayEquals(expected.toByteArray(), bout.toByteArray());
+        assertEquals(bar3, lazy.decode(new ByteArrayInputStream(bout.toByteArray())));
+    }
+
+    @Test
+    public void testLazyGenerationManyGroups() throws IOException {
+        StringBuilder schemaText = new StringBuilder();
+        for (int i = 0; i < 600; i++) {
+            schemaText.append("G").append(i).append("/").append(i).append(" -> u32 value, G").append((i + 1) % 600)
+                    .append("* next?\n");
+        }
+        Schema schema = Group.bind(SchemaParser.parse(schemaText.toString()));
+        BlinkCodec codec = new BlinkCodecFactory(schema).setLazyGeneration(true).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[100]);
+        for (int i = 0; i < 600; i += 7) {
+            Group next = new Group(schema, "G" + ((i + 1) % 600));
+            next.set("value", i + 1);
+            Group group = new Group(schema, "G" + i);
+            group.set("value", i);
+            group.set("next", next);
+            buf.clear();
+            codec.encode(group, buf);
+            buf.flip();
+            Group decoded = (Group) codec.decode(buf);
+            assertEquals("G" + i, decoded.getGroupName());
+            assertEquals(i, decoded.get("value"));
+            assertEquals(i + 1, ((Group) decoded.get("next")).get("value"));
+        }
+
+        try {
+            buf.clear();
+            BlinkOutput.writeUInt32(buf, 1);
+            BlinkOutput.writeUInt32(buf, 600);
+            codec.decode(buf.flip());
+            fail("Expected exception");
+        } catch (DecodeException e) {
+            // expected
+        }
+    }
+
+    private static byte[] readRemaining(ByteBuf buf) throws IOException {
+        byte[] data = new byte[buf.remaining()];
+        buf.read(data);
+        return data;
+    }
+
+    @Test
+    public void testGetEncodedSizeNestedDynamicGroups() throws IOException {
+        Schema schema = new SchemaBuilder().build(Foo.class, Bar.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[100000]);
+
+        Foo foo = new Foo(0);
+        for (int i = 1; i <= 1000; i++) {
+            Foo outer = (i % 2) == 0 ? new Foo(i) : new Bar(i);
+            outer.setFoo(foo);
+            foo = outer;
+            if (i % 50 == 0) {
+                buf.clear();
+                codec.encode(foo, buf);
+                assertEquals("Encoded size of depth " + i, buf.position(), codec.getEncodedSize(foo));
+                buf.flip();
+                assertEquals(foo, codec.decode(buf));
+            }
+        }
+    }
+
+    @Test
+    public void testGetEncodedSizeGroup() throws IOException {
+        Schema schema = Group.bind(new SchemaBuilder().build(Hello.class));
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        Group hello = new Group(schema, "Hello");
+        hello.set("greeting", "Hello World");
+        codec.encode(hello, buf);
+        assertEquals(buf.position(), codec.getEncodedSize(hello));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testGetEncodedSizeMissingRequired() throws IOException {
+        Schema schema = new SchemaBuilder().build(Hello.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        codec.getEncodedSize(new Hello());
+    }
+
     @Id(1)
     public static class Hello extends MsgObject {
         @Required
@@ -523,6 +1177,86 @@ public class BlinkCodecTest {
         public Date seconds2000;
     }
 
+    @Id(11)
+    public static class InternMsg extends MsgObject {
+        @Intern
+        @Required
+        public String symbol;
+        @Intern
+        public String firm;
+        @Intern
+        public String[] accounts;
+        public String text;
+    }
+
+    @Id(10)
+    public static class BinaryBufferMsg extends MsgObject {
+        @Required
+        public ByteBuffer data;
+        public ByteBuffer optionalData;
+        public ByteBuffer[] dataSeq;
+    }
+
+    @Id(12)
+    public static class PrimitiveMsg extends MsgObject {
+        private int intValue;
+        private long longValue;
+        private float floatValue;
+        private double doubleValue;
+
+        public PrimitiveMsg() {
+        }
+
+        PrimitiveMsg(int intValue, long longValue, float floatValue, double doubleValue) {
+            this.intValue = intValue;
+            this.longValue = longValue;
+            this.floatValue = floatValue;
+            this.doubleValue = doubleValue;
+        }
+    }
+
+    @Name("Numbers")
+    @Id(13)
+    public static class NarrowNumbers extends MsgObject {
+        @Unsigned
+        public byte u8;
+        @Unsigned
+        public short u16;
+        public int i32;
+        public float f32;
+
+        public NarrowNumbers() {
+        }
+
+        NarrowNumbers(byte u8, short u16, int i32, float f32) {
+            this.u8 = u8;
+            this.u16 = u16;
+            this.i32 = i32;
+            this.f32 = f32;
+        }
+    }
+
+    @Name("Numbers")
+    @Id(13)
+    public static class WideNumbers extends MsgObject {
+        @Unsigned
+        public int u8;
+        @Unsigned
+        public long u16;
+        public long i32;
+        public double f32;
+
+        public WideNumbers() {
+        }
+
+        WideNumbers(int u8, long u16, long i32, double f32) {
+            this.u8 = u8;
+            this.u16 = u16;
+            this.i32 = i32;
+            this.f32 = f32;
+        }
+    }
+
     @Id(5)
     public static abstract class AbstractMessage extends MsgObject {
     }
@@ -0,0 +1,201 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.DecodeException;
+import com.cinnober.msgcodec.MsgObject;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.SchemaBuilder;
+import com.cinnober.msgcodec.anot.Id;
+import com.cinnober.msgcodec.anot.Required;
+import com.cinnober.msgcodec.anot.Sequence;
+import com.cinnober.msgcodec.io.ByteArrayBuf;
+import com.cinnober.msgcodec.io.ByteBuf;
+import org.junit.Test;
+
+import java.io.IOException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class BlinkFlyweightTest {
+
+    private static BlinkCodec createCodec() {
+        Schema schema = new SchemaBuilder().build(Order.class, LimitOrder.class, Other.class);
+        return new BlinkCodecFactory(schema).createCodec();
+    }
+
+    private static Order createOrder() {
+        Order order = new Order();
+        order.orderId = 123456789012L;
+        order.side = 'B';
+        order.item = new Item();
+        order.item.name = "skipped";
+        order.legs = new int[] { 1, 2, 3 };
+        order.stock = "ERIC B";
+        order.price = 4711;
+        return order;
+    }
+
+    @Test
+    public void testReadFields() throws IOException {
+        BlinkCodec codec = createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        codec.encode(createOrder(), buf);
+        int end = buf.position();
+        buf.flip();
+
+        OrderView view = codec.createFlyweight(Order.class, OrderView.class);
+        assertEquals('O', codec.peekGroupId(buf));
+        view.wrap(buf);
+        assertEquals(end, buf.position());
+        assertEquals(codec.getSchema().getGroup(Order.class), view.getWrappedGroup());
+
+        assertEquals(4711, view.getPrice());
+        assertEquals("ERIC B", view.getStock().toString());
+        assertEquals(123456789012L, view.getOrderId());
+        assertEquals('B', view.getSide());
+        assertFalse(view.hasQuantity());
+        assertTrue(view.hasPrice());
+        assertEquals(end, buf.position());
+    }
+
+    @Test
+    public void testReuse() throws IOException {
+        BlinkCodec codec = createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        Order order1 = createOrder();
+        Order order2 = createOrder();
+        order2.stock = "VOLV B å";
+        order2.quantity = 100;
+        codec.encode(order1, buf);
+        codec.encode(order2, buf);
+        buf.flip();
+
+        OrderView view = codec.createFlyweight(Order.class, OrderView.class);
+        view.wrap(buf);
+        CharSequence stock = view.getStock();
+        assertEquals("ERIC B", stock.toString());
+        view.wrap(buf);
+        assertSame(stock, view.getStock());
+        assertEquals("VOLV B å", stock.toString());
+        assertTrue(view.hasQuantity());
+        assertEquals(100, view.getQuantity());
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void testSubGroup() throws IOException {
+        BlinkCodec codec = createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        LimitOrder order = new LimitOrder();
+        order.orderId = 1;
+        order.stock = "ABB";
+        order.price = 10;
+        order.limit = 20;
+        codec.encode(order, buf);
+        buf.flip();
+
+        OrderView view = codec.createFlyweight(Order.class, OrderView.class);
+        view.wrap(buf);
+        assertEquals(codec.getSchema().getGroup(LimitOrder.class), view.getWrappedGroup());
+        assertEquals("ABB", view.getStock().toString());
+        assertEquals(10, view.getPrice());
+    }
+
+    @Test(expected = DecodeException.class)
+    public void testWrongGroup() throws IOException {
+        BlinkCodec codec = createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        codec.encode(new Other(), buf);
+        buf.flip();
+
+        OrderView view = codec.createFlyweight(Order.class, OrderView.class);
+        view.wrap(buf);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void testAbsentValue() throws IOException {
+        BlinkCodec codec = createCodec();
+        ByteBuf buf = new ByteArrayBuf(new byte[1024]);
+        codec.encode(createOrder(), buf);
+        buf.flip();
+
+        OrderView view = codec.createFlyweight(Order.class, OrderView.class);
+        view.wrap(buf);
+        view.getQuantity();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownField() throws IOException {
+        createCodec().createFlyweight(Order.class, BadView.class);
+    }
+
+    public interface OrderView extends BlinkFlyweight {
+        long getOrderId();
+        char getSide();
+        CharSequence getStock();
+        int getPrice();
+        boolean hasPrice();
+        int getQuantity();
+        boolean hasQuantity();
+    }
+
+    public interface BadView extends BlinkFlyweight {
+        int getNoSuchField();
+    }
+
+    public static class Item extends MsgObject {
+        @Required
+        public String name;
+    }
+
+    @Id('O')
+    public static class Order extends MsgObject {
+        public long orderId;
+        public char side;
+        public Item item;
+        @Sequence(int.class)
+        public int[] legs;
+        @Required
+        public String stock;
+        public int price;
+        public Integer quantity;
+    }
+
+    @Id('L')
+    public static class LimitOrder extends Order {
+        public int limit;
+    }
+
+    @Id('X')
+    public static class Other extends MsgObject {
+        public int value;
+    }
+}
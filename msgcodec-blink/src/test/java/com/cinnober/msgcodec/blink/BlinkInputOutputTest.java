@@ -24,6 +24,8 @@
 package com.cinnober.msgcodec.blink;
 
 import com.cinnober.msgcodec.io.ByteArrayBuf;
+import com.cinnober.msgcodec.io.ByteBuf;
+import com.cinnober.msgcodec.io.ByteBufferBuf;
 import com.cinnober.msgcodec.io.ByteSink;
 import com.cinnober.msgcodec.io.ByteSource;
 import static org.junit.Assert.assertEquals;
@@ -32,6 +34,8 @@ import static org.junit.Assert.assertArrayEquals;
 import java.io.IOException;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
 
 import org.junit.Test;
 
@@ -125,6 +129,50 @@ public class BlinkInputOutputTest {
 
 
 
+    /**
+     * Encode and decode VLC values of all sizes, using both the bulk and byte wise paths of the byte bufs.
+     * @throws IOException
+     */
+    @Test
+    public void testVLCSizes() throws IOException {
+        ByteBuf[] bufs = new ByteBuf[] {
+            new ByteArrayBuf(32),
+            new ByteBufferBuf(ByteBuffer.allocate(32)),
+            new ByteBufferBuf(ByteBuffer.allocateDirect(32).order(ByteOrder.LITTLE_ENDIAN)),
+        };
+        long[] values = new long[] { 0, 63, -64, 4711, -4711, 1L<<15, 1L<<16, -(1L<<23), 1L<<31, 1L<<32,
+            -(1L<<39), 1L<<47, 1L<<48, -(1L<<55), 1L<<56, Long.MAX_VALUE, Long.MIN_VALUE, -1 };
+        for (ByteBuf buf : bufs) {
+            for (long value : values) {
+                for (int offset : new int[] { 0, 32 - BlinkOutput.sizeOfUnsignedVLC(value) }) {
+                    testVLC(buf, offset, value, BlinkOutput.sizeOfUnsignedVLC(value),
+                        BlinkOutput::writeUnsignedVLC, BlinkInput::readUnsignedVLC);
+                }
+                for (int offset : new int[] { 0, 32 - BlinkOutput.sizeOfSignedVLC(value) }) {
+                    testVLC(buf, offset, value, BlinkOutput.sizeOfSignedVLC(value),
+                        BlinkOutput::writeSignedVLC, BlinkInput::readSignedVLC);
+                }
+            }
+        }
+    }
+
+    private void testVLC(ByteBuf buf, int offset, long value, int size, WriteOp<Long> writeOp, ReadOp<Long> readOp)
+            throws IOException {
+        buf.clear();
+        buf.pad(32);
+        buf.position(offset);
+        buf.write(0x55);
+        buf.position(offset);
+        writeOp.writeValue(buf, value);
+        assertEquals("Encoded size", size, buf.position() - offset);
+        if (offset + size < 32) {
+            assertEquals("Byte after value", 0, buf.read());
+        }
+        buf.position(offset);
+        assertEquals("Decoded value", value, (long) readOp.readValue(buf));
+        assertEquals("Decoded size", size, buf.position() - offset);
+    }
+
     private void testEncodeDecodeUnsignedVLC(long value, byte[] encoded) throws IOException {
         testEncodeDecode(value, encoded, BlinkOutput::writeUnsignedVLC, BlinkInput::readUnsignedVLC);
     }
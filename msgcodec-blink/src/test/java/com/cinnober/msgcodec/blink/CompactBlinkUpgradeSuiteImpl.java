@@ -31,7 +31,7 @@ public class CompactBlinkUpgradeSuiteImpl extends TestUpgradesSuite {
 
     public CompactBlinkUpgradeSuiteImpl(Class<?> rootClass)
             throws InitializationError {
-        super(rootClass, s -> new BlinkCodec(s, new ConcurrentBufferPool(1_048_576, 10), 10 * 1_048_576, 1_000_000));
+        super(rootClass, s -> new BlinkCodec(s, new ConcurrentBufferPool(1_048_576, 10), 10 * 1_048_576, 1_000_000, null, null, false));
     }
 
 }
@@ -0,0 +1,196 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink;
+
+import com.cinnober.msgcodec.Group;
+import com.cinnober.msgcodec.MsgObject;
+import com.cinnober.msgcodec.Schema;
+import com.cinnober.msgcodec.SchemaBuilder;
+import com.cinnober.msgcodec.SchemaParser;
+import com.cinnober.msgcodec.anot.Id;
+import com.cinnober.msgcodec.blink.packageaccess.PackageAccessMessages;
+import com.cinnober.msgcodec.io.ByteArrayBuf;
+import com.cinnober.msgcodec.io.ByteBuf;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.lang.invoke.MethodHandles;
+import java.lang.ref.WeakReference;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import org.junit.Assume;
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class GeneratedCodecClassLoaderTest {
+
+    @Test
+    public void testStructurallyEqualSchemasShareClass() {
+        Schema schema1 = new SchemaBuilder().build(BlinkCodecTest.Foo.class);
+        Schema schema2 = new SchemaBuilder().build(BlinkCodecTest.Foo.class);
+        Schema schema3 = new SchemaBuilder().build(BlinkCodecTest.Foo.class, BlinkCodecTest.Bar.class);
+        GeneratedCodecClassLoader classLoader = GeneratedCodecClassLoader.getInstance();
+        assertSame(classLoader.getGeneratedCodecClass(schema1), classLoader.getGeneratedCodecClass(schema2));
+        assertNotSame(classLoader.getGeneratedCodecClass(schema1), classLoader.getGeneratedCodecClass(schema3));
+    }
+
+    @Test
+    public void testConcurrentGeneration() throws Exception {
+        int numSchemas = 8;
+        int numThreads = numSchemas * 2;
+        List<Schema> schemas = new ArrayList<>();
+        for (int i = 0; i < numSchemas; i++) {
+            schemas.add(Group.bind(SchemaParser.parse("Concurrent" + i + "/1 -> u32 value")));
+        }
+        ExecutorService executor = Executors.newFixedThreadPool(numThreads);
+        try {
+            CountDownLatch start = new CountDownLatch(1);
+            List<Future<Class<GeneratedCompactCodec>>> futures = new ArrayList<>();
+            for (int i = 0; i < numThreads; i++) {
+                Schema schema = schemas.get(i % numSchemas);
+                futures.add(executor.submit(() -> {
+                    start.await();
+                    return GeneratedCodecClassLoader.getInstance().getGeneratedCodecClass(schema);
+                }));
+            }
+            start.countDown();
+            for (int i = 0; i < numThreads; i++) {
+                assertSame(futures.get(i % numSchemas).get(), futures.get(i).get());
+                assertSame(GeneratedCodecClassLoader.getInstance().getGeneratedCodecClass(
+                        schemas.get(i % numSchemas)), futures.get(i).get());
+            }
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void testUnloadCodecClass() throws Exception {
+        WeakReference<Class<?>> codecClassRef = createCodecAndReturnClass();
+        for (int i = 0; i < 20 && codecClassRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("Codec class should be unloaded", codecClassRef.get());
+    }
+
+    @Test
+    public void testPackagePrivateFields() throws Exception {
+        Schema schema = new SchemaBuilder().build(PackagePrivateMsg.class);
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        PackagePrivateMsg msg = new PackagePrivateMsg();
+        msg.value = 7;
+        msg.text = "seven";
+        ByteBuf buf = new ByteArrayBuf(new byte[100]);
+        codec.encode(msg, buf);
+        buf.flip();
+        assertEquals(msg, codec.decode(buf));
+    }
+
+    @Test
+    public void testPackagePrivateCodecClassIsDefinedInMessagePackage() {
+        Assume.assumeTrue(isLookupDefineClassSupported());
+        Schema schema = new SchemaBuilder().build(PackagePrivateMsg.class);
+        Class<GeneratedCompactCodec> codecClass = GeneratedCodecClassLoader.getInstance()
+                .getGeneratedCodecClass(schema);
+        assertSame(PackagePrivateMsg.class.getClassLoader(), codecClass.getClassLoader());
+        assertEquals(PackagePrivateMsg.class.getPackage().getName(), codecClass.getPackage().getName());
+        assertTrue(BaseByteCodeGenerator.isDirectFieldAccessor(
+                schema.getGroup(PackagePrivateMsg.class).getField("value").getAccessor(),
+                codecClass.getName().replace('.', '/')));
+    }
+
+    @Test
+    public void testPackageCodecClassIsReusedAfterGc() throws Exception {
+        Assume.assumeTrue(isLookupDefineClassSupported());
+        Class<?> messageClass = PackageAccessMessages.getMessageClass();
+        Class<GeneratedCompactCodec> codecClass = GeneratedCodecClassLoader.getInstance()
+                .getGeneratedCodecClass(new SchemaBuilder().build(messageClass));
+        assertSame(messageClass.getClassLoader(), codecClass.getClassLoader());
+        assertEquals(messageClass.getPackage().getName(), codecClass.getPackage().getName());
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(10);
+            assertSame(codecClass, GeneratedCodecClassLoader.getInstance()
+                    .getGeneratedCodecClass(new SchemaBuilder().build(messageClass)));
+        }
+    }
+
+    @Test
+    public void testSpecializedCodecInOtherPackage() throws Exception {
+        Class<?> messageClass = PackageAccessMessages.getMessageClass();
+        Schema schema = new SchemaBuilder().build(messageClass);
+        BlinkCodec codec = new BlinkCodecFactory(schema).specializeFor(ByteArrayBuf.class).createCodec();
+        Object msg = PackageAccessMessages.createMessage(7, "seven");
+        ByteBuf buf = new ByteArrayBuf(new byte[100]);
+        codec.encode(msg, buf);
+        buf.flip();
+        assertEquals(msg, codec.decode(buf));
+
+        if (isLookupDefineClassSupported()) {
+            Class<GeneratedCompactCodec> codecClass = GeneratedCodecClassLoader.getInstance()
+                    .getSpecializedCodecClass(schema, ByteArrayBuf.class);
+            assertSame(messageClass.getClassLoader(), codecClass.getClassLoader());
+            assertEquals(messageClass.getPackage().getName(), codecClass.getPackage().getName());
+        }
+    }
+
+    private static boolean isLookupDefineClassSupported() {
+        try {
+            MethodHandles.Lookup.class.getMethod("defineClass", byte[].class);
+            return true;
+        } catch (NoSuchMethodException e) {
+            return false;
+        }
+    }
+
+    private static WeakReference<Class<?>> createCodecAndReturnClass() throws IOException {
+        Schema schema = Group.bind(SchemaParser.parse("UnloadMe/1 -> u32 value"));
+        BlinkCodec codec = new BlinkCodecFactory(schema).createCodec();
+        Group group = new Group(schema, "UnloadMe");
+        group.set("value", 1);
+        codec.encode(group, new ByteArrayOutputStream());
+        return new WeakReference<>(GeneratedCodecClassLoader.getInstance().getGeneratedCodecClass(schema));
+    }
+
+    @Id(1)
+    static class PackagePrivateMsg extends MsgObject {
+        @Id(1)
+        int value;
+        @Id(2)
+        String text;
+        PackagePrivateMsg() {}
+    }
+}
@@ -17,14 +17,25 @@
  */
 package com.cinnober.msgcodec.blink;
 
+import com.cinnober.msgcodec.DecodeException;
 import com.cinnober.msgcodec.MsgObject;
 import com.cinnober.msgcodec.Schema;
 import com.cinnober.msgcodec.SchemaBuilder;
 import com.cinnober.msgcodec.anot.Id;
+import com.cinnober.msgcodec.anot.MaxSize;
+import com.cinnober.msgcodec.anot.Required;
 import com.cinnober.msgcodec.anot.Unsigned;
+import com.cinnober.msgcodec.io.BufferedInputStreamSource;
+import com.cinnober.msgcodec.io.BufferedOutputStreamSink;
 import com.cinnober.msgcodec.io.ByteArrayBuf;
 import com.cinnober.msgcodec.io.ByteBuf;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
 import org.junit.Test;
 import static org.junit.Assert.*;
 
@@ -51,6 +62,146 @@ public class NativeBlinkCodecTest {
         assertEquals(msg1, msg2);
     }
 
+    @Test
+    public void testDecodeStreamSequence() throws IOException {
+        Schema schema = new SchemaBuilder().build(IntMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        codec.encode(new IntMessage(1,2,3,4), bout);
+        codec.encode(new IntMessage(5,6,7,8), bout);
+
+        ByteArrayInputStream in = new ByteArrayInputStream(bout.toByteArray());
+        assertEquals(new IntMessage(1,2,3,4), codec.decode(in));
+        assertEquals(new IntMessage(5,6,7,8), codec.decode(in));
+        assertEquals(0, in.available());
+    }
+
+    @Test
+    public void testBufferedStreamSequence() throws IOException {
+        Schema schema = new SchemaBuilder().build(IntMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        BufferedOutputStreamSink out = new BufferedOutputStreamSink(bout, 64);
+        for (int i = 0; i < 100; i++) {
+            codec.encode(new IntMessage(i, i+1, i+2, i+3), out);
+        }
+        out.flush();
+
+        BufferedInputStreamSource in = new BufferedInputStreamSource(new ByteArrayInputStream(bout.toByteArray()), 64);
+        for (int i = 0; i < 100; i++) {
+            assertEquals(new IntMessage(i, i+1, i+2, i+3), codec.decode(in));
+        }
+        assertEquals(0, in.buffered());
+    }
+
+    @Test
+    public void testDecodeStreamNegativeSize() throws IOException {
+        Schema schema = new SchemaBuilder().build(IntMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+        try {
+            codec.decode(new ByteArrayInputStream(new byte[] { 0, 0, 0, (byte) 0x80 }));
+            fail("Expected DecodeException");
+        } catch (DecodeException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void testDecodeInto() throws IOException {
+        Schema schema = new SchemaBuilder().build(IntMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+
+        ByteBuf buf = new ByteArrayBuf(1024);
+        codec.encode(new IntMessage(1,2,3,4), buf);
+        codec.encode(new IntMessage(5,6,7,8), buf);
+
+        buf.flip();
+        IntMessage msg = new IntMessage();
+        codec.decodeInto(buf, msg);
+        assertEquals(new IntMessage(1,2,3,4), msg);
+        codec.decodeInto(buf, msg);
+        assertEquals(new IntMessage(5,6,7,8), msg);
+    }
+
+    @Test
+    public void testDecodeAll() throws IOException {
+        Schema schema = new SchemaBuilder().build(IntMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+        Object[] msgs = { new IntMessage(1,2,3,4), new IntMessage(5,6,7,8), new IntMessage(9,10,11,12) };
+
+        ByteBuf buf = new ByteArrayBuf(1024);
+        int[] positions = codec.encodeAll(msgs, 0, msgs.length, buf);
+        int end = buf.position();
+
+        buf.position(0).limit(positions[2] - 1);
+        List<Object> decoded = new ArrayList<>();
+        assertEquals(positions[1], codec.decodeAll(buf, decoded::add));
+        assertEquals(Arrays.asList(msgs[0]), decoded);
+        assertEquals(positions[1], buf.position());
+
+        buf.limit(end);
+        decoded.clear();
+        assertEquals(end - positions[1], codec.decodeAll(buf, decoded::add));
+        assertEquals(Arrays.asList(msgs[1], msgs[2]), decoded);
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test
+    public void testEncodeAll() throws IOException {
+        Schema schema = new SchemaBuilder().build(IntMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+        Object[] msgs = { new IntMessage(1,2,3,4), new IntMessage(5,6,7,8), new IntMessage(9,10,11,12) };
+
+        ByteBuf buf = new ByteArrayBuf(1024);
+        buf.position(10);
+        int[] positions = codec.encodeAll(msgs, 1, 2, buf);
+        assertEquals(3, positions.length);
+        assertEquals(10, positions[0]);
+        assertEquals(buf.position(), positions[2]);
+
+        buf.flip();
+        buf.position(positions[1]);
+        assertEquals(msgs[2], codec.decode(buf));
+        buf.position(positions[0]);
+        assertEquals(msgs[1], codec.decode(buf));
+        assertEquals(positions[1], buf.position());
+    }
+
+    @Test
+    public void testInlineBinary() throws IOException {
+        Schema schema = new SchemaBuilder().build(BinaryMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+        BinaryMessage msg = new BinaryMessage();
+        msg.bytes = new byte[] { 1, 2, 3 };
+        msg.data = ByteBuffer.wrap(new byte[] { 4, 5 });
+        msg.optionalData = null;
+        BinaryMessage msg2 = new BinaryMessage();
+        msg2.bytes = new byte[0];
+        msg2.data = ByteBuffer.wrap(new byte[] { 6, 7, 8, 9 });
+        msg2.optionalData = ByteBuffer.wrap(new byte[] { 10 });
+
+        ByteBuf buf = new ByteArrayBuf(1024);
+        codec.encode(msg, buf);
+        int size = buf.position();
+        codec.encode(msg2, buf);
+        assertEquals("fixed size", 2 * size, buf.position());
+        assertEquals(2, msg.data.remaining());
+
+        buf.flip();
+        assertEquals(msg, codec.decode(buf));
+        assertEquals(msg2, codec.decode(buf));
+        assertFalse(buf.hasRemaining());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testInlineBinaryTooLarge() throws IOException {
+        Schema schema = new SchemaBuilder().build(BinaryMessage.class);
+        NativeBlinkCodec codec = new NativeBlinkCodecFactory(schema).createCodec();
+        BinaryMessage msg = new BinaryMessage();
+        msg.bytes = new byte[0];
+        msg.data = ByteBuffer.allocate(9);
+        codec.encode(msg, new ByteArrayBuf(1024));
+    }
 
     @Id(1)
     public static class IntMessage extends MsgObject {
@@ -71,4 +222,16 @@ public class NativeBlinkCodecTest {
             this.d = d;
         }
     }
+
+    @Id(2)
+    public static class BinaryMessage extends MsgObject {
+        @Required
+        @MaxSize(8)
+        public byte[] bytes;
+        @Required
+        @MaxSize(8)
+        public ByteBuffer data;
+        @MaxSize(8)
+        public ByteBuffer optionalData;
+    }
 }
@@ -32,6 +32,6 @@ public class NativeBlinkUpgradeSuiteImpl extends TestUpgradesSuite {
 
     public NativeBlinkUpgradeSuiteImpl(Class<?> rootClass)
             throws InitializationError {
-        super(rootClass, s -> new NativeBlinkCodec(s, new ConcurrentBufferPool(1_048_576, 10), 10 * 1_048_576, 1_000_000));
+        super(rootClass, s -> new NativeBlinkCodec(s, new ConcurrentBufferPool(1_048_576, 10), 10 * 1_048_576, 1_000_000, null));
     }
 }
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.blink.packageaccess;
+
+import com.cinnober.msgcodec.MsgObject;
+import com.cinnober.msgcodec.anot.Id;
+
+/**
+ * Package-private messages in a package of their own, for testing codecs that are defined
+ * in the package of the message classes.
+ *
+ * @author mikael.brannstrom
+ */
+public class PackageAccessMessages {
+    private PackageAccessMessages() {
+    }
+
+    public static Class<?> getMessageClass() {
+        return Msg.class;
+    }
+
+    public static Object createMessage(int value, String text) {
+        Msg msg = new Msg();
+        msg.value = value;
+        msg.text = text;
+        return msg;
+    }
+
+    @Id(1)
+    static class Msg extends MsgObject {
+        @Id(1)
+        int value;
+        @Id(2)
+        String text;
+        Msg() {}
+    }
+}
@@ -27,6 +27,7 @@ import java.io.IOException;
 import java.lang.reflect.Array;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Date;
@@ -38,9 +39,13 @@ import java.util.concurrent.TimeUnit;
 import com.cinnober.msgcodec.Accessor;
 import com.cinnober.msgcodec.CreateAccessor;
 import com.cinnober.msgcodec.DecodeException;
+import com.cinnober.msgcodec.DoubleAccessor;
 import com.cinnober.msgcodec.Epoch;
 import com.cinnober.msgcodec.Factory;
+import com.cinnober.msgcodec.FloatAccessor;
 import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.IntAccessor;
+import com.cinnober.msgcodec.LongAccessor;
 import com.cinnober.msgcodec.ObjectInstantiationException;
 import com.cinnober.msgcodec.SymbolMapping;
 import com.cinnober.msgcodec.TypeDef;
@@ -151,6 +156,9 @@ public abstract class JsonValueHandler<T> {
             checkType(javaClass, boolean.class, Boolean.class);
             return (JsonValueHandler<T>) JsonValueHandler.BOOLEAN;
         case BINARY:
+            if (javaClass.equals(ByteBuffer.class)) {
+                return (JsonValueHandler<T>) new BinaryBufferHandler(((TypeDef.Binary)type).getMaxSize());
+            }
             checkType(javaClass, byte[].class);
             return ((TypeDef.Binary)type).hasMaxSize() ?
                     (JsonValueHandler<T>) new BinaryHandler(((TypeDef.Binary)type).getMaxSize()) :
@@ -230,6 +238,91 @@ public abstract class JsonValueHandler<T> {
      */
     public abstract T readValue(JsonParser p) throws IOException;
 
+    /**
+     * Write an int value to the specified json generator.
+     * The default implementation boxes the value and calls {@link #writeValue(Object, JsonGenerator)}.
+     * @param value the value.
+     * @param g the json generator to write to, not null.
+     * @throws IOException if the json generator throws an exception.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeIntValue(int value, JsonGenerator g) throws IOException {
+        writeValue((T) Integer.valueOf(value), g);
+    }
+    /**
+     * Read an int value from the specified json parser.
+     * The default implementation calls {@link #readValue(JsonParser)} and unboxes the value.
+     * @param p the json parser to read from, not null.
+     * @return the value.
+     * @throws IOException if the json parser throws an exception.
+     */
+    public int readIntValue(JsonParser p) throws IOException {
+        return (Integer) readValue(p);
+    }
+    /**
+     * Write a long value to the specified json generator.
+     * The default implementation boxes the value and calls {@link #writeValue(Object, JsonGenerator)}.
+     * @param value the value.
+     * @param g the json generator to write to, not null.
+     * @throws IOException if the json generator throws an exception.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeLongValue(long value, JsonGenerator g) throws IOException {
+        writeValue((T) Long.valueOf(value), g);
+    }
+    /**
+     * Read a long value from the specified json parser.
+     * The default implementation calls {@link #readValue(JsonParser)} and unboxes the value.
+     * @param p the json parser to read from, not null.
+     * @return the value.
+     * @throws IOException if the json parser throws an exception.
+     */
+    public long readLongValue(JsonParser p) throws IOException {
+        return (Long) readValue(p);
+    }
+    /**
+     * Write a float value to the specified json generator.
+     * The default implementation boxes the value and calls {@link #writeValue(Object, JsonGenerator)}.
+     * @param value the value.
+     * @param g the json generator to write to, not null.
+     * @throws IOException if the json generator throws an exception.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeFloatValue(float value, JsonGenerator g) throws IOException {
+        writeValue((T) Float.valueOf(value), g);
+    }
+    /**
+     * Read a float value from the specified json parser.
+     * The default implementation calls {@link #readValue(JsonParser)} and unboxes the value.
+     * @param p the json parser to read from, not null.
+     * @return the value.
+     * @throws IOException if the json parser throws an exception.
+     */
+    public float readFloatValue(JsonParser p) throws IOException {
+        return (Float) readValue(p);
+    }
+    /**
+     * Write a double value to the specified json generator.
+     * The default implementation boxes the value and calls {@link #writeValue(Object, JsonGenerator)}.
+     * @param value the value.
+     * @param g the json generator to write to, not null.
+     * @throws IOException if the json generator throws an exception.
+     */
+    @SuppressWarnings("unchecked")
+    public void writeDoubleValue(double value, JsonGenerator g) throws IOException {
+        writeValue((T) Double.valueOf(value), g);
+    }
+    /**
+     * Read a double value from the specified json parser.
+     * The default implementation calls {@link #readValue(JsonParser)} and unboxes the value.
+     * @param p the json parser to read from, not null.
+     * @return the value.
+     * @throws IOException if the json parser throws an exception.
+     */
+    public double readDoubleValue(JsonParser p) throws IOException {
+        return (Double) readValue(p);
+    }
+
     static class Int8Handler extends JsonValueHandler<Byte> {
         private Int8Handler() {}
         @Override
@@ -262,6 +355,14 @@ public abstract class JsonValueHandler<T> {
         public Integer readValue(JsonParser p) throws IOException {
             return p.getIntValue();
         }
+        @Override
+        public void writeIntValue(int value, JsonGenerator g) throws IOException {
+            g.writeNumber(value);
+        }
+        @Override
+        public int readIntValue(JsonParser p) throws IOException {
+            return p.getIntValue();
+        }
     }
     static class Int64Handler extends JsonValueHandler<Long> {
         private final boolean jsSafe;
@@ -270,15 +371,22 @@ public abstract class JsonValueHandler<T> {
         }
         @Override
         public void writeValue(Long value, JsonGenerator g) throws IOException {
-            long v = value.longValue();
-            if (jsSafe && !isJavaScriptSafeUnsigned(v)) {
-                g.writeString(Long.toString(v));
+            writeLongValue(value.longValue(), g);
+        }
+        @Override
+        public Long readValue(JsonParser p) throws IOException {
+            return readLongValue(p);
+        }
+        @Override
+        public void writeLongValue(long value, JsonGenerator g) throws IOException {
+            if (jsSafe && !isJavaScriptSafeUnsigned(value)) {
+                g.writeString(Long.toString(value));
             } else {
-                g.writeNumber(v);
+                g.writeNumber(value);
             }
         }
         @Override
-        public Long readValue(JsonParser p) throws IOException {
+        public long readLongValue(JsonParser p) throws IOException {
             switch (p.getCurrentToken()) {
                 case VALUE_NUMBER_INT:
                     return p.getLongValue();
@@ -332,6 +440,14 @@ public abstract class JsonValueHandler<T> {
         public Integer readValue(JsonParser p) throws IOException {
             return (int) p.getLongValue();
         }
+        @Override
+        public void writeIntValue(int value, JsonGenerator g) throws IOException {
+            g.writeNumber(value & 0xffffffffL);
+        }
+        @Override
+        public int readIntValue(JsonParser p) throws IOException {
+            return (int) p.getLongValue();
+        }
     }
     static class UInt64Handler extends JsonValueHandler<Long> {
         private static final BigInteger TWO_POW_64 = BigInteger.ONE.shiftLeft(64);
@@ -341,9 +457,16 @@ public abstract class JsonValueHandler<T> {
         }
         @Override
         public void writeValue(Long value, JsonGenerator g) throws IOException {
-            long v = value.longValue();
-            if (jsSafe && !isJavaScriptSafeUnsigned(value)) {
-                if (value < 0) {
+            writeLongValue(value.longValue(), g);
+        }
+        @Override
+        public Long readValue(JsonParser p) throws IOException {
+            return readLongValue(p);
+        }
+        @Override
+        public void writeLongValue(long v, JsonGenerator g) throws IOException {
+            if (jsSafe && !isJavaScriptSafeUnsigned(v)) {
+                if (v < 0) {
                     g.writeString(TWO_POW_64.add(BigInteger.valueOf(v)).toString());
                 } else {
                     g.writeString(Long.toString(v));
@@ -357,7 +480,7 @@ public abstract class JsonValueHandler<T> {
             }
         }
         @Override
-        public Long readValue(JsonParser p) throws IOException {
+        public long readLongValue(JsonParser p) throws IOException {
             // TODO: we're not validating that the parsed value is positive and less than 2^64
             switch (p.getCurrentToken()) {
                 case VALUE_NUMBER_INT:
@@ -419,6 +542,22 @@ public abstract class JsonValueHandler<T> {
             return value;
         }
     }
+    static class BinaryBufferHandler extends JsonValueHandler<ByteBuffer> {
+        private final BinaryHandler binaryHandler;
+        private BinaryBufferHandler(int maxSize) {
+            binaryHandler = new BinaryHandler(maxSize);
+        }
+        @Override
+        public void writeValue(ByteBuffer value, JsonGenerator g) throws IOException {
+            byte[] bytes = new byte[value.remaining()];
+            value.duplicate().get(bytes);
+            binaryHandler.writeValue(bytes, g);
+        }
+        @Override
+        public ByteBuffer readValue(JsonParser p) throws IOException {
+            return ByteBuffer.wrap(binaryHandler.readValue(p));
+        }
+    }
     static class BooleanHandler extends JsonValueHandler<Boolean> {
         private BooleanHandler() {}
         @Override
@@ -523,6 +662,14 @@ public abstract class JsonValueHandler<T> {
         }
         @Override
         public Float readValue(JsonParser p) throws IOException {
+            return readFloatValue(p);
+        }
+        @Override
+        public void writeFloatValue(float value, JsonGenerator g) throws IOException {
+            g.writeNumber(value);
+        }
+        @Override
+        public float readFloatValue(JsonParser p) throws IOException {
             switch (p.getCurrentToken()) {
                 case VALUE_NUMBER_FLOAT:
                 case VALUE_NUMBER_INT:
@@ -551,6 +698,14 @@ public abstract class JsonValueHandler<T> {
         }
         @Override
         public Double readValue(JsonParser p) throws IOException {
+            return readDoubleValue(p);
+        }
+        @Override
+        public void writeDoubleValue(double value, JsonGenerator g) throws IOException {
+            g.writeNumber(value);
+        }
+        @Override
+        public double readDoubleValue(JsonParser p) throws IOException {
             switch (p.getCurrentToken()) {
                 case VALUE_NUMBER_FLOAT:
                 case VALUE_NUMBER_INT:
@@ -827,6 +982,8 @@ public abstract class JsonValueHandler<T> {
         private final boolean required;
         private final int requiredSlot;
         private final JsonValueHandler valueHandler;
+        /** The primitive type of the accessor, or null if the value is accessed as an object. */
+        private final Class<?> primitiveType;
 
         public FieldHandler(String name, Accessor accessor, boolean required, int requiredSlot,
                 JsonValueHandler valueHandler) {
@@ -835,9 +992,40 @@ public abstract class JsonValueHandler<T> {
             this.required = required;
             this.requiredSlot = requiredSlot;
             this.valueHandler = valueHandler;
+            this.primitiveType = required ? getPrimitiveType(accessor) : null;
+        }
+
+        private static Class<?> getPrimitiveType(Accessor accessor) {
+            if (accessor instanceof CreateAccessor) {
+                return null;
+            } else if (accessor instanceof IntAccessor) {
+                return int.class;
+            } else if (accessor instanceof LongAccessor) {
+                return long.class;
+            } else if (accessor instanceof FloatAccessor) {
+                return float.class;
+            } else if (accessor instanceof DoubleAccessor) {
+                return double.class;
+            } else {
+                return null;
+            }
         }
 
         void writeValue(Object group, JsonGenerator g) throws IOException {
+            if (primitiveType != null) {
+                g.writeFieldName(name);
+                if (primitiveType == int.class) {
+                    valueHandler.writeIntValue(((IntAccessor) accessor).getInt(group), g);
+                } else if (primitiveType == long.class) {
+                    valueHandler.writeLongValue(((LongAccessor) accessor).getLong(group), g);
+                } else if (primitiveType == float.class) {
+                    valueHandler.writeFloatValue(((FloatAccessor) accessor).getFloat(group), g);
+                } else {
+                    valueHandler.writeDoubleValue(((DoubleAccessor) accessor).getDouble(group), g);
+                }
+                return;
+            }
+
             Object value = accessor.getValue(group);
             
             if(accessor instanceof CreateAccessor) {
@@ -857,8 +1045,18 @@ public abstract class JsonValueHandler<T> {
         }
 
         void readValue(Object group, JsonParser p) throws IOException {
-            Object value = valueHandler.readValue(p);
-            accessor.setValue(group, value);
+            if (primitiveType == int.class) {
+                ((IntAccessor) accessor).setInt(group, valueHandler.readIntValue(p));
+            } else if (primitiveType == long.class) {
+                ((LongAccessor) accessor).setLong(group, valueHandler.readLongValue(p));
+            } else if (primitiveType == float.class) {
+                ((FloatAccessor) accessor).setFloat(group, valueHandler.readFloatValue(p));
+            } else if (primitiveType == double.class) {
+                ((DoubleAccessor) accessor).setDouble(group, valueHandler.readDoubleValue(p));
+            } else {
+                Object value = valueHandler.readValue(p);
+                accessor.setValue(group, value);
+            }
         }
         void readNull() throws IOException {
             if (required) {
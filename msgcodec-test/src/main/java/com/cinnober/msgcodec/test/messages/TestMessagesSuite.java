@@ -45,8 +45,10 @@ import com.cinnober.msgcodec.io.ByteArrays;
 import com.cinnober.msgcodec.io.ByteBuf;
 import com.cinnober.msgcodec.io.ByteBufferBuf;
 import com.cinnober.msgcodec.io.ByteSink;
+import com.cinnober.msgcodec.io.CompositeByteBuf;
 import com.cinnober.msgcodec.io.ReallocatingArray;
 import com.cinnober.msgcodec.io.ReallocatingByteBuf;
+import com.cinnober.msgcodec.io.UnsafeByteBuf;
 
 import org.junit.Assert;
 
@@ -197,6 +199,11 @@ public abstract class TestMessagesSuite extends Suite {
                 
                 runByteBuf(notifier, message, new ReallocatingByteBuf(4096, 4096, ByteBuffer::allocate));
                 runByteBuf(notifier, message, new ReallocatingByteBuf(4096, 4096, ByteBuffer::allocateDirect));
+                runByteBuf(notifier, message, new CompositeByteBuf(16, 4096));
+                if (UnsafeByteBuf.isSupported()) {
+                    runByteBuf(notifier, message, new UnsafeByteBuf(4096));
+                    runByteBuf(notifier, message, new UnsafeByteBuf(ByteBuffer.allocateDirect(4096)));
+                }
             }
             
             notifier.fireTestFinished(description);
@@ -63,6 +63,7 @@ import java.io.InputStream;
 import java.io.OutputStream;
 import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.util.ArrayList;
 import java.util.Date;
@@ -251,7 +252,9 @@ public class XmlCodec implements MsgCodec {
             } else if (componentType.getType() == TypeDef.Type.STRING) {
                 valueInstr = new SequenceItemValue(new NsName(null, "i"), XmlStringFormat.STRING);
             } else if (componentType.getType() == TypeDef.Type.BINARY) {
-                valueInstr = new SequenceItemValue(new NsName(null, "i"), XmlBinaryFormat.BINARY);
+                valueInstr = new SequenceItemValue(new NsName(null, "i"),
+                        field.getComponentJavaClass() == ByteBuffer.class ?
+                        XmlBinaryBufferFormat.BINARY_BUFFER : XmlBinaryFormat.BINARY);
             }
 
 
@@ -396,6 +399,11 @@ public class XmlCodec implements MsgCodec {
             } else {
                 throw new RuntimeException("Unhandled time type: " + type);
             }
+        case BINARY:
+            if (javaClass.equals(ByteBuffer.class)) {
+                return XmlBinaryBufferFormat.BINARY_BUFFER;
+            }
+            return XmlBinaryFormat.BINARY;
         default:
             return getSimpleXmlFormat(type.getType());
         }
@@ -33,9 +33,13 @@ import java.util.Collections;
 import java.util.Map;
 
 import com.cinnober.msgcodec.Accessor;
+import com.cinnober.msgcodec.DoubleAccessor;
 import com.cinnober.msgcodec.Factory;
 import com.cinnober.msgcodec.FieldDef;
+import com.cinnober.msgcodec.FloatAccessor;
 import com.cinnober.msgcodec.GroupDef;
+import com.cinnober.msgcodec.IntAccessor;
+import com.cinnober.msgcodec.LongAccessor;
 import java.util.BitSet;
 import java.util.List;
 import java.util.Objects;
@@ -426,6 +430,9 @@ class XmlElementHandler {
     static class SimpleField extends FieldHandler {
         @SuppressWarnings("rawtypes")
         private final XmlFormat format;
+        /** The format if it can parse primitive values, otherwise null. */
+        @SuppressWarnings("rawtypes")
+        private final XmlNumberFormat numberFormat;
 
         /**
          * @param nsName
@@ -436,6 +443,7 @@ class XmlElementHandler {
         public SimpleField(NsName nsName, FieldDef field, int requiredFieldSlot, XmlFormat format) {
             super(nsName, field, requiredFieldSlot);
             this.format = format;
+            this.numberFormat = format instanceof XmlNumberFormat ? (XmlNumberFormat) format : null;
         }
 
         public void handleAttribute(XmlContext ctx, NsName attribute, String text) throws SAXException {
@@ -446,8 +454,23 @@ class XmlElementHandler {
         @SuppressWarnings("unchecked")
         public void handleText(XmlContext ctx, String text) throws SAXException {
             try {
-                Object value = format.parse(text);
                 Object group = ctx.peekValue();
+                if (numberFormat != null) {
+                    if (accessor instanceof IntAccessor) {
+                        ((IntAccessor) accessor).setInt(group, numberFormat.parseIntValue(text));
+                        return;
+                    } else if (accessor instanceof LongAccessor) {
+                        ((LongAccessor) accessor).setLong(group, numberFormat.parseLongValue(text));
+                        return;
+                    } else if (accessor instanceof FloatAccessor) {
+                        ((FloatAccessor) accessor).setFloat(group, numberFormat.parseFloatValue(text));
+                        return;
+                    } else if (accessor instanceof DoubleAccessor) {
+                        ((DoubleAccessor) accessor).setDouble(group, numberFormat.parseDoubleValue(text));
+                        return;
+                    }
+                }
+                Object value = format.parse(text);
                 accessor.setValue(group, value);
             } catch (FormatException e) {
                 throw new SAXException(e);
@@ -87,6 +87,35 @@ abstract class XmlNumberFormat<T> implements XmlFormat<T> {
         return new BigDecimal(str);
     }
 
+    /**
+     * Parse an int value without boxing.
+     * The default implementation unboxes the result of {@link #parse(String)}.
+     */
+    public int parseIntValue(String str) throws FormatException {
+        return (Integer) parse(str);
+    }
+    /**
+     * Parse a long value without boxing.
+     * The default implementation unboxes the result of {@link #parse(String)}.
+     */
+    public long parseLongValue(String str) throws FormatException {
+        return (Long) parse(str);
+    }
+    /**
+     * Parse a float value without boxing.
+     * The default implementation unboxes the result of {@link #parse(String)}.
+     */
+    public float parseFloatValue(String str) throws FormatException {
+        return (Float) parse(str);
+    }
+    /**
+     * Parse a double value without boxing.
+     * The default implementation unboxes the result of {@link #parse(String)}.
+     */
+    public double parseDoubleValue(String str) throws FormatException {
+        return (Double) parse(str);
+    }
+
 
     public static class Int64NumberFormat extends XmlNumberFormat<Long> {
         @Override
@@ -97,6 +126,10 @@ abstract class XmlNumberFormat<T> implements XmlFormat<T> {
         public Long parse(String str) throws FormatException {
             return parseInt(str);
         }
+        @Override
+        public long parseLongValue(String str) throws FormatException {
+            return parseInt(str);
+        }
     }
     public static class Int32NumberFormat extends XmlNumberFormat<Integer> {
         @Override
@@ -107,6 +140,10 @@ abstract class XmlNumberFormat<T> implements XmlFormat<T> {
         public Integer parse(String str) throws FormatException {
             return (int) parseInt(str);
         }
+        @Override
+        public int parseIntValue(String str) throws FormatException {
+            return (int) parseInt(str);
+        }
     }
     public static class Int16NumberFormat extends XmlNumberFormat<Short> {
         @Override
@@ -142,6 +179,10 @@ abstract class XmlNumberFormat<T> implements XmlFormat<T> {
         public Long parse(String str) throws FormatException {
             return parseUInt(str);
         }
+        @Override
+        public long parseLongValue(String str) throws FormatException {
+            return parseUInt(str);
+        }
     }
 
     public static class UInt32NumberFormat extends XmlNumberFormat<Integer> {
@@ -153,6 +194,10 @@ abstract class XmlNumberFormat<T> implements XmlFormat<T> {
         public Integer parse(String str) throws FormatException {
             return (int) parseUInt(str);
         }
+        @Override
+        public int parseIntValue(String str) throws FormatException {
+            return (int) parseUInt(str);
+        }
     }
     public static class UInt16NumberFormat extends XmlNumberFormat<Short> {
         @Override
@@ -205,6 +250,10 @@ abstract class XmlNumberFormat<T> implements XmlFormat<T> {
         public Float parse(String str) throws FormatException {
             return parseFloat(str);
         }
+        @Override
+        public float parseFloatValue(String str) throws FormatException {
+            return parseFloat(str);
+        }
     }
     public static class DoubleNumberFormat extends XmlNumberFormat<Double> {
         @Override
@@ -215,6 +264,10 @@ abstract class XmlNumberFormat<T> implements XmlFormat<T> {
         public Double parse(String str) throws FormatException {
             return parseDouble(str);
         }
+        @Override
+        public double parseDoubleValue(String str) throws FormatException {
+            return parseDouble(str);
+        }
     }
     public static class DecimalNumberFormat extends XmlNumberFormat<BigDecimal> {
         @Override
@@ -24,14 +24,25 @@
 
 package com.cinnober.msgcodec;
 
+import java.lang.invoke.LambdaMetafactory;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
 import java.lang.reflect.Constructor;
 import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Modifier;
 import java.util.Objects;
+import java.util.function.Supplier;
 
 /**
  * The constructor factory is a factory backed by a no-arg constructor.
  * ConstructorFactory is immutable.
  *
+ * <p>On Java 9 and later, the constructor is invoked through a {@link Supplier} created by the
+ * {@link LambdaMetafactory}, which is JIT compiled like a direct constructor call. Otherwise the constructor is
+ * invoked through a method handle.
+ *
  * Msgcodec implementations may check if a factory is <code>instanceof ConstructorFactory</code>
  * and generate optimized code in that case.
  *
@@ -39,7 +50,24 @@ import java.util.Objects;
  * @param <T> the type of object to create.
  */
 public final class ConstructorFactory<T> implements Factory<T> {
+    /** MethodHandles.privateLookupIn(Class, Lookup), or null if not supported (Java 8). */
+    private static final Method privateLookupInMethod;
+    static {
+        Method privateLookupIn;
+        try {
+            privateLookupIn = MethodHandles.class.getMethod("privateLookupIn",
+                    Class.class, MethodHandles.Lookup.class);
+        } catch (NoSuchMethodException e) {
+            privateLookupIn = null;
+        }
+        privateLookupInMethod = privateLookupIn;
+    }
+
     private final Constructor<T> constructor;
+    /** The supplier that invokes the constructor, or null if not available. */
+    private final Supplier<?> supplier;
+    /** The constructor method handle, ()Object, or null if the class is abstract. */
+    private final MethodHandle handle;
 
     /**
      * Create a new constructor factory.
@@ -51,18 +79,63 @@ public final class ConstructorFactory<T> implements Factory<T> {
         }
         this.constructor = constructor;
         this.constructor.setAccessible(true);
+        if (Modifier.isAbstract(constructor.getDeclaringClass().getModifiers())) {
+            this.supplier = null;
+            this.handle = null;
+        } else {
+            this.supplier = createSupplier(constructor);
+            try {
+                this.handle = MethodHandles.lookup().unreflectConstructor(constructor)
+                        .asType(MethodType.methodType(Object.class));
+            } catch (IllegalAccessException e) {
+                throw new Error("Should not happen", e);
+            }
+        }
     }
 
+    /**
+     * Create a supplier that invokes the constructor, using a lookup in the declaring class.
+     *
+     * @param constructor the no-arg constructor, not null.
+     * @return the supplier, or null if the declaring class cannot be looked up, e.g. on Java 8.
+     */
+    private static Supplier<?> createSupplier(Constructor<?> constructor) {
+        if (privateLookupInMethod == null) {
+            return null;
+        }
+        Class<?> declaringClass = constructor.getDeclaringClass();
+        try {
+            MethodHandles.Lookup lookup = (MethodHandles.Lookup)
+                    privateLookupInMethod.invoke(null, declaringClass, MethodHandles.lookup());
+            return (Supplier<?>) LambdaMetafactory.metafactory(lookup, "get",
+                    MethodType.methodType(Supplier.class),
+                    MethodType.methodType(Object.class),
+                    lookup.unreflectConstructor(constructor),
+                    MethodType.methodType(declaringClass)).getTarget().invokeExact();
+        } catch (Throwable e) {
+            // e.g. the package is not open to msgcodec, fall back to the method handle
+            return null;
+        }
+    }
+
+    @SuppressWarnings("unchecked")
     @Override
     public T newInstance() {
+        if (handle == null) {
+            try {
+                return constructor.newInstance();
+            } catch (InstantiationException e) {
+                throw new ObjectInstantiationException("Cannot instantiate abstract class " +
+                        constructor.getDeclaringClass().getCanonicalName(), e);
+            } catch (IllegalAccessException e) {
+                throw new Error("Should not happen", e);
+            } catch (InvocationTargetException e) {
+                throw new RuntimeException("Constructor throwed exception", e);
+            }
+        }
         try {
-            return constructor.newInstance();
-        } catch (InstantiationException e) {
-            throw new ObjectInstantiationException("Cannot instantiate abstract class " +
-                    constructor.getDeclaringClass().getCanonicalName(), e);
-        } catch (IllegalAccessException e) {
-            throw new Error("Should not happen", e);
-        } catch (InvocationTargetException e) {
+            return supplier != null ? (T) supplier.get() : (T) handle.invokeExact();
+        } catch (Throwable e) {
             throw new RuntimeException("Constructor throwed exception", e);
         }
     }
@@ -23,10 +23,13 @@
  */
 package com.cinnober.msgcodec;
 
+import java.lang.reflect.Array;
 import java.lang.reflect.Field;
+import java.util.ArrayList;
 import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
@@ -44,7 +47,10 @@ public class EnumSymbols<E extends Enum<E>> {
     private final TypeDef.Enum typeDef;
     private final Class<E> enumClass;
     private final EnumMap<E, TypeDef.Symbol> symbolByEnum;
-    private final Map<Integer, E> enumById;
+    /** The index of the mapped symbols, by id. */
+    private final SymbolIdIndex idIndex;
+    /** The enum value of each mapped symbol, in the order of the index. */
+    private final E[] enumByIndex;
     private final Map<String, E> enumByName;
 
     /** Create a enum symbol mapping.
@@ -56,10 +62,11 @@ public class EnumSymbols<E extends Enum<E>> {
         this.enumClass = enumClass;
 
         symbolByEnum = new EnumMap<>(enumClass);
-        enumById = new HashMap<>(typeDef.getSymbols().size() * 2);
         enumByName = new HashMap<>(typeDef.getSymbols().size() * 2);
 
         Map<TypeDef.Symbol, E> enumBySymbol = inverse(createSymbolMap(enumClass));
+        List<E> enums = new ArrayList<>(typeDef.getSymbols().size());
+        List<Integer> ids = new ArrayList<>(typeDef.getSymbols().size());
         for (TypeDef.Symbol symbol : typeDef.getSymbols()) {
             E en = enumBySymbol.get(symbol);
             if (en == null) {
@@ -67,9 +74,14 @@ public class EnumSymbols<E extends Enum<E>> {
                 continue;
             }
             symbolByEnum.put(en, symbol);
-            enumById.put(symbol.getId(), en);
+            enums.add(en);
+            ids.add(symbol.getId());
             enumByName.put(symbol.getName(), en);
         }
+        @SuppressWarnings("unchecked")
+        E[] enumArray = (E[]) Array.newInstance(enumClass, enums.size());
+        enumByIndex = enums.toArray(enumArray);
+        idIndex = new SymbolIdIndex(ids.stream().mapToInt(Integer::intValue).toArray());
     }
     
     @Override
@@ -96,7 +108,8 @@ public class EnumSymbols<E extends Enum<E>> {
     * @return the Java enum value, or null if none was found.
     */
     public E getEnum(int id) {
-        return enumById.get(id);
+        int index = idIndex.indexOf(id);
+        return index >= 0 ? enumByIndex[index] : null;
     }
 
     /** Returns the symbol for the Java enumeration value.
@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+/**
+ * An accessor of int field values, which gets and sets the values without boxing.
+ *
+ * <p>Msgcodec implementations may check if an accessor is <code>instanceof IntAccessor</code>
+ * and use {@link #getInt(Object)} and {@link #setInt(Object, int)} for int fields.
+ *
+ * @author mikael.brannstrom
+ *
+ * @param <O> the object type, that contains the field.
+ */
+public interface IntAccessor<O> extends Accessor<O, Integer> {
+    /**
+     * Returns the value for the field in the specified object.
+     * @param obj the object to get the field value from, not null.
+     * @return the field value.
+     */
+    int getInt(O obj);
+
+    /**
+     * Set the value for the field in the specified object.
+     * @param obj the object to set the field value in, not null.
+     * @param value the field value.
+     */
+    void setInt(O obj, int value);
+
+    @Override
+    default Integer getValue(O obj) {
+        return getInt(obj);
+    }
+
+    @Override
+    default void setValue(O obj, Integer value) {
+        setInt(obj, value);
+    }
+}
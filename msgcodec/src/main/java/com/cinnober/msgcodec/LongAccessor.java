@@ -0,0 +1,60 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+/**
+ * An accessor of long field values, which gets and sets the values without boxing.
+ *
+ * <p>Msgcodec implementations may check if an accessor is <code>instanceof LongAccessor</code>
+ * and use {@link #getLong(Object)} and {@link #setLong(Object, long)} for long fields.
+ *
+ * @author mikael.brannstrom
+ *
+ * @param <O> the object type, that contains the field.
+ */
+public interface LongAccessor<O> extends Accessor<O, Long> {
+    /**
+     * Returns the value for the field in the specified object.
+     * @param obj the object to get the field value from, not null.
+     * @return the field value.
+     */
+    long getLong(O obj);
+
+    /**
+     * Set the value for the field in the specified object.
+     * @param obj the object to set the field value in, not null.
+     * @param value the field value.
+     */
+    void setLong(O obj, long value);
+
+    @Override
+    default Long getValue(O obj) {
+        return getLong(obj);
+    }
+
+    @Override
+    default void setValue(O obj, Long value) {
+        setLong(obj, value);
+    }
+}
@@ -23,11 +23,14 @@
  */
 package com.cinnober.msgcodec;
 
+import com.cinnober.msgcodec.io.ByteBuf;
 import com.cinnober.msgcodec.io.ByteSink;
 import com.cinnober.msgcodec.io.ByteSource;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Collection;
 
 /** 
  * A codec that can encode and decode messages.
@@ -44,6 +47,9 @@ import java.io.OutputStream;
 public interface MsgCodec {
     /**
      * Write the group to the specified stream.
+     *
+     * <p>When writing a sequence of groups to the same stream, consider wrapping the stream in a
+     * {@link com.cinnober.msgcodec.io.BufferedOutputStreamSink} and calling {@link #encode(Object, ByteSink)}.
      * 
      * @param group the group to encode.
      * @param out the stream to write to, not null.
@@ -62,9 +68,81 @@ public interface MsgCodec {
      * Partial data may have been written to the byte sink.
      */
     void encode(Object group, ByteSink out) throws IOException, IllegalArgumentException;
+    /**
+     * Write a range of groups to the byte buffer, one after the other.
+     *
+     * <p>The result is the same as calling {@link #encode(Object, ByteSink)} for each group.
+     * The groups are written by the encoder returned by {@link #encoderFor(ByteBuf)}.
+     *
+     * @param groups the groups to encode, not null.
+     * @param offset the index of the first group to encode.
+     * @param length the number of groups to encode.
+     * @param out the byte buffer to write to, not null.
+     * @return the position of each encoded group in the byte buffer, not null. The array has <code>length+1</code>
+     * elements, where the last element is the position after the last group.
+     * @throws IOException if the underlying byte buffer throws an exception.
+     * @throws IllegalArgumentException if a group is not correct or complete, e.g. a required field is missing.
+     * Partial data may have been written to the byte buffer.
+     */
+    default int[] encodeAll(Object[] groups, int offset, int length, ByteBuf out)
+            throws IOException, IllegalArgumentException {
+        GroupEncoder encoder = encoderFor(out);
+        int[] positions = new int[length + 1];
+        for (int i = 0; i < length; i++) {
+            positions[i] = out.position();
+            encoder.encode(groups[offset + i], out);
+        }
+        positions[length] = out.position();
+        return positions;
+    }
+    /**
+     * Write the groups to the byte buffer, one after the other.
+     *
+     * <p>The result is the same as calling {@link #encode(Object, ByteSink)} for each group.
+     * The groups are written by the encoder returned by {@link #encoderFor(ByteBuf)}.
+     *
+     * @param groups the groups to encode, not null.
+     * @param out the byte buffer to write to, not null.
+     * @return the position of each encoded group in the byte buffer, not null. The array has one element more
+     * than the number of groups, where the last element is the position after the last group.
+     * @throws IOException if the underlying byte buffer throws an exception.
+     * @throws IllegalArgumentException if a group is not correct or complete, e.g. a required field is missing.
+     * Partial data may have been written to the byte buffer.
+     */
+    default int[] encodeAll(Iterable<?> groups, ByteBuf out) throws IOException, IllegalArgumentException {
+        GroupEncoder encoder = encoderFor(out);
+        int[] positions = new int[groups instanceof Collection ? ((Collection<?>) groups).size() + 1 : 16];
+        int count = 0;
+        for (Object group : groups) {
+            if (count + 1 == positions.length) {
+                positions = Arrays.copyOf(positions, positions.length * 2);
+            }
+            positions[count++] = out.position();
+            encoder.encode(group, out);
+        }
+        positions[count] = out.position();
+        return count + 1 == positions.length ? positions : Arrays.copyOf(positions, count + 1);
+    }
+    /**
+     * Returns the encoder that the <code>encodeAll</code> methods write all groups to the byte buffer with.
+     *
+     * <p>The default encoder calls {@link #encode(Object, ByteSink)}. Implementations may override this method
+     * to do any per-buffer work once instead of per group, e.g. choosing an encoder for the byte buffer class.
+     *
+     * @param out the byte buffer that the groups will be written to, not null.
+     * @return the encoder, not null.
+     * @see #encodeAll(Object[], int, int, ByteBuf)
+     * @see #encodeAll(Iterable, ByteBuf)
+     */
+    default GroupEncoder encoderFor(ByteBuf out) {
+        return this::encode;
+    }
     /**
      * Read a group from the specified stream.
      *
+     * <p>When reading a sequence of groups from the same stream, consider wrapping the stream in a
+     * {@link com.cinnober.msgcodec.io.BufferedInputStreamSource} and calling {@link #decode(ByteSource)}.
+     *
      * @param in the stream to read from, not null.
      * @return the decoded value.
      * @throws IOException if the underlying stream throws an exception.
@@ -80,4 +158,20 @@ public interface MsgCodec {
      * @throws DecodeException if the value could not be decoded, or if a required field is missing.
      */
     Object decode(ByteSource in) throws IOException, DecodeException;
+
+    /**
+     * Writes groups to a byte buffer, see {@link MsgCodec#encoderFor(ByteBuf)}.
+     */
+    @FunctionalInterface
+    interface GroupEncoder {
+        /**
+         * Write the group to the byte buffer.
+         *
+         * @param group the group to encode.
+         * @param out the byte buffer to write to, not null.
+         * @throws IOException if the underlying byte buffer throws an exception.
+         * @throws IllegalArgumentException if the group is not correct or complete.
+         */
+        void encode(Object group, ByteBuf out) throws IOException, IllegalArgumentException;
+    }
 }
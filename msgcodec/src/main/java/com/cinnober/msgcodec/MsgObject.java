@@ -32,6 +32,7 @@ import java.lang.reflect.Field;
 import java.lang.reflect.Modifier;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
@@ -45,6 +46,7 @@ import java.util.concurrent.ConcurrentHashMap;
 
 import static com.cinnober.msgcodec.MsgObjectValueHandler.ArraySequenceHandler;
 import static com.cinnober.msgcodec.MsgObjectValueHandler.BINARY;
+import static com.cinnober.msgcodec.MsgObjectValueHandler.BINARY_BUFFER;
 import static com.cinnober.msgcodec.MsgObjectValueHandler.DateTimeHandler;
 import static com.cinnober.msgcodec.MsgObjectValueHandler.FieldHandler;
 import static com.cinnober.msgcodec.MsgObjectValueHandler.GROUP;
@@ -166,6 +168,9 @@ public class MsgObject {
         if (simpleTypes.contains(type)) {
             return SIMPLE;
         }
+        if (type.equals(ByteBuffer.class)) {
+            return BINARY_BUFFER;
+        }
 
         return GROUP; //getGroupValueHandler(type);
     }
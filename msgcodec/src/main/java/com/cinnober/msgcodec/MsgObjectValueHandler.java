@@ -25,6 +25,7 @@ package com.cinnober.msgcodec;
 
 import java.lang.reflect.Array;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.Collection;
 import java.util.Date;
 import java.util.concurrent.TimeUnit;
@@ -33,6 +34,7 @@ import com.cinnober.msgcodec.anot.Id;
 import com.cinnober.msgcodec.anot.Name;
 import com.cinnober.msgcodec.anot.Time;
 import com.cinnober.msgcodec.io.ByteArrays;
+import com.cinnober.msgcodec.io.ByteBuffers;
 import com.cinnober.msgcodec.util.TimeFormat;
 import java.lang.reflect.Field;
 import java.util.Arrays;
@@ -50,6 +52,7 @@ abstract class MsgObjectValueHandler<T> {
     static final UInt32Handler UINT32 = new UInt32Handler();
     static final UInt64Handler UINT64 = new UInt64Handler();
     static final BinaryHandler BINARY = new BinaryHandler();
+    static final BinaryBufferHandler BINARY_BUFFER = new BinaryBufferHandler();
     static final RefGroupHandler GROUP = new RefGroupHandler();
 
     /**
@@ -135,6 +138,12 @@ abstract class MsgObjectValueHandler<T> {
             return Arrays.hashCode(value);
         }
     }
+    static class BinaryBufferHandler extends MsgObjectValueHandler<ByteBuffer> {
+        @Override
+        void appendToString(ByteBuffer value, StringBuilder appendTo) {
+            appendTo.append(ByteBuffers.toHex(value));
+        }
+    }
     static abstract class TimeHandler<T> extends MsgObjectValueHandler<T> {
         private final TimeFormat timeFormat;
 
@@ -312,22 +321,21 @@ abstract class MsgObjectValueHandler<T> {
     static class FieldHandler implements Comparable<FieldHandler> {
         private final String name;
         private final int id;
-        private final Field field;
+        private final FieldAccessor accessor;
         private final MsgObjectValueHandler valueHandler;
         FieldHandler(Field field, MsgObjectValueHandler valueHandler) {
             Name nameAnot = field.getAnnotation(Name.class);
             this.name = nameAnot != null ? nameAnot.value() : field.getName();
             Id idAnot = field.getAnnotation(Id.class);
             this.id = idAnot != null ? -idAnot.value() : -1;
-            this.field = field;
-            field.setAccessible(true); // make it faster
+            this.accessor = new FieldAccessor(field);
             this.valueHandler = valueHandler;
         }
 
         Object getValue(Object group) {
             try {
-                return field.get(group);
-            } catch (IllegalArgumentException | IllegalAccessException ex) {
+                return accessor.getValue(group);
+            } catch (ClassCastException ex) {
                 return null;
             }
         }
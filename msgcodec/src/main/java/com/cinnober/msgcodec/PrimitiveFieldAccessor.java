@@ -0,0 +1,278 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.util.Objects;
+
+/**
+ * An accessor backed by a {@link java.lang.reflect.Field} of a primitive type,
+ * which gets and sets the field without boxing. PrimitiveFieldAccessor is immutable.
+ *
+ * <p>{@link SchemaBuilder} creates primitive field accessors for int, long, float and double fields,
+ * and {@link FieldAccessor} for other fields. Each accessor implements the matching primitive accessor
+ * interface, e.g. {@link IntAccessor}.
+ *
+ * Msgcodec implementations may check if an accessor is <code>instanceof PrimitiveFieldAccessor</code>
+ * and generate optimized code in that case, as for {@link FieldAccessor}.
+ *
+ * @author mikael.brannstrom
+ * @param <V> the boxed field value type.
+ */
+public abstract class PrimitiveFieldAccessor<V> implements Accessor<Object, V> {
+    protected final Field field;
+    /** The getter, (Object)type. */
+    protected final MethodHandle getter;
+    /** The setter, (Object,type)void, or null if the field is final and must be set by reflection. */
+    protected final MethodHandle setter;
+
+    PrimitiveFieldAccessor(Field field, Class<?> type) {
+        if (field.getType() != type) {
+            throw new IllegalArgumentException("Expected field of type " + type + ": " + field);
+        }
+        this.field = field;
+        this.field.setAccessible(true);
+        MethodHandles.Lookup lookup = MethodHandles.lookup();
+        try {
+            this.getter = lookup.unreflectGetter(field).asType(MethodType.methodType(type, Object.class));
+        } catch (IllegalAccessException e) {
+            throw new Error("Should not happen", e);
+        }
+        MethodHandle fieldSetter;
+        try {
+            fieldSetter = lookup.unreflectSetter(field).asType(MethodType.methodType(void.class, Object.class, type));
+        } catch (IllegalAccessException e) {
+            // final field, not writable through method handles on all JVMs
+            fieldSetter = null;
+        }
+        this.setter = fieldSetter;
+    }
+
+    /**
+     * Create a primitive field accessor for the specified field.
+     *
+     * @param field the field, not null.
+     * @return the accessor, or null if there is no primitive field accessor for the type of the field.
+     */
+    public static PrimitiveFieldAccessor<?> create(Field field) {
+        Class<?> type = field.getType();
+        if (type == int.class) {
+            return new IntField(field);
+        } else if (type == long.class) {
+            return new LongField(field);
+        } else if (type == float.class) {
+            return new FloatField(field);
+        } else if (type == double.class) {
+            return new DoubleField(field);
+        } else {
+            return null;
+        }
+    }
+
+    /**
+     * Returns the underlying field.
+     * @return the underlying field, not null.
+     */
+    public Field getField() {
+        return field;
+    }
+
+    @Override
+    public int hashCode() {
+        int hash = 5;
+        hash = 29 * hash + Objects.hashCode(this.field);
+        return hash;
+    }
+
+    @Override
+    public boolean equals(Object obj) {
+        if (obj == null) {
+            return false;
+        }
+        if (getClass() != obj.getClass()) {
+            return false;
+        }
+        final PrimitiveFieldAccessor<?> other = (PrimitiveFieldAccessor<?>) obj;
+        return Objects.equals(this.field, other.field);
+    }
+
+    /**
+     * Accessor of a int field.
+     */
+    public static final class IntField extends PrimitiveFieldAccessor<Integer> implements IntAccessor<Object> {
+        IntField(Field field) {
+            super(field, int.class);
+        }
+
+        @Override
+        public int getInt(Object obj) {
+            try {
+                return (int) getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+
+        @Override
+        public void setInt(Object obj, int value) {
+            if (setter == null) {
+                try {
+                    field.setInt(obj, value);
+                } catch (IllegalArgumentException | IllegalAccessException e) {
+                    throw new Error("Should not happen", e);
+                }
+                return;
+            }
+            try {
+                setter.invokeExact(obj, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+    }
+
+    /**
+     * Accessor of a long field.
+     */
+    public static final class LongField extends PrimitiveFieldAccessor<Long> implements LongAccessor<Object> {
+        LongField(Field field) {
+            super(field, long.class);
+        }
+
+        @Override
+        public long getLong(Object obj) {
+            try {
+                return (long) getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+
+        @Override
+        public void setLong(Object obj, long value) {
+            if (setter == null) {
+                try {
+                    field.setLong(obj, value);
+                } catch (IllegalArgumentException | IllegalAccessException e) {
+                    throw new Error("Should not happen", e);
+                }
+                return;
+            }
+            try {
+                setter.invokeExact(obj, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+    }
+
+    /**
+     * Accessor of a float field.
+     */
+    public static final class FloatField extends PrimitiveFieldAccessor<Float> implements FloatAccessor<Object> {
+        FloatField(Field field) {
+            super(field, float.class);
+        }
+
+        @Override
+        public float getFloat(Object obj) {
+            try {
+                return (float) getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+
+        @Override
+        public void setFloat(Object obj, float value) {
+            if (setter == null) {
+                try {
+                    field.setFloat(obj, value);
+                } catch (IllegalArgumentException | IllegalAccessException e) {
+                    throw new Error("Should not happen", e);
+                }
+                return;
+            }
+            try {
+                setter.invokeExact(obj, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+    }
+
+    /**
+     * Accessor of a double field.
+     */
+    public static final class DoubleField extends PrimitiveFieldAccessor<Double> implements DoubleAccessor<Object> {
+        DoubleField(Field field) {
+            super(field, double.class);
+        }
+
+        @Override
+        public double getDouble(Object obj) {
+            try {
+                return (double) getter.invokeExact(obj);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+
+        @Override
+        public void setDouble(Object obj, double value) {
+            if (setter == null) {
+                try {
+                    field.setDouble(obj, value);
+                } catch (IllegalArgumentException | IllegalAccessException e) {
+                    throw new Error("Should not happen", e);
+                }
+                return;
+            }
+            try {
+                setter.invokeExact(obj, value);
+            } catch (RuntimeException | Error e) {
+                throw e;
+            } catch (Throwable e) {
+                throw new Error("Should not happen", e);
+            }
+        }
+    }
+}
@@ -301,6 +301,10 @@ public class SchemaBinder {
                 throw new IncompatibleSchemaException(
                         "Source type not eq or wider" + details(dstGroup, dstField, dir));
             }
+            if (narrowAccessor instanceof WideningAccessor && dstField.isRequired() &&
+                    srcField.getJavaClass().isPrimitive()) {
+                javaType = ((WideningAccessor<?, ?>) narrowAccessor).getValueType();
+            }
             SymbolMapping<?> inboundMapping = srcField.getBinding().getSymbolMapping();
 
             if (inboundMapping != null) {
@@ -333,6 +337,10 @@ public class SchemaBinder {
                 throw new IncompatibleSchemaException(
                         "Source type not eq or narrower " + details(dstGroup, dstField, dir));
             }
+            if (widenAccessor instanceof WideningAccessor && dstField.isRequired() &&
+                    srcField.getJavaClass().isPrimitive()) {
+                javaType = ((WideningAccessor<?, ?>) widenAccessor).getValueType();
+            }
             SymbolMapping<?> outboundMapping = srcField.getBinding().getSymbolMapping();
 
             if (outboundMapping != null) {
@@ -371,19 +379,13 @@ public class SchemaBinder {
         case UINT64:
             switch (dstType.getType()) {
             case INT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::intToLong);
             case UINT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uIntToLong);
             case INT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::shortToLong);
             case UINT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uShortToLong);
             case CHAR:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::charToLong);
             case INT8:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::byteToLong);
             case UINT8:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uByteToLong);
+                return inboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -391,15 +393,11 @@ public class SchemaBinder {
         case UINT32:
             switch (dstType.getType()) {
             case INT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::shortToInt);
             case UINT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uShortToInt);
             case CHAR:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::charToInt);
             case INT8:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::byteToInt);
             case UINT8:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uByteToInt);
+                return inboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -408,30 +406,28 @@ public class SchemaBinder {
             switch (dstType.getType()) {
             case CHAR:
                 if (srcType.getType() == Type.UINT16) {
-                    return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::charToShort);
+                    return inboundWidening(accessor, srcType, dstType);
                 } else {
                     return null;
                 }
             case INT8:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::byteToShort);
             case UINT8:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uByteToShort);
+                return inboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
         case CHAR:
             switch (dstType.getType()) {
             case UINT8:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uByteToChar);
             case UINT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::uShortToChar);
+                return inboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
         case FLOAT64:
             switch (dstType.getType()) {
             case FLOAT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::invalidConversion, SchemaBinder::floatToDouble);
+                return inboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -465,22 +461,18 @@ public class SchemaBinder {
         case UINT8:
             switch (dstType.getType()) {
             case INT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::byteToShort, SchemaBinder::invalidConversion);
             case UINT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::uByteToShort, SchemaBinder::invalidConversion);
+                return outboundWidening(accessor, srcType, dstType);
             case CHAR:
                 if (srcType.getType() == Type.UINT8) {
-                    return new ConverterAccessor<>(accessor, SchemaBinder::uByteToChar, SchemaBinder::invalidConversion);
+                    return outboundWidening(accessor, srcType, dstType);
                 }
                 return null;
             case INT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::byteToInt, SchemaBinder::invalidConversion);
             case UINT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::uByteToInt, SchemaBinder::invalidConversion);
             case INT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::byteToLong, SchemaBinder::invalidConversion);
             case UINT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::uByteToLong, SchemaBinder::invalidConversion);
+                return outboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -488,13 +480,11 @@ public class SchemaBinder {
         case CHAR:
             switch (dstType.getType()) {
             case UINT16:
-                return new ConverterAccessor<>(accessor, SchemaBinder::charToShort, SchemaBinder::invalidConversion);
             case INT32:
             case UINT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::charToInt, SchemaBinder::invalidConversion);
             case INT64:
             case UINT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::charToLong, SchemaBinder::invalidConversion);
+                return outboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -503,13 +493,10 @@ public class SchemaBinder {
         case UINT16:
             switch (dstType.getType()) {
             case INT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::shortToInt, SchemaBinder::invalidConversion);
             case UINT32:
-                return new ConverterAccessor<>(accessor, SchemaBinder::uShortToInt, SchemaBinder::invalidConversion);
             case INT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::shortToLong, SchemaBinder::invalidConversion);
             case UINT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::uShortToLong, SchemaBinder::invalidConversion);
+                return outboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -518,9 +505,8 @@ public class SchemaBinder {
         case UINT32:
             switch (dstType.getType()) {
             case INT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::intToLong, SchemaBinder::invalidConversion);
             case UINT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::uIntToLong, SchemaBinder::invalidConversion);
+                return outboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -528,7 +514,7 @@ public class SchemaBinder {
         case FLOAT32:
             switch (dstType.getType()) {
             case FLOAT64:
-                return new ConverterAccessor<>(accessor, SchemaBinder::floatToDouble, SchemaBinder::invalidConversion);
+                return outboundWidening(accessor, srcType, dstType);
             default:
                 return null;
             }
@@ -556,106 +542,57 @@ public class SchemaBinder {
         }
     }
 
-    private static <V,W> W invalidConversion(V v) { throw new UnsupportedOperationException("Narrowing data conversion not supported!"); }
-
-    private static Integer longToInt(Long v) {
-        return v.intValue();
-    }
-
-    private static Short longToShort(Long v) {
-        return v.shortValue();
-    }
-
-    private static Byte longToByte(Long v) {
-        return v.byteValue();
-    }
-
-    private static Short intToShort(Integer v) {
-        return v.shortValue();
-    }
-
-    private static Byte intToByte(Integer v) {
-        return v.byteValue();
-    }
-
-    private static Byte shortToByte(Short v) {
-        return v.byteValue();
-    }
-
-    private static Short byteToShort(Byte v) {
-        return v.shortValue();
-    }
-
-    private static Integer byteToInt(Byte v) {
-        return v.intValue();
-    }
-
-    private static Long byteToLong(Byte v) {
-        return v.longValue();
-    }
-
-    private static Integer shortToInt(Short v) {
-        return v.intValue();
-    }
-
-    private static Long shortToLong(Short v) {
-        return v.longValue();
-    }
-
-    private static Long intToLong(Integer v) {
-        return v.longValue();
-    }
-
-    private static Short uByteToShort(Byte v) {
-        return (short) (v & 0xff);
-    }
-
-    private static Character uByteToChar(Byte v) {
-        return (char) (v & 0xff);
-    }
-
-    private static Character uShortToChar(Short v) {
-        return (char)(v & 0xffff);
-    }
-
-    private static Integer uByteToInt(Byte v) {
-        return v & 0xff;
-    }
-
-    private static Long uByteToLong(Byte v) {
-        return v & 0xffL;
-    }
-
-    private static Integer uShortToInt(Short v) {
-        return v & 0xffff;
-    }
-
-    private static Integer charToInt(Character v) {
-        return v & 0xffff;
-    }
-
-    private static Short charToShort(Character v) {
-        return (short)v.charValue();
-    }
-
-    private static Long uShortToLong(Short v) {
-        return v & 0xffffL;
-    }
-
-    private static Long charToLong(Character v) {
-        return v & 0xffffL;
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Accessor inboundWidening(Accessor accessor, TypeDef srcType, TypeDef dstType) {
+        return WideningAccessor.createInbound(accessor, getPrimitiveType(srcType), getPrimitiveType(dstType),
+                isUnsigned(dstType));
     }
 
-    private static Long uIntToLong(Integer v) {
-        return v & 0xffffffffL;
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Accessor outboundWidening(Accessor accessor, TypeDef srcType, TypeDef dstType) {
+        return WideningAccessor.createOutbound(accessor, getPrimitiveType(srcType), getPrimitiveType(dstType),
+                isUnsigned(srcType));
     }
 
-    private static Float doubleToFloat(Double v) {
-        return v.floatValue();
+    /**
+     * Returns the primitive java type of a number type.
+     */
+    private static Class<?> getPrimitiveType(TypeDef type) {
+        switch (type.getType()) {
+        case INT8:
+        case UINT8:
+            return byte.class;
+        case INT16:
+        case UINT16:
+            return short.class;
+        case CHAR:
+            return char.class;
+        case INT32:
+        case UINT32:
+            return int.class;
+        case INT64:
+        case UINT64:
+            return long.class;
+        case FLOAT32:
+            return float.class;
+        case FLOAT64:
+            return double.class;
+        default:
+            throw new IllegalArgumentException("Not a number type: " + type);
+        }
     }
 
-    private static Double floatToDouble(Float v) {
-        return v.doubleValue();
+    private static boolean isUnsigned(TypeDef type) {
+        switch (type.getType()) {
+        case UINT8:
+        case UINT16:
+        case UINT32:
+        case UINT64:
+        case CHAR:
+            return true;
+        default:
+            return false;
+        }
     }
 
     private static String details(GroupDef group, FieldDef field, Direction dir) {
@@ -696,37 +633,27 @@ public class SchemaBinder {
         }
     }
 
-    private static class ConverterAccessor<T, S, D> implements Accessor<T, D> {
-        private final Accessor<T, S> accessor;
-        private final Function<S, D> srcToDstFn;
-        private final Function<D, S> dstToSrcFn;
-
-        ConverterAccessor(Accessor<T, S> accessor, Function<S, D> srcToDstFn, Function<D, S> dstToSrcFn) {
-            this.accessor = accessor;
-            this.srcToDstFn = srcToDstFn;
-            this.dstToSrcFn = dstToSrcFn;
-        }
-
-        @Override
-        public D getValue(T obj) {
-            return srcToDstFn.apply(accessor.getValue(obj));
-        }
-
-        @Override
-        public void setValue(T obj, D value) {
-            accessor.setValue(obj, dstToSrcFn.apply(value));
-        }
-    }
-    
+    /**
+     * A symbol mapping of the enum symbols of another schema, which uses the values of the source mapping.
+     * The symbol ids are translated to and from the source ids with int arrays.
+     */
     private static class ConverterSymbolMapping<E> implements SymbolMapping<E> {
-        private final Map<Integer, E> idToValue = new HashMap<>();
+        private final SymbolMapping<E> srcMapping;
+        /** The index of the mapped symbols, by id. */
+        private final SymbolIdIndex idIndex;
+        /** The index of the mapped symbols, by source id. */
+        private final SymbolIdIndex srcIdIndex;
+        private final int[] srcIds;
+        private final Symbol[] symbols;
         private final Map<String, E> nameToValue = new HashMap<>();
-        private final Map<E, Symbol> valueToSymbol = new HashMap<>();
 
         /*
          * Create a SymbolMapping mapping dstSymbols to the object representation in the srcMapping
          */
         ConverterSymbolMapping(SymbolMapping<E> srcMapping, Collection<Symbol> dstSymbols) {
+            this.srcMapping = srcMapping;
+            List<Symbol> mappedSymbols = new ArrayList<>(dstSymbols.size());
+            List<Integer> mappedSrcIds = new ArrayList<>(dstSymbols.size());
             for (Symbol symbol : dstSymbols) {
                 E value = null;
                 
@@ -737,11 +664,15 @@ public class SchemaBinder {
                 }
                 
                 if (value != null) {
-                    valueToSymbol.put(value, symbol);
-                    idToValue.put(symbol.getId(), value);
+                    mappedSymbols.add(symbol);
+                    mappedSrcIds.add(srcMapping.getId(value));
                     nameToValue.put(symbol.getName(), value);
                 }
             }
+            symbols = mappedSymbols.toArray(new Symbol[mappedSymbols.size()]);
+            srcIds = mappedSrcIds.stream().mapToInt(Integer::intValue).toArray();
+            idIndex = new SymbolIdIndex(mappedSymbols.stream().mapToInt(Symbol::getId).toArray());
+            srcIdIndex = new SymbolIdIndex(srcIds);
         }
         
         @Override
@@ -750,13 +681,18 @@ public class SchemaBinder {
                 return null;
             }
             
-            E value = idToValue.get(id);
+            return lookup(id.intValue());
+        }
+
+        @Override
+        public E lookup(int id) throws IllegalArgumentException {
+            int index = idIndex.indexOf(id);
             
-            if (value == null) {
+            if (index < 0) {
                 throw new IllegalArgumentException("Attempted to lookup nonexistant enum value with id: " + id);
             }
             
-            return value;
+            return srcMapping.lookup(srcIds[index]);
         }
 
         @Override
@@ -780,13 +716,7 @@ public class SchemaBinder {
                 return null;
             }
             
-            Symbol symbol = valueToSymbol.get(value);
-            
-            if (symbol == null) {
-                throw new IllegalArgumentException("Attempted to get id of unmapped enum value: " + value);
-            }
-            
-            return symbol.getId();
+            return symbols[indexOf(value)].getId();
         }
 
         @Override
@@ -795,13 +725,18 @@ public class SchemaBinder {
                 return null;
             }
 
-            Symbol symbol = valueToSymbol.get(value);
+            return symbols[indexOf(value)].getName();
+        }
+
+        private int indexOf(E value) throws IllegalArgumentException {
+            Integer srcId = srcMapping.getId(value);
+            int index = srcId != null ? srcIdIndex.indexOf(srcId) : -1;
             
-            if (symbol == null) {
+            if (index < 0) {
                 throw new IllegalArgumentException("Attempted to get id of unmapped enum value: " + value);
             }
             
-            return symbol.getName();
+            return index;
         }
     }
 }
@@ -30,6 +30,7 @@ import com.cinnober.msgcodec.anot.Annotate;
 import com.cinnober.msgcodec.anot.Dynamic;
 import com.cinnober.msgcodec.anot.Enumeration;
 import com.cinnober.msgcodec.anot.Id;
+import com.cinnober.msgcodec.anot.Intern;
 import com.cinnober.msgcodec.anot.MaxSize;
 import com.cinnober.msgcodec.anot.Name;
 import com.cinnober.msgcodec.anot.Required;
@@ -53,6 +54,7 @@ import java.lang.reflect.Type;
 import java.lang.reflect.TypeVariable;
 import java.math.BigDecimal;
 import java.math.BigInteger;
+import java.nio.ByteBuffer;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
@@ -117,7 +119,8 @@ public class SchemaBuilder {
                     boolean.class, Boolean.class,
                     char.class, Character.class,
                     String.class,
-                    byte[].class
+                    byte[].class,
+                    ByteBuffer.class
                     )));
 
     private boolean strict;
@@ -393,6 +396,9 @@ public class SchemaBuilder {
                 visitAnnotation(map, keyValue, av);
             }
         }
+        if (element.getAnnotation(Intern.class) != null) {
+            visitAnnotation(map, "intern=true", av);
+        }
         for (Map.Entry<Class<? extends Annotation>, AnnotationMapper> entry : annotationMappers.entrySet()) {
             Annotation anot = element.getAnnotation(entry.getKey());
             if (anot != null) {
@@ -482,7 +488,10 @@ public class SchemaBuilder {
                 if (idAnot != null) {
                     id = idAnot.value();
                 }
-                Accessor accessor = new FieldAccessor(field);
+                Accessor accessor = PrimitiveFieldAccessor.create(field);
+                if (accessor == null) {
+                    accessor = new FieldAccessor(field);
+                }
                 SymbolMapping symbolMapping = null;
 
                 Required requiredAnot = field.getAnnotation(Required.class);
@@ -509,6 +518,14 @@ public class SchemaBuilder {
                 TypeDef typeDef = getTypeDef(type, componentType, sequenceAnot, enumAnot, timeAnot,
                         dynamicAnot, unsignedAnot, smallDecimalAnot, maxSizeAnot,
                         namedTypes, groups);
+
+                if (field.getAnnotation(Intern.class) != null) {
+                    TypeDef internType = typeDef.getType() == TypeDef.Type.SEQUENCE ?
+                        ((TypeDef.Sequence) typeDef).getComponentType() : typeDef;
+                    if (internType.getType() != TypeDef.Type.STRING) {
+                        throw new IllegalArgumentException("@Intern is only applicable to strings.");
+                    }
+                }
                 
                 // Setup enum mappings
                 if (typeDef.getType() == TypeDef.Type.REFERENCE) {
@@ -755,7 +772,7 @@ public class SchemaBuilder {
             } else {
                 return TypeDef.STRING;
             }
-        } else if (type.equals(byte[].class)) {
+        } else if (type.equals(byte[].class) || type.equals(ByteBuffer.class)) {
             assertNotAnnotated(type.getName(), unsignedAnot, dynamicAnot, smallDecimalAnot);
             if (maxSizeAnot != null) {
                 return new TypeDef.Binary(maxSizeAnot.value());
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+import java.util.Arrays;
+
+/**
+ * An index of symbol ids, which maps each id to its position in an array of ids without boxing or hashing.
+ * SymbolIdIndex is immutable.
+ *
+ * <p>The index can be used for any int ids, e.g. group ids, and is public for use by the codecs.
+ *
+ * <p>Symbol ids are usually dense, e.g. 0, 1, 2, ..., in which case the index is a table indexed by the id.
+ * Sparse ids are looked up with a binary search.
+ *
+ * @author mikael.brannstrom
+ */
+public final class SymbolIdIndex {
+    /** The maximum number of unused table entries per id, before the ids are considered sparse. */
+    private static final int MAX_SPARSENESS = 4;
+    private static final int MIN_TABLE_SIZE = 64;
+
+    private final int minId;
+    /** Position + 1 of each id, offset by minId, or null if the ids are sparse. */
+    private final int[] table;
+    /** The ids in ascending order, for sparse ids. */
+    private final int[] sortedIds;
+    /** The position of each id in sortedIds, for sparse ids. */
+    private final int[] sortedPositions;
+
+    /**
+     * Create a symbol id index.
+     *
+     * @param ids the symbol ids, not null. Must not contain duplicates.
+     */
+    public SymbolIdIndex(int[] ids) {
+        int min = Integer.MAX_VALUE;
+        int max = Integer.MIN_VALUE;
+        for (int id : ids) {
+            min = Math.min(min, id);
+            max = Math.max(max, id);
+        }
+        long range = ids.length == 0 ? 0 : (long) max - min + 1;
+        if (range <= Math.max(MIN_TABLE_SIZE, (long) ids.length * MAX_SPARSENESS)) {
+            minId = min;
+            table = new int[(int) range];
+            for (int i = 0; i < ids.length; i++) {
+                if (table[ids[i] - min] != 0) {
+                    throw new IllegalArgumentException("Duplicate id: " + ids[i]);
+                }
+                table[ids[i] - min] = i + 1;
+            }
+            sortedIds = null;
+            sortedPositions = null;
+        } else {
+            minId = 0;
+            table = null;
+            long[] pairs = new long[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                pairs[i] = (long) ids[i] << 32 | i;
+            }
+            Arrays.sort(pairs);
+            sortedIds = new int[ids.length];
+            sortedPositions = new int[ids.length];
+            for (int i = 0; i < ids.length; i++) {
+                sortedIds[i] = (int) (pairs[i] >> 32);
+                sortedPositions[i] = (int) pairs[i];
+                if (i > 0 && sortedIds[i] == sortedIds[i - 1]) {
+                    throw new IllegalArgumentException("Duplicate id: " + sortedIds[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Returns the position of the specified id, in the array of ids that this index was created with.
+     *
+     * @param id the symbol id.
+     * @return the position, or -1 if the id is not in the index.
+     */
+    public int indexOf(int id) {
+        if (table != null) {
+            long offset = (long) id - minId;
+            return offset >= 0 && offset < table.length ? table[(int) offset] - 1 : -1;
+        }
+        int i = Arrays.binarySearch(sortedIds, id);
+        return i >= 0 ? sortedPositions[i] : -1;
+    }
+}
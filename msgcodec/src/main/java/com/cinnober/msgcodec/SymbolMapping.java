@@ -24,6 +24,7 @@
 package com.cinnober.msgcodec;
 
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Objects;
@@ -37,6 +38,17 @@ import com.cinnober.msgcodec.TypeDef.Symbol;
  */
 public interface SymbolMapping<E> {
     public E lookup(Integer id) throws IllegalArgumentException;
+    /**
+     * Lookup the value of a symbol id, without boxing the id.
+     * The default implementation calls {@link #lookup(Integer)}.
+     *
+     * @param id the symbol id.
+     * @return the value, not null.
+     * @throws IllegalArgumentException if no value is mapped to the id.
+     */
+    public default E lookup(int id) throws IllegalArgumentException {
+        return lookup(Integer.valueOf(id));
+    }
     public E lookup(String name) throws IllegalArgumentException;
     public Integer getId(E value) throws IllegalArgumentException;
     public String getName(E value) throws IllegalArgumentException;
@@ -51,8 +63,13 @@ public interface SymbolMapping<E> {
      * @param <E> The enum class used to represent this enum in java.
      */
     public static class IdentityEnumMapping<E extends Enum<E>> implements SymbolMapping<E> {
-        private final Map<E, Symbol> enumToSymbol;
-        private final Map<Integer, E> idToEnum = new HashMap<>();
+        private final E[] enums;
+        /** The index of the enum constants, by symbol id. */
+        private final SymbolIdIndex idIndex;
+        /** The symbol id of each enum constant, by ordinal. */
+        private final Integer[] idByOrdinal;
+        /** The symbol name of each enum constant, by ordinal. */
+        private final String[] nameByOrdinal;
         private final Map<String, E> nameToEnum = new HashMap<>();
         
         private final Class<E> enumClass; 
@@ -66,22 +83,38 @@ public interface SymbolMapping<E> {
             
             this.enumClass = enumClass;
             
-            enumToSymbol = EnumSymbols.createSymbolMap(enumClass);
+            Map<E, Symbol> enumToSymbol = EnumSymbols.createSymbolMap(enumClass);
+            enums = enumClass.getEnumConstants();
+            idByOrdinal = new Integer[enums.length];
+            nameByOrdinal = new String[enums.length];
+            int[] ids = new int[enums.length];
             for (Entry<E, Symbol> entry : enumToSymbol.entrySet()) {
-                idToEnum.put(entry.getValue().getId(), entry.getKey());
+                int ordinal = entry.getKey().ordinal();
+                ids[ordinal] = entry.getValue().getId();
+                idByOrdinal[ordinal] = entry.getValue().getId();
+                nameByOrdinal[ordinal] = entry.getValue().getName();
                 nameToEnum.put(entry.getValue().getName(), entry.getKey());
             }
+            idIndex = new SymbolIdIndex(ids);
         }
         
         @Override
         public E lookup(Integer id) throws IllegalArgumentException {
-            E value = idToEnum.get(id);
+            if (id == null) {
+                throw new IllegalArgumentException("No enum value mapped to null");
+            }
+            return lookup(id.intValue());
+        }
+
+        @Override
+        public E lookup(int id) throws IllegalArgumentException {
+            int ordinal = idIndex.indexOf(id);
             
-            if (value == null) {
+            if (ordinal < 0) {
                 throw new IllegalArgumentException("No enum value mapped to " + id);
             }
             
-            return value;
+            return enums[ordinal];
         }
 
         @Override
@@ -97,12 +130,12 @@ public interface SymbolMapping<E> {
 
         @Override
         public Integer getId(E value) {
-            return enumToSymbol.get(value).getId();
+            return idByOrdinal[value.ordinal()];
         }
 
         @Override
         public String getName(E value) {
-            return enumToSymbol.get(value).getName();
+            return nameByOrdinal[value.ordinal()];
         }
         
         @Override
@@ -133,7 +166,9 @@ public interface SymbolMapping<E> {
      */
     public static class IdentityIntegerEnumMapping implements SymbolMapping<Integer> {
         private final Map<String, Integer> nameToInteger = new HashMap<>();
-        private final Map<Integer, String> integerToName = new HashMap<>();
+        /** The index of the symbols, by id. */
+        private final SymbolIdIndex idIndex;
+        private final String[] names;
         private final TypeDef.Enum enumDef;
         
         /**
@@ -144,10 +179,16 @@ public interface SymbolMapping<E> {
             Objects.requireNonNull(enumDef);
             this.enumDef = enumDef;
             
-            for (Symbol symbol : enumDef.getSymbols()) {
+            List<Symbol> symbols = enumDef.getSymbols();
+            int[] ids = new int[symbols.size()];
+            names = new String[symbols.size()];
+            for (int i = 0; i < ids.length; i++) {
+                Symbol symbol = symbols.get(i);
+                ids[i] = symbol.getId();
+                names[i] = symbol.getName();
                 nameToInteger.put(symbol.getName(), symbol.getId());
-                integerToName.put(symbol.getId(), symbol.getName());
             }
+            idIndex = new SymbolIdIndex(ids);
         }
         
         @Override
@@ -155,6 +196,11 @@ public interface SymbolMapping<E> {
             return id;
         }
 
+        @Override
+        public Integer lookup(int id) {
+            return id;
+        }
+
         @Override
         public Integer lookup(String name) throws IllegalArgumentException {
             Integer value = nameToInteger.get(name);
@@ -173,7 +219,8 @@ public interface SymbolMapping<E> {
 
         @Override
         public String getName(Integer value) {
-            return integerToName.get(value);
+            int index = value != null ? idIndex.indexOf(value) : -1;
+            return index >= 0 ? names[index] : null;
         }
         
         @Override
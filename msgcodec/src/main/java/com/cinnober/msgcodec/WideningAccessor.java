@@ -0,0 +1,393 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+/**
+ * An accessor that converts the value of a field to or from a wider primitive number type.
+ * WideningAccessor is created by {@link SchemaBinder} when a field is bound to a compatible field of another type,
+ * and is immutable.
+ *
+ * <p>An inbound widening accessor sets the field from a narrower value, e.g. an int value is set into a long field.
+ * An outbound widening accessor gets a wider value from the field, e.g. a long value is read from an int field.
+ * Narrowing, i.e. getting the value of an inbound accessor or setting the value of an outbound accessor,
+ * is not supported.
+ *
+ * <p>Integer values are sign extended, unless the narrower type is unsigned, see {@link #isUnsigned()}.
+ * A char is always zero extended.
+ *
+ * <p>The accessor implements the primitive accessor interface of the value type, e.g. {@link LongAccessor}
+ * for long values.
+ * Msgcodec implementations may check if an accessor is <code>instanceof WideningAccessor</code> and compile
+ * the conversion into generated code, accessing the wrapped accessor directly.
+ *
+ * @author mikael.brannstrom
+ * @param <T> the type of the object that has the field.
+ * @param <V> the boxed value type.
+ */
+public abstract class WideningAccessor<T, V> implements Accessor<T, V> {
+    protected final Accessor<T, ?> accessor;
+    private final Class<?> fieldType;
+    private final Class<?> valueType;
+    private final boolean unsigned;
+    private final boolean inbound;
+
+    WideningAccessor(Accessor<T, ?> accessor, Class<?> fieldType, Class<?> valueType, boolean unsigned,
+            boolean inbound) {
+        this.accessor = accessor;
+        this.fieldType = fieldType;
+        this.valueType = valueType;
+        this.unsigned = unsigned;
+        this.inbound = inbound;
+    }
+
+    /**
+     * Create an inbound widening accessor, which sets a narrower value into the field.
+     *
+     * @param <T> the type of the object that has the field.
+     * @param accessor the accessor of the field, not null.
+     * @param fieldType the primitive type of the field, e.g. long.
+     * @param valueType the narrower primitive type of the value, e.g. int.
+     * @param unsigned true if the value type is unsigned, otherwise false.
+     * @return the accessor, not null.
+     * @throws IllegalArgumentException if the field type is not wider than the value type.
+     */
+    public static <T> WideningAccessor<T, ?> createInbound(Accessor<T, ?> accessor, Class<?> fieldType,
+            Class<?> valueType, boolean unsigned) {
+        return create(accessor, fieldType, valueType, unsigned, true);
+    }
+
+    /**
+     * Create an outbound widening accessor, which gets a wider value from the field.
+     *
+     * @param <T> the type of the object that has the field.
+     * @param accessor the accessor of the field, not null.
+     * @param fieldType the primitive type of the field, e.g. int.
+     * @param valueType the wider primitive type of the value, e.g. long.
+     * @param unsigned true if the field type is unsigned, otherwise false.
+     * @return the accessor, not null.
+     * @throws IllegalArgumentException if the value type is not wider than the field type.
+     */
+    public static <T> WideningAccessor<T, ?> createOutbound(Accessor<T, ?> accessor, Class<?> fieldType,
+            Class<?> valueType, boolean unsigned) {
+        return create(accessor, fieldType, valueType, unsigned, false);
+    }
+
+    private static <T> WideningAccessor<T, ?> create(Accessor<T, ?> accessor, Class<?> fieldType,
+            Class<?> valueType, boolean unsigned, boolean inbound) {
+        Class<?> narrowType = inbound ? valueType : fieldType;
+        Class<?> wideType = inbound ? fieldType : valueType;
+        if (!isWidening(narrowType, wideType)) {
+            throw new IllegalArgumentException("Not a widening conversion from " + narrowType + " to " + wideType);
+        }
+        if (valueType == int.class) {
+            return new IntValue<>(accessor, fieldType, valueType, unsigned, inbound);
+        } else if (valueType == long.class) {
+            return new LongValue<>(accessor, fieldType, valueType, unsigned, inbound);
+        } else if (valueType == float.class) {
+            return new FloatValue<>(accessor, fieldType, valueType, unsigned, inbound);
+        } else if (valueType == double.class) {
+            return new DoubleValue<>(accessor, fieldType, valueType, unsigned, inbound);
+        } else {
+            return new ObjectValue<>(accessor, fieldType, valueType, unsigned, inbound);
+        }
+    }
+
+    private static boolean isWidening(Class<?> narrowType, Class<?> wideType) {
+        if (narrowType == float.class) {
+            return wideType == double.class;
+        }
+        int narrowSize = integerSize(narrowType);
+        int wideSize = integerSize(wideType);
+        return narrowSize != 0 && wideSize != 0 &&
+                (narrowSize < wideSize || narrowType == char.class && wideType == short.class ||
+                narrowType == short.class && wideType == char.class);
+    }
+
+    /**
+     * Returns the size of an integer type in bytes, or zero if not an integer type.
+     */
+    private static int integerSize(Class<?> type) {
+        if (type == byte.class) {
+            return 1;
+        } else if (type == short.class || type == char.class) {
+            return 2;
+        } else if (type == int.class) {
+            return 4;
+        } else if (type == long.class) {
+            return 8;
+        }
+        return 0;
+    }
+
+    /**
+     * Returns the wrapped accessor of the field.
+     * @return the accessor, not null.
+     */
+    public Accessor<T, ?> getAccessor() {
+        return accessor;
+    }
+
+    /**
+     * Returns the primitive type of the field.
+     * @return the field type, not null.
+     */
+    public Class<?> getFieldType() {
+        return fieldType;
+    }
+
+    /**
+     * Returns the primitive type of the value.
+     * @return the value type, not null.
+     */
+    public Class<?> getValueType() {
+        return valueType;
+    }
+
+    /**
+     * Returns true if the narrower type is unsigned, i.e. if it is zero extended.
+     * @return true if unsigned, otherwise false.
+     */
+    public boolean isUnsigned() {
+        return unsigned;
+    }
+
+    /**
+     * Returns true if this is an inbound accessor, which sets the field.
+     * @return true if inbound, false if outbound.
+     */
+    public boolean isInbound() {
+        return inbound;
+    }
+
+    @Override
+    @SuppressWarnings("unchecked")
+    public V getValue(T obj) {
+        checkOutbound();
+        Object value = accessor.getValue(obj);
+        return value != null ? (V) widenBoxed(value) : null;
+    }
+
+    @Override
+    public void setValue(T obj, V value) {
+        checkInbound();
+        setFieldValue(obj, value != null ? widenBoxed(value) : null);
+    }
+
+    @SuppressWarnings("unchecked")
+    final void setFieldValue(T obj, Object value) {
+        ((Accessor<T, Object>) accessor).setValue(obj, value);
+    }
+
+    final void checkInbound() {
+        if (!inbound) {
+            throw new UnsupportedOperationException("Narrowing data conversion not supported!");
+        }
+    }
+
+    final void checkOutbound() {
+        if (inbound) {
+            throw new UnsupportedOperationException("Narrowing data conversion not supported!");
+        }
+    }
+
+    /**
+     * Widen a boxed value of the narrower type to a boxed value of the wider type.
+     */
+    private Object widenBoxed(Object value) {
+        if (value instanceof Float) {
+            return ((Float) value).doubleValue();
+        }
+        long longValue = value instanceof Character ? (Character) value : ((Number) value).longValue();
+        return box(inbound ? fieldType : valueType, widen(longValue));
+    }
+
+    /**
+     * Widen a sign extended integer value of the narrower type.
+     */
+    final long widen(long value) {
+        if (unsigned) {
+            switch (integerSize(inbound ? valueType : fieldType)) {
+                case 1:
+                    return value & 0xffL;
+                case 2:
+                    return value & 0xffffL;
+                case 4:
+                    return value & 0xffffffffL;
+                default:
+                    return value;
+            }
+        }
+        return value;
+    }
+
+    /**
+     * Get the value of a narrower integer field, sign extended.
+     */
+    @SuppressWarnings("unchecked")
+    final long getFieldLong(T obj) {
+        if (accessor instanceof IntAccessor) {
+            return ((IntAccessor<T>) accessor).getInt(obj);
+        }
+        Object value = accessor.getValue(obj);
+        return value instanceof Character ? (Character) value : ((Number) value).longValue();
+    }
+
+    /**
+     * Set the value of a wider integer field.
+     */
+    @SuppressWarnings("unchecked")
+    final void setFieldLong(T obj, long value) {
+        if (accessor instanceof LongAccessor) {
+            ((LongAccessor<T>) accessor).setLong(obj, value);
+        } else if (accessor instanceof IntAccessor) {
+            ((IntAccessor<T>) accessor).setInt(obj, (int) value);
+        } else {
+            setFieldValue(obj, box(fieldType, value));
+        }
+    }
+
+    private static Object box(Class<?> type, long value) {
+        if (type == byte.class) {
+            return (byte) value;
+        } else if (type == short.class) {
+            return (short) value;
+        } else if (type == char.class) {
+            return (char) value;
+        } else if (type == int.class) {
+            return (int) value;
+        } else {
+            return value;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return (inbound ? "inbound " : "outbound ") + (unsigned ? "unsigned " : "") +
+                fieldType + "/" + valueType + " " + accessor;
+    }
+
+    /**
+     * Widening accessor of byte, short or char values.
+     */
+    private static final class ObjectValue<T> extends WideningAccessor<T, Object> {
+        ObjectValue(Accessor<T, ?> accessor, Class<?> fieldType, Class<?> valueType, boolean unsigned,
+                boolean inbound) {
+            super(accessor, fieldType, valueType, unsigned, inbound);
+        }
+    }
+
+    /**
+     * Widening accessor of int values.
+     */
+    public static final class IntValue<T> extends WideningAccessor<T, Integer> implements IntAccessor<T> {
+        IntValue(Accessor<T, ?> accessor, Class<?> fieldType, Class<?> valueType, boolean unsigned,
+                boolean inbound) {
+            super(accessor, fieldType, valueType, unsigned, inbound);
+        }
+
+        @Override
+        public int getInt(T obj) {
+            checkOutbound();
+            return (int) widen(getFieldLong(obj));
+        }
+
+        @Override
+        public void setInt(T obj, int value) {
+            checkInbound();
+            setFieldLong(obj, widen(value));
+        }
+    }
+
+    /**
+     * Widening accessor of long values.
+     */
+    public static final class LongValue<T> extends WideningAccessor<T, Long> implements LongAccessor<T> {
+        LongValue(Accessor<T, ?> accessor, Class<?> fieldType, Class<?> valueType, boolean unsigned,
+                boolean inbound) {
+            super(accessor, fieldType, valueType, unsigned, inbound);
+        }
+
+        @Override
+        public long getLong(T obj) {
+            checkOutbound();
+            return widen(getFieldLong(obj));
+        }
+
+        @Override
+        public void setLong(T obj, long value) {
+            throw new UnsupportedOperationException("Narrowing data conversion not supported!");
+        }
+    }
+
+    /**
+     * Widening accessor of float values, which are set into a double field.
+     */
+    public static final class FloatValue<T> extends WideningAccessor<T, Float> implements FloatAccessor<T> {
+        FloatValue(Accessor<T, ?> accessor, Class<?> fieldType, Class<?> valueType, boolean unsigned,
+                boolean inbound) {
+            super(accessor, fieldType, valueType, unsigned, inbound);
+        }
+
+        @Override
+        public float getFloat(T obj) {
+            throw new UnsupportedOperationException("Narrowing data conversion not supported!");
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public void setFloat(T obj, float value) {
+            checkInbound();
+            if (accessor instanceof DoubleAccessor) {
+                ((DoubleAccessor<T>) accessor).setDouble(obj, value);
+            } else {
+                setFieldValue(obj, (double) value);
+            }
+        }
+    }
+
+    /**
+     * Widening accessor of double values, which are read from a float field.
+     */
+    public static final class DoubleValue<T> extends WideningAccessor<T, Double> implements DoubleAccessor<T> {
+        DoubleValue(Accessor<T, ?> accessor, Class<?> fieldType, Class<?> valueType, boolean unsigned,
+                boolean inbound) {
+            super(accessor, fieldType, valueType, unsigned, inbound);
+        }
+
+        @Override
+        @SuppressWarnings("unchecked")
+        public double getDouble(T obj) {
+            checkOutbound();
+            if (accessor instanceof FloatAccessor) {
+                return ((FloatAccessor<T>) accessor).getFloat(obj);
+            }
+            return (Float) accessor.getValue(obj);
+        }
+
+        @Override
+        public void setDouble(T obj, double value) {
+            throw new UnsupportedOperationException("Narrowing data conversion not supported!");
+        }
+    }
+}
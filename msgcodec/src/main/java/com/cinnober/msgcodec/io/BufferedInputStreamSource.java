@@ -0,0 +1,206 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Objects;
+
+import com.cinnober.msgcodec.util.StringInternCache;
+
+/**
+ * A buffered byte source wrapper for an input stream.
+ *
+ * <p>Data is read from the stream in bulk into an internal buffer, which is reused for the life time
+ * of the byte source. Single bytes, multi-byte integers and short strings are then read from the buffer,
+ * instead of being read from the stream one byte at a time as in {@link InputStreamSource}.
+ *
+ * <p><b>Note:</b> the byte source reads ahead. Bytes that have been read from the stream into the buffer,
+ * but not yet from the byte source, are lost if the byte source is discarded. The same byte source should
+ * therefore be used for all reads from the stream, e.g. when decoding a sequence of messages.
+ *
+ * <p>Example, decoding a sequence of messages from a stream:
+ * <pre>
+ * ByteSource in = new BufferedInputStreamSource(inputStream);
+ * for (;;) {
+ *     Object msg = codec.decode(in);
+ *     ...
+ * }
+ * </pre>
+ *
+ * @author mikael.brannstrom
+ */
+public class BufferedInputStreamSource implements ByteSource {
+
+    private final InputStream in;
+    private final byte[] buf;
+    private int pos;
+    private int end;
+
+    /**
+     * Create a new buffered input stream source, with a buffer size of 8192 bytes.
+     * @param in the wrapped input stream to read from, not null.
+     */
+    public BufferedInputStreamSource(InputStream in) {
+        this(in, 8192);
+    }
+
+    /**
+     * Create a new buffered input stream source.
+     * @param in the wrapped input stream to read from, not null.
+     * @param bufferSize the size of the internal buffer, at least 16 bytes.
+     */
+    public BufferedInputStreamSource(InputStream in, int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size must be at least 16 bytes");
+        }
+        this.in = Objects.requireNonNull(in);
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Returns the number of bytes that have been read from the stream, but not yet from this byte source.
+     * @return the number of buffered bytes.
+     */
+    public int buffered() {
+        return end - pos;
+    }
+
+    /**
+     * Refill the buffer until at least the specified number of bytes are buffered.
+     * @param len the number of bytes needed, not larger than the buffer size.
+     * @throws EOFException if the stream reaches the end before the bytes are available.
+     */
+    private void fill(int len) throws IOException {
+        if (pos > 0) {
+            System.arraycopy(buf, pos, buf, 0, end - pos);
+            end -= pos;
+            pos = 0;
+        }
+        while (end < len) {
+            int count = in.read(buf, end, buf.length - end);
+            if (count < 0) {
+                throw new EOFException();
+            }
+            end += count;
+        }
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == end) {
+            fill(1);
+        }
+        return 0xff & buf[pos++];
+    }
+
+    @Override
+    public void read(byte[] b, int off, int len) throws IOException {
+        int n = Math.min(len, end - pos);
+        System.arraycopy(buf, pos, b, off, n);
+        pos += n;
+        off += n;
+        len -= n;
+        if (len == 0) {
+            return;
+        }
+        if (len >= buf.length) {
+            InputStreams.readFully(in, b, off, len);
+        } else {
+            fill(len);
+            System.arraycopy(buf, pos, b, off, len);
+            pos += len;
+        }
+    }
+
+    @Override
+    public void skip(int len) throws IOException {
+        while (len > 0) {
+            if (pos == end) {
+                fill(1);
+            }
+            int n = Math.min(len, end - pos);
+            pos += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public String readStringUtf8(int len) throws IOException {
+        if (len > buf.length) {
+            return ByteSource.super.readStringUtf8(len);
+        }
+        if (end - pos < len) {
+            fill(len);
+        }
+        String s = new String(buf, pos, len, UTF8);
+        pos += len;
+        return s;
+    }
+
+    @Override
+    public String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        if (len > buf.length) {
+            return ByteSource.super.readStringUtf8(len, cache);
+        }
+        if (end - pos < len) {
+            fill(len);
+        }
+        String s = cache.intern(buf, pos, len);
+        pos += len;
+        return s;
+    }
+
+    @Override
+    public int readIntLE() throws IOException {
+        if (end - pos < 4) {
+            fill(4);
+        }
+        int v = (0xff & buf[pos]) |
+                (0xff & buf[pos+1]) << 8 |
+                (0xff & buf[pos+2]) << 16 |
+                (0xff & buf[pos+3]) << 24;
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readLongLE() throws IOException {
+        return readLongLE(8);
+    }
+
+    @Override
+    public long readLongLE(int len) throws IOException {
+        if (end - pos < len) {
+            fill(len);
+        }
+        long v = 0;
+        for (int i=0; i<len; i++) {
+            v |= (0xffL & buf[pos+i]) << (i << 3);
+        }
+        pos += len;
+        return v;
+    }
+}
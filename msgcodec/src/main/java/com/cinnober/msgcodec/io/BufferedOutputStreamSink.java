@@ -0,0 +1,168 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.io.Flushable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.util.Objects;
+
+/**
+ * A buffered byte sink wrapper for an output stream.
+ *
+ * <p>Data is collected in an internal buffer, which is reused for the life time of the byte sink,
+ * and written to the stream in bulk when the buffer is full or flushed.
+ * Writes that are larger than the buffer are written directly to the stream.
+ *
+ * <p><b>Note:</b> buffered data is not written to the stream until {@link #flush()} is called.
+ *
+ * <p>Example, encoding a sequence of messages to a stream:
+ * <pre>
+ * BufferedOutputStreamSink out = new BufferedOutputStreamSink(outputStream);
+ * for (Object msg : messages) {
+ *     codec.encode(msg, out);
+ * }
+ * out.flush();
+ * </pre>
+ *
+ * @author mikael.brannstrom
+ */
+public class BufferedOutputStreamSink implements ByteSink, Flushable {
+    private final OutputStream out;
+    private final byte[] buf;
+    private int pos;
+
+    /**
+     * Create a new buffered output stream sink, with a buffer size of 8192 bytes.
+     * @param out the wrapped output stream to write to, not null.
+     */
+    public BufferedOutputStreamSink(OutputStream out) {
+        this(out, 8192);
+    }
+
+    /**
+     * Create a new buffered output stream sink.
+     * @param out the wrapped output stream to write to, not null.
+     * @param bufferSize the size of the internal buffer, at least 16 bytes.
+     */
+    public BufferedOutputStreamSink(OutputStream out, int bufferSize) {
+        if (bufferSize < 16) {
+            throw new IllegalArgumentException("Buffer size must be at least 16 bytes");
+        }
+        this.out = Objects.requireNonNull(out);
+        this.buf = new byte[bufferSize];
+    }
+
+    /**
+     * Returns the number of bytes that have been written to this byte sink, but not yet to the stream.
+     * @return the number of buffered bytes.
+     */
+    public int buffered() {
+        return pos;
+    }
+
+    private void flushBuffer() throws IOException {
+        if (pos > 0) {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+    }
+
+    /**
+     * Write any buffered data to the stream, and flush the stream.
+     * @throws IOException if the stream throws an exception.
+     */
+    @Override
+    public void flush() throws IOException {
+        flushBuffer();
+        out.flush();
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (pos == buf.length) {
+            flushBuffer();
+        }
+        buf[pos++] = (byte) b;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        if (len > buf.length - pos) {
+            flushBuffer();
+            if (len >= buf.length) {
+                out.write(b, off, len);
+                return;
+            }
+        }
+        System.arraycopy(b, off, buf, pos, len);
+        pos += len;
+    }
+
+    @Override
+    public void write(ByteBuffer b) throws IOException {
+        if (b.hasArray()) {
+            write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+            return;
+        }
+        ByteBuffer src = b.duplicate();
+        while (src.hasRemaining()) {
+            if (pos == buf.length) {
+                flushBuffer();
+            }
+            int n = Math.min(src.remaining(), buf.length - pos);
+            src.get(buf, pos, n);
+            pos += n;
+        }
+    }
+
+    @Override
+    public void writeIntLE(int v) throws IOException {
+        if (buf.length - pos < 4) {
+            flushBuffer();
+        }
+        buf[pos] = (byte) v;
+        buf[pos+1] = (byte) (v >> 8);
+        buf[pos+2] = (byte) (v >> 16);
+        buf[pos+3] = (byte) (v >> 24);
+        pos += 4;
+    }
+
+    @Override
+    public void writeLongLE(long v) throws IOException {
+        writeLongLE(v, 8);
+    }
+
+    @Override
+    public void writeLongLE(long v, int len) throws IOException {
+        if (buf.length - pos < len) {
+            flushBuffer();
+        }
+        for (int i=0; i<len; i++) {
+            buf[pos+i] = (byte) (v >> (i << 3));
+        }
+        pos += len;
+    }
+}
@@ -28,6 +28,8 @@ import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.util.Objects;
 
+import com.cinnober.msgcodec.util.StringInternCache;
+
 /**
  * A ByteBuf backed by a byte array.
  */
@@ -148,6 +150,16 @@ public class ByteArrayBuf implements ByteBuf {
         pos += len;
     }
 
+    @Override
+    public ByteBuffer readByteBuffer(int len) throws IOException {
+        if (pos+len > limit) {
+            throw new IOException("Buffer underflow");
+        }
+        ByteBuffer value = ByteBuffer.wrap(data, pos, len).slice().asReadOnlyBuffer();
+        pos += len;
+        return value;
+    }
+
     @Override
     public String readStringUtf8(int len) throws IOException {
         if (pos+len > limit) {
@@ -178,6 +190,16 @@ public class ByteArrayBuf implements ByteBuf {
         return s;
     }
 
+    @Override
+    public String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        if (pos+len > limit) {
+            throw new IOException("Buffer underflow");
+        }
+        String s = cache.intern(data, pos, len);
+        pos += len;
+        return s;
+    }
+
     @Override
     public void write(int b) throws IOException {
         if (pos >= limit) {
@@ -195,6 +217,40 @@ public class ByteArrayBuf implements ByteBuf {
         pos += len;
     }
 
+    @Override
+    public void write(ByteBuffer b) throws IOException {
+        int len = b.remaining();
+        if (pos + len > limit) {
+            throw new IOException("Buffer overflow");
+        }
+        b.duplicate().get(data, pos, len);
+        pos += len;
+    }
+
+    @Override
+    public void writeLongLE(long v, int len) throws IOException {
+        if (pos + len > limit) {
+            throw new IOException("Buffer overflow");
+        }
+        for (int i=0; i<len; i++) {
+            data[pos+i] = (byte) (v >> (i << 3));
+        }
+        pos += len;
+    }
+
+    @Override
+    public long readLongLE(int len) throws IOException {
+        if (pos + len > limit) {
+            throw new IOException("Buffer underflow");
+        }
+        long v = 0;
+        for (int i=0; i<len; i++) {
+            v |= (0xffL & data[pos+i]) << (i << 3);
+        }
+        pos += len;
+        return v;
+    }
+
     @Override
     public void shift(int position, int length, int distance) {
         if (position + distance < 0) {
@@ -232,6 +288,24 @@ public class ByteArrayBuf implements ByteBuf {
         data[pos+7] = (byte) (v >> 56);
         pos += 8;
     }
+
+    @Override
+    public int readIntLE() throws IOException {
+        if (pos + 4 > limit) {
+            throw new IOException("Buffer underflow");
+        }
+        int v = (0xff & data[pos]) |
+                (0xff & data[pos+1]) << 8 |
+                (0xff & data[pos+2]) << 16 |
+                (0xff & data[pos+3]) << 24;
+        pos += 4;
+        return v;
+    }
+
+    @Override
+    public long readLongLE() throws IOException {
+        return readLongLE(8);
+    }
     
     @Override
     public ByteBuffer getByteBuffer() {
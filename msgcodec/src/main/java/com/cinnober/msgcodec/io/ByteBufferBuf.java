@@ -30,6 +30,8 @@ import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
 
+import com.cinnober.msgcodec.util.StringInternCache;
+
 /**
  * A ByteBuf backed by a ByteBuffer.
  * Changes to the underlying byte buffer are reflected in the byte buf, and vice versa, including position and limit.
@@ -142,6 +144,27 @@ public class ByteBufferBuf implements ByteBuf {
         }
     }
 
+    @Override
+    public void write(ByteBuffer b) throws IOException {
+        try {
+            buf.put(b.duplicate());
+        } catch (BufferOverflowException e) {
+            throw new IOException(e);
+        }
+    }
+
+    @Override
+    public ByteBuffer readByteBuffer(int len) throws IOException {
+        if (position() + len > limit()) {
+            throw new IOException("Buffer underflow");
+        }
+        ByteBuffer value = buf.asReadOnlyBuffer();
+        value.limit(buf.position() + len);
+        value = value.slice();
+        buf.position(buf.position() + len);
+        return value;
+    }
+
     @Override
     public void skip(int len) throws IOException {
         if (position() + len > limit()) {
@@ -199,6 +222,16 @@ public class ByteBufferBuf implements ByteBuf {
         }
     }
 
+    @Override
+    public String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        if (position() + len > limit()) {
+            throw new IOException("Buffer underflow");
+        }
+        String s = cache.intern(buf, buf.position(), len);
+        buf.position(buf.position()+len);
+        return s;
+    }
+
     @Override
     public void writeIntLE(int v) throws IOException {
         try {
@@ -217,6 +250,38 @@ public class ByteBufferBuf implements ByteBuf {
         }
     }
 
+    @Override
+    public void writeLongLE(long v, int len) throws IOException {
+        final int pos = buf.position();
+        if (buf.limit() - pos >= 8) {
+            // merge with the bytes after the value, which must be left intact
+            long mask = len == 8 ? -1L : (1L << (len << 3)) - 1;
+            long old = getLongLE(pos);
+            long word = (old & ~mask) | (v & mask);
+            buf.putLong(pos, buf.order() == ByteOrder.LITTLE_ENDIAN ? word : Long.reverseBytes(word));
+            buf.position(pos + len);
+        } else {
+            ByteBuf.super.writeLongLE(v, len);
+        }
+    }
+
+    @Override
+    public long readLongLE(int len) throws IOException {
+        final int pos = buf.position();
+        if (buf.limit() - pos >= 8) {
+            long v = getLongLE(pos);
+            buf.position(pos + len);
+            return len == 8 ? v : v & ((1L << (len << 3)) - 1);
+        } else {
+            return ByteBuf.super.readLongLE(len);
+        }
+    }
+
+    private long getLongLE(int index) {
+        long v = buf.getLong(index);
+        return buf.order() == ByteOrder.LITTLE_ENDIAN ? v : Long.reverseBytes(v);
+    }
+
     @Override
     public int readIntLE() throws IOException {
         try {
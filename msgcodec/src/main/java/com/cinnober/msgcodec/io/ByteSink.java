@@ -25,6 +25,7 @@
 package com.cinnober.msgcodec.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 
 /**
  * A byte sink to write data to.
@@ -61,6 +62,22 @@ public interface ByteSink {
         write(b, 0, b.length);
     }
 
+    /**
+     * Write the remaining bytes of a byte buffer.
+     * The position of the byte buffer is not changed.
+     * @param b the byte buffer to write from, not null. Data between position and limit will be written.
+     * @throws IOException if data could not be written.
+     */
+    default void write(ByteBuffer b) throws IOException {
+        if (b.hasArray()) {
+            write(b.array(), b.arrayOffset() + b.position(), b.remaining());
+        } else {
+            for (int i=b.position(); i<b.limit(); i++) {
+                write(b.get(i));
+            }
+        }
+    }
+
     /**
      * Write a 4-byte integer, little endian.
      * @param v the integer value.
@@ -89,6 +106,20 @@ public interface ByteSink {
         write((int) (v >> 56));
     }
 
+    /**
+     * Write the least significant bytes of a long, little endian.
+     * Byte sinks that are backed by a buffer may write all the bytes at once.
+     *
+     * @param v the long value.
+     * @param len the number of bytes to write, in the range [1, 8].
+     * @throws IOException if data could not be written.
+     */
+    default void writeLongLE(long v, int len) throws IOException {
+        for (int i=0; i<len; i++) {
+            write((int) (v >> (i << 3)));
+        }
+    }
+
     /**
      * Write zero bytes.
      * @param n the number of zero bytes to write.
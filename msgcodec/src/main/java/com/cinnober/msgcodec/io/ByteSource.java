@@ -25,8 +25,11 @@
 package com.cinnober.msgcodec.io;
 
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 
+import com.cinnober.msgcodec.util.StringInternCache;
+
 /**
  * A byte source to read data from.
  *
@@ -78,6 +81,41 @@ public interface ByteSource {
         read(data);
         return new String(data, UTF8);
     }
+    /**
+     * Read a UTF-8 encoded string, using the specified cache to avoid creating new strings for repeated values.
+     *
+     * <p>The default implementation reads the bytes into a temporary array before the cache is consulted.
+     * Byte sources that are backed by a buffer may look up the string directly from the underlying data.
+     *
+     * @param len the number of bytes to read.
+     * @param cache the string cache, not null.
+     * @return the string value, not null.
+     * @throws IOException if data could not be read, or not decoded as UTF-8.
+     */
+    default String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        if (len > cache.getMaxStringLength()) {
+            return readStringUtf8(len);
+        }
+        byte[] data = new byte[len];
+        read(data);
+        return cache.intern(data, 0, len);
+    }
+    /**
+     * Read bytes as a read-only byte buffer.
+     *
+     * <p>The default implementation copies the bytes into a new byte buffer.
+     * Byte sources that are backed by a buffer may instead return a view of the underlying data, without copying.
+     * Such a view is only valid until the underlying data is overwritten.
+     *
+     * @param len the number of bytes to read.
+     * @return the byte buffer, with position zero and limit <code>len</code>, not null.
+     * @throws IOException if data could not be read.
+     */
+    default ByteBuffer readByteBuffer(int len) throws IOException {
+        byte[] data = new byte[len];
+        read(data);
+        return ByteBuffer.wrap(data).asReadOnlyBuffer();
+    }
     /**
      * Skip a number of bytes.
      * @param len the number of bytes to skip.
@@ -114,4 +152,20 @@ public interface ByteSource {
                 (long)read() << 48 |
                 (long)read() << 56;
     }
+
+    /**
+     * Read a little endian integer of 1 to 8 bytes, without sign extension.
+     * Byte sources that are backed by a buffer may read all the bytes at once.
+     *
+     * @param len the number of bytes to read, in the range [1, 8].
+     * @return the long value.
+     * @throws IOException if data could not be read.
+     */
+    default long readLongLE(int len) throws IOException {
+        long v = 0;
+        for (int i=0; i<len; i++) {
+            v |= (long)read() << (i << 3);
+        }
+        return v;
+    }
 }
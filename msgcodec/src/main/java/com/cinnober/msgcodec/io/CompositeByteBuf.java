@@ -0,0 +1,476 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+
+import com.cinnober.msgcodec.EncodeBufferOverflowException;
+import com.cinnober.msgcodec.util.StringInternCache;
+
+/**
+ * A ByteBuf backed by a chain of fixed size byte array segments.
+ *
+ * <p>The buffer grows by adding segments, which means that data already written is never copied
+ * when the buffer grows, unlike {@link ReallocatingArray} and {@link ReallocatingByteBuf}.
+ * The content can be written to a channel without copying, see {@link #writeTo(GatheringByteChannel)}.
+ *
+ * <p>Position, limit and {@link #shift(int, int, int)} work across segment boundaries.
+ * The capacity is the maximum size of the buffer, while the allocation is the total size of the segments.
+ * Segments are kept when the buffer is cleared.
+ *
+ * @author mikael.brannstrom
+ */
+public class CompositeByteBuf implements ByteBuf {
+
+    private final int segmentShift;
+    private final int segmentMask;
+    private final int maximumSize;
+    private byte[][] segments = new byte[4][];
+    /** Byte buffers wrapping each segment, used for gathering writes. */
+    private ByteBuffer[] segmentBuffers = new ByteBuffer[4];
+    private int segmentCount;
+    private int allocation;
+    private int position;
+    private int limit;
+
+    /**
+     * Create a new composite byte buf.
+     *
+     * @param segmentSize the size of each segment, will be rounded up to the nearest power of two.
+     * @param maximumSize the maximum size of the buffer.
+     */
+    public CompositeByteBuf(int segmentSize, int maximumSize) {
+        if (segmentSize <= 0 || segmentSize > (1 << 30)) {
+            throw new IllegalArgumentException("Illegal segment size: " + segmentSize);
+        }
+        if (maximumSize < 0) {
+            throw new IllegalArgumentException("Illegal maximum size: " + maximumSize);
+        }
+        int size = Integer.highestOneBit(segmentSize);
+        if (size < segmentSize) {
+            size <<= 1;
+        }
+        this.segmentShift = Integer.numberOfTrailingZeros(size);
+        this.segmentMask = size - 1;
+        this.maximumSize = maximumSize;
+        this.limit = maximumSize;
+    }
+
+    /**
+     * Returns the size of each segment.
+     * @return the segment size in bytes.
+     */
+    public int getSegmentSize() {
+        return segmentMask + 1;
+    }
+
+    /**
+     * Returns the number of allocated segments.
+     * @return the number of segments.
+     */
+    public int getSegmentCount() {
+        return segmentCount;
+    }
+
+    private void ensureAllocated(int end) {
+        while (end > allocation) {
+            if (segmentCount == segments.length) {
+                segments = Arrays.copyOf(segments, segmentCount * 2);
+                segmentBuffers = Arrays.copyOf(segmentBuffers, segmentCount * 2);
+            }
+            byte[] segment = new byte[segmentMask + 1];
+            segments[segmentCount] = segment;
+            segmentBuffers[segmentCount] = ByteBuffer.wrap(segment);
+            segmentCount++;
+            allocation = (int) Math.min(Integer.MAX_VALUE, (long) segmentCount << segmentShift);
+        }
+    }
+
+    private void ensureWrite(int len) {
+        int end = position + len;
+        if (end > limit) {
+            if (end > maximumSize) {
+                throw new EncodeBufferOverflowException("Required buffer capacity: "+end+
+                        " bytes exceeds maximum allowed: "+maximumSize+" bytes!");
+            }
+            throw new EncodeBufferOverflowException("Required buffer capacity: "+end+" bytes exceeds limit: "+limit+" bytes!");
+        }
+        ensureAllocated(end);
+    }
+
+    private void ensureRead(int len) throws IOException {
+        if (position + len > limit) {
+            throw new IOException("Buffer underflow");
+        }
+        ensureAllocated(position + len);
+    }
+
+    /**
+     * Returns true if the specified number of bytes from the current position are in the same segment.
+     */
+    private boolean inSegment(int len) {
+        return (position & segmentMask) + len <= segmentMask + 1;
+    }
+
+    @Override
+    public int capacity() {
+        return maximumSize;
+    }
+
+    @Override
+    public int allocation() {
+        return allocation;
+    }
+
+    @Override
+    public int position() {
+        return position;
+    }
+
+    @Override
+    public CompositeByteBuf position(int position) {
+        if (position > limit) {
+            throw new IllegalArgumentException("Cannot set position beyond limit");
+        } else if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        }
+        this.position = position;
+        return this;
+    }
+
+    @Override
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public CompositeByteBuf limit(int limit) {
+        if (limit > maximumSize) {
+            throw new IllegalArgumentException("Cannot set limit beyond capacity");
+        } else if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit");
+        }
+        this.limit = limit;
+        if (position > limit) {
+            position = limit;
+        }
+        return this;
+    }
+
+    @Override
+    public CompositeByteBuf clear() {
+        position = 0;
+        limit = maximumSize;
+        return this;
+    }
+
+    @Override
+    public CompositeByteBuf flip() {
+        limit = position;
+        position = 0;
+        return this;
+    }
+
+    /**
+     * Shift the bytes in this buffer. The bytes are moved segment by segment, also across segment boundaries.
+     * @param position the position in this buffer
+     * @param length the number of bytes
+     * @param distance the distance to move the data. A positive number shifts right, a negative number shifts left.
+     */
+    @Override
+    public void shift(int position, int length, int distance) {
+        if (position + distance < 0) {
+            throw new IllegalArgumentException("Cannot shift left beyond 0");
+        } else if (position + distance + length > limit) {
+            throw new IllegalArgumentException("Cannot shift right beyond limit");
+        }
+        ensureAllocated(Math.max(position, position + distance) + length);
+        if (distance > 0) {
+            // copy backwards, starting with the last byte
+            int src = position + length;
+            int dst = src + distance;
+            while (length > 0) {
+                int srcAvail = ((src - 1) & segmentMask) + 1;
+                int dstAvail = ((dst - 1) & segmentMask) + 1;
+                int n = Math.min(length, Math.min(srcAvail, dstAvail));
+                System.arraycopy(segments[(src - 1) >>> segmentShift], srcAvail - n,
+                        segments[(dst - 1) >>> segmentShift], dstAvail - n, n);
+                src -= n;
+                dst -= n;
+                length -= n;
+            }
+        } else if (distance < 0) {
+            int src = position;
+            int dst = position + distance;
+            while (length > 0) {
+                int srcOffset = src & segmentMask;
+                int dstOffset = dst & segmentMask;
+                int n = Math.min(length, segmentMask + 1 - Math.max(srcOffset, dstOffset));
+                System.arraycopy(segments[src >>> segmentShift], srcOffset,
+                        segments[dst >>> segmentShift], dstOffset, n);
+                src += n;
+                dst += n;
+                length -= n;
+            }
+        }
+    }
+
+    /**
+     * Copy the content of this buffer to the specified byte sink.
+     * The data between position and limit are copied, one segment at a time.
+     * @param out the byte sink to write to, not null.
+     * @throws IOException if data cannot be written to the byte sink.
+     */
+    public void copyTo(ByteSink out) throws IOException {
+        ensureAllocated(limit);
+        int pos = position;
+        while (pos < limit) {
+            int offset = pos & segmentMask;
+            int n = Math.min(limit - pos, segmentMask + 1 - offset);
+            out.write(segments[pos >>> segmentShift], offset, n);
+            pos += n;
+        }
+    }
+
+    /**
+     * Write the content of this buffer to the specified channel, using a single gathering write of the segments.
+     * The data between position and limit are written, and the position is advanced by the number
+     * of bytes actually written. As for any gathering write, the channel may write fewer bytes than requested.
+     *
+     * @param channel the channel to write to, not null.
+     * @return the number of bytes written.
+     * @throws IOException if data cannot be written to the channel.
+     */
+    public long writeTo(GatheringByteChannel channel) throws IOException {
+        if (position == limit) {
+            return 0;
+        }
+        ensureAllocated(limit);
+        int first = position >>> segmentShift;
+        int last = (limit - 1) >>> segmentShift;
+        for (int i = first; i <= last; i++) {
+            segmentBuffers[i].clear();
+        }
+        segmentBuffers[last].limit(((limit - 1) & segmentMask) + 1);
+        segmentBuffers[first].position(position & segmentMask);
+        long written = channel.write(segmentBuffers, first, last - first + 1);
+        position += (int) written;
+        return written;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (position >= limit || position >= allocation) {
+            ensureRead(1);
+        }
+        int b = 0xff & segments[position >>> segmentShift][position & segmentMask];
+        position++;
+        return b;
+    }
+
+    @Override
+    public void read(byte[] b, int off, int len) throws IOException {
+        ensureRead(len);
+        while (len > 0) {
+            int offset = position & segmentMask;
+            int n = Math.min(len, segmentMask + 1 - offset);
+            System.arraycopy(segments[position >>> segmentShift], offset, b, off, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void skip(int len) throws IOException {
+        if (position + len > limit) {
+            throw new IOException("Buffer underflow");
+        }
+        position += len;
+    }
+
+    @Override
+    public ByteBuffer readByteBuffer(int len) throws IOException {
+        ensureRead(len);
+        if (!inSegment(len)) {
+            return ByteBuf.super.readByteBuffer(len);
+        }
+        ByteBuffer value = ByteBuffer.wrap(segments[position >>> segmentShift], position & segmentMask, len)
+                .slice().asReadOnlyBuffer();
+        position += len;
+        return value;
+    }
+
+    @Override
+    public String readStringUtf8(int len) throws IOException {
+        ensureRead(len);
+        if (!inSegment(len)) {
+            return ByteBuf.super.readStringUtf8(len);
+        }
+        String s = new String(segments[position >>> segmentShift], position & segmentMask, len, UTF8);
+        position += len;
+        return s;
+    }
+
+    @Override
+    public String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        ensureRead(len);
+        if (!inSegment(len)) {
+            return ByteBuf.super.readStringUtf8(len, cache);
+        }
+        String s = cache.intern(segments[position >>> segmentShift], position & segmentMask, len);
+        position += len;
+        return s;
+    }
+
+    @Override
+    public int readIntLE() throws IOException {
+        ensureRead(4);
+        if (!inSegment(4)) {
+            return ByteBuf.super.readIntLE();
+        }
+        byte[] segment = segments[position >>> segmentShift];
+        int i = position & segmentMask;
+        position += 4;
+        return (0xff & segment[i]) |
+                (0xff & segment[i+1]) << 8 |
+                (0xff & segment[i+2]) << 16 |
+                (0xff & segment[i+3]) << 24;
+    }
+
+    @Override
+    public long readLongLE() throws IOException {
+        return readLongLE(8);
+    }
+
+    @Override
+    public long readLongLE(int len) throws IOException {
+        ensureRead(len);
+        if (!inSegment(len)) {
+            return ByteBuf.super.readLongLE(len);
+        }
+        byte[] segment = segments[position >>> segmentShift];
+        int offset = position & segmentMask;
+        long v = 0;
+        for (int i=0; i<len; i++) {
+            v |= (0xffL & segment[offset+i]) << (i << 3);
+        }
+        position += len;
+        return v;
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (position >= limit || position >= allocation) {
+            ensureWrite(1);
+        }
+        segments[position >>> segmentShift][position & segmentMask] = (byte) b;
+        position++;
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        ensureWrite(len);
+        while (len > 0) {
+            int offset = position & segmentMask;
+            int n = Math.min(len, segmentMask + 1 - offset);
+            System.arraycopy(b, off, segments[position >>> segmentShift], offset, n);
+            position += n;
+            off += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void write(ByteBuffer b) throws IOException {
+        int len = b.remaining();
+        ensureWrite(len);
+        ByteBuffer src = b.duplicate();
+        while (len > 0) {
+            int offset = position & segmentMask;
+            int n = Math.min(len, segmentMask + 1 - offset);
+            src.get(segments[position >>> segmentShift], offset, n);
+            position += n;
+            len -= n;
+        }
+    }
+
+    @Override
+    public void writeIntLE(int v) throws IOException {
+        ensureWrite(4);
+        if (!inSegment(4)) {
+            ByteBuf.super.writeIntLE(v);
+            return;
+        }
+        byte[] segment = segments[position >>> segmentShift];
+        int i = position & segmentMask;
+        segment[i] = (byte) v;
+        segment[i+1] = (byte) (v >> 8);
+        segment[i+2] = (byte) (v >> 16);
+        segment[i+3] = (byte) (v >> 24);
+        position += 4;
+    }
+
+    @Override
+    public void writeLongLE(long v) throws IOException {
+        writeLongLE(v, 8);
+    }
+
+    @Override
+    public void writeLongLE(long v, int len) throws IOException {
+        ensureWrite(len);
+        if (!inSegment(len)) {
+            ByteBuf.super.writeLongLE(v, len);
+            return;
+        }
+        byte[] segment = segments[position >>> segmentShift];
+        int offset = position & segmentMask;
+        for (int i=0; i<len; i++) {
+            segment[offset+i] = (byte) (v >> (i << 3));
+        }
+        position += len;
+    }
+
+    /**
+     * Returns a copy of the allocated content of this buffer, since the segments are not contiguous.
+     * Changes to the returned byte buffer are not reflected in this buffer.
+     * @return a new heap byte buffer with the content of all segments, not null.
+     */
+    @Override
+    public ByteBuffer getByteBuffer() {
+        byte[] data = new byte[allocation];
+        for (int i=0; i<segmentCount; i++) {
+            System.arraycopy(segments[i], 0, data, i << segmentShift, Math.min(segmentMask + 1, allocation - (i << segmentShift)));
+        }
+        return ByteBuffer.wrap(data);
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()+"[pos="+position+" lim="+limit+" cap="+capacity()+"]";
+    }
+}
@@ -0,0 +1,259 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+/**
+ * Pool of direct byte buffers, which can be used as the buffer allocator of a {@link ReallocatingByteBuf}.
+ *
+ * <p>Buffers are grouped in size classes, where each size class is a power of two.
+ * A request for a buffer is served from the smallest size class that fits, which means that
+ * the capacity of the returned buffer may be larger than requested.
+ * Buffers that are small compared to the slab size are cut out of a larger direct buffer (the slab),
+ * so that many small buffers share a single direct allocation. The slab is never larger than
+ * what the size class can keep.
+ * Requests larger than the maximum buffer size are allocated directly, and never pooled.
+ *
+ * <p>Each size class keeps a bounded number of released buffers. Buffers that are released to a full
+ * size class are dropped, and their memory is reclaimed by the garbage collector as usual.
+ *
+ * <p>Note that the content of a pooled buffer is not cleared, unlike {@link ByteBuffer#allocateDirect(int)}.
+ * The position, limit and byte order are reset.
+ *
+ * <p>The pool is thread safe.
+ *
+ * @author mikael.brannstrom
+ */
+public class DirectBufferPool implements Function<Integer, ByteBuffer> {
+
+    private final int minShift;
+    private final int slabSize;
+    private final SizeClass[] sizeClasses;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder allocatedBytes = new LongAdder();
+
+    /**
+     * Create a direct buffer pool for buffers from 256 bytes to 16 MB, with 1 MB slabs,
+     * keeping up to 4 MB of released buffers per size class.
+     */
+    public DirectBufferPool() {
+        this(256, 16 * 1_048_576, 1_048_576, 4 * 1_048_576);
+    }
+
+    /**
+     * Create a direct buffer pool.
+     *
+     * @param minBufferSize the smallest buffer size, will be rounded up to the nearest power of two.
+     * @param maxBufferSize the largest pooled buffer size, will be rounded up to the nearest power of two.
+     * @param slabSize the size of the slabs that smaller buffers are cut from.
+     * Size classes that do not fit at least two buffers in a slab are allocated one by one.
+     * @param maxPooledBytes the maximum number of bytes of released buffers that are kept per size class.
+     * At least one buffer is always kept per size class.
+     */
+    public DirectBufferPool(int minBufferSize, int maxBufferSize, int slabSize, int maxPooledBytes) {
+        if (minBufferSize <= 0 || maxBufferSize < minBufferSize || maxBufferSize > (1 << 30)) {
+            throw new IllegalArgumentException("Illegal buffer sizes: " + minBufferSize + ", " + maxBufferSize);
+        }
+        if (slabSize < 0 || maxPooledBytes < 0) {
+            throw new IllegalArgumentException("Illegal slab size or pooled bytes: " + slabSize + ", " + maxPooledBytes);
+        }
+        this.minShift = shiftOf(minBufferSize);
+        int maxShift = shiftOf(maxBufferSize);
+        this.slabSize = slabSize;
+        this.sizeClasses = new SizeClass[maxShift - minShift + 1];
+        for (int i=0; i<sizeClasses.length; i++) {
+            int size = 1 << (minShift + i);
+            sizeClasses[i] = new SizeClass(size, Math.max(1, maxPooledBytes / size));
+        }
+    }
+
+    /**
+     * Returns the exponent of the smallest power of two that is larger than or equal to the size.
+     */
+    private static int shiftOf(int size) {
+        return size <= 1 ? 0 : 32 - Integer.numberOfLeadingZeros(size - 1);
+    }
+
+    /**
+     * Returns the size class index for a buffer of the specified size, or -1 if not pooled.
+     */
+    private int sizeClassOf(int size) {
+        int index = shiftOf(size) - minShift;
+        if (index < 0) {
+            return 0;
+        }
+        return index < sizeClasses.length ? index : -1;
+    }
+
+    /**
+     * Allocate a buffer. Same as {@link #allocate(int)}.
+     *
+     * @param size the minimum capacity of the buffer.
+     * @return the direct byte buffer, not null.
+     */
+    @Override
+    public ByteBuffer apply(Integer size) {
+        return allocate(size);
+    }
+
+    /**
+     * Allocate a direct buffer, from the pool if possible.
+     *
+     * @param size the minimum capacity of the buffer.
+     * @return the direct byte buffer, with position zero and limit equal to the capacity, not null.
+     */
+    public ByteBuffer allocate(int size) {
+        int index = sizeClassOf(size);
+        if (index < 0) {
+            misses.increment();
+            allocatedBytes.add(size);
+            return ByteBuffer.allocateDirect(size);
+        }
+        SizeClass sizeClass = sizeClasses[index];
+        ByteBuffer buf = sizeClass.poll();
+        if (buf != null) {
+            hits.increment();
+            buf.clear();
+            buf.order(ByteOrder.BIG_ENDIAN);
+            return buf;
+        }
+        misses.increment();
+        int chunkSize = sizeClass.size;
+        int numChunks = Math.min(slabSize / chunkSize, sizeClass.capacity + 1);
+        if (numChunks < 2) {
+            allocatedBytes.add(chunkSize);
+            return ByteBuffer.allocateDirect(chunkSize);
+        }
+        ByteBuffer slab = ByteBuffer.allocateDirect(numChunks * chunkSize);
+        allocatedBytes.add(slab.capacity());
+        for (int i=1; i<numChunks; i++) {
+            sizeClass.offer(slice(slab, i * chunkSize, chunkSize));
+        }
+        return slice(slab, 0, chunkSize);
+    }
+
+    private static ByteBuffer slice(ByteBuffer slab, int position, int size) {
+        slab.limit(position + size).position(position);
+        return slab.slice();
+    }
+
+    /**
+     * Release a buffer to the pool.
+     * The buffer must not be used after it has been released.
+     *
+     * <p>Buffers that are not direct, read-only or do not match the size of any size class are dropped.
+     *
+     * @param buf the buffer, not null.
+     */
+    public void release(ByteBuffer buf) {
+        if (!buf.isDirect() || buf.isReadOnly()) {
+            return;
+        }
+        int capacity = buf.capacity();
+        int index = sizeClassOf(capacity);
+        if (index >= 0 && sizeClasses[index].size == capacity) {
+            sizeClasses[index].offer(buf);
+        }
+    }
+
+    /**
+     * Returns the number of allocations that were served by a pooled buffer.
+     * @return the hit count.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of allocations that required new direct memory to be allocated.
+     * @return the miss count.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the total number of bytes of direct memory that has been allocated by this pool.
+     * @return the number of allocated bytes.
+     */
+    public long getAllocatedBytes() {
+        return allocatedBytes.sum();
+    }
+
+    /**
+     * Reset the hit, miss and allocated bytes counters.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        allocatedBytes.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "DirectBufferPool[minBufferSize=" + sizeClasses[0].size +
+                ", maxBufferSize=" + sizeClasses[sizeClasses.length-1].size +
+                ", slabSize=" + slabSize + ", hits=" + getHitCount() + ", misses=" + getMissCount() +
+                ", allocatedBytes=" + getAllocatedBytes() + "]";
+    }
+
+    /**
+     * The released buffers of one size.
+     */
+    private static class SizeClass {
+        private final int size;
+        private final int capacity;
+        private final Queue<ByteBuffer> buffers = new ConcurrentLinkedQueue<>();
+        private final AtomicInteger count = new AtomicInteger();
+
+        SizeClass(int size, int capacity) {
+            this.size = size;
+            this.capacity = capacity;
+        }
+
+        ByteBuffer poll() {
+            ByteBuffer buf = buffers.poll();
+            if (buf != null) {
+                count.decrementAndGet();
+            }
+            return buf;
+        }
+
+        void offer(ByteBuffer buf) {
+            if (count.incrementAndGet() > capacity) {
+                count.decrementAndGet();
+                return;
+            }
+            buffers.offer(buf);
+        }
+    }
+}
@@ -73,4 +73,31 @@ public class InputStreams {
             n += count;
         }
     }
+
+    /**
+     * Read data into the specified byte array, until the requested number of bytes have been read
+     * or the stream ends. Unlike {@link #readFully(InputStream, byte[], int, int)} the end of the stream is not
+     * an error, it is up to the caller to detect truncated data, e.g. when decoding it.
+     *
+     * @param in the stream to read from, not null.
+     * @param b the byte array into which the data is read, not null.
+     * @param off the start offset of the data.
+     * @param len the maximum number of bytes to read.
+     * @return the number of bytes read, <code>len</code> unless the stream ended.
+     * @throws IOException if the stream throws an exception.
+     */
+    public static int readUpTo(InputStream in, byte[] b, int off, int len) throws IOException {
+        if (off < 0 || len < 0 || len > b.length - off) {
+            throw new IndexOutOfBoundsException();
+        }
+        int n = 0;
+        while (n < len) {
+            int count = in.read(b, off + n, len - n);
+            if (count < 0) {
+                break;
+            }
+            n += count;
+        }
+        return n;
+    }
 }
@@ -30,6 +30,7 @@ import java.nio.ByteBuffer;
 
 import com.cinnober.msgcodec.EncodeBufferOverflowException;
 import com.cinnober.msgcodec.EncodeBufferUnderflowException;
+import com.cinnober.msgcodec.util.StringInternCache;
 
 /**
  * A bytebuf implementation that will reallocate the underlying bytebuffer when required.
@@ -212,6 +213,16 @@ public class ReallocatingArray implements ByteBuf {
         
         return s;
     }
+
+    @Override
+    public String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        if (position + len > limit) {
+            throw new IOException("Buffer underflow");
+        }
+        String s = cache.intern(buffer, position, len);
+        position += len;
+        return s;
+    }
     
     public int get(int i) {
         return buffer[i] & 0xFF;
@@ -28,26 +28,60 @@ import java.nio.BufferOverflowException;
 import java.nio.BufferUnderflowException;
 import java.nio.ByteBuffer;
 import java.nio.ByteOrder;
+import java.util.function.Consumer;
 import java.util.function.Function;
 
 import com.cinnober.msgcodec.EncodeBufferOverflowException;
 import com.cinnober.msgcodec.EncodeBufferUnderflowException;
+import com.cinnober.msgcodec.util.StringInternCache;
 
 /**
  * A bytebuf implementation that will reallocate the underlying bytebuffer when required.
+ *
+ * <p>An optional buffer releaser is given the buffers that are superseded by a reallocation,
+ * e.g. to return them to a {@link DirectBufferPool}.
  */
 public class ReallocatingByteBuf implements ByteBuf {
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
     private ByteBuffer buffer;
     private final Function<Integer, ByteBuffer> bufferAllocator;
+    private final Consumer<ByteBuffer> bufferReleaser;
     private final int maximumSize;
     private int size;
     private int limit;
     private final char[] chars = new char[128];
 
     public ReallocatingByteBuf(int initialSize, int maximumSize, Function<Integer, ByteBuffer> bufferAllocator) {
+        this(initialSize, maximumSize, bufferAllocator, null);
+    }
+
+    /**
+     * Create a reallocating byte buf, where the buffers are allocated from and released to a direct buffer pool.
+     *
+     * @param initialSize the initial size of the buffer.
+     * @param maximumSize the maximum size of the buffer.
+     * @param bufferPool the buffer pool, not null.
+     */
+    public ReallocatingByteBuf(int initialSize, int maximumSize, DirectBufferPool bufferPool) {
+        this(initialSize, maximumSize, bufferPool, bufferPool::release);
+    }
+
+    /**
+     * Create a reallocating byte buf.
+     *
+     * @param initialSize the initial size of the buffer.
+     * @param maximumSize the maximum size of the buffer.
+     * @param bufferAllocator the buffer allocator, not null.
+     * The capacity of an allocated buffer must be at least the requested size.
+     * @param bufferReleaser the buffer releaser, which is given buffers that are no longer used, or null.
+     */
+    public ReallocatingByteBuf(int initialSize, int maximumSize, Function<Integer, ByteBuffer> bufferAllocator,
+            Consumer<ByteBuffer> bufferReleaser) {
         int newSize = Math.min(initialSize, maximumSize);
         buffer = bufferAllocator.apply(newSize);
         this.bufferAllocator = bufferAllocator;
+        this.bufferReleaser = bufferReleaser;
         this.maximumSize = maximumSize;
         limit = maximumSize;
         size = newSize;
@@ -61,8 +95,22 @@ public class ReallocatingByteBuf implements ByteBuf {
         return this;
     }
 
+    /**
+     * Release the underlying buffer to the buffer releaser, if any.
+     * This buffer is cleared, and a new underlying buffer is allocated if this buffer is written to again.
+     */
+    public void release() {
+        ByteBuffer oldBuffer = buffer;
+        buffer = EMPTY;
+        size = 0;
+        limit = maximumSize;
+        if (bufferReleaser != null && oldBuffer != EMPTY) {
+            bufferReleaser.accept(oldBuffer);
+        }
+    }
+
     private static int calculateNewCapacity(int current, int requested, int maximum) {
-        int n = current<<1;
+        int n = Math.max(current, 1)<<1;
         while (n<requested && n>0) {
             n = n<<1;
         }
@@ -82,8 +130,12 @@ public class ReallocatingByteBuf implements ByteBuf {
             int position = buffer.position();
             ByteBuffers.copy(buffer, 0, newBuffer, 0, buffer.capacity());
             newBuffer.position(position).limit(Math.min(limit, newBuffer.capacity()));
+            ByteBuffer oldBuffer = buffer;
             buffer = newBuffer;
             size = newSize;
+            if (bufferReleaser != null && oldBuffer != EMPTY) {
+                bufferReleaser.accept(oldBuffer);
+            }
         }
     }
 
@@ -216,6 +268,16 @@ public class ReallocatingByteBuf implements ByteBuf {
         return ByteBuf.super.readStringUtf8(len);
     }
 
+    @Override
+    public String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        if (position() + len > limit()) {
+            throw new BufferUnderflowException();
+        }
+        String s = cache.intern(buffer, buffer.position(), len);
+        buffer.position(buffer.position()+len);
+        return s;
+    }
+
     @Override
     public void writeIntLE(int v) throws IOException {
         if (buffer.position() + 4 > size) {
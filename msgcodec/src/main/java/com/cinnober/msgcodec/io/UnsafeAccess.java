@@ -0,0 +1,183 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.reflect.Field;
+import java.nio.Buffer;
+
+import static java.lang.invoke.MethodType.methodType;
+
+/**
+ * Holder of the <code>sun.misc.Unsafe</code> operations used by {@link UnsafeByteBuf}.
+ *
+ * <p>Unsafe is looked up by name and called through method handles, so that no other code refers to it.
+ * A compile time reference to <code>sun.misc.Unsafe</code> makes javac warn about internal proprietary API,
+ * and that warning cannot be suppressed with <code>@SuppressWarnings</code>.
+ * The method handles are static final and bound to the Unsafe instance,
+ * which lets the JIT compiler inline the calls just like direct calls to Unsafe.
+ *
+ * @author mikael.brannstrom
+ */
+final class UnsafeAccess {
+    /** True if Unsafe and the operations below are available. */
+    static final boolean AVAILABLE;
+    /** The offset of the first element in a byte array. */
+    static final long BYTE_ARRAY_OFFSET;
+    /** The offset of the address field in a direct buffer. */
+    static final long BUFFER_ADDRESS_OFFSET;
+
+    private static final MethodHandle GET_BYTE;
+    private static final MethodHandle PUT_BYTE;
+    private static final MethodHandle GET_INT;
+    private static final MethodHandle PUT_INT;
+    private static final MethodHandle GET_LONG;
+    private static final MethodHandle PUT_LONG;
+    private static final MethodHandle COPY_MEMORY;
+
+    static {
+        MethodHandle getByte = null;
+        MethodHandle putByte = null;
+        MethodHandle getInt = null;
+        MethodHandle putInt = null;
+        MethodHandle getLong = null;
+        MethodHandle putLong = null;
+        MethodHandle copyMemory = null;
+        long byteArrayOffset = -1;
+        long bufferAddressOffset = -1;
+        boolean available;
+        try {
+            Class<?> unsafeClass = Class.forName("sun.misc.Unsafe");
+            Field field = unsafeClass.getDeclaredField("theUnsafe");
+            field.setAccessible(true);
+            Object unsafe = field.get(null);
+            MethodHandles.Lookup lookup = MethodHandles.lookup();
+            getByte = lookup.findVirtual(unsafeClass, "getByte",
+                    methodType(byte.class, Object.class, long.class)).bindTo(unsafe);
+            putByte = lookup.findVirtual(unsafeClass, "putByte",
+                    methodType(void.class, Object.class, long.class, byte.class)).bindTo(unsafe);
+            getInt = lookup.findVirtual(unsafeClass, "getInt",
+                    methodType(int.class, Object.class, long.class)).bindTo(unsafe);
+            putInt = lookup.findVirtual(unsafeClass, "putInt",
+                    methodType(void.class, Object.class, long.class, int.class)).bindTo(unsafe);
+            getLong = lookup.findVirtual(unsafeClass, "getLong",
+                    methodType(long.class, Object.class, long.class)).bindTo(unsafe);
+            putLong = lookup.findVirtual(unsafeClass, "putLong",
+                    methodType(void.class, Object.class, long.class, long.class)).bindTo(unsafe);
+            copyMemory = lookup.findVirtual(unsafeClass, "copyMemory",
+                    methodType(void.class, Object.class, long.class, Object.class, long.class, long.class))
+                    .bindTo(unsafe);
+            byteArrayOffset = (int) lookup.findVirtual(unsafeClass, "arrayBaseOffset",
+                    methodType(int.class, Class.class)).invoke(unsafe, byte[].class);
+            bufferAddressOffset = (long) lookup.findVirtual(unsafeClass, "objectFieldOffset",
+                    methodType(long.class, Field.class)).invoke(unsafe, Buffer.class.getDeclaredField("address"));
+            available = true;
+        } catch (Throwable e) {
+            available = false;
+        }
+        GET_BYTE = getByte;
+        PUT_BYTE = putByte;
+        GET_INT = getInt;
+        PUT_INT = putInt;
+        GET_LONG = getLong;
+        PUT_LONG = putLong;
+        COPY_MEMORY = copyMemory;
+        BYTE_ARRAY_OFFSET = byteArrayOffset;
+        BUFFER_ADDRESS_OFFSET = bufferAddressOffset;
+        AVAILABLE = available;
+    }
+
+    private UnsafeAccess() {
+    }
+
+    static byte getByte(Object base, long offset) {
+        try {
+            return (byte) GET_BYTE.invokeExact(base, offset);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void putByte(Object base, long offset, byte value) {
+        try {
+            PUT_BYTE.invokeExact(base, offset, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static int getInt(Object base, long offset) {
+        try {
+            return (int) GET_INT.invokeExact(base, offset);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void putInt(Object base, long offset, int value) {
+        try {
+            PUT_INT.invokeExact(base, offset, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static long getLong(Object base, long offset) {
+        try {
+            return (long) GET_LONG.invokeExact(base, offset);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    static void putLong(Object base, long offset, long value) {
+        try {
+            PUT_LONG.invokeExact(base, offset, value);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    /**
+     * Copy memory between arrays or off-heap memory. A null base means that the offset is an absolute address.
+     * Overlapping regions are handled.
+     */
+    static void copyMemory(Object srcBase, long srcOffset, Object destBase, long destOffset, long bytes) {
+        try {
+            COPY_MEMORY.invokeExact(srcBase, srcOffset, destBase, destOffset, bytes);
+        } catch (Throwable e) {
+            throw rethrow(e);
+        }
+    }
+
+    private static RuntimeException rethrow(Throwable e) {
+        if (e instanceof RuntimeException) {
+            throw (RuntimeException) e;
+        } else if (e instanceof Error) {
+            throw (Error) e;
+        }
+        throw new Error("Should not happen", e);
+    }
+}
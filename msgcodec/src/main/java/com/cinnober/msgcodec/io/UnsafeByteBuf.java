@@ -0,0 +1,426 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Objects;
+
+import com.cinnober.msgcodec.util.StringInternCache;
+
+/**
+ * A ByteBuf backed by a byte array or by off-heap memory, which is accessed using <code>sun.misc.Unsafe</code>.
+ *
+ * <p>Multi-byte little endian values are read and written as a single unaligned int or long access,
+ * with a single bounds check per operation. This makes the buffer well suited for the native blink format,
+ * which consists mostly of fixed width little endian fields.
+ *
+ * <p>The buffer is only available on platforms where <code>sun.misc.Unsafe</code> can be used,
+ * and where the hardware supports unaligned memory access, see {@link #isSupported()}.
+ * On other platforms {@link ByteArrayBuf} or {@link ByteBufferBuf} should be used instead.
+ *
+ * @author mikael.brannstrom
+ */
+public final class UnsafeByteBuf implements ByteBuf {
+
+    private static final long BYTE_ARRAY_OFFSET = UnsafeAccess.BYTE_ARRAY_OFFSET;
+    private static final long BUFFER_ADDRESS_OFFSET = UnsafeAccess.BUFFER_ADDRESS_OFFSET;
+    private static final boolean SUPPORTED = UnsafeAccess.AVAILABLE && isUnalignedAccessSupported();
+    private static final boolean NATIVE_LITTLE_ENDIAN = ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN;
+
+    private static boolean isUnalignedAccessSupported() {
+        String arch = System.getProperty("os.arch", "");
+        return arch.matches("^(i[3-6]86|x86(_64)?|x64|amd64|aarch64|ppc64le)$");
+    }
+
+    /** The byte array, or null for off-heap memory. */
+    private final byte[] array;
+    /** The direct byte buffer that owns the off-heap memory, or null. */
+    private final ByteBuffer directBuffer;
+    /** The base offset in the array, or the address of the off-heap memory. */
+    private final long baseOffset;
+    private final int capacity;
+    private int pos;
+    private int limit;
+
+    /**
+     * Returns true if this buffer can be used on the current platform.
+     * @return true if supported, otherwise false.
+     */
+    public static boolean isSupported() {
+        return SUPPORTED;
+    }
+
+    private static void checkSupported() {
+        if (!SUPPORTED) {
+            throw new UnsupportedOperationException("UnsafeByteBuf is not supported on this platform");
+        }
+    }
+
+    /**
+     * Create a new buffer backed by a byte array.
+     * @param size the size of the buffer in bytes.
+     * @throws UnsupportedOperationException if the buffer is not supported on this platform.
+     */
+    public UnsafeByteBuf(int size) {
+        this(new byte[size]);
+    }
+
+    /**
+     * Create a new buffer backed by the specified byte array.
+     * @param data the byte array, not null.
+     * @throws UnsupportedOperationException if the buffer is not supported on this platform.
+     */
+    public UnsafeByteBuf(byte[] data) {
+        checkSupported();
+        this.array = Objects.requireNonNull(data);
+        this.directBuffer = null;
+        this.baseOffset = BYTE_ARRAY_OFFSET;
+        this.capacity = data.length;
+        this.limit = capacity;
+    }
+
+    /**
+     * Create a new buffer backed by the memory of the specified direct byte buffer.
+     * The whole capacity of the byte buffer is used, regardless of its position and limit.
+     * Position and limit are not shared with the byte buffer.
+     *
+     * @param buf the direct byte buffer, not null.
+     * @throws UnsupportedOperationException if the buffer is not supported on this platform.
+     * @throws IllegalArgumentException if the byte buffer is not direct.
+     */
+    public UnsafeByteBuf(ByteBuffer buf) {
+        checkSupported();
+        if (!buf.isDirect()) {
+            throw new IllegalArgumentException("Not a direct byte buffer");
+        }
+        this.array = null;
+        this.directBuffer = buf;
+        this.baseOffset = UnsafeAccess.getLong(buf, BUFFER_ADDRESS_OFFSET);
+        this.capacity = buf.capacity();
+        this.limit = capacity;
+    }
+
+    /**
+     * Create a new buffer backed by off-heap memory at the specified address.
+     * The caller is responsible for the memory, which must be valid for as long as this buffer is used.
+     *
+     * @param address the address of the memory.
+     * @param size the size of the memory in bytes.
+     * @throws UnsupportedOperationException if the buffer is not supported on this platform.
+     */
+    public UnsafeByteBuf(long address, int size) {
+        checkSupported();
+        if (address == 0 || size < 0) {
+            throw new IllegalArgumentException("Illegal address or size");
+        }
+        this.array = null;
+        this.directBuffer = null;
+        this.baseOffset = address;
+        this.capacity = size;
+        this.limit = capacity;
+    }
+
+    // Note: the bounds checks must not overflow, since there are no array bounds checks behind them.
+    // A length from the wire, e.g. Integer.MAX_VALUE, must not wrap the position around.
+
+    private void checkRead(int len) throws IOException {
+        if (len < 0) {
+            throw new IOException("Illegal length: " + len);
+        } else if (len > limit - pos) {
+            throw new IOException("Buffer underflow");
+        }
+    }
+
+    private void checkWrite(int len) throws IOException {
+        if (len < 0) {
+            throw new IOException("Illegal length: " + len);
+        } else if (len > limit - pos) {
+            throw new IOException("Buffer overflow");
+        }
+    }
+
+    private static void checkArrayRange(byte[] b, int off, int len) {
+        if (off < 0 || off > b.length - len) {
+            throw new IndexOutOfBoundsException();
+        }
+    }
+
+    @Override
+    public int capacity() {
+        return capacity;
+    }
+
+    @Override
+    public int allocation() {
+        return capacity;
+    }
+
+    @Override
+    public int position() {
+        return pos;
+    }
+
+    @Override
+    public UnsafeByteBuf position(int position) {
+        if (position < 0) {
+            throw new IllegalArgumentException("Negative position");
+        } else if (position > limit) {
+            throw new IllegalArgumentException("Cannot set position beyond limit");
+        }
+        this.pos = position;
+        return this;
+    }
+
+    @Override
+    public int limit() {
+        return limit;
+    }
+
+    @Override
+    public UnsafeByteBuf limit(int limit) {
+        if (limit < 0) {
+            throw new IllegalArgumentException("Negative limit");
+        } else if (limit < pos) {
+            throw new IllegalArgumentException("Cannot set limit before position");
+        } else if (limit > capacity) {
+            throw new IllegalArgumentException("Cannot set limit beyond capacity");
+        }
+        this.limit = limit;
+        return this;
+    }
+
+    @Override
+    public UnsafeByteBuf clear() {
+        pos = 0;
+        limit = capacity;
+        return this;
+    }
+
+    @Override
+    public UnsafeByteBuf flip() {
+        limit = pos;
+        pos = 0;
+        return this;
+    }
+
+    @Override
+    public int read() throws IOException {
+        if (pos == limit) {
+            throw new IOException("Buffer underflow");
+        }
+        return 0xff & UnsafeAccess.getByte(array, baseOffset + pos++);
+    }
+
+    @Override
+    public void read(byte[] b, int off, int len) throws IOException {
+        checkRead(len);
+        checkArrayRange(b, off, len);
+        UnsafeAccess.copyMemory(array, baseOffset + pos, b, BYTE_ARRAY_OFFSET + off, len);
+        pos += len;
+    }
+
+    @Override
+    public void skip(int len) throws IOException {
+        checkRead(len);
+        pos += len;
+    }
+
+    @Override
+    public ByteBuffer readByteBuffer(int len) throws IOException {
+        checkRead(len);
+        ByteBuffer value;
+        if (array != null) {
+            value = ByteBuffer.wrap(array, pos, len).slice().asReadOnlyBuffer();
+        } else if (directBuffer != null) {
+            ByteBuffer dup = directBuffer.duplicate();
+            dup.limit(pos + len).position(pos);
+            value = dup.slice().asReadOnlyBuffer();
+        } else {
+            return ByteBuf.super.readByteBuffer(len);
+        }
+        pos += len;
+        return value;
+    }
+
+    @Override
+    public String readStringUtf8(int len) throws IOException {
+        checkRead(len);
+        if (array == null) {
+            return ByteBuf.super.readStringUtf8(len);
+        }
+        String s = new String(array, pos, len, UTF8);
+        pos += len;
+        return s;
+    }
+
+    @Override
+    public String readStringUtf8(int len, StringInternCache cache) throws IOException {
+        checkRead(len);
+        String s;
+        if (array != null) {
+            s = cache.intern(array, pos, len);
+        } else if (directBuffer != null) {
+            s = cache.intern(directBuffer, pos, len);
+        } else {
+            return ByteBuf.super.readStringUtf8(len, cache);
+        }
+        pos += len;
+        return s;
+    }
+
+    @Override
+    public int readIntLE() throws IOException {
+        checkRead(4);
+        int v = UnsafeAccess.getInt(array, baseOffset + pos);
+        pos += 4;
+        return NATIVE_LITTLE_ENDIAN ? v : Integer.reverseBytes(v);
+    }
+
+    @Override
+    public long readLongLE() throws IOException {
+        checkRead(8);
+        long v = UnsafeAccess.getLong(array, baseOffset + pos);
+        pos += 8;
+        return NATIVE_LITTLE_ENDIAN ? v : Long.reverseBytes(v);
+    }
+
+    @Override
+    public long readLongLE(int len) throws IOException {
+        if (len == 8) {
+            return readLongLE();
+        } else if (len == 0) {
+            return 0; // the mask below would shift by 64, which is a no-op
+        }
+        checkRead(len);
+        if (8 > limit - pos) {
+            return ByteBuf.super.readLongLE(len);
+        }
+        // read a whole long, which is within the limit, and mask out the bytes beyond len
+        long v = UnsafeAccess.getLong(array, baseOffset + pos);
+        pos += len;
+        if (!NATIVE_LITTLE_ENDIAN) {
+            v = Long.reverseBytes(v);
+        }
+        return v & (-1L >>> ((8 - len) << 3));
+    }
+
+    @Override
+    public void write(int b) throws IOException {
+        if (pos >= limit) {
+            throw new IOException("Buffer overflow");
+        }
+        UnsafeAccess.putByte(array, baseOffset + pos++, (byte) b);
+    }
+
+    @Override
+    public void write(byte[] b, int off, int len) throws IOException {
+        checkWrite(len);
+        checkArrayRange(b, off, len);
+        UnsafeAccess.copyMemory(b, BYTE_ARRAY_OFFSET + off, array, baseOffset + pos, len);
+        pos += len;
+    }
+
+    @Override
+    public void write(ByteBuffer b) throws IOException {
+        int len = b.remaining();
+        checkWrite(len);
+        if (b.hasArray()) {
+            UnsafeAccess.copyMemory(b.array(), BYTE_ARRAY_OFFSET + b.arrayOffset() + b.position(),
+                    array, baseOffset + pos, len);
+        } else if (b.isDirect()) {
+            UnsafeAccess.copyMemory(null, UnsafeAccess.getLong(b, BUFFER_ADDRESS_OFFSET) + b.position(),
+                    array, baseOffset + pos, len);
+        } else {
+            for (int i=0; i<len; i++) {
+                UnsafeAccess.putByte(array, baseOffset + pos + i, b.get(b.position() + i));
+            }
+        }
+        pos += len;
+    }
+
+    @Override
+    public void writeIntLE(int v) throws IOException {
+        checkWrite(4);
+        UnsafeAccess.putInt(array, baseOffset + pos, NATIVE_LITTLE_ENDIAN ? v : Integer.reverseBytes(v));
+        pos += 4;
+    }
+
+    @Override
+    public void writeLongLE(long v) throws IOException {
+        checkWrite(8);
+        UnsafeAccess.putLong(array, baseOffset + pos, NATIVE_LITTLE_ENDIAN ? v : Long.reverseBytes(v));
+        pos += 8;
+    }
+
+    @Override
+    public void writeLongLE(long v, int len) throws IOException {
+        if (len == 8) {
+            writeLongLE(v);
+            return;
+        }
+        checkWrite(len);
+        for (int i=0; i<len; i++) {
+            UnsafeAccess.putByte(array, baseOffset + pos + i, (byte) (v >> (i << 3)));
+        }
+        pos += len;
+    }
+
+    @Override
+    public void shift(int position, int length, int distance) {
+        if (position < 0 || length < 0 || (long) position + distance < 0) {
+            throw new IllegalArgumentException("Cannot shift left beyond 0");
+        } else if ((long) position + distance + length > limit || (long) position + length > limit) {
+            throw new IllegalArgumentException("Cannot shift right beyond limit");
+        }
+        if (array != null) {
+            System.arraycopy(array, position, array, position + distance, length);
+        } else {
+            // copyMemory handles overlapping off-heap regions
+            UnsafeAccess.copyMemory(null, baseOffset + position, null, baseOffset + position + distance, length);
+        }
+    }
+
+    /**
+     * Returns a byte buffer view of the underlying memory.
+     * @return the byte buffer, not null.
+     * @throws UnsupportedOperationException if the buffer was created from a raw memory address.
+     */
+    @Override
+    public ByteBuffer getByteBuffer() {
+        if (array != null) {
+            return ByteBuffer.wrap(array);
+        } else if (directBuffer != null) {
+            return directBuffer.duplicate();
+        } else {
+            throw new UnsupportedOperationException("No byte buffer for raw memory address");
+        }
+    }
+
+    @Override
+    public String toString() {
+        return this.getClass().getSimpleName()+"[pos="+pos+" lim="+limit+" cap="+capacity+"]";
+    }
+}
@@ -0,0 +1,257 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded cache of strings that are decoded from UTF-8 bytes.
+ *
+ * <p>Values such as symbols and account codes tend to repeat over and over again.
+ * The cache looks up strings directly by their encoded bytes, which means that a cache hit
+ * does not allocate anything.
+ *
+ * <p>The cache is a fixed size hash table, where each slot holds one string.
+ * When two strings map to the same slot, the most recently decoded string replaces the previous one.
+ * Strings longer than the maximum string length are never cached.
+ *
+ * <p>The cache is thread safe and can be shared between codec instances.
+ *
+ * @author mikael.brannstrom
+ */
+public class StringInternCache {
+
+    private static final Charset UTF8 = StandardCharsets.UTF_8;
+
+    private final Entry[] entries;
+    private final int mask;
+    private final int maxStringLength;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+
+    /**
+     * Create a string intern cache with capacity 4096, for strings up to 32 bytes.
+     */
+    public StringInternCache() {
+        this(4096, 32);
+    }
+
+    /**
+     * Create a string intern cache.
+     *
+     * @param capacity the number of cached strings, will be rounded up to the nearest power of two.
+     * @param maxStringLength the maximum length in bytes of strings to be cached.
+     */
+    public StringInternCache(int capacity, int maxStringLength) {
+        if (capacity <= 0 || capacity > (1 << 30)) {
+            throw new IllegalArgumentException("Illegal capacity: " + capacity);
+        }
+        if (maxStringLength < 0) {
+            throw new IllegalArgumentException("Illegal max string length: " + maxStringLength);
+        }
+        int size = Integer.highestOneBit(capacity);
+        if (size < capacity) {
+            size <<= 1;
+        }
+        this.entries = new Entry[size];
+        this.mask = size - 1;
+        this.maxStringLength = maxStringLength;
+    }
+
+    /**
+     * Returns the maximum length in bytes of strings to be cached.
+     * @return the max string length.
+     */
+    public int getMaxStringLength() {
+        return maxStringLength;
+    }
+
+    /**
+     * Returns the number of cached strings that the cache can hold.
+     * @return the capacity.
+     */
+    public int getCapacity() {
+        return entries.length;
+    }
+
+    /**
+     * Decode a UTF-8 encoded string, possibly returning a cached instance.
+     *
+     * @param data the data, not null.
+     * @param offset the offset in the data where the string starts.
+     * @param len the number of bytes to decode.
+     * @return the string, not null.
+     */
+    public String intern(byte[] data, int offset, int len) {
+        if (len > maxStringLength) {
+            return new String(data, offset, len, UTF8);
+        }
+        int hash = 1;
+        for (int i = offset, end = offset + len; i < end; i++) {
+            hash = 31 * hash + data[i];
+        }
+        int index = spread(hash) & mask;
+        Entry entry = entries[index];
+        if (entry != null && entry.hash == hash && entry.bytes.length == len &&
+                equals(entry.bytes, data, offset)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        byte[] bytes = Arrays.copyOfRange(data, offset, offset + len);
+        String value = new String(bytes, UTF8);
+        entries[index] = new Entry(hash, bytes, value);
+        return value;
+    }
+
+    /**
+     * Decode a UTF-8 encoded string, possibly returning a cached instance.
+     * The position of the byte buffer is not changed.
+     *
+     * @param buf the data, not null.
+     * @param index the absolute index in the byte buffer where the string starts.
+     * @param len the number of bytes to decode.
+     * @return the string, not null.
+     */
+    public String intern(ByteBuffer buf, int index, int len) {
+        if (buf.hasArray()) {
+            return intern(buf.array(), buf.arrayOffset() + index, len);
+        }
+        if (len > maxStringLength) {
+            byte[] bytes = new byte[len];
+            for (int i = 0; i < len; i++) {
+                bytes[i] = buf.get(index + i);
+            }
+            return new String(bytes, UTF8);
+        }
+        int hash = 1;
+        for (int i = index, end = index + len; i < end; i++) {
+            hash = 31 * hash + buf.get(i);
+        }
+        int slot = spread(hash) & mask;
+        Entry entry = entries[slot];
+        if (entry != null && entry.hash == hash && entry.bytes.length == len &&
+                equals(entry.bytes, buf, index)) {
+            hits.increment();
+            return entry.value;
+        }
+        misses.increment();
+        byte[] bytes = new byte[len];
+        for (int i = 0; i < len; i++) {
+            bytes[i] = buf.get(index + i);
+        }
+        String value = new String(bytes, UTF8);
+        entries[slot] = new Entry(hash, bytes, value);
+        return value;
+    }
+
+    /**
+     * Returns the number of lookups that returned a cached string.
+     * @return the hit count.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of lookups that did not return a cached string.
+     * Strings longer than the maximum string length are not counted.
+     * @return the miss count.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the ratio of lookups that returned a cached string.
+     * @return the hit rate in the range [0, 1], or 0 if there has been no lookups.
+     */
+    public double getHitRate() {
+        long h = hits.sum();
+        long total = h + misses.sum();
+        return total == 0 ? 0.0 : (double) h / total;
+    }
+
+    /**
+     * Reset the hit and miss counters.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+    }
+
+    /**
+     * Remove all cached strings.
+     */
+    public void clear() {
+        Arrays.fill(entries, null);
+    }
+
+    @Override
+    public String toString() {
+        return "StringInternCache[capacity=" + entries.length + ", maxStringLength=" + maxStringLength +
+                ", hits=" + getHitCount() + ", misses=" + getMissCount() + "]";
+    }
+
+    private static int spread(int hash) {
+        return hash ^ (hash >>> 16);
+    }
+
+    private static boolean equals(byte[] bytes, byte[] data, int offset) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != data[offset + i]) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static boolean equals(byte[] bytes, ByteBuffer buf, int index) {
+        for (int i = 0; i < bytes.length; i++) {
+            if (bytes[i] != buf.get(index + i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Immutable cache entry. All fields are final, which makes it safe to publish entries without locking.
+     */
+    private static final class Entry {
+        final int hash;
+        final byte[] bytes;
+        final String value;
+
+        Entry(int hash, byte[] bytes, String value) {
+            this.hash = hash;
+            this.bytes = bytes;
+            this.value = value;
+        }
+    }
+}
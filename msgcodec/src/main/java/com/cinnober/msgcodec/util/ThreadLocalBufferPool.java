@@ -0,0 +1,300 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.util;
+
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free buffer pool, where each thread keeps a small cache of its own buffers.
+ *
+ * <p>Buffers are grouped in size classes, starting at the minimum buffer size and doubling up to the
+ * maximum buffer size. {@link #get()} returns a buffer of the maximum size, while {@link #get(int)}
+ * returns a buffer from the smallest size class that fits.
+ *
+ * <p>A released buffer is first put in the cache of the releasing thread. When that cache is full
+ * the buffer is put in a bounded shared pool, which is used by all threads. When the shared pool is
+ * full as well the buffer is dropped. Both the thread caches and the shared pool are accessed without locks.
+ * When no pooled buffer is available a new one is created on demand, i.e. the pool never blocks.
+ *
+ * <p>The thread caches are shared by all pools, since buffers of the same size are interchangeable,
+ * and they do not refer to any pool. A pool can therefore be collected while the threads that used it are alive.
+ * Each thread keeps at most the thread cache size of buffers of each size, and never more than
+ * {@value #MAX_THREAD_CACHE_BUFFERS} buffers or {@value #MAX_THREAD_CACHE_BYTES} bytes in total,
+ * for as long as the thread is alive.
+ *
+ * @author mikael.brannstrom
+ */
+public class ThreadLocalBufferPool implements Pool<byte[]> {
+    /** The maximum number of buffers kept by each thread, for all pools. */
+    public static final int MAX_THREAD_CACHE_BUFFERS = 16;
+    /** The maximum number of bytes kept by each thread, for all pools. */
+    public static final int MAX_THREAD_CACHE_BYTES = 4 * 1048576;
+
+    private static final ThreadLocal<ThreadCache> threadCache = new ThreadLocal<ThreadCache>() {
+        @Override
+        protected ThreadCache initialValue() {
+            return new ThreadCache();
+        }
+    };
+
+    private final int[] sizes;
+    private final int threadCacheSize;
+    private final AtomicReferenceArray<byte[]>[] shared;
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder allocations = new LongAdder();
+
+    /**
+     * Create a new buffer pool with a single size class, and a thread cache of one buffer.
+     *
+     * @param bufferSize the size of the buffers.
+     * @param poolCapacity the number of buffers kept in the shared pool.
+     */
+    public ThreadLocalBufferPool(int bufferSize, int poolCapacity) {
+        this(bufferSize, bufferSize, 1, poolCapacity);
+    }
+
+    /**
+     * Create a new buffer pool.
+     *
+     * @param minBufferSize the size of the buffers in the smallest size class.
+     * @param maxBufferSize the size of the buffers in the largest size class.
+     * @param threadCacheSize the number of buffers per size class kept by each thread,
+     * see {@link #MAX_THREAD_CACHE_BYTES}.
+     * @param poolCapacity the number of buffers per size class kept in the shared pool.
+     */
+    @SuppressWarnings("unchecked")
+    public ThreadLocalBufferPool(int minBufferSize, int maxBufferSize, int threadCacheSize, int poolCapacity) {
+        if (minBufferSize <= 0 || maxBufferSize < minBufferSize) {
+            throw new IllegalArgumentException("Illegal buffer sizes: " + minBufferSize + ", " + maxBufferSize);
+        }
+        if (threadCacheSize < 0 || poolCapacity < 0) {
+            throw new IllegalArgumentException("Illegal capacity: " + threadCacheSize + ", " + poolCapacity);
+        }
+        int numClasses = 1;
+        for (long size = minBufferSize; size < maxBufferSize; size <<= 1) {
+            numClasses++;
+        }
+        this.sizes = new int[numClasses];
+        for (int i=0; i<numClasses-1; i++) {
+            sizes[i] = minBufferSize << i;
+        }
+        sizes[numClasses-1] = maxBufferSize;
+        this.threadCacheSize = threadCacheSize;
+        this.shared = new AtomicReferenceArray[numClasses];
+        for (int i=0; i<numClasses; i++) {
+            shared[i] = new AtomicReferenceArray<>(poolCapacity);
+        }
+    }
+
+    /**
+     * Returns the size of the buffers in the largest size class.
+     * @return the maximum buffer size.
+     */
+    public int getMaxBufferSize() {
+        return sizes[sizes.length-1];
+    }
+
+    /**
+     * Get a buffer of the maximum buffer size.
+     * @return the buffer, not null.
+     */
+    @Override
+    public byte[] get() {
+        return getFromClass(sizes.length-1);
+    }
+
+    /**
+     * Get a buffer of at least the specified size.
+     * Buffers larger than the maximum buffer size are always created on demand, and never pooled.
+     *
+     * @param minSize the minimum size of the buffer.
+     * @return the buffer, from the smallest size class that fits, not null.
+     */
+    public byte[] get(int minSize) {
+        for (int i=0; i<sizes.length; i++) {
+            if (sizes[i] >= minSize) {
+                return getFromClass(i);
+            }
+        }
+        misses.increment();
+        allocations.increment();
+        return new byte[minSize];
+    }
+
+    private byte[] getFromClass(int sizeClass) {
+        byte[] buf = threadCache.get().poll(sizes[sizeClass]);
+        if (buf != null) {
+            hits.increment();
+            return buf;
+        }
+        misses.increment();
+        AtomicReferenceArray<byte[]> slots = shared[sizeClass];
+        int len = slots.length();
+        int start = startIndex(len);
+        for (int i=0; i<len; i++) {
+            int index = (start + i) % len;
+            if (slots.get(index) != null) {
+                buf = slots.getAndSet(index, null);
+                if (buf != null) {
+                    return buf;
+                }
+            }
+        }
+        allocations.increment();
+        return new byte[sizes[sizeClass]];
+    }
+
+    /**
+     * Release a buffer to the pool.
+     * Buffers that do not match the size of any size class are dropped.
+     *
+     * @param buf the buffer, not null.
+     */
+    @Override
+    public void release(byte[] buf) {
+        int sizeClass = sizeClassOf(buf.length);
+        if (sizeClass < 0) {
+            return;
+        }
+        if (threadCache.get().offer(buf, threadCacheSize)) {
+            return;
+        }
+        AtomicReferenceArray<byte[]> slots = shared[sizeClass];
+        int len = slots.length();
+        int start = startIndex(len);
+        for (int i=0; i<len; i++) {
+            int index = (start + i) % len;
+            if (slots.get(index) == null && slots.compareAndSet(index, null, buf)) {
+                return;
+            }
+        }
+    }
+
+    private int sizeClassOf(int size) {
+        for (int i=0; i<sizes.length; i++) {
+            if (sizes[i] == size) {
+                return i;
+            } else if (sizes[i] > size) {
+                break;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Returns the index in the shared pool where the current thread starts to look for a buffer or free slot.
+     * Threads start at different indices, to avoid that they all compete for the first slots.
+     */
+    private static int startIndex(int len) {
+        if (len == 0) {
+            return 0;
+        }
+        return (int) ((Thread.currentThread().getId() & 0x7fffffff) % len);
+    }
+
+    /**
+     * Returns the number of buffers that were returned from the cache of the calling thread.
+     * @return the hit count.
+     */
+    public long getHitCount() {
+        return hits.sum();
+    }
+
+    /**
+     * Returns the number of buffers that were not found in the cache of the calling thread,
+     * i.e. that were taken from the shared pool or created.
+     * @return the miss count.
+     */
+    public long getMissCount() {
+        return misses.sum();
+    }
+
+    /**
+     * Returns the number of buffers that have been created by this pool.
+     * @return the allocation count.
+     */
+    public long getAllocationCount() {
+        return allocations.sum();
+    }
+
+    /**
+     * Reset the hit, miss and allocation counters.
+     */
+    public void resetStatistics() {
+        hits.reset();
+        misses.reset();
+        allocations.reset();
+    }
+
+    @Override
+    public String toString() {
+        return "ThreadLocalBufferPool[minBufferSize=" + sizes[0] + ", maxBufferSize=" + getMaxBufferSize() +
+                ", hits=" + getHitCount() + ", misses=" + getMissCount() +
+                ", allocations=" + getAllocationCount() + "]";
+    }
+
+    /**
+     * The buffers kept by a single thread, for all pools, as one stack of buffers of any size.
+     * It must not refer to any pool, see the class documentation.
+     */
+    private static final class ThreadCache {
+        private final byte[][] buffers = new byte[MAX_THREAD_CACHE_BUFFERS][];
+        private int count;
+        private int bytes;
+
+        byte[] poll(int size) {
+            for (int i=count-1; i>=0; i--) {
+                byte[] buf = buffers[i];
+                if (buf.length == size) {
+                    count--;
+                    System.arraycopy(buffers, i+1, buffers, i, count-i);
+                    buffers[count] = null;
+                    bytes -= size;
+                    return buf;
+                }
+            }
+            return null;
+        }
+
+        boolean offer(byte[] buf, int maxSameSize) {
+            if (count == buffers.length || buf.length > MAX_THREAD_CACHE_BYTES - bytes) {
+                return false;
+            }
+            int sameSize = 0;
+            for (int i=0; i<count; i++) {
+                if (buffers[i].length == buf.length) {
+                    sameSize++;
+                }
+            }
+            if (sameSize >= maxSameSize) {
+                return false;
+            }
+            buffers[count++] = buf;
+            bytes += buf.length;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.fail;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class ConstructorFactoryTest {
+
+    @Test
+    public void testPrivateConstructor() throws Exception {
+        ConstructorFactory<PrivateConstructor> factory =
+                new ConstructorFactory<>(PrivateConstructor.class.getDeclaredConstructor());
+        PrivateConstructor obj1 = factory.newInstance();
+        PrivateConstructor obj2 = factory.newInstance();
+        assertNotSame(obj1, obj2);
+        assertEquals(PrivateConstructor.class, obj1.getClass());
+    }
+
+    @Test(expected = ObjectInstantiationException.class)
+    public void testAbstractClass() throws Exception {
+        new ConstructorFactory<>(AbstractClass.class.getDeclaredConstructor()).newInstance();
+    }
+
+    @Test
+    public void testConstructorException() throws Exception {
+        ConstructorFactory<FailingConstructor> factory =
+                new ConstructorFactory<>(FailingConstructor.class.getDeclaredConstructor());
+        try {
+            factory.newInstance();
+            fail("Expected exception");
+        } catch (RuntimeException e) {
+            assertEquals(IllegalStateException.class, e.getCause().getClass());
+        }
+    }
+
+    private static class PrivateConstructor {
+        private PrivateConstructor() {}
+    }
+
+    public static abstract class AbstractClass {
+        public AbstractClass() {}
+    }
+
+    public static class FailingConstructor {
+        public FailingConstructor() {
+            throw new IllegalStateException();
+        }
+    }
+}
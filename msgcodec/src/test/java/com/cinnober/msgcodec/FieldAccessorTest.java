@@ -0,0 +1,74 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class FieldAccessorTest {
+
+    @Test
+    public void testPrivateField() throws Exception {
+        FieldAccessor accessor = new FieldAccessor(Fields.class.getDeclaredField("text"));
+        Fields obj = new Fields();
+        assertNull(accessor.getValue(obj));
+        accessor.setValue(obj, "abc");
+        assertEquals("abc", obj.text);
+        assertEquals("abc", accessor.getValue(obj));
+    }
+
+    @Test
+    public void testPrimitiveField() throws Exception {
+        FieldAccessor accessor = new FieldAccessor(Fields.class.getDeclaredField("number"));
+        Fields obj = new Fields();
+        accessor.setValue(obj, 7);
+        assertEquals(7, obj.number);
+        assertEquals(7, accessor.getValue(obj));
+    }
+
+    @Test
+    public void testFinalField() throws Exception {
+        FieldAccessor accessor = new FieldAccessor(Fields.class.getDeclaredField("constant"));
+        Fields obj = new Fields();
+        assertEquals(1L, accessor.getValue(obj));
+        accessor.setValue(obj, 2L);
+        assertEquals(2L, accessor.getValue(obj));
+    }
+
+    @Test(expected = NullPointerException.class)
+    public void testSetNullPrimitive() throws Exception {
+        new FieldAccessor(Fields.class.getDeclaredField("number")).setValue(new Fields(), null);
+    }
+
+    private static class Fields {
+        private String text;
+        int number;
+        private final long constant = System.nanoTime() >= 0 ? 1L : 0L;
+    }
+}
@@ -0,0 +1,99 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class PrimitiveFieldAccessorTest {
+
+    @Test
+    public void testIntField() throws Exception {
+        PrimitiveFieldAccessor<?> accessor = PrimitiveFieldAccessor.create(Fields.class.getDeclaredField("intValue"));
+        assertTrue(accessor instanceof IntAccessor);
+        @SuppressWarnings("unchecked")
+        IntAccessor<Object> intAccessor = (IntAccessor<Object>) accessor;
+        Fields obj = new Fields();
+        intAccessor.setInt(obj, 7);
+        assertEquals(7, obj.intValue);
+        assertEquals(7, intAccessor.getInt(obj));
+        assertEquals(7, accessor.getValue(obj));
+    }
+
+    @Test
+    public void testLongFloatDoubleFields() throws Exception {
+        Fields obj = new Fields();
+        @SuppressWarnings("unchecked")
+        LongAccessor<Object> longAccessor =
+                (LongAccessor<Object>) PrimitiveFieldAccessor.create(Fields.class.getDeclaredField("longValue"));
+        longAccessor.setLong(obj, 1L << 40);
+        assertEquals(1L << 40, longAccessor.getLong(obj));
+
+        @SuppressWarnings("unchecked")
+        FloatAccessor<Object> floatAccessor =
+                (FloatAccessor<Object>) PrimitiveFieldAccessor.create(Fields.class.getDeclaredField("floatValue"));
+        floatAccessor.setFloat(obj, 1.5f);
+        assertEquals(1.5f, floatAccessor.getFloat(obj), 0.0f);
+
+        @SuppressWarnings("unchecked")
+        DoubleAccessor<Object> doubleAccessor =
+                (DoubleAccessor<Object>) PrimitiveFieldAccessor.create(Fields.class.getDeclaredField("doubleValue"));
+        doubleAccessor.setValue(obj, 2.5);
+        assertEquals(2.5, obj.doubleValue, 0.0);
+        assertEquals(2.5, doubleAccessor.getValue(obj), 0.0);
+    }
+
+    @Test
+    public void testFinalField() throws Exception {
+        @SuppressWarnings("unchecked")
+        IntAccessor<Object> accessor =
+                (IntAccessor<Object>) PrimitiveFieldAccessor.create(Fields.class.getDeclaredField("constant"));
+        Fields obj = new Fields();
+        assertEquals(1, accessor.getInt(obj));
+        accessor.setInt(obj, 2);
+        assertEquals(2, accessor.getInt(obj));
+    }
+
+    @Test
+    public void testUnsupportedType() throws Exception {
+        assertNull(PrimitiveFieldAccessor.create(Fields.class.getDeclaredField("text")));
+        assertNull(PrimitiveFieldAccessor.create(Fields.class.getDeclaredField("shortValue")));
+    }
+
+    private static class Fields {
+        private int intValue;
+        private long longValue;
+        private float floatValue;
+        private double doubleValue;
+        private short shortValue;
+        private String text;
+        private final int constant = System.nanoTime() >= 0 ? 1 : 0;
+    }
+}
@@ -184,6 +184,22 @@ public class SchemaBuilderTest {
                 enumMapping, group.getField("e4").getBinding().getSymbolMapping());
     }
     
+    @Test
+    public void testSparseEnumSymbolMapping() {
+        SymbolMapping<SparseEnum> mapping = new SymbolMapping.IdentityEnumMapping<>(SparseEnum.class);
+        assertEquals(SparseEnum.S1, mapping.lookup(-5));
+        assertEquals(SparseEnum.S2, mapping.lookup(0));
+        assertEquals(SparseEnum.S3, mapping.lookup(1000000));
+        assertEquals(SparseEnum.S3, mapping.lookup(Integer.valueOf(1000000)));
+        assertEquals(Integer.valueOf(1000000), mapping.getId(SparseEnum.S3));
+        assertEquals("S2", mapping.getName(SparseEnum.S2));
+        assertEquals(SparseEnum.S1, mapping.lookup("S1"));
+        try {
+            mapping.lookup(1);
+            fail("Expected exception: unmapped id");
+        } catch (IllegalArgumentException e) {}
+    }
+
     public static class FieldOrderMsg extends MsgObject {
         @Id(1)
         public int i1;
@@ -205,6 +221,12 @@ public class SchemaBuilderTest {
         V3
     }
     
+    public static enum SparseEnum {
+        @Id(-5) S1,
+        @Id(0) S2,
+        @Id(1000000) S3
+    }
+
     @Id(1)
     public static class EnumMessage {
         public int notEnum;
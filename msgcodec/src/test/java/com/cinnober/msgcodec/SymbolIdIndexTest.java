@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class SymbolIdIndexTest {
+
+    @Test
+    public void testDenseIds() {
+        SymbolIdIndex index = new SymbolIdIndex(new int[] { 3, 1, 2, -1 });
+        assertEquals(0, index.indexOf(3));
+        assertEquals(1, index.indexOf(1));
+        assertEquals(3, index.indexOf(-1));
+        assertEquals(-1, index.indexOf(0));
+        assertEquals(-1, index.indexOf(Integer.MAX_VALUE));
+        assertEquals(-1, index.indexOf(Integer.MIN_VALUE));
+    }
+
+    @Test
+    public void testSparseIds() {
+        SymbolIdIndex index = new SymbolIdIndex(new int[] { 1000000, 7, Integer.MIN_VALUE, Integer.MAX_VALUE });
+        assertEquals(0, index.indexOf(1000000));
+        assertEquals(1, index.indexOf(7));
+        assertEquals(2, index.indexOf(Integer.MIN_VALUE));
+        assertEquals(3, index.indexOf(Integer.MAX_VALUE));
+        assertEquals(-1, index.indexOf(8));
+    }
+
+    @Test
+    public void testNoIds() {
+        assertEquals(-1, new SymbolIdIndex(new int[0]).indexOf(0));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testDuplicateIds() {
+        new SymbolIdIndex(new int[] { 1, 2, 1 });
+    }
+}
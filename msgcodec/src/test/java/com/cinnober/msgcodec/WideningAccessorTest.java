@@ -0,0 +1,109 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * @author mikael.brannstrom
+ */
+public class WideningAccessorTest {
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOutboundUnsigned() throws Exception {
+        Fields obj = new Fields();
+        obj.byteValue = -1;
+        obj.intValue = -1;
+        WideningAccessor<Object, ?> accessor = WideningAccessor.createOutbound(field("byteValue"),
+                byte.class, int.class, true);
+        assertTrue(accessor instanceof IntAccessor);
+        assertEquals(0xff, ((IntAccessor<Object>) accessor).getInt(obj));
+        assertEquals(0xff, accessor.getValue(obj));
+
+        LongAccessor<Object> longAccessor = (LongAccessor<Object>) WideningAccessor.createOutbound(
+                field("intValue"), int.class, long.class, true);
+        assertEquals(0xffffffffL, longAccessor.getLong(obj));
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void testOutboundSigned() throws Exception {
+        Fields obj = new Fields();
+        obj.byteValue = -1;
+        obj.floatValue = 1.5f;
+        assertEquals((short) -1, WideningAccessor.createOutbound(field("byteValue"), byte.class, short.class, false)
+                .getValue(obj));
+        DoubleAccessor<Object> doubleAccessor = (DoubleAccessor<Object>) WideningAccessor.createOutbound(
+                field("floatValue"), float.class, double.class, false);
+        assertEquals(1.5, doubleAccessor.getDouble(obj), 0.0);
+    }
+
+    @Test
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    public void testInbound() throws Exception {
+        Fields obj = new Fields();
+        IntAccessor<Object> accessor = (IntAccessor<Object>) WideningAccessor.createInbound(field("longValue"),
+                long.class, int.class, true);
+        accessor.setInt(obj, -1);
+        assertEquals(0xffffffffL, obj.longValue);
+
+        Accessor charAccessor = WideningAccessor.createInbound(field("charValue"), char.class, byte.class, true);
+        charAccessor.setValue(obj, (byte) -1);
+        assertEquals('\u00ff', obj.charValue);
+
+        Accessor boxedAccessor = WideningAccessor.createInbound(field("boxedValue"), long.class, short.class, false);
+        boxedAccessor.setValue(obj, (short) -2);
+        assertEquals(Long.valueOf(-2), obj.boxedValue);
+        boxedAccessor.setValue(obj, null);
+        assertNull(obj.boxedValue);
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testInboundGet() throws Exception {
+        WideningAccessor.createInbound(field("longValue"), long.class, int.class, false).getValue(new Fields());
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testNarrowing() throws Exception {
+        WideningAccessor.createOutbound(field("longValue"), long.class, int.class, false);
+    }
+
+    private static Accessor<Object, ?> field(String name) throws NoSuchFieldException {
+        return new FieldAccessor(Fields.class.getDeclaredField(name));
+    }
+
+    private static class Fields {
+        byte byteValue;
+        char charValue;
+        int intValue;
+        long longValue;
+        float floatValue;
+        Long boxedValue;
+    }
+}
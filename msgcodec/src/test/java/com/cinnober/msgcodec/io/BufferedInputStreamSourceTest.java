@@ -0,0 +1,104 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.cinnober.msgcodec.util.StringInternCache;
+
+/**
+ *
+ * @author mikael.brannstrom
+ */
+public class BufferedInputStreamSourceTest {
+
+    public BufferedInputStreamSourceTest() {
+    }
+
+    /**
+     * Input stream that returns at most three bytes per read, to exercise the refill.
+     */
+    private static InputStream trickle(byte[] data) {
+        return new ByteArrayInputStream(data) {
+            @Override
+            public synchronized int read(byte[] b, int off, int len) {
+                return super.read(b, off, Math.min(len, 3));
+            }
+        };
+    }
+
+    @Test
+    public void testReadWrite() throws IOException {
+        ByteArrayOutputStream bout = new ByteArrayOutputStream();
+        BufferedOutputStreamSink out = new BufferedOutputStreamSink(bout, 16);
+        out.write(123);
+        out.writeIntLE(123123);
+        out.writeLongLE(-2L);
+        out.writeLongLE(0x030201L, 3);
+        out.write("hello".getBytes(ByteSource.UTF8));
+        out.write(new byte[40]);
+        out.writeIntLE(Integer.MIN_VALUE);
+        assertTrue(out.buffered() > 0);
+        out.flush();
+        assertEquals(0, out.buffered());
+        assertEquals(1+4+8+3+5+40+4, bout.size());
+
+        BufferedInputStreamSource in = new BufferedInputStreamSource(trickle(bout.toByteArray()), 16);
+        assertEquals(123, in.read());
+        assertEquals(123123, in.readIntLE());
+        assertEquals(-2L, in.readLongLE());
+        assertEquals(0x030201L, in.readLongLE(3));
+        StringInternCache cache = new StringInternCache();
+        assertEquals("hello", in.readStringUtf8(5, cache));
+        byte[] zeros = new byte[40];
+        in.read(zeros, 0, 20);
+        in.skip(20);
+        assertEquals(Integer.MIN_VALUE, in.readIntLE());
+        assertEquals(0, in.buffered());
+        try {
+            in.read();
+            fail("Expected EOF");
+        } catch (EOFException e) {}
+    }
+
+    @Test
+    public void testLargeRead() throws IOException {
+        byte[] data = new byte[100];
+        for (int i=0; i<data.length; i++) {
+            data[i] = (byte) i;
+        }
+        BufferedInputStreamSource in = new BufferedInputStreamSource(trickle(data), 16);
+        assertEquals(0, in.read());
+        byte[] b = new byte[99];
+        in.read(b);
+        assertEquals(1, b[0]);
+        assertEquals(99, b[98]);
+    }
+}
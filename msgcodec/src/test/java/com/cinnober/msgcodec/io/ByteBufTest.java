@@ -2,6 +2,9 @@ package com.cinnober.msgcodec.io;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.junit.Assume.assumeTrue;
 
 import java.io.IOException;
 import java.nio.ByteBuffer;
@@ -80,6 +83,65 @@ public class ByteBufTest {
         byte[] data5 = new byte[5];
         buf.read(data5);
         assertArrayEquals(new byte[]{1,2,3,4,4}, data5);
+
+        buf.clear();
+        ByteBuffer src = ByteBuffer.wrap(new byte[]{9,1,2,3,9}, 1, 3);
+        buf.write(src);
+        assertEquals(1, src.position());
+        buf.write(ByteBuffer.allocateDirect(2));
+        buf.write(ByteBuffer.wrap(new byte[]{4,5}).asReadOnlyBuffer());
+        buf.flip();
+        ByteBuffer view = buf.readByteBuffer(7);
+        assertEquals(7, buf.position());
+        assertTrue(view.isReadOnly());
+        assertEquals(ByteBuffer.wrap(new byte[]{1,2,3,0,0,4,5}), view);
+
+        buf.clear();
+        buf.write(new byte[]{9,9,9,9,9,9,9,9,9,9,9,9});
+        buf.position(0);
+        buf.writeLongLE(0x0807060504030201L, 3);
+        buf.writeLongLE(-1L, 8);
+        assertEquals(11, buf.position());
+        buf.position(12);
+        buf.flip();
+        assertEquals(0x030201L, buf.readLongLE(3));
+        assertEquals(-1L, buf.readLongLE(8));
+        assertEquals(9L, buf.readLongLE(1)); // near the limit
+        buf.position(9);
+        buf.writeLongLE(0x0d0c0b0aL, 3); // near the limit
+        assertEquals(12, buf.position());
+        buf.position(2);
+        assertEquals(0x03L, buf.readLongLE(1));
+        buf.position(8);
+        assertEquals(0x0b0affL, buf.readLongLE(3));
+        buf.position(0);
+        assertEquals(0L, buf.readLongLE(0));
+        assertEquals(0, buf.position());
+    }
+
+    public void testReadByteBufferNoCopy(ByteBuf buf, byte[] data) throws IOException {
+        buf.write(new byte[]{1,2,3,4});
+        buf.flip();
+        buf.read();
+        ByteBuffer view = buf.readByteBuffer(2);
+        assertEquals(3, buf.position());
+        assertEquals(0, view.position());
+        assertEquals(2, view.limit());
+        data[1] = 7;
+        assertEquals(7, view.get(0));
+        assertEquals(3, view.get(1));
+    }
+
+    @Test
+    public void testBufferReadByteBufferNoCopy() throws IOException {
+        byte[] data = new byte[16];
+        testReadByteBufferNoCopy(new ByteBufferBuf(ByteBuffer.wrap(data)), data);
+    }
+
+    @Test
+    public void testArrayReadByteBufferNoCopy() throws IOException {
+        byte[] data = new byte[16];
+        testReadByteBufferNoCopy(new ByteArrayBuf(data), data);
     }
     
     
@@ -120,4 +182,81 @@ public class ByteBufTest {
         testReadWrite(buf);
     }
     
+    @Test
+    public void testCompositeBuffer() throws IOException {
+        ByteBuf buf = new CompositeByteBuf(4, 4096);
+        testReadWrite(buf);
+    }
+
+    @Test
+    public void testUnsafeArray() throws IOException {
+        assumeTrue(UnsafeByteBuf.isSupported());
+        ByteBuf buf = new UnsafeByteBuf(4096);
+        testReadWrite(buf);
+    }
+
+    @Test
+    public void testUnsafeDirectBuffer() throws IOException {
+        assumeTrue(UnsafeByteBuf.isSupported());
+        ByteBuf buf = new UnsafeByteBuf(ByteBuffer.allocateDirect(4096));
+        testReadWrite(buf);
+    }
+
+    @Test
+    public void testUnsafeArrayBounds() throws IOException {
+        assumeTrue(UnsafeByteBuf.isSupported());
+        testUnsafeBounds(new UnsafeByteBuf(16));
+    }
+
+    @Test
+    public void testUnsafeDirectBufferBounds() throws IOException {
+        assumeTrue(UnsafeByteBuf.isSupported());
+        testUnsafeBounds(new UnsafeByteBuf(ByteBuffer.allocateDirect(16)));
+    }
+
+    private void testUnsafeBounds(ByteBuf buf) throws IOException {
+        buf.position(8);
+        assertThrows(IOException.class, () -> buf.skip(Integer.MAX_VALUE)); // would overflow pos
+        assertThrows(IOException.class, () -> buf.skip(-1));
+        assertThrows(IOException.class, () -> buf.skip(9));
+        assertThrows(IOException.class, () -> buf.readByteBuffer(Integer.MAX_VALUE));
+        assertThrows(IOException.class, () -> buf.readStringUtf8(Integer.MAX_VALUE));
+        assertThrows(IOException.class, () -> buf.readLongLE(-1));
+        assertThrows(IOException.class, () -> buf.read(new byte[4], 0, -1));
+        assertThrows(IOException.class, () -> buf.write(new byte[4], 0, Integer.MAX_VALUE));
+        assertThrows(IndexOutOfBoundsException.class, () -> buf.write(new byte[4], Integer.MAX_VALUE, 2));
+        assertEquals(8, buf.position());
+        buf.skip(8);
+        assertThrows(IOException.class, () -> buf.readIntLE());
+        assertThrows(IllegalArgumentException.class, () -> buf.position(-1));
+        assertThrows(IllegalArgumentException.class, () -> buf.position(Integer.MIN_VALUE));
+        assertThrows(IllegalArgumentException.class, () -> buf.limit(-1));
+        assertThrows(IllegalArgumentException.class, () -> buf.shift(8, Integer.MAX_VALUE, 1));
+        assertThrows(IllegalArgumentException.class, () -> buf.shift(8, 4, Integer.MAX_VALUE));
+        assertEquals(16, buf.position());
+    }
+
+    private interface Action {
+        void run() throws Exception;
+    }
+
+    private static void assertThrows(Class<? extends Exception> expected, Action action) {
+        try {
+            action.run();
+        } catch (Exception e) {
+            if (expected.isInstance(e)) {
+                return;
+            }
+            throw new AssertionError("Expected " + expected.getSimpleName() + ", got " + e, e);
+        }
+        fail("Expected " + expected.getSimpleName());
+    }
+
+    @Test
+    public void testUnsafeArrayReadByteBufferNoCopy() throws IOException {
+        assumeTrue(UnsafeByteBuf.isSupported());
+        byte[] data = new byte[16];
+        testReadByteBufferNoCopy(new UnsafeByteBuf(data), data);
+    }
+
 }
@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.GatheringByteChannel;
+import java.util.Arrays;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+import com.cinnober.msgcodec.EncodeBufferOverflowException;
+
+/**
+ *
+ * @author mikael.brannstrom
+ */
+public class CompositeByteBufTest {
+
+    public CompositeByteBufTest() {
+    }
+
+    private static byte[] sequence(int len) {
+        byte[] data = new byte[len];
+        for (int i=0; i<len; i++) {
+            data[i] = (byte) i;
+        }
+        return data;
+    }
+
+    @Test
+    public void testGrowing() throws IOException {
+        CompositeByteBuf buf = new CompositeByteBuf(10, 100);
+        assertEquals(16, buf.getSegmentSize());
+        assertEquals(0, buf.allocation());
+        buf.write(sequence(40));
+        assertEquals(3, buf.getSegmentCount());
+        assertEquals(48, buf.allocation());
+        assertEquals(100, buf.capacity());
+
+        buf.flip();
+        byte[] data = new byte[40];
+        buf.read(data);
+        assertArrayEquals(sequence(40), data);
+    }
+
+    @Test(expected = EncodeBufferOverflowException.class)
+    public void testOverflow() throws IOException {
+        CompositeByteBuf buf = new CompositeByteBuf(16, 20);
+        buf.write(new byte[21]);
+    }
+
+    @Test
+    public void testShiftAcrossSegments() throws IOException {
+        CompositeByteBuf buf = new CompositeByteBuf(8, 100);
+        buf.write(sequence(30));
+        buf.shift(1, 29, 5);
+        buf.position(0);
+        buf.limit(35);
+        buf.skip(6);
+        byte[] data = new byte[29];
+        buf.read(data);
+        byte[] expected = sequence(30);
+        assertArrayEquals(Arrays.copyOfRange(expected, 1, 30), data);
+
+        buf.shift(6, 29, -3);
+        buf.position(3);
+        buf.read(data);
+        assertArrayEquals(Arrays.copyOfRange(expected, 1, 30), data);
+    }
+
+    @Test
+    public void testWriteTo() throws IOException {
+        CompositeByteBuf buf = new CompositeByteBuf(8, 100);
+        buf.write(sequence(30));
+        buf.flip();
+        buf.position(3);
+
+        CollectingChannel channel = new CollectingChannel();
+        assertEquals(27, buf.writeTo(channel));
+        assertEquals(30, buf.position());
+        assertEquals(4, channel.buffers);
+        assertArrayEquals(Arrays.copyOfRange(sequence(30), 3, 30), channel.out.toByteArray());
+        assertEquals(0, buf.writeTo(channel));
+    }
+
+    @Test
+    public void testCopyTo() throws IOException {
+        CompositeByteBuf buf = new CompositeByteBuf(8, 100);
+        buf.write(sequence(20));
+        buf.flip();
+        ByteArrayBuf out = new ByteArrayBuf(20);
+        buf.copyTo(out);
+        assertEquals(0, buf.position());
+        assertArrayEquals(sequence(20), out.array());
+    }
+
+    private static class CollectingChannel implements GatheringByteChannel {
+        private final ByteArrayOutputStream out = new ByteArrayOutputStream();
+        private int buffers;
+
+        @Override
+        public long write(ByteBuffer[] srcs, int offset, int length) throws IOException {
+            long written = 0;
+            for (int i=offset; i<offset+length; i++) {
+                written += write(srcs[i]);
+            }
+            buffers += length;
+            return written;
+        }
+
+        @Override
+        public long write(ByteBuffer[] srcs) throws IOException {
+            return write(srcs, 0, srcs.length);
+        }
+
+        @Override
+        public int write(ByteBuffer src) throws IOException {
+            int len = src.remaining();
+            while (src.hasRemaining()) {
+                out.write(src.get());
+            }
+            return len;
+        }
+
+        @Override
+        public boolean isOpen() {
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+        }
+    }
+}
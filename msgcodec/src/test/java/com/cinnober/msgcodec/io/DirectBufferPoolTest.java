@@ -0,0 +1,94 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.io;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author mikael.brannstrom
+ */
+public class DirectBufferPoolTest {
+
+    public DirectBufferPoolTest() {
+    }
+
+    @Test
+    public void testSizeClasses() {
+        DirectBufferPool pool = new DirectBufferPool(100, 1000, 0, 0);
+        assertEquals(128, pool.allocate(1).capacity());
+        assertEquals(128, pool.allocate(128).capacity());
+        assertEquals(256, pool.allocate(129).capacity());
+        assertEquals(1024, pool.allocate(1000).capacity());
+        assertEquals(2000, pool.allocate(2000).capacity());
+        assertTrue(pool.allocate(10).isDirect());
+    }
+
+    @Test
+    public void testRelease() {
+        DirectBufferPool pool = new DirectBufferPool(16, 1024, 0, 32);
+        ByteBuffer buf1 = pool.allocate(16);
+        ByteBuffer buf2 = pool.allocate(16);
+        ByteBuffer buf3 = pool.allocate(16);
+        assertEquals(3, pool.getMissCount());
+        assertEquals(48, pool.getAllocatedBytes());
+
+        buf1.position(4).limit(8);
+        buf1.order(ByteOrder.LITTLE_ENDIAN);
+        pool.release(buf1);
+        pool.release(buf2);
+        pool.release(buf3); // pool is full, buffer is dropped
+        pool.release(ByteBuffer.allocate(16)); // not direct, dropped
+
+        ByteBuffer buf = pool.allocate(10);
+        assertSame(buf1, buf);
+        assertEquals(0, buf.position());
+        assertEquals(16, buf.limit());
+        assertEquals(ByteOrder.BIG_ENDIAN, buf.order());
+        assertSame(buf2, pool.allocate(10));
+        assertEquals(2, pool.getHitCount());
+        assertNotSame(buf3, pool.allocate(10));
+        assertEquals(4, pool.getMissCount());
+    }
+
+    @Test
+    public void testSlab() {
+        DirectBufferPool pool = new DirectBufferPool(16, 1024, 64, 1024);
+        ByteBuffer buf1 = pool.allocate(16);
+        assertEquals(1, pool.getMissCount());
+        assertEquals(64, pool.getAllocatedBytes());
+        ByteBuffer buf2 = pool.allocate(16);
+        assertEquals(1, pool.getHitCount());
+        assertEquals(16, buf2.capacity());
+
+        buf1.put(0, (byte) 1);
+        assertEquals(0, buf2.get(0));
+
+        assertEquals(64, pool.allocate(64).capacity());
+        assertEquals(128, pool.getAllocatedBytes());
+    }
+}
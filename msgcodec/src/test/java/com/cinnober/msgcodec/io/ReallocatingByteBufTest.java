@@ -134,6 +134,29 @@ public class ReallocatingByteBufTest {
         testByteBufGrowing(new ReallocatingByteBuf(8, 22, ByteBuffer::allocateDirect));
     }
     
+    @Test
+    public void testReallocatingPooledBuffer() throws IOException {
+        DirectBufferPool pool = new DirectBufferPool(8, 64, 0, 64);
+        ReallocatingByteBuf buf = new ReallocatingByteBuf(8, 64, pool);
+        for (int i=0; i<5; i++) {
+            writeInt32BE(buf, i);
+        }
+        assertEquals(32, buf.allocation());
+        assertEquals(3, pool.getMissCount());
+
+        buf.release();
+        buf.clear();
+        for (int i=0; i<5; i++) {
+            writeInt32BE(buf, i);
+        }
+        buf.flip();
+        for (int i=0; i<5; i++) {
+            assertEquals(i, readInt32BE(buf));
+        }
+        assertEquals(3, pool.getMissCount());
+        assertEquals(3, pool.getHitCount());
+    }
+
     @Test
     public void testReallocatingArray() throws IOException {
         testByteBufGrowing(new ReallocatingArray(8, 22));
@@ -0,0 +1,113 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.cinnober.msgcodec.util;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author mikael.brannstrom
+ */
+public class StringInternCacheTest {
+
+    public StringInternCacheTest() {
+    }
+
+    @Test
+    public void testInternArray() {
+        StringInternCache cache = new StringInternCache(16, 8);
+        byte[] data = "xxABCxxABCxx".getBytes(StandardCharsets.UTF_8);
+
+        String s1 = cache.intern(data, 2, 3);
+        String s2 = cache.intern(data, 7, 3);
+        assertEquals("ABC", s1);
+        assertSame(s1, s2);
+        assertEquals(1, cache.getHitCount());
+        assertEquals(1, cache.getMissCount());
+        assertEquals(0.5, cache.getHitRate(), 0.0);
+
+        String s3 = cache.intern(data, 2, 2);
+        assertEquals("AB", s3);
+        assertEquals(2, cache.getMissCount());
+    }
+
+    @Test
+    public void testInternDirectBuffer() {
+        StringInternCache cache = new StringInternCache(16, 8);
+        byte[] data = "ABCå".getBytes(StandardCharsets.UTF_8);
+        ByteBuffer buf = ByteBuffer.allocateDirect(data.length);
+        buf.put(data);
+
+        String s1 = cache.intern(buf, 0, data.length);
+        String s2 = cache.intern(data, 0, data.length);
+        assertEquals("ABCå", s1);
+        assertSame(s1, s2);
+        assertEquals(data.length, buf.position());
+    }
+
+    @Test
+    public void testMaxStringLength() {
+        StringInternCache cache = new StringInternCache(16, 2);
+        byte[] data = "ABC".getBytes(StandardCharsets.UTF_8);
+
+        String s1 = cache.intern(data, 0, 3);
+        String s2 = cache.intern(data, 0, 3);
+        assertEquals("ABC", s1);
+        assertNotSame(s1, s2);
+        assertEquals(0, cache.getHitCount());
+        assertEquals(0, cache.getMissCount());
+        assertEquals(0.0, cache.getHitRate(), 0.0);
+    }
+
+    @Test
+    public void testEviction() {
+        StringInternCache cache = new StringInternCache(1, 8);
+        assertEquals(1, cache.getCapacity());
+        byte[] a = "A".getBytes(StandardCharsets.UTF_8);
+        byte[] b = "B".getBytes(StandardCharsets.UTF_8);
+
+        String a1 = cache.intern(a, 0, 1);
+        cache.intern(b, 0, 1);
+        String a2 = cache.intern(a, 0, 1);
+        assertNotSame(a1, a2);
+        assertSame(a2, cache.intern(a, 0, 1));
+        assertEquals(1, cache.getHitCount());
+        assertEquals(3, cache.getMissCount());
+
+        cache.resetStatistics();
+        assertEquals(0, cache.getHitCount());
+        cache.clear();
+        assertNotSame(a2, cache.intern(a, 0, 1));
+    }
+
+    @Test
+    public void testCapacityPowerOfTwo() {
+        assertEquals(8, new StringInternCache(5, 8).getCapacity());
+        assertEquals(8, new StringInternCache(8, 8).getCapacity());
+    }
+}
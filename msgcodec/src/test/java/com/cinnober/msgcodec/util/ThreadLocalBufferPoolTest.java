@@ -0,0 +1,137 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2015 The MsgCodec Authors
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+package com.cinnober.msgcodec.util;
+
+import java.lang.ref.WeakReference;
+import org.junit.Test;
+import static org.junit.Assert.*;
+
+/**
+ *
+ * @author mikael.brannstrom
+ */
+public class ThreadLocalBufferPoolTest {
+
+    public ThreadLocalBufferPoolTest() {
+    }
+
+    @Test
+    public void testThreadCache() {
+        ThreadLocalBufferPool pool = new ThreadLocalBufferPool(1024, 2);
+        byte[] buf1 = pool.get();
+        assertEquals(1024, buf1.length);
+        assertEquals(0, pool.getHitCount());
+        assertEquals(1, pool.getMissCount());
+        assertEquals(1, pool.getAllocationCount());
+
+        pool.release(buf1);
+        assertSame(buf1, pool.get());
+        assertEquals(1, pool.getHitCount());
+        assertEquals(1, pool.getAllocationCount());
+    }
+
+    @Test
+    public void testSharedPool() throws Exception {
+        ThreadLocalBufferPool pool = new ThreadLocalBufferPool(2048, 2);
+        byte[] buf1 = pool.get();
+        byte[] buf2 = pool.get();
+        pool.release(buf1); // thread cache
+        pool.release(buf2); // shared pool
+
+        byte[][] result = new byte[1][];
+        Thread thread = new Thread(() -> result[0] = pool.get());
+        thread.start();
+        thread.join();
+        assertSame(buf2, result[0]);
+        assertEquals(2, pool.getAllocationCount());
+        assertEquals(3, pool.getMissCount());
+    }
+
+    @Test
+    public void testSizeClasses() {
+        ThreadLocalBufferPool pool = new ThreadLocalBufferPool(256, 1000, 1, 1);
+        assertEquals(1000, pool.getMaxBufferSize());
+        assertEquals(1000, pool.get().length);
+        assertEquals(256, pool.get(1).length);
+        assertEquals(512, pool.get(257).length);
+        assertEquals(1000, pool.get(513).length);
+        assertEquals(1001, pool.get(1001).length);
+
+        byte[] buf = pool.get(300);
+        pool.release(buf);
+        assertSame(buf, pool.get(400));
+
+        byte[] odd = new byte[300];
+        pool.release(odd);
+        assertNotSame(odd, pool.get(300));
+    }
+
+    @Test
+    public void testThreadCacheIsSharedByPools() {
+        ThreadLocalBufferPool pool1 = new ThreadLocalBufferPool(4096, 1);
+        ThreadLocalBufferPool pool2 = new ThreadLocalBufferPool(4096, 1);
+        byte[] buf = pool1.get();
+        pool1.release(buf);
+        assertSame(buf, pool2.get());
+        assertEquals(1, pool2.getHitCount());
+        assertEquals(0, pool2.getAllocationCount());
+    }
+
+    @Test
+    public void testThreadCacheIsBounded() throws Exception {
+        int size = ThreadLocalBufferPool.MAX_THREAD_CACHE_BYTES / 2;
+        ThreadLocalBufferPool pool = new ThreadLocalBufferPool(size, size, 3, 0);
+        byte[][] result = new byte[6][];
+        Thread thread = new Thread(() -> {
+            for (int i = 0; i < 3; i++) {
+                result[i] = pool.get();
+            }
+            for (int i = 0; i < 3; i++) {
+                pool.release(result[i]);
+            }
+            for (int i = 3; i < 6; i++) {
+                result[i] = pool.get();
+            }
+        });
+        thread.start();
+        thread.join();
+        assertSame(result[1], result[3]);
+        assertSame(result[0], result[4]);
+        assertNotSame(result[2], result[5]);
+        assertEquals(4, pool.getAllocationCount());
+    }
+
+    @Test
+    public void testPoolIsCollectedWhileThreadLives() throws Exception {
+        ThreadLocalBufferPool pool = new ThreadLocalBufferPool(8192, 1);
+        pool.release(pool.get());
+        WeakReference<ThreadLocalBufferPool> poolRef = new WeakReference<>(pool);
+        pool = null;
+        for (int i = 0; i < 20 && poolRef.get() != null; i++) {
+            System.gc();
+            Thread.sleep(10);
+        }
+        assertNull("Pool should be collected", poolRef.get());
+    }
+}